@@ -21,6 +21,7 @@ import abfab3d.grid.AttributeGrid;
 import abfab3d.grid.Model;
 import abfab3d.grid.ModelWriter;
 import abfab3d.io.input.BoundsCalculator;
+import abfab3d.io.output.MeshBlockCache;
 import abfab3d.io.output.MeshExporter;
 import abfab3d.io.output.SingleMaterialModelWriter;
 import abfab3d.io.output.VoxelModelWriter;
@@ -99,6 +100,11 @@ public class VolumeSculptorKernel extends HostedKernel {
 
     private int threadCount;
 
+    /**
+     * Mesh blocks of the previous run, only blocks with changed voxels are remeshed
+     */
+    private MeshBlockCache blockCache = new MeshBlockCache();
+
     /**
      * How many regions to keep
      */
@@ -248,7 +254,7 @@ public class VolumeSculptorKernel extends HostedKernel {
             System.out.println("Files: " + files.length + " params: " + this.params.length);
 
             KernelResults results = null;
-            ExecResult result = Main.execMesh(args, script_args);
+            ExecResult result = Main.execMesh(args, script_args, blockCache);
             Model model = result.getModel();
             ModelWriter mw = model.getWriter();
             TriangleMesh mesh = null;
@@ -101,6 +101,7 @@ public class Main {
 
         errorRemap = new HashMap<String,String>();
         errorRemap.put("Wrapped abfab3d.grid.util.ExecutionStoppedException","Execution time exceeded.");
+        errorRemap.put("Wrapped abfab3d.util.ExecutionStoppedException","Execution time exceeded.");
     }
 
 
@@ -256,6 +257,7 @@ public class Main {
             } finally {
                 IOUtils.closeQuietly(bos);
                 IOUtils.closeQuietly(fos);
+                ShapeJSGlobal.closeGrids();
             }
         }
 
@@ -280,6 +282,15 @@ public class Main {
      * Execute the given arguments, but don't System.exit at the end.
      */
     public static ExecResult execMesh(String origArgs[], String[] scriptArgs) {
+        return execMesh(origArgs, scriptArgs, null);
+    }
+
+    /**
+     * Execute the given arguments, but don't System.exit at the end.
+     *
+     * @param blockCache Cache of mesh blocks from previous executions or null
+     */
+    public static ExecResult execMesh(String origArgs[], String[] scriptArgs, MeshBlockCache blockCache) {
     	fileList = new ArrayList<String>();
     	
         System.out.println("Execute mesh.  args: ");
@@ -348,10 +359,17 @@ public class Main {
             }
             iproxy.clear();
 
+            if (writer instanceof SingleMaterialModelWriter) {
+                ((SingleMaterialModelWriter) writer).setBlockCache(blockCache);
+            }
+
             try {
                 writer.execute(model.getGrid());
             } catch (IOException ioe) {
                 ioe.printStackTrace();
+            } finally {
+                // grid data are not needed after the mesh is written 
+                ShapeJSGlobal.closeGrids();
             }
         }
 
@@ -360,6 +378,7 @@ public class Main {
 
     /**
      * Execute the given arguments, but don't System.exit at the end.
+     * Caller should call ShapeJSGlobal.closeGrids() when the model grid is no longer needed.
      */
     public static ExecResult execModel(String origArgs[], String[] scriptArgs) {
         fileList = new ArrayList<String>();
@@ -658,6 +677,20 @@ public class Main {
                 AbFab3DGlobals.put(AbFab3DGlobals.MAX_PROCESSOR_COUNT_KEY, max_threads);
                 ShapeJSGlobal.setMaximumThreadCount(max_threads);
                 continue;
+            } else if (arg.equals("-gridStorage")) {
+                if (++i == args.length) {
+                    usageError = arg;
+                    break goodUsage;
+                }
+                ShapeJSGlobal.setGridStorage(args[i]);
+                continue;
+            } else if (arg.equals("-gridFolder")) {
+                if (++i == args.length) {
+                    usageError = arg;
+                    break goodUsage;
+                }
+                ShapeJSGlobal.setGridFolder(args[i]);
+                continue;
             } else if (arg.equals("-outputFolder")) {
                 if (++i == args.length) {
                     usageError = arg;
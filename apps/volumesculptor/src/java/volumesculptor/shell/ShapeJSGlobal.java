@@ -13,6 +13,7 @@ import abfab3d.grid.ArrayAttributeGridByte;
 import abfab3d.grid.AttributeGrid;
 import abfab3d.grid.Grid;
 import abfab3d.grid.GridShortIntervals;
+import abfab3d.grid.MappedAttributeGridByte;
 
 import abfab3d.io.input.STLReader;
 import abfab3d.io.input.SVXReader;
@@ -45,6 +46,7 @@ import java.lang.IllegalArgumentException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Vector;
 
 import static abfab3d.util.Output.printf;
 import static abfab3d.util.Output.fmt;
@@ -85,6 +87,15 @@ public class ShapeJSGlobal {
     private static boolean isLocalRun = false;
     private static int maxThreadCount;
 
+    public static final String GRID_STORAGE_HEAP = "heap";
+    public static final String GRID_STORAGE_DIRECT = "direct";
+    public static final String GRID_STORAGE_FILE = "file";
+
+    private static String gridStorage = GRID_STORAGE_HEAP;
+    private static String gridFolder = System.getProperty("java.io.tmpdir");
+    // grids stored outside of java heap, they are released by closeGrids() 
+    private static Vector<MappedAttributeGridByte> mappedGrids = new Vector<MappedAttributeGridByte>();
+
     public static String getOutputFolder(){
         return outputFolder;
     }
@@ -110,6 +121,55 @@ public class ShapeJSGlobal {
         return maxThreadCount;
     }
 
+    /**
+       sets where grids are stored 
+       GRID_STORAGE_HEAP - java heap (default)
+       GRID_STORAGE_DIRECT - direct memory outside of java heap 
+       GRID_STORAGE_FILE - memory mapped temporary files in the grid folder 
+     */
+    public static void setGridStorage(String storage){
+        if(!GRID_STORAGE_HEAP.equals(storage) && !GRID_STORAGE_DIRECT.equals(storage) && !GRID_STORAGE_FILE.equals(storage))
+            throw new IllegalArgumentException("Unknown grid storage: " + storage);
+        gridStorage = storage;
+    }
+
+    /**
+       sets folder for temporary files of file backed grids 
+     */
+    public static void setGridFolder(String folder){
+        gridFolder = folder;
+    }
+
+    /**
+       releases memory and temporary files of grids stored outside of java heap which were created by scripts. 
+       The grids can not be used after that 
+     */
+    public static void closeGrids(){
+        synchronized(mappedGrids){
+            for(int i = 0; i < mappedGrids.size(); i++)
+                mappedGrids.get(i).close();
+            mappedGrids.clear();
+        }
+    }
+
+    /**
+       adds grid stored outside of java heap to the grids released by closeGrids() 
+     */
+    private static void registerGrid(AttributeGrid grid){
+        if(grid instanceof MappedAttributeGridByte)
+            mappedGrids.add((MappedAttributeGridByte)grid);
+    }
+
+    /**
+       releases grid stored outside of java heap
+     */
+    private static void closeGrid(AttributeGrid grid){
+        if(grid instanceof MappedAttributeGridByte){
+            mappedGrids.remove(grid);
+            ((MappedAttributeGridByte)grid).close();
+        }
+    }
+
     public static String getInputFileName(){
         return inputFileName;
     }
@@ -239,7 +299,16 @@ public class ShapeJSGlobal {
                 tp.getTriangles(bb);
             } else if (filename.endsWith(".svx")) {
                 SVXReader reader = new SVXReader();
-                return reader.load(filename);
+                // prototype of loaded grid 
+                AttributeGrid gridType = makeEmptyGrid(new int[]{1,1,1}, 0.1*MM);
+                try {
+                    reader.setGridType(gridType);
+                    AttributeGrid loaded = reader.load(filename);
+                    registerGrid(loaded);
+                    return loaded;
+                } finally {
+                    closeGrid(gridType);
+                }
             } else {
                 tp = new STLReader(filename);
                 tp.getTriangles(bb);
@@ -601,11 +670,16 @@ public class ShapeJSGlobal {
         }
 
         long MAX_MEMORY = Integer.MAX_VALUE;
-        if (voxels > MAX_MEMORY) {
+        if (GRID_STORAGE_DIRECT.equals(gridStorage)) {
+            dest = new MappedAttributeGridByte(gs[0], gs[1], gs[2], vs, vs);
+        } else if (GRID_STORAGE_FILE.equals(gridStorage)) {
+            dest = MappedAttributeGridByte.createTemp(gs[0], gs[1], gs[2], vs, vs, null, new File(gridFolder));
+        } else if (voxels > MAX_MEMORY) {
             dest = new GridShortIntervals(gs[0], gs[1], gs[2], vs, vs);
         } else {
             dest = new ArrayAttributeGridByte(gs[0], gs[1], gs[2], vs, vs);
         }
+        registerGrid(dest);
 
         return dest;
     }
@@ -15,6 +15,7 @@ package abfab3d.datasources;
 
 import abfab3d.util.Units;
 import abfab3d.util.Vec;
+import abfab3d.util.BoxClassifier;
 
 import javax.vecmath.Vector3d;
 
@@ -29,7 +30,7 @@ import static abfab3d.util.Output.printf;
 
  * @author Vladimir Bulatov
  */
-public class Box extends TransformableDataSource {
+public class Box extends TransformableDataSource implements BoxClassifier {
 
     static final boolean DEBUG = false;
     static int debugCount = 1000;
@@ -218,4 +219,40 @@ public class Box extends TransformableDataSource {
 
     }
 
+    /**
+     * @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+
+        bounds[0] = xmin;
+        bounds[1] = xmax;
+        bounds[2] = ymin;
+        bounds[3] = ymax;
+        bounds[4] = zmin;
+        bounds[5] = zmax;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+     * @noRefGuide
+     */
+    public int classifyBox(double box[], double voxelSize){
+
+        double b[] = new double[6];
+        double vs = inverseTransformBox(box, b, voxelSize);
+        if(vs < 0.)
+            return BOX_BOUNDARY;
+
+        if(b[1] < xmin - vs || b[0] > xmax + vs ||
+           b[3] < ymin - vs || b[2] > ymax + vs ||
+           b[5] < zmin - vs || b[4] > zmax + vs)
+            return BOX_OUTSIDE;
+
+        if(b[0] >= xmin + vs && b[1] <= xmax - vs &&
+           b[2] >= ymin + vs && b[3] <= ymax - vs &&
+           b[4] >= zmin + vs && b[5] <= zmax - vs)
+            return BOX_INSIDE;
+
+        return BOX_BOUNDARY;
+    }
 }  // class Box
@@ -13,6 +13,7 @@
 package abfab3d.datasources;
 
 
+import java.util.Arrays;
 import java.util.Vector;
 
 import javax.vecmath.Vector3d;
@@ -22,6 +23,8 @@ import javax.vecmath.AxisAngle4d;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.BoundsUtil;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -112,6 +115,8 @@ public class Composition  extends TransformableDataSource {
     DataSource vDataSources[];
     // count of channes of each data components
     int m_channelsCounts[];
+    // selector of data sources by their bounds 
+    SourceSelector m_selector;
 
     /**
        Create empty composition.
@@ -187,15 +192,39 @@ public class Composition  extends TransformableDataSource {
         m_materialChannelsCount = ccnt - 1;
         // density channel 
         m_channelsCount = 1;
+        m_selector = new SourceSelector(vDataSources);
 
         return RESULT_OK;
     }
+
+    /**
+       union of bounds of all data sources 
+       composition of empty shapes is empty for any composition type 
+       @noRefGuide
+    */
+    public boolean getBounds(double bounds[]){
+
+        int len = vDataSources.length;
+        if(len == 0)
+            return false;
+        double b[] = new double[6];
+        for(int i = 0; i < len; i++){
+            if(!BoundsUtil.getBounds(vDataSources[i], b))
+                return false;
+            if(i == 0) 
+                System.arraycopy(b, 0, bounds, 0, 6);
+            else 
+                BoundsUtil.union(bounds, b);
+        }
+        return super.transformBounds(bounds);
+    }
     
     
     /**
      *  calculates values of all data sources and does digital composition of the input data 
      *  using 
      * can be used to make union of few shapes
+     * data sources are empty outside of their bounds and are not evaluated there 
        @noRefGuide
      */
     public int getDataValue(Vec pnt, Vec data) {
@@ -204,10 +233,10 @@ public class Composition  extends TransformableDataSource {
 
         int dataCount = vDataSources.length;
         DataSource dss[] = vDataSources;
-        //TODO - garbage generation 
-
-        Vec pnt1 = new Vec(pnt); // transformed point 
-        Vec dataB = new Vec(data);
+        WorkBuffers wb = getWorkBuffers();
+        Vec pnt1 = wb.getPoint(); // transformed point 
+        Vec dataB = wb.getData(data.v.length);
+        dataB.set(data);
         
         // density of component A 
         double Da = 0.; // initially empty 
@@ -216,60 +245,146 @@ public class Composition  extends TransformableDataSource {
         double va[] = data.v;
         double vb[] = dataB.v;
 
-        pnt1.set(pnt);
-        
-        int res = dss[0].getDataValue(pnt1, data);
+        double margin = pnt.getScaledVoxelSize();
+        int ccnta = m_channelsCounts[0];
+
+        if(m_selector.contains(0, pnt.v[0], pnt.v[1], pnt.v[2], margin)){
+            pnt1.set(pnt);
+            dss[0].getDataValue(pnt1, data);
+        } else {
+            Arrays.fill(va, 0, ccnta, 0.);
+        }
 
         Da = va[0];        
         
         // premult first data values
-        int ccnta = m_channelsCounts[0];
-        premult(va, ccnta);
+        premult(va, 0, ccnta);
 
         //
         // compose with the remaining shapes 
         //
         for(int k = 1; k < dataCount; k++){
             
-            pnt1.set(pnt);
             DataSource dsb = dss[k];            
+            int ccntb = m_channelsCounts[k];
 
-            res = dsb.getDataValue(pnt1, dataB);
+            if(m_selector.contains(k, pnt.v[0], pnt.v[1], pnt.v[2], margin)){
+                pnt1.set(pnt);
+                dsb.getDataValue(pnt1, dataB);
+            } else {
+                Arrays.fill(vb, 0, ccntb, 0.);
+            }
             // density of component B 
 
             // premult
-            int ccntb = m_channelsCounts[k];
 
-            premult(vb, ccntb);
+            premult(vb, 0, ccntb);
 
-            compose(va,vb, ccnta, m_type);
+            compose(va, 0, vb, ccnta, m_type);
 
         }
                 
         // get non premult values 
-        unpremult(va, ccnta);
+        unpremult(va, 0, ccnta);
         
         // always success
         return RESULT_OK;
     
     }
 
+    /**
+     *  calculates data values for span of points and does digital composition of the input data 
+     *  each data source is evaluated only at points inside of its bounds, it is empty at other points 
+       @noRefGuide
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]) {
+
+        super.transform(pnts, scales, voxelSize, count, results);
+
+        int cc = getChannelsCount();
+        int dataCount = vDataSources.length;
+        DataSource dss[] = vDataSources;
+
+        WorkBuffers wb = getWorkBuffers();
+        wb.ensureSpan(count, cc);
+        // working span 
+        double wpnts[] = wb.pnts;
+        double wscales[] = wb.scales;
+        double wdata[] = wb.data;
+        int wresults[] = wb.results;
+        // indices of points of the span evaluated by data source 
+        int map[] = wb.map;
+        // data values of component B
+        double vb[] = wb.getData(cc).v;
+
+        double maxScale = 0;
+        for(int i = 0; i < count; i++){
+            if(scales[i] > maxScale) maxScale = scales[i];
+        }
+        BoundsUtil.getBounds(pnts, count, wb.bounds);
+        int sources[] = wb.getSources(dataCount);
+        int cnt = m_selector.select(wb.bounds, voxelSize*maxScale, sources);
+
+        int ccnta = m_channelsCounts[0];
+
+        for(int k = 0, s = 0; k < dataCount; k++){
+
+            int wcount = 0;
+            if(s < cnt && sources[s] == k){
+                s++;
+                for(int i = 0; i < count; i++){
+                    int i3 = 3*i;
+                    if(results[i] != RESULT_OK || !m_selector.contains(k, pnts[i3], pnts[i3+1], pnts[i3+2], voxelSize*scales[i]))
+                        continue;
+                    DataSourceUtil.copyPoint(pnts, scales, i, wpnts, wscales, wcount);
+                    map[wcount++] = i;
+                }
+                if(wcount > 0)
+                    DataSourceUtil.getDataValues(dss[k], wpnts, wscales, voxelSize, wcount, wdata, wresults);
+            }
+
+            int ccntb = m_channelsCounts[k];
+            for(int i = 0, w = 0; i < count; i++){
+                if(w < wcount && map[w] == i){
+                    DataSourceUtil.copyData(wdata, w++, ccntb, vb, 0, cc);
+                } else {
+                    // data source is empty 
+                    Arrays.fill(vb, 0, ccntb, 0.);
+                }
+                premult(vb, 0, ccntb);
+                if(k == 0) {
+                    // premult first data values
+                    System.arraycopy(vb, 0, data, i*cc, ccnta);
+                } else {
+                    // compose with the remaining shapes 
+                    compose(data, i*cc, vb, ccnta, m_type);
+                }
+            }
+        }
+
+        // get non premult values 
+        for(int i = 0; i < count; i++){
+            unpremult(data, i*cc, ccnta);
+        }
+        return RESULT_OK;
+    }
+
     //
     // make premult values 
     // all components are multiplied by fist 
-    static final void premult(double v[], int ccnt){
-        double d = v[0];
+    static final void premult(double v[], int offset, int ccnt){
+        double d = v[offset];
         for(int c = 1; c < ccnt;c++){
-            v[c] *= d;
+            v[offset + c] *= d;
         }
     }
 
-    static final void unpremult(double v[], int ccnt){
-        double d = v[0];
+    static final void unpremult(double v[], int offset, int ccnt){
+        double d = v[offset];
         if(d == 0.0) 
             return;
         for(int k = 1; k < ccnt;k++){
-            v[k] = clamp(v[k]/d);
+            v[offset + k] = clamp(v[offset + k]/d);
         }
     }
 
@@ -281,10 +396,11 @@ public class Composition  extends TransformableDataSource {
 
     /**
        do the composition of premult values and store reslt in first vector 
+       starting from given offset 
      */
-    static final void compose(double va[], double vb[], int cnt, int type){
+    static final void compose(double va[], int offset, double vb[], int cnt, int type){
 
-        double Da = va[0];
+        double Da = va[offset];
         double Db = vb[0];
 
         double fa, fb;
@@ -305,7 +421,7 @@ public class Composition  extends TransformableDataSource {
         
         for(int c = 0; c < cnt;c++){
             // all components are calculated similarly
-            va[c]  = va[c]*fa + vb[c]*fb;
+            va[offset + c]  = va[offset + c]*fa + vb[c]*fb;
         }
     }
 
@@ -152,7 +152,8 @@ public class Cylinder extends TransformableDataSource {
 
         super.transform(pnt);
 
-        Vec pntc = new Vec(pnt);
+        Vec pntc = getWorkBuffers().getPoint();
+        pntc.set(pnt);
         canonicalTransform(pntc);
         // cylinder is along Y axis with midpoint at origin 
 
@@ -200,4 +201,22 @@ public class Cylinder extends TransformableDataSource {
         pnt.mulSetLeft(rotation);
     }
 
+    /**
+     * bounds are calculated for uniform cylinder only. 
+     * Transitional layer of non uniform cylinder or cylinder with scale factor is wider than voxel size 
+     @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+
+        if(!uniform || scaleFactor != 0.)
+            return false;
+
+        bounds[0] = Math.min(v0.x, v1.x) - R0;
+        bounds[1] = Math.max(v0.x, v1.x) + R0;
+        bounds[2] = Math.min(v0.y, v1.y) - R0;
+        bounds[3] = Math.max(v0.y, v1.y) + R0;
+        bounds[4] = Math.min(v0.z, v1.z) - R0;
+        bounds[5] = Math.max(v0.z, v1.z) + R0;
+        return super.transformBounds(bounds);
+    }
 }  // class Cylinder
@@ -131,8 +131,7 @@ public class DataChannelMixer extends TransformableDataSource {
         
         super.transform(pnt);
 
-        // TODO - reduce garbage collection 
-        Vec channelData = new Vec(m_count);
+        Vec channelData = getWorkBuffers().getData(m_count);
 
         for(int i = 0, channel = 0; i < m_count; i++){
             m_channels[i].getDataValue(pnt, channelData);
@@ -18,6 +18,7 @@ package abfab3d.datasources;
 import abfab3d.util.DataSource;
 import abfab3d.util.Initializable;
 import abfab3d.util.Vec;
+import abfab3d.util.BoundsUtil;
 
 
 /**
@@ -76,4 +77,17 @@ public class DataTransformer extends TransformableDataSource {
         }
     }
 
+    /**
+     *
+     * @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+
+        if (dataSource == null) 
+            return false;
+        if(!BoundsUtil.getBounds(dataSource, bounds))
+            return false;
+        return super.transformBounds(bounds);
+    }
+
 } // class DataTransformer
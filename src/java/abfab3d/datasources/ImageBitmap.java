@@ -511,6 +511,20 @@ public class ImageBitmap extends TransformableDataSource {
 
     }
 
+    /**
+     * @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+
+        bounds[0] = xmin;
+        bounds[1] = xmax;
+        bounds[2] = ymin;
+        bounds[3] = ymax;
+        bounds[4] = zmin;
+        bounds[5] = zmax;
+        return super.transformBounds(bounds);
+    }
+
     /**
      * returns 1 if pnt is inside of image
      * returns 0 otherwise
@@ -24,6 +24,9 @@ import javax.vecmath.AxisAngle4d;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.BoundsUtil;
+import abfab3d.util.BoxClassifier;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -51,11 +54,15 @@ import static abfab3d.util.Units.MM;
 
    @author Vladimir Bulatov
 */ 
-public class Intersection extends TransformableDataSource{
+public class Intersection extends TransformableDataSource implements BoxClassifier {
     
     Vector<DataSource> dataSources = new Vector<DataSource>();
     // fixed vector for calculations
     DataSource vDataSources[];
+    // max count of channels of data sources 
+    int m_maxChannelsCount;
+    // selector of data sources by their bounds 
+    SourceSelector m_selector;
     
     public Intersection(){
         
@@ -78,6 +85,7 @@ public class Intersection extends TransformableDataSource{
 
         super.initialize();
         vDataSources = (DataSource[])dataSources.toArray(new DataSource[dataSources.size()]);
+        m_maxChannelsCount = 1;
         
         for(int i = 0; i < vDataSources.length; i++){
             
@@ -85,15 +93,64 @@ public class Intersection extends TransformableDataSource{
             if(ds instanceof Initializable){
                 ((Initializable)ds).initialize();
             }
+            if(ds.getChannelsCount() > m_maxChannelsCount)
+                m_maxChannelsCount = ds.getChannelsCount();
         }
+        m_selector = new SourceSelector(vDataSources);
         return RESULT_OK;
         
     }
+
+    /**
+       intersection of bounds of bounded data sources 
+       @noRefGuide
+    */
+    public boolean getBounds(double bounds[]){
+
+        double b[] = new double[6];
+        boolean bounded = false;
+        for(int i = 0; i < vDataSources.length; i++){
+            if(!BoundsUtil.getBounds(vDataSources[i], b))
+                continue;
+            if(bounded) 
+                BoundsUtil.intersect(bounds, b);
+            else 
+                System.arraycopy(b, 0, bounds, 0, 6);
+            bounded = true;
+        }
+        if(!bounded)
+            return false;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+       box is inside if it is inside of all data sources and outside if it is outside of some data source 
+       @noRefGuide
+     */
+    public int classifyBox(double box[], double voxelSize){
+
+        double b[] = new double[6];
+        double vs = inverseTransformBox(box, b, voxelSize);
+        if(vs < 0.)
+            return BOX_BOUNDARY;
+
+        int res = BOX_INSIDE;
+        for(int i = 0; i < vDataSources.length; i++){
+            if(!m_selector.intersects(i, b, vs))
+                return BOX_OUTSIDE;
+            int r = DataSourceUtil.classifyBox(vDataSources[i], b, vs);
+            if(r == BOX_OUTSIDE)
+                return BOX_OUTSIDE;
+            if(r == BOX_BOUNDARY)
+                res = BOX_BOUNDARY;
+        }
+        return res;
+    }
     
     
     /**
      * calculates intersection of all values
-     *
+     * point outside of bounds of any data source is empty 
      */
     public int getDataValue(Vec pnt, Vec data) {
         
@@ -102,13 +159,24 @@ public class Intersection extends TransformableDataSource{
         DataSource dss[] = vDataSources;
         int len = dss.length;
         
+        // copy of transformed point for each data source 
+        Vec pnt1 = getWorkBuffers().getPoint();
+
         double value = 1;
         
+        double margin = pnt.getScaledVoxelSize();
+        for(int i = 0; i < len; i++){
+            if(!m_selector.contains(i, pnt.v[0], pnt.v[1], pnt.v[2], margin)){
+                data.v[0] = 0.;
+                return RESULT_OK;
+            }
+        }
+
         for(int i = 0; i < len; i++){
             
             DataSource ds = dss[i];
-            //int res = ds.getDataValue(pnt, workPnt);
-            int res = ds.getDataValue(new Vec(pnt), data);
+            pnt1.set(pnt);
+            int res = ds.getDataValue(pnt1, data);
             if(res != RESULT_OK){
                 data.v[0] = 0.;
                 return res;
@@ -130,5 +198,81 @@ public class Intersection extends TransformableDataSource{
         data.v[0] = value;
         return RESULT_OK;
     }
+
+    /**
+     * calculates intersection of all values for span of points 
+     * each data source is evaluated only at points which are not empty yet and are inside of the data source bounds 
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]) {
+
+        super.transform(pnts, scales, voxelSize, count, results);
+
+        int cc = getChannelsCount();
+        DataSource dss[] = vDataSources;
+        int len = dss.length;
+
+        WorkBuffers wb = getWorkBuffers();
+        wb.ensureSpan(count, m_maxChannelsCount);
+        // indices of points which are still calculated 
+        int active[] = wb.active;
+        // working span 
+        double wpnts[] = wb.pnts;
+        double wscales[] = wb.scales;
+        double wdata[] = wb.data;
+        int wresults[] = wb.results;
+
+        int activeCount = 0;
+        for(int i = 0; i < count; i++){
+            data[i*cc] = 0.;
+            if(results[i] != RESULT_OK)
+                // transform failed 
+                continue;
+            int i3 = 3*i;
+            boolean inside = true;
+            for(int k = 0; k < len && inside; k++)
+                inside = m_selector.contains(k, pnts[i3], pnts[i3+1], pnts[i3+2], voxelSize*scales[i]);
+            if(!inside)
+                // point is empty 
+                continue;
+            data[i*cc] = 1.;
+            active[activeCount++] = i;
+        }
+
+        for(int k = 0; k < len && activeCount > 0; k++){
+
+            DataSource ds = dss[k];
+            int dcc = ds.getChannelsCount();
+            
+            for(int j = 0; j < activeCount; j++){
+                DataSourceUtil.copyPoint(pnts, scales, active[j], wpnts, wscales, j);
+            }
+
+            DataSourceUtil.getDataValues(ds, wpnts, wscales, voxelSize, activeCount, wdata, wresults);
+
+            int newActiveCount = 0;
+            for(int j = 0; j < activeCount; j++){
+
+                int i = active[j];
+                double value = data[i*cc];
+                DataSourceUtil.copyData(wdata, j, dcc, data, i, cc);
+                if(wresults[j] != RESULT_OK){
+                    data[i*cc] = 0.;
+                    results[i] = wresults[j];
+                    continue;
+                }
+                double v = wdata[j*dcc];
+                if(v <= 0.){
+                    // point is empty 
+                    data[i*cc] = 0;
+                    continue;
+                }
+                data[i*cc] = (v < value)? v: value;
+                active[newActiveCount++] = i;
+            }
+            activeCount = newActiveCount;
+        }
+
+        return RESULT_OK;
+    }
     
 } // class Intersection
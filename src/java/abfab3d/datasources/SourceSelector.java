@@ -0,0 +1,165 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.datasources;
+
+import java.util.Arrays;
+
+import abfab3d.util.DataSource;
+import abfab3d.util.BoundsTree;
+import abfab3d.util.BoundsUtil;
+
+/**
+   selects data sources of composite data source which may be non zero at given point or span of points.
+
+   Bounds of bounded data sources are stored in BoundsTree, unbounded data sources are always selected.
+   Selected data sources are returned in increasing order of their indices.
+ */
+class SourceSelector {
+
+    // count of data sources
+    int m_count;
+    // bounds of data sources, 6 values per data source
+    double m_bounds[];
+    boolean m_bounded[];
+    // indices of unbounded data sources
+    int m_unbounded[];
+    // tree of bounded data sources, null if no data source is bounded
+    BoundsTree m_tree;
+
+    /**
+       data sources should be initialized
+     */
+    SourceSelector(DataSource dss[]){
+
+        m_count = dss.length;
+        m_bounds = new double[6*m_count];
+        m_bounded = new boolean[m_count];
+
+        int boundedCount = BoundsUtil.getBounds(dss, m_bounds, m_bounded);
+
+        m_unbounded = new int[m_count - boundedCount];
+        int ids[] = new int[boundedCount];
+        double bounds[] = new double[6*boundedCount];
+
+        for(int i = 0, b = 0, u = 0; i < m_count; i++){
+            if(m_bounded[i]){
+                System.arraycopy(m_bounds, 6*i, bounds, 6*b, 6);
+                ids[b++] = i;
+            } else {
+                m_unbounded[u++] = i;
+            }
+        }
+        if(boundedCount > 0)
+            m_tree = new BoundsTree(bounds, ids, boundedCount);
+    }
+
+    /**
+       @return true if data source with given index may be non zero at the point
+     */
+    final boolean contains(int index, double x, double y, double z, double margin){
+
+        if(!m_bounded[index])
+            return true;
+        return BoundsUtil.contains(m_bounds, 6*index, x, y, z, margin);
+    }
+
+    /**
+       @return true if data source with given index may be non zero in the box
+     */
+    final boolean intersects(int index, double box[], double margin){
+
+        if(!m_bounded[index])
+            return true;
+        int offset = 6*index;
+        for(int k = 0; k < 6; k += 2){
+            if(box[k] > m_bounds[offset + k + 1] + margin || box[k + 1] < m_bounds[offset + k] - margin)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+       selects data sources which bounds expanded by margin contain the point
+       @param sources storage for indices of selected data sources
+       @return count of selected data sources
+     */
+    int select(double x, double y, double z, double margin, int sources[]){
+
+        if(m_tree == null)
+            return selectAll(sources);
+
+        int cnt = m_tree.findItems(x, y, z, margin, sources);
+        return addUnbounded(sources, cnt);
+    }
+
+    /**
+       selects data sources which bounds expanded by margin intersect the box
+       @param sources storage for indices of selected data sources
+       @return count of selected data sources
+     */
+    int select(double bounds[], double margin, int sources[]){
+
+        if(m_tree == null)
+            return selectAll(sources);
+
+        int cnt = m_tree.findItems(bounds, margin, sources);
+        return addUnbounded(sources, cnt);
+    }
+
+    /**
+       @return union of bounds of all data sources or false if some data source is unbounded
+     */
+    boolean getBounds(double bounds[]){
+
+        if(m_unbounded.length > 0 || m_count == 0)
+            return false;
+
+        System.arraycopy(m_bounds, 0, bounds, 0, 6);
+        for(int i = 1; i < m_count; i++){
+            for(int k = 0; k < 6; k += 2){
+                if(m_bounds[6*i + k] < bounds[k]) bounds[k] = m_bounds[6*i + k];
+                if(m_bounds[6*i + k + 1] > bounds[k + 1]) bounds[k + 1] = m_bounds[6*i + k + 1];
+            }
+        }
+        return true;
+    }
+
+    /**
+       @return bounds of data source with given index or false if the data source is unbounded
+     */
+    boolean getBounds(int index, double bounds[]){
+
+        if(!m_bounded[index])
+            return false;
+        System.arraycopy(m_bounds, 6*index, bounds, 0, 6);
+        return true;
+    }
+
+    final int selectAll(int sources[]){
+
+        for(int i = 0; i < m_count; i++)
+            sources[i] = i;
+        return m_count;
+    }
+
+    /**
+       adds unbounded data sources to selected and sorts result
+     */
+    final int addUnbounded(int sources[], int cnt){
+
+        for(int i = 0; i < m_unbounded.length; i++)
+            sources[cnt++] = m_unbounded[i];
+        Arrays.sort(sources, 0, cnt);
+        return cnt;
+    }
+}
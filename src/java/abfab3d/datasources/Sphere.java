@@ -22,6 +22,7 @@ import javax.vecmath.AxisAngle4d;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.BoxClassifier;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -55,7 +56,7 @@ import static abfab3d.util.Units.MM;
 
  */
 
-public class Sphere extends TransformableDataSource {
+public class Sphere extends TransformableDataSource implements BoxClassifier {
     
     private double R, R2, RR;
 
@@ -158,5 +159,51 @@ public class Sphere extends TransformableDataSource {
         return RESULT_OK;
     }
     
+    /**
+     * @noRefGuide
+     * exterior of the sphere is unbounded 
+     */
+    public boolean getBounds(double bounds[]) {
+
+        if(!sign)
+            return false;
+        bounds[0] = x0 - R;
+        bounds[1] = x0 + R;
+        bounds[2] = y0 - R;
+        bounds[3] = y0 + R;
+        bounds[4] = z0 - R;
+        bounds[5] = z0 + R;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+     * @noRefGuide
+     * box is classified by distances from the center to the nearest and farthest points of the box 
+     */
+    public int classifyBox(double box[], double voxelSize){
+
+        double b[] = new double[6];
+        double vs = inverseTransformBox(box, b, voxelSize);
+        if(vs < 0.)
+            return BOX_BOUNDARY;
+
+        double c[] = new double[]{x0, y0, z0};
+        double dmin = 0, dmax = 0;
+        for(int k = 0; k < 3; k++){
+            double d0 = b[2*k] - c[k], d1 = b[2*k+1] - c[k];
+            if(d0 > 0.) dmin += d0*d0;
+            else if(d1 < 0.) dmin += d1*d1;
+            dmax += Math.max(d0*d0, d1*d1);
+        }
+        dmin = sqrt(dmin);
+        dmax = sqrt(dmax);
+
+        if(dmin >= R + vs)
+            return (sign)? BOX_OUTSIDE: BOX_INSIDE;
+        if(dmax <= R - vs)
+            return (sign)? BOX_INSIDE: BOX_OUTSIDE;
+        return BOX_BOUNDARY;
+    }
+    
 }  // class Sphere
 
@@ -24,6 +24,9 @@ import javax.vecmath.AxisAngle4d;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.BoundsUtil;
+import abfab3d.util.BoxClassifier;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -54,10 +57,12 @@ import static abfab3d.util.Units.MM;
    @author Vladimir Bulatov
 
  */
-public class Subtraction extends TransformableDataSource {
+public class Subtraction extends TransformableDataSource implements BoxClassifier {
     
     DataSource dataSource1;
     DataSource dataSource2;
+    // bounds of both data sources 
+    SourceSelector m_selector;
 
     /**
        shape which is result of subtracting shape2 from shape1
@@ -82,9 +87,46 @@ public class Subtraction extends TransformableDataSource {
         if(dataSource2 != null && dataSource2 instanceof Initializable){
             ((Initializable)dataSource2).initialize();
         }
+        m_selector = new SourceSelector(new DataSource[]{dataSource1, dataSource2});
         return RESULT_OK;
         
     }
+
+    /**
+       bounds of the first data source 
+       @noRefGuide
+    */
+    public boolean getBounds(double bounds[]){
+
+        if(!BoundsUtil.getBounds(dataSource1, bounds))
+            return false;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+       box is inside if it is inside of the first data source and outside of the second one, 
+       box is outside if it is outside of the first data source or inside of the second one 
+       @noRefGuide
+     */
+    public int classifyBox(double box[], double voxelSize){
+
+        double b[] = new double[6];
+        double vs = inverseTransformBox(box, b, voxelSize);
+        if(vs < 0.)
+            return BOX_BOUNDARY;
+
+        if(!m_selector.intersects(0, b, vs))
+            return BOX_OUTSIDE;
+        int r1 = DataSourceUtil.classifyBox(dataSource1, b, vs);
+        if(r1 == BOX_OUTSIDE)
+            return BOX_OUTSIDE;
+        int r2 = (m_selector.intersects(1, b, vs))? DataSourceUtil.classifyBox(dataSource2, b, vs): BOX_OUTSIDE;
+        if(r2 == BOX_INSIDE)
+            return BOX_OUTSIDE;
+        if(r1 == BOX_INSIDE && r2 == BOX_OUTSIDE)
+            return BOX_INSIDE;
+        return BOX_BOUNDARY;
+    }
     
     /**
      * @noRefGuide
@@ -96,8 +138,16 @@ public class Subtraction extends TransformableDataSource {
         
         super.transform(pnt);
         double v1 = 0, v2 = 0;
+        double margin = pnt.getScaledVoxelSize();
+        if(!m_selector.contains(0, pnt.v[0], pnt.v[1], pnt.v[2], margin)){
+            data.v[0] = 0.0;
+            return RESULT_OK;
+        }
+        // copy of transformed point for each data source 
+        Vec pnt1 = getWorkBuffers().getPoint();
         
-        int res = dataSource1.getDataValue(new Vec(pnt), data);
+        pnt1.set(pnt);
+        int res = dataSource1.getDataValue(pnt1, data);
         if(res != RESULT_OK){
             data.v[0] = 0.0;
             return res;
@@ -111,8 +161,11 @@ public class Subtraction extends TransformableDataSource {
         }
         
         // we are here if v1 > 0
+        if(!m_selector.contains(1, pnt.v[0], pnt.v[1], pnt.v[2], margin))
+            return RESULT_OK;
         
-        res = dataSource2.getDataValue(new Vec(pnt), data);
+        pnt1.set(pnt);
+        res = dataSource2.getDataValue(pnt1, data);
         
         if(res != RESULT_OK){
             data.v[0] = v1;
@@ -128,5 +181,95 @@ public class Subtraction extends TransformableDataSource {
         
         return RESULT_OK;
     }
+
+    /**
+     * @noRefGuide
+       
+     * calculates subtraction for span of points 
+     * first data source is evaluated only inside of its bounds 
+     * second data source is evaluated only at points inside of its bounds where first data source is not empty 
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]) {
+
+        super.transform(pnts, scales, voxelSize, count, results);
+
+        int cc = getChannelsCount();
+        int cc1 = dataSource1.getChannelsCount();
+        int cc2 = dataSource2.getChannelsCount();
+
+        WorkBuffers wb = getWorkBuffers();
+        wb.ensureSpan(count, Math.max(cc1, cc2));
+        // indices of points where second data source is calculated 
+        int active[] = wb.active;
+        // working span 
+        double wpnts[] = wb.pnts;
+        double wscales[] = wb.scales;
+        double wdata[] = wb.data;
+        int wresults[] = wb.results;
+
+        int activeCount = 0;
+        for(int i = 0; i < count; i++){
+            data[i*cc] = 0.0;
+            int i3 = 3*i;
+            if(results[i] != RESULT_OK || !m_selector.contains(0, pnts[i3], pnts[i3+1], pnts[i3+2], voxelSize*scales[i]))
+                // transform failed or point is empty 
+                continue;
+            DataSourceUtil.copyPoint(pnts, scales, i, wpnts, wscales, activeCount);
+            active[activeCount++] = i;
+        }
+
+        if(activeCount == 0)
+            return RESULT_OK;
+
+        DataSourceUtil.getDataValues(dataSource1, wpnts, wscales, voxelSize, activeCount, wdata, wresults);
+
+        int activeCount1 = activeCount;
+        activeCount = 0;
+        for(int j = 0; j < activeCount1; j++){
+
+            int i = active[j];
+            DataSourceUtil.copyData(wdata, j, cc1, data, i, cc);
+            results[i] = wresults[j];
+            if(wresults[j] != RESULT_OK){
+                data[i*cc] = 0.0;
+                continue;
+            }
+            if(data[i*cc] <= 0.){
+                data[i*cc] = 0.0;
+                continue;
+            }
+            // we are here if v1 > 0
+            int i3 = 3*i;
+            if(!m_selector.contains(1, pnts[i3], pnts[i3+1], pnts[i3+2], voxelSize*scales[i]))
+                // second data source is empty 
+                continue;
+            DataSourceUtil.copyPoint(pnts, scales, i, wpnts, wscales, activeCount);
+            active[activeCount++] = i;
+        }
+
+        if(activeCount == 0)
+            return RESULT_OK;
+
+        DataSourceUtil.getDataValues(dataSource2, wpnts, wscales, voxelSize, activeCount, wdata, wresults);
+
+        for(int j = 0; j < activeCount; j++){
+
+            int i = active[j];
+            double v1 = data[i*cc];
+            DataSourceUtil.copyData(wdata, j, cc2, data, i, cc);
+            if(wresults[j] != RESULT_OK){
+                data[i*cc] = v1;
+                continue;
+            }
+            double v2 = wdata[j*cc2];
+            if(v2 >= 1.){
+                data[i*cc] = 0.;
+                continue;
+            }
+            data[i*cc] = v1*(1-v2);
+        }
+
+        return RESULT_OK;
+    }
     
 } // class Subtraction
@@ -153,4 +153,14 @@ public class Text extends TransformableDataSource {
         
     }
     
+    /**
+     * text is calculated by bitmap in bitmap coordinates
+     @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+        
+        return m_bitmap.getBounds(bounds);
+        
+    }
+
 }  // class Text
@@ -124,5 +124,20 @@ public class Torus extends TransformableDataSource{
         super.getMaterialDataValue(pnt, data);        
         return RESULT_OK;
     }
+
+    /**
+       @noRefGuide
+     */
+    public boolean getBounds(double bounds[]) {
+
+        double rxy = R + r;
+        bounds[0] = x0 - rxy;
+        bounds[1] = x0 + rxy;
+        bounds[2] = y0 - rxy;
+        bounds[3] = y0 + rxy;
+        bounds[4] = z0 - r;
+        bounds[5] = z0 + r;
+        return super.transformBounds(bounds);
+    }
 }  // class Torus
 
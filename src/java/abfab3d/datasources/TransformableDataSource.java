@@ -14,6 +14,10 @@ package abfab3d.datasources;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceSpan;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.Bounded;
+import abfab3d.util.BoundsUtil;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -32,11 +36,19 @@ import abfab3d.util.VecTransform;
       super.getMaterialDataValue(pnt, data);      
    }
    
+   getDataValues() for span of points calls getDataValue() for each point. 
+   Subclasses may override it with more efficient implementation 
+
+   bounded subclasses may implement getBounds() according to template 
+   boolean getBounds(double bounds[]) {
+      ... calculate own bounds ... 
+      return super.transformBounds(bounds);
+   }
 
    @author Vladimir Bulatov
 
  */
-public abstract class TransformableDataSource implements DataSource, Initializable {
+public abstract class TransformableDataSource implements DataSourceSpan, Initializable, Bounded {
 
     // transformation which is aplied to the data point before the calculation of data value 
     protected VecTransform m_transform; 
@@ -49,6 +61,9 @@ public abstract class TransformableDataSource implements DataSource, Initializab
     // the material is potential multichannel data source and it adds channels to the total channels count
     protected DataSource m_material = null; 
 
+    // per thread storage for intermediate calculations 
+    private ThreadLocal<WorkBuffers> m_workBuffers = new ThreadLocal<WorkBuffers>();
+
     protected TransformableDataSource(){
     }
 
@@ -89,6 +104,19 @@ public abstract class TransformableDataSource implements DataSource, Initializab
      */
     public abstract int getDataValue(Vec pnt, Vec data);
 
+    /**
+     * calculates data values for span of points 
+     * default implementation calls getDataValue() for each point 
+     * @noRefGuide
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]){
+
+        WorkBuffers wb = getWorkBuffers();
+        return DataSourceUtil.getDataValuesPerPoint(this, pnts, scales, voxelSize, count, data, results, 
+                                                    wb.getSpanPoint(), wb.getSpanData(getChannelsCount()));
+
+    }
+
 
     /**
      * @noRefGuide
@@ -99,7 +127,71 @@ public abstract class TransformableDataSource implements DataSource, Initializab
         }
         return RESULT_OK;
     }
+
+    /**
+     * transforms span of points 
+     * results of points which were not transformed are set to the error code of the transform 
+     * @return count of points which were not transformed 
+     * @noRefGuide
+     */
+    protected final int transform(double pnts[], double scales[], double voxelSize, int count, int results[]){
+        if(m_transform != null){
+            return DataSourceUtil.inverseTransform(m_transform, pnts, scales, voxelSize, count, results, getWorkBuffers().getSpanPoint());
+        }
+        for(int i = 0; i < count; i++)
+            results[i] = RESULT_OK;
+        return 0;
+    }
+
+    /**
+       @return storage for intermediate calculations confined to the current thread 
+     */
+    final WorkBuffers getWorkBuffers(){
+
+        WorkBuffers wb = m_workBuffers.get();
+        if(wb == null){
+            wb = new WorkBuffers();
+            m_workBuffers.set(wb);
+        }
+        return wb;
+    }
     
+    /**
+     * transforms box of points with inverse transform of this data source
+     * @param box box of points in coordinates of this data source 
+     * @param tbox storage for bounds of the transformed box 
+     * @param voxelSize scaled voxel size of points of the box 
+     * @return scaled voxel size of transformed points or -1 if the box can not be transformed 
+     * @noRefGuide
+     */
+    protected final double inverseTransformBox(double box[], double tbox[], double voxelSize){
+
+        System.arraycopy(box, 0, tbox, 0, 6);
+        if(m_transform == null)
+            return voxelSize;
+        double scale = BoundsUtil.getInverseScale(m_transform, box);
+        if(scale <= 0. || !BoundsUtil.inverseTransformBounds(m_transform, tbox))
+            return -1.;
+        return voxelSize*scale;
+    }
+
+    /**
+     * default implementation is unbounded data source 
+     * @noRefGuide
+     */
+    public boolean getBounds(double bounds[]){
+        return false;
+    }
+
+    /**
+     * transforms bounds with direct transform of this data source
+     * @return false if bounds can not be transformed 
+     * @noRefGuide
+     */
+    protected final boolean transformBounds(double bounds[]){
+        return BoundsUtil.transformBounds(m_transform, bounds);
+    }
+
     /**
      *  @return number of channes this data source generates 
      *  
@@ -117,8 +209,7 @@ public abstract class TransformableDataSource implements DataSource, Initializab
         if(m_material == null)
             return RESULT_OK;
 
-        // TODO - garbage generation !
-        Vec mdata = new Vec(m_materialChannelsCount);
+        Vec mdata = getWorkBuffers().getMaterial(m_materialChannelsCount);
         
         m_material.getDataValue(pnt, mdata);
 
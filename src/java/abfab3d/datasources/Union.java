@@ -22,6 +22,10 @@ import javax.vecmath.AxisAngle4d;
 
 import abfab3d.util.Vec;
 import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.BoundsUtil;
+import abfab3d.util.BoundedParts;
+import abfab3d.util.BoxClassifier;
 import abfab3d.util.Initializable;
 import abfab3d.util.VecTransform;
 
@@ -51,11 +55,15 @@ import static abfab3d.util.Units.MM;
 
  */
 
-public class Union  extends TransformableDataSource {
+public class Union  extends TransformableDataSource implements BoundedParts, BoxClassifier {
     
     Vector<DataSource> dataSources = new Vector<DataSource>();
     // fixed vector for calculations
     DataSource vDataSources[];
+    // max count of channels of data sources 
+    int m_maxChannelsCount;
+    // selector of data sources by their bounds 
+    SourceSelector m_selector;
 
     /**
        Create empty union. Use add() method to add arbitrary number of shapes to the union. 
@@ -95,6 +103,7 @@ public class Union  extends TransformableDataSource {
 
         super.initialize();
         vDataSources = (DataSource[])dataSources.toArray(new DataSource[dataSources.size()]);
+        m_maxChannelsCount = 1;
 
         for(int i = 0; i < vDataSources.length; i++){
             
@@ -102,16 +111,73 @@ public class Union  extends TransformableDataSource {
             if(ds instanceof Initializable){
                 ((Initializable)ds).initialize();
             }
+            if(ds.getChannelsCount() > m_maxChannelsCount)
+                m_maxChannelsCount = ds.getChannelsCount();
         }
-
+        m_selector = new SourceSelector(vDataSources);
 
         return RESULT_OK;
     }
+
+    /**
+       union of bounds of all data sources 
+       @noRefGuide
+    */
+    public boolean getBounds(double bounds[]){
+
+        if(!m_selector.getBounds(bounds))
+            return false;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+       @noRefGuide
+     */
+    public int getPartsCount(){
+
+        return m_selector.m_count;
+    }
+
+    /**
+       bounds of data source with given index 
+       @noRefGuide
+     */
+    public boolean getPartBounds(int index, double bounds[]){
+
+        if(!m_selector.getBounds(index, bounds))
+            return false;
+        return super.transformBounds(bounds);
+    }
+
+    /**
+       box is inside if it is inside of some data source and outside if it is outside of all data sources 
+       @noRefGuide
+     */
+    public int classifyBox(double box[], double voxelSize){
+
+        double b[] = new double[6];
+        double vs = inverseTransformBox(box, b, voxelSize);
+        if(vs < 0.)
+            return BOX_BOUNDARY;
+
+        int sources[] = new int[vDataSources.length];
+        int cnt = m_selector.select(b, vs, sources);
+        int res = BOX_OUTSIDE;
+        for(int i = 0; i < cnt; i++){
+            int r = DataSourceUtil.classifyBox(vDataSources[sources[i]], b, vs);
+            if(r == BOX_INSIDE)
+                return BOX_INSIDE;
+            if(r == BOX_BOUNDARY)
+                res = BOX_BOUNDARY;
+        }
+        return res;
+    }
     
     
     /**
      * calculates values of all data sources and return maximal value
      * can be used to make union of few shapes
+     * only data sources which bounds contain the point are evaluated 
        @noRefGuide
      */
     public int getDataValue(Vec pnt, Vec data) {
@@ -121,12 +187,18 @@ public class Union  extends TransformableDataSource {
         int len = vDataSources.length;
         DataSource dss[] = vDataSources;
         
+        WorkBuffers wb = getWorkBuffers();
+        // copy of transformed point for each data source 
+        Vec pnt1 = wb.getPoint();
+        int sources[] = wb.getSources(len);
+        int cnt = m_selector.select(pnt.v[0], pnt.v[1], pnt.v[2], pnt.getScaledVoxelSize(), sources);
+
         double value = 0.;
-        for(int i = 0; i < len; i++){
+        for(int i = 0; i < cnt; i++){
             
-            DataSource ds = dss[i];
+            DataSource ds = dss[sources[i]];
 
-            Vec pnt1 = new Vec(pnt);
+            pnt1.set(pnt);
             int res = ds.getDataValue(pnt1, data);
 
             if(res != RESULT_OK){
@@ -146,5 +218,98 @@ public class Union  extends TransformableDataSource {
         
         return RESULT_OK;
     }
+
+    /**
+     * calculates values of all data sources for span of points and return maximal value
+     * each data source is evaluated only at points which are not completely filled yet 
+     * and are inside of the data source bounds 
+       @noRefGuide
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]) {
+
+        super.transform(pnts, scales, voxelSize, count, results);
+
+        int cc = getChannelsCount();
+        int len = vDataSources.length;
+        DataSource dss[] = vDataSources;
+
+        WorkBuffers wb = getWorkBuffers();
+        wb.ensureSpan(count, m_maxChannelsCount);
+        // indices of points which are still calculated 
+        int active[] = wb.active;
+        // working span 
+        double wpnts[] = wb.pnts;
+        double wscales[] = wb.scales;
+        double wdata[] = wb.data;
+        int wresults[] = wb.results;
+        // indices of active points evaluated by data source 
+        int map[] = wb.map;
+
+        double maxScale = 0;
+        int activeCount = 0;
+        for(int i = 0; i < count; i++){
+            data[i*cc] = 0.;
+            if(results[i] != RESULT_OK)
+                // transform failed 
+                continue;
+            active[activeCount++] = i;
+            if(scales[i] > maxScale) maxScale = scales[i];
+        }
+
+        BoundsUtil.getBounds(pnts, count, wb.bounds);
+        int sources[] = wb.getSources(len);
+        int cnt = m_selector.select(wb.bounds, voxelSize*maxScale, sources);
+
+        for(int k = 0; k < cnt && activeCount > 0; k++){
+
+            int index = sources[k];
+            DataSource ds = dss[index];
+            int dcc = ds.getChannelsCount();
+            
+            int wcount = 0;
+            for(int j = 0; j < activeCount; j++){
+                int i = active[j];
+                int i3 = 3*i;
+                if(!m_selector.contains(index, pnts[i3], pnts[i3+1], pnts[i3+2], voxelSize*scales[i]))
+                    continue;
+                DataSourceUtil.copyPoint(pnts, scales, i, wpnts, wscales, wcount);
+                map[wcount++] = j;
+            }
+            if(wcount == 0)
+                continue;
+
+            DataSourceUtil.getDataValues(ds, wpnts, wscales, voxelSize, wcount, wdata, wresults);
+
+            int newActiveCount = 0;
+            for(int j = 0, w = 0; j < activeCount; j++){
+
+                int i = active[j];
+                if(w == wcount || map[w] != j){
+                    // point was not evaluated 
+                    active[newActiveCount++] = i;
+                    continue;
+                }
+                int wj = w++;
+                if(wresults[wj] != RESULT_OK){
+                    // outside of domain
+                    active[newActiveCount++] = i;
+                    continue;
+                }
+                double value = data[i*cc];
+                DataSourceUtil.copyData(wdata, wj, dcc, data, i, cc);
+                double v = wdata[wj*dcc];
+                if(v >= 1.){
+                    // point is filled 
+                    data[i*cc] = 1;
+                    continue;
+                }
+                data[i*cc] = (v > value)? v: value;
+                active[newActiveCount++] = i;
+            }
+            activeCount = newActiveCount;
+        }
+
+        return RESULT_OK;
+    }
     
 } // class Union
@@ -0,0 +1,116 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.datasources;
+
+import abfab3d.util.Vec;
+
+/**
+   storage for intermediate values used in data sources calculations.
+
+   Each thread gets its own instance for each data source (see TransformableDataSource.getWorkBuffers())
+   so calculations are thread safe and allocate no memory after the buffers have grown to the needed size
+ */
+class WorkBuffers {
+
+    static final int POINT_DIMENSION = 3;
+
+    // point and data for per point calculations
+    private Vec m_pnt = new Vec(POINT_DIMENSION);
+    private Vec m_data;
+    // material data
+    private Vec m_material;
+    // point and data for per point calculations over the span
+    private Vec m_spanPnt = new Vec(POINT_DIMENSION);
+    private Vec m_spanData;
+
+    // working span
+    int active[] = new int[0];
+    double pnts[] = new double[0];
+    double scales[] = new double[0];
+    double data[] = new double[0];
+    int results[] = new int[0];
+    // indices of points of the span evaluated by data source
+    int map[] = new int[0];
+
+    // indices of selected data sources
+    int sources[] = new int[0];
+    // bounds of the span
+    double bounds[] = new double[6];
+
+    /**
+       @return point for per point calculations
+     */
+    Vec getPoint(){
+        return m_pnt;
+    }
+
+    /**
+       @return data for per point calculations with given channels count
+     */
+    Vec getData(int channelsCount){
+        if(m_data == null || m_data.v.length != channelsCount)
+            m_data = new Vec(channelsCount);
+        return m_data;
+    }
+
+    /**
+       @return storage for material data with given channels count
+     */
+    Vec getMaterial(int channelsCount){
+        if(m_material == null || m_material.v.length != channelsCount)
+            m_material = new Vec(channelsCount);
+        return m_material;
+    }
+
+    /**
+       @return point used for per point calculations of span
+     */
+    Vec getSpanPoint(){
+        return m_spanPnt;
+    }
+
+    /**
+       @return data used for per point calculations of span
+     */
+    Vec getSpanData(int channelsCount){
+        if(m_spanData == null || m_spanData.v.length != channelsCount)
+            m_spanData = new Vec(channelsCount);
+        return m_spanData;
+    }
+
+    /**
+       @return storage for indices of selected data sources
+     */
+    int[] getSources(int count){
+        if(sources.length < count)
+            sources = new int[count];
+        return sources;
+    }
+
+    /**
+       makes sure working span can hold given count of points with given count of channels
+     */
+    void ensureSpan(int count, int channelsCount){
+
+        if(active.length < count){
+            active = new int[count];
+            pnts = new double[count*POINT_DIMENSION];
+            scales = new double[count];
+            results = new int[count];
+            map = new int[count];
+        }
+        if(data.length < count*channelsCount){
+            data = new double[count*channelsCount];
+        }
+    }
+}
@@ -6,14 +6,12 @@ import abfab3d.grid.GridIntervals;
 import abfab3d.util.AbFab3DGlobals;
 import abfab3d.util.BoundingBoxUtilsFloat;
 import abfab3d.util.MatrixUtil;
+import abfab3d.util.ComputePool;
 import org.j3d.geom.GeometryData;
 
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import static abfab3d.util.Output.printf;
 
@@ -406,20 +404,12 @@ public class TriangleModelCreatorMT {
 
 
         System.out.println("Threads: " + m_threadCount);
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
         for (int i = 0; i < m_threadCount; i++) {
 
-            Runnable runner = new FillGridIntervalsRunner();
-            executor.submit(runner);
-        }
-
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = new FillGridIntervalsRunner();
         }
+        ComputePool.execute(runners);
 
         //printf("maxIntervalSize: %d\n",maxIntervalsSize);
 
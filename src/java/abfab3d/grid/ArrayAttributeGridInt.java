@@ -255,6 +255,60 @@ public class ArrayAttributeGridInt extends BaseAttributeGrid {
         data[idx] = (int) ioFunc.updateAttribute(data[idx], material);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+
+        int nz = z2 - z1 + 1;
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                int idx = y * sliceSize + x * depth + z1;
+                for(int k = 0; k < nz; k++){
+                    states[ind++] = ioFunc.getState(data[idx++]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int nz = z2 - z1 + 1;
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                int idx = y * sliceSize + x * depth + z1;
+                for(int k = 0; k < nz; k++){
+                    attributes[ind++] = ioFunc.getAttribute(data[idx++]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int nz = z2 - z1 + 1;
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                int idx = y * sliceSize + x * depth + z1;
+                for(int k = 0; k < nz; k++, idx++){
+                    data[idx] = (int) ioFunc.updateAttribute(data[idx], attributes[ind++]);
+                }
+            }
+        }
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
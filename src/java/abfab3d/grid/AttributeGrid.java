@@ -60,6 +60,22 @@ public interface AttributeGrid extends Grid {
      */
     public void setAttribute(int x, int y, int z, long attribute);
 
+    /**
+     * Get attributes of voxels in the box [x1,x2]x[y1,y2]x[z1,z2] (bounds inclusive).
+     * Attributes are stored in the same order as in Grid.getStates()
+     *
+     * @param attributes array to store attributes, it should have at least nx*ny*nz elements
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]);
+
+    /**
+     * Set attributes of voxels in the box [x1,x2]x[y1,y2]x[z1,z2] (bounds inclusive).
+     * Leaves the states unchanged. Attributes are stored in the same order as in Grid.getStates()
+     *
+     * @param attributes array of attributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]);
+
     /**
      * Set the attribute value of a voxel.  Leaves the state unchanged.
      *
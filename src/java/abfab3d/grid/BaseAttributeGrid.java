@@ -463,6 +463,52 @@ public abstract class BaseAttributeGrid extends BaseGrid implements AttributeGri
     }
 
 
+    /**
+       get attributes of voxels in the box. Subclasses may override it with faster implementation
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]){
+        getAttributes(this, x1, x2, y1, y2, z1, z2, attributes);
+    }
+
+    /**
+       set attributes of voxels in the box. Subclasses may override it with faster implementation
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]){
+        setAttributes(this, x1, x2, y1, y2, z1, z2, attributes);
+    }
+
+    /**
+       get attributes of voxels in the box via per voxel calls to grid.getAttribute()
+       @see AttributeGrid#getAttributes
+     */
+    public static void getAttributes(AttributeGrid grid, int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]){
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                for(int z = z1; z <= z2; z++){
+                    attributes[ind++] = grid.getAttribute(x,y,z);
+                }
+            }
+        }
+    }
+
+    /**
+       set attributes of voxels in the box via per voxel calls to grid.setAttribute()
+       @see AttributeGrid#setAttributes
+     */
+    public static void setAttributes(AttributeGrid grid, int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]){
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                for(int z = z1; z <= z2; z++){
+                    grid.setAttribute(x,y,z,attributes[ind++]);
+                }
+            }
+        }
+    }
+
     public abstract Object clone();
 
 
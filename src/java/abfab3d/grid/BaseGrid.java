@@ -551,6 +551,29 @@ public abstract class BaseGrid implements Grid, Cloneable, Serializable {
 
     }
     
+    /**
+       get states of voxels in the box. Subclasses may override it with faster implementation
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]){
+        getStates(this, x1, x2, y1, y2, z1, z2, states);
+    }
+
+    /**
+       get states of voxels in the box via per voxel calls to grid.getState()
+       @see Grid#getStates
+     */
+    public static void getStates(Grid grid, int x1, int x2, int y1, int y2, int z1, int z2, byte states[]){
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                for(int z = z1; z <= z2; z++){
+                    states[ind++] = grid.getState(x,y,z);
+                }
+            }
+        }
+    }
+
     /**
        round double to the closest integer
      */
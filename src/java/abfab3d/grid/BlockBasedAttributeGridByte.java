@@ -406,6 +406,15 @@ public class BlockBasedAttributeGridByte extends BaseAttributeGrid {
         }
     }
 
+    /**
+     * Get the block order of the grid. Blocks have size 2^blockOrder.
+     *
+     * @return The block order
+     */
+    public int getBlockOrder() {
+        return blockOrder;
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -468,9 +477,99 @@ public class BlockBasedAttributeGridByte extends BaseAttributeGrid {
         } else {
             block = new BlockByte(blockOrder);
             data[id] = block;
+            block.setValue((byte) ioFunc.updateAttribute(0, material), vcoord, blockOrder);
+        }
+    }
 
-            // OUTSIDE can't have a material
-            block.setValue((byte)Grid.NO_MATERIAL, vcoord, blockOrder);
+    /**
+     * Get states of voxels in the box. Blocks are accessed directly.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    BlockByte block = data[xyblock + (z >> blockOrder)];
+                    if(block == null){
+                        for(; z <= zend; z++)
+                            states[ind++] = OUTSIDE;
+                    } else {
+                        byte bdata[] = block.data;
+                        for(; z <= zend; z++)
+                            states[ind++] = ioFunc.getState(bdata[xyoff + (z & blockMax)] & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get attributes of voxels in the box. Blocks are accessed directly.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    BlockByte block = data[xyblock + (z >> blockOrder)];
+                    if(block == null){
+                        for(; z <= zend; z++)
+                            attributes[ind++] = NO_MATERIAL;
+                    } else {
+                        byte bdata[] = block.data;
+                        for(; z <= zend; z++)
+                            attributes[ind++] = ioFunc.getAttribute(bdata[xyoff + (z & blockMax)] & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged. Missing blocks are allocated.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    int id = xyblock + (z >> blockOrder);
+                    BlockByte block = data[id];
+                    if(block == null){
+                        block = new BlockByte(blockOrder);
+                        data[id] = block;
+                    }
+                    byte bdata[] = block.data;
+                    for(; z <= zend; z++){
+                        int vi = xyoff + (z & blockMax);
+                        bdata[vi] = (byte) ioFunc.updateAttribute(bdata[vi] & 0xFF, attributes[ind++]);
+                    }
+                }
+            }
         }
     }
 
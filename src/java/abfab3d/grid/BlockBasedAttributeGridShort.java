@@ -168,7 +168,24 @@ public class BlockBasedAttributeGridShort extends BaseAttributeGrid {
         // TODO: what to do about block order?
         super(grid.getWidth(), grid.getHeight(), grid.getDepth(),
             grid.getVoxelSize(), grid.getSliceHeight(),grid.ioFunc);
-        this.data = grid.data.clone();
+
+        this.blockOrder = grid.blockOrder;
+        this.blockResX = grid.blockResX;
+        this.blockResY = grid.blockResY;
+        this.blockResZ = grid.blockResZ;
+        this.blockXZSize = grid.blockXZSize;
+        this.blockMax = grid.blockMax;
+        this.outside = (VoxelDataByte) grid.outside.clone();
+        this.bcoord = grid.bcoord.clone();
+        this.vcoord = grid.vcoord.clone();
+
+        data = new BlockShort[blockResX * blockResY * blockResZ];
+        for(int b =0; b < data.length; b++){
+            BlockShort bd = grid.data[b];
+            if(bd != null){
+                data[b] = (BlockShort)bd.clone();
+            }
+        }
     }
 
     /**
@@ -393,6 +410,15 @@ public class BlockBasedAttributeGridShort extends BaseAttributeGrid {
         }
     }
 
+    /**
+     * Get the block order of the grid. Blocks have size 2^blockOrder.
+     *
+     * @return The block order
+     */
+    public int getBlockOrder() {
+        return blockOrder;
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -454,8 +480,99 @@ public class BlockBasedAttributeGridShort extends BaseAttributeGrid {
         } else {
             block = new BlockShort(blockOrder);
             data[id] = block;
-            // OUTSIDE can't have a material
-            block.setValue((short)Grid.NO_MATERIAL, vcoord, blockOrder);
+            block.setValue((short) ioFunc.updateAttribute(0, material), vcoord, blockOrder);
+        }
+    }
+
+    /**
+     * Get states of voxels in the box. Blocks are accessed directly.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    BlockShort block = data[xyblock + (z >> blockOrder)];
+                    if(block == null){
+                        for(; z <= zend; z++)
+                            states[ind++] = OUTSIDE;
+                    } else {
+                        short bdata[] = block.data;
+                        for(; z <= zend; z++)
+                            states[ind++] = ioFunc.getState(bdata[xyoff + (z & blockMax)] & 0xFFFF);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get attributes of voxels in the box. Blocks are accessed directly.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    BlockShort block = data[xyblock + (z >> blockOrder)];
+                    if(block == null){
+                        for(; z <= zend; z++)
+                            attributes[ind++] = NO_MATERIAL;
+                    } else {
+                        short bdata[] = block.data;
+                        for(; z <= zend; z++)
+                            attributes[ind++] = ioFunc.getAttribute(bdata[xyoff + (z & blockMax)] & 0xFFFF);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged. Missing blocks are allocated.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            int yoff = (y & blockMax) << blockOrder << blockOrder;
+            int yblock = (y >> blockOrder) * blockXZSize;
+            for(int x = x1; x <= x2; x++){
+                int xyoff = yoff + ((x & blockMax) << blockOrder);
+                int xyblock = yblock + (x >> blockOrder) * blockResZ;
+                int z = z1;
+                while(z <= z2){
+                    int zend = Math.min(z2, z | blockMax);
+                    int id = xyblock + (z >> blockOrder);
+                    BlockShort block = data[id];
+                    if(block == null){
+                        block = new BlockShort(blockOrder);
+                        data[id] = block;
+                    }
+                    short bdata[] = block.data;
+                    for(; z <= zend; z++){
+                        int vi = xyoff + (z & blockMax);
+                        bdata[vi] = (short) ioFunc.updateAttribute(bdata[vi] & 0xFFFF, attributes[ind++]);
+                    }
+                }
+            }
         }
     }
 
@@ -1012,6 +1129,15 @@ public class BlockBasedAttributeGridShort extends BaseAttributeGrid {
 class BlockShort {
     protected short[] data;
 
+    /**
+       copy constructor
+     */
+    public BlockShort(BlockShort bs) {
+
+        if(bs != null)
+            data = bs.data.clone();
+    }
+
     public BlockShort(int blockOrder) {
         data = new short[1 << blockOrder << blockOrder << blockOrder];
         //System.out.println("Created block: " + data.length + " this: " + this);
@@ -1031,4 +1157,10 @@ class BlockShort {
     public short[] getData() {
         return data;
     }
+
+    public Object clone(){
+
+        return new BlockShort(this);
+
+    }
 }
\ No newline at end of file
@@ -0,0 +1,573 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import abfab3d.util.ComputePool;
+import abfab3d.util.ExecutionStoppedException;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+   labels all 6-connected components of voxels with given state (Grid) or given material (AttributeGrid) at once
+
+   the labelling is parallel two pass union-find
+   1) grid is split into blocks, voxels of each block are joined with their neighbours inside of the block
+   2) voxels on block faces are joined with neighbours in adjacent blocks using lock free atomic union
+   3) trees are flattened and roots get consecutive labels, volume and bounds of each component are collected
+      into arrays shared by all threads
+
+   trees are always linked to smaller voxel index, therefore the root of component is its first voxel in z,y,x order.
+   labels are ordered by the root index and do not depend on count of threads.
+
+   voxels are matched the same way as in ConnectedComponentState (state) and ConnectedComponent (material)
+
+   the labeler uses one int per voxel, therefore grid can not have more than 2^31 voxels
+ */
+public class ComponentLabeler {
+
+    static boolean DEBUG = false;
+    public static boolean DEBUG_TIMING = false;
+
+    static final int DEFAULT_BLOCK_SIZE = 32;
+    // value of background voxels
+    static final int BACKGROUND = -1;
+
+    int m_threadCount = 0;
+    int m_blockSize = DEFAULT_BLOCK_SIZE;
+
+    int nx, ny, nz, nxy;
+    int m_bx, m_by, m_bz;
+
+    // matching criteria
+    Grid m_grid;
+    AttributeGrid m_attGrid;
+    byte m_state;
+    long m_material;
+
+    // parent of each voxel during union-find, encoded label after labelling
+    AtomicIntegerArray m_labels;
+
+    int m_componentCount;
+    // roots count and offset in each z-slice
+    int m_sliceRoots[];
+
+    AtomicLongArray m_volumes;
+    AtomicIntegerArray m_bounds;
+    int m_seeds[];
+
+    AtomicInteger m_nextIndex;
+
+    public ComponentLabeler(){
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - all available processors are used
+     */
+    public void setThreadCount(int count){
+
+        m_threadCount = count;
+
+    }
+
+    /**
+       set size of blocks processed by threads in the first pass
+     */
+    public void setBlockSize(int size){
+
+        m_blockSize = max(1, size);
+
+    }
+
+    /**
+       label components of voxels with given state
+       @return count of components
+     */
+    public int label(Grid grid, byte state){
+
+        m_grid = grid;
+        m_attGrid = null;
+        m_state = state;
+        return doLabel();
+
+    }
+
+    /**
+       label components of voxels with given material and state other than OUTSIDE
+       @return count of components
+     */
+    public int label(AttributeGrid grid, long material){
+
+        m_grid = grid;
+        m_attGrid = grid;
+        m_material = material;
+        return doLabel();
+
+    }
+
+    /**
+       @return count of components found by last labelling
+     */
+    public int getComponentCount(){
+        return m_componentCount;
+    }
+
+    /**
+       @return label of voxel or -1 for background voxel
+     */
+    public int getLabel(int x, int y, int z){
+
+        return decode(m_labels.get(x + nx*(y + ny*z)));
+
+    }
+
+    /**
+       @return count of voxels in component
+     */
+    public long getVolume(int label){
+        return m_volumes.get(label);
+    }
+
+    /**
+       @return bounds of component as {xmin, ymin, zmin, xmax, ymax, zmax}
+     */
+    public int[] getBounds(int label){
+
+        int b[] = new int[6];
+        for(int k = 0; k < 6; k++)
+            b[k] = m_bounds.get(6*label + k);
+        return b;
+
+    }
+
+    /**
+       stores coordinates of first voxel of component in z,y,x order in seed
+     */
+    public void getSeed(int label, int seed[]){
+
+        int index = m_seeds[label];
+        seed[0] = index % nx;
+        seed[1] = (index / nx) % ny;
+        seed[2] = index / nxy;
+
+    }
+
+    /**
+       set state of voxels of components with volume smaller than minSize to Grid.OUTSIDE
+       grid should be the grid used in last labelling. Slices of grid are processed in parallel.
+
+       @return count of removed components
+     */
+    public int removeSmallComponents(Grid grid, long minSize){
+
+        boolean remove[] = new boolean[m_componentCount];
+        int count = 0;
+        for(int i = 0; i < m_componentCount; i++){
+            if(m_volumes.get(i) < minSize){
+                remove[i] = true;
+                count++;
+            }
+        }
+        if(count == 0)
+            return 0;
+
+        Runner runners[] = makeRunners();
+        for(int i = 0; i < runners.length; i++){
+            runners[i].remove = remove;
+            runners[i].grid = grid;
+        }
+        runPhase(runners, Runner.REMOVE, nz);
+
+        return count;
+    }
+
+    /**
+       release memory used by labels
+     */
+    public void release(){
+
+        m_labels = null;
+        m_volumes = null;
+        m_bounds = null;
+        m_seeds = null;
+        m_componentCount = 0;
+
+    }
+
+    int doLabel(){
+
+        long t0 = time();
+
+        nx = m_grid.getWidth();
+        ny = m_grid.getHeight();
+        nz = m_grid.getDepth();
+        if((long)nx*ny*nz > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(fmt("grid is too large for ComponentLabeler: [%d x %d x %d]", nx, ny, nz));
+        nxy = nx*ny;
+
+        int bs = m_blockSize;
+        m_bx = (nx + bs - 1)/bs;
+        m_by = (ny + bs - 1)/bs;
+        m_bz = (nz + bs - 1)/bs;
+
+        m_labels = new AtomicIntegerArray(nx*ny*nz);
+        m_sliceRoots = new int[nz];
+
+        Runner runners[] = makeRunners();
+
+        try {
+            runPhase(runners, Runner.BLOCKS, m_bx*m_by*m_bz);
+            if(DEBUG_TIMING)printf("ComponentLabeler blocks: %d ms\n", (time() - t0));
+            runPhase(runners, Runner.FACES, m_bx*m_by*m_bz);
+            if(DEBUG_TIMING)printf("ComponentLabeler faces: %d ms\n", (time() - t0));
+            runPhase(runners, Runner.FLATTEN, nz);
+
+            // offsets of labels in each slice
+            int count = 0;
+            for(int z = 0; z < nz; z++){
+                int c = m_sliceRoots[z];
+                m_sliceRoots[z] = count;
+                count += c;
+            }
+            m_componentCount = count;
+
+            m_seeds = new int[count];
+            runPhase(runners, Runner.ROOTS, nz);
+
+            m_volumes = new AtomicLongArray(count);
+            m_bounds = new AtomicIntegerArray(6*count);
+            for(int c = 0; c < count; c++){
+                for(int k = 0; k < 3; k++){
+                    m_bounds.set(6*c + k, Integer.MAX_VALUE);
+                    m_bounds.set(6*c + 3 + k, -1);
+                }
+            }
+            runPhase(runners, Runner.LABELS, nz);
+
+        } finally {
+            m_sliceRoots = null;
+            m_grid = null;
+            m_attGrid = null;
+        }
+
+        if(DEBUG_TIMING)printf("ComponentLabeler components: %d time: %d ms\n", m_componentCount, (time() - t0));
+
+        return m_componentCount;
+
+    }
+
+    Runner[] makeRunners(){
+
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+        Runner runners[] = new Runner[threadCount];
+        for(int i = 0; i < threadCount; i++){
+            runners[i] = new Runner();
+        }
+        return runners;
+
+    }
+
+    void runPhase(Runner runners[], int phase, int count){
+
+        m_nextIndex = new AtomicInteger(0);
+        for(int i = 0; i < runners.length; i++){
+            runners[i].phase = phase;
+            runners[i].count = count;
+        }
+        ComputePool.execute(runners);
+
+    }
+
+    /**
+       label is stored as -(label+2), background as -1
+     */
+    static final int decode(int value){
+        return -value - 2;
+    }
+
+    static final int encode(int label){
+        return -label - 2;
+    }
+
+    boolean matches(int x, int y, int z){
+
+        if(m_attGrid != null)
+            return ConnectedComponent.compareMaterial(m_attGrid, x, y, z, m_material);
+        else
+            return ConnectedComponentState.compareState(m_grid, x, y, z, m_state);
+
+    }
+
+    /**
+       @return root of the tree, compresses path on the way
+     */
+    int find(int i){
+
+        AtomicIntegerArray parent = m_labels;
+        while(true){
+            int p = parent.get(i);
+            if(p == i)
+                return i;
+            int gp = parent.get(p);
+            if(gp != p)
+                parent.compareAndSet(i, p, gp);
+            i = p;
+        }
+    }
+
+    /**
+       joins trees of voxels a and b, larger root is linked to smaller one
+     */
+    void union(int a, int b){
+
+        AtomicIntegerArray parent = m_labels;
+        while(true){
+            a = find(a);
+            b = find(b);
+            if(a == b)
+                return;
+            if(a < b){
+                int t = a; a = b; b = t;
+            }
+            // a is root unless another thread has linked it meanwhile
+            if(parent.compareAndSet(a, a, b))
+                return;
+        }
+    }
+
+    /**
+       lowers bounds[index] to value
+     */
+    static final void atomicMin(AtomicIntegerArray bounds, int index, int value){
+
+        while(true){
+            int v = bounds.get(index);
+            if(value >= v || bounds.compareAndSet(index, v, value))
+                return;
+        }
+    }
+
+    /**
+       raises bounds[index] to value
+     */
+    static final void atomicMax(AtomicIntegerArray bounds, int index, int value){
+
+        while(true){
+            int v = bounds.get(index);
+            if(value <= v || bounds.compareAndSet(index, v, value))
+                return;
+        }
+    }
+
+    /**
+       adds run of voxels [x0,x1] of component c in row (y,z) to the component statistics
+     */
+    void addRun(int c, int x0, int x1, int y, int z){
+
+        m_volumes.addAndGet(c, x1 - x0 + 1);
+        AtomicIntegerArray bounds = m_bounds;
+        int b = 6*c;
+        atomicMin(bounds, b, x0);
+        atomicMin(bounds, b+1, y);
+        atomicMin(bounds, b+2, z);
+        atomicMax(bounds, b+3, x1);
+        atomicMax(bounds, b+4, y);
+        atomicMax(bounds, b+5, z);
+
+    }
+
+    /**
+       runner for each thread
+     */
+    class Runner implements Runnable {
+
+        static final int BLOCKS = 0, FACES = 1, FLATTEN = 2, ROOTS = 3, LABELS = 4, REMOVE = 5;
+
+        int phase;
+        int count;
+
+        Grid grid;
+        boolean remove[];
+
+        public void run(){
+
+            while(true){
+                int index = m_nextIndex.getAndIncrement();
+                if(index >= count)
+                    break;
+                switch(phase){
+                case BLOCKS: labelBlock(index); break;
+                case FACES: joinFaces(index); break;
+                case FLATTEN: flattenSlice(index); break;
+                case ROOTS: labelRoots(index); break;
+                case LABELS: labelSlice(index); break;
+                case REMOVE: removeSlice(index); break;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
+                }
+            }
+        }
+
+        void labelBlock(int block){
+
+            int bs = m_blockSize;
+            int x0 = (block % m_bx)*bs;
+            int y0 = ((block / m_bx) % m_by)*bs;
+            int z0 = (block / (m_bx*m_by))*bs;
+            int x1 = min(x0 + bs, nx);
+            int y1 = min(y0 + bs, ny);
+            int z1 = min(z0 + bs, nz);
+            AtomicIntegerArray labels = m_labels;
+
+            for(int z = z0; z < z1; z++){
+                for(int y = y0; y < y1; y++){
+                    int i = x0 + nx*(y + ny*z);
+                    for(int x = x0; x < x1; x++, i++){
+                        if(!matches(x,y,z)){
+                            labels.set(i, BACKGROUND);
+                            continue;
+                        }
+                        labels.set(i, i);
+                        if(x > x0 && labels.get(i-1) != BACKGROUND)
+                            union(i, i-1);
+                        if(y > y0 && labels.get(i-nx) != BACKGROUND)
+                            union(i, i-nx);
+                        if(z > z0 && labels.get(i-nxy) != BACKGROUND)
+                            union(i, i-nxy);
+                    }
+                }
+            }
+        }
+
+        void joinFaces(int block){
+
+            int bs = m_blockSize;
+            int x0 = (block % m_bx)*bs;
+            int y0 = ((block / m_bx) % m_by)*bs;
+            int z0 = (block / (m_bx*m_by))*bs;
+            int x1 = min(x0 + bs, nx);
+            int y1 = min(y0 + bs, ny);
+            int z1 = min(z0 + bs, nz);
+            AtomicIntegerArray labels = m_labels;
+
+            // lower faces of block
+            for(int z = z0; z < z1; z++){
+                for(int y = y0; y < y1; y++){
+                    int i = x0 + nx*(y + ny*z);
+                    for(int x = x0; x < x1; x++, i++){
+                        if(x != x0 && y != y0 && z != z0)
+                            continue;
+                        if(labels.get(i) == BACKGROUND)
+                            continue;
+                        if(x == x0 && x > 0 && labels.get(i-1) != BACKGROUND)
+                            union(i, i-1);
+                        if(y == y0 && y > 0 && labels.get(i-nx) != BACKGROUND)
+                            union(i, i-nx);
+                        if(z == z0 && z > 0 && labels.get(i-nxy) != BACKGROUND)
+                            union(i, i-nxy);
+                    }
+                }
+            }
+        }
+
+        void flattenSlice(int z){
+
+            AtomicIntegerArray labels = m_labels;
+            int roots = 0;
+            int end = nxy*(z+1);
+            for(int i = nxy*z; i < end; i++){
+                int p = labels.get(i);
+                if(p == BACKGROUND)
+                    continue;
+                if(p == i)
+                    roots++;
+                else
+                    labels.set(i, find(i));
+            }
+            m_sliceRoots[z] = roots;
+
+        }
+
+        void labelRoots(int z){
+
+            AtomicIntegerArray labels = m_labels;
+            int label = m_sliceRoots[z];
+            int end = nxy*(z+1);
+            for(int i = nxy*z; i < end; i++){
+                if(labels.get(i) == i){
+                    m_seeds[label] = i;
+                    labels.set(i, encode(label++));
+                }
+            }
+        }
+
+        /**
+           statistics are added once per run of voxels of the same component along x
+         */
+        void labelSlice(int z){
+
+            AtomicIntegerArray labels = m_labels;
+            int i = nxy*z;
+            for(int y = 0; y < ny; y++){
+                // current run 
+                int runLabel = -1;
+                int runStart = 0;
+                for(int x = 0; x < nx; x++, i++){
+                    int p = labels.get(i);
+                    int c = -1;
+                    if(p != BACKGROUND){
+                        if(p >= 0){
+                            // roots are already encoded
+                            p = labels.get(p);
+                            labels.set(i, p);
+                        }
+                        c = decode(p);
+                    }
+                    if(c != runLabel){
+                        if(runLabel >= 0)
+                            addRun(runLabel, runStart, x-1, y, z);
+                        runLabel = c;
+                        runStart = x;
+                    }
+                }
+                if(runLabel >= 0)
+                    addRun(runLabel, runStart, nx-1, y, z);
+            }
+        }
+
+        void removeSlice(int z){
+
+            AtomicIntegerArray labels = m_labels;
+            int i = nxy*z;
+            for(int y = 0; y < ny; y++){
+                for(int x = 0; x < nx; x++, i++){
+                    int c = decode(labels.get(i));
+                    if(c >= 0 && remove[c])
+                        grid.setState(x,y,z,Grid.OUTSIDE);
+                }
+            }
+        }
+    } // class Runner
+
+} // ComponentLabeler
@@ -1,11 +1,16 @@
 package abfab3d.grid;
 
+import java.io.Serializable;
+
 /**
  * TODO: Add docs
  *
  * @author Alan Hudson
  */
-public class DefaultInsideOutsideFunc implements InsideOutsideFunc {
+public class DefaultInsideOutsideFunc implements InsideOutsideFunc, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public final byte getState(final long attribute) {
         if (attribute > 0) return Grid.INSIDE;
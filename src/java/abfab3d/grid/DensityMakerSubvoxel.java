@@ -37,6 +37,14 @@ public class DensityMakerSubvoxel implements DensityMaker {
         m_factor = 1./m_maxAttribute;
 
     }
+
+    /**
+       @return attribute value which corresponds to density 1
+     */
+    public long getSubvoxelResolution(){
+        return m_maxAttribute;
+    }
+
     /**
        convert voxel attribute into voxel density to be used for the 3D shape generation 
      */
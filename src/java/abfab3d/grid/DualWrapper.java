@@ -181,6 +181,14 @@ public class DualWrapper implements AttributeGridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Get the state of the voxel
      *
@@ -213,6 +221,20 @@ public class DualWrapper implements AttributeGridWrapper {
         }
     }
 
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        if (gridAtt != null) {
+            gridAtt.getAttributes(x1, x2, y1, y2, z1, z2, attributes);
+        } else {
+            int count = (x2 - x1 + 1) * (y2 - y1 + 1) * (z2 - z1 + 1);
+            for (int i = 0; i < count; i++)
+                attributes[i] = Grid.NO_MATERIAL;
+        }
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -284,6 +306,16 @@ public class DualWrapper implements AttributeGridWrapper {
         }
     }
 
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        if (gridAtt != null) {
+            gridAtt.setAttributes(x1, x2, y1, y2, z1, z2, attributes);
+        }
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
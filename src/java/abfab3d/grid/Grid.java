@@ -97,6 +97,15 @@ public interface Grid extends Cloneable {
      */
     public byte getState(int x, int y, int z);
 
+    /**
+     * Get states of voxels in the box [x1,x2]x[y1,y2]x[z1,z2] (bounds inclusive).
+     * States are stored in order of increasing z, then x, then y:
+     * states[((y-y1)*nx + (x-x1))*nz + (z-z1)], where nx = x2-x1+1, nz = z2-z1+1
+     *
+     * @param states array to store states, it should have at least nx*ny*nz elements
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]);
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
@@ -174,6 +174,83 @@ public class GridShortIntervals extends GridBitIntervals {
     }
 
 
+    /**
+     * Get states of voxels in the box. Each row is decoded in a single pass.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+
+        int nz = z2 - z1 + 1;
+        long row[] = new long[nz];
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                getRow(x, y, z1, z2, row);
+                for(int k = 0; k < nz; k++)
+                    states[ind++] = ioFunc.getState(row[k]);
+            }
+        }
+    }
+
+    /**
+     * Get attributes of voxels in the box. Each row is decoded in a single pass.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int nz = z2 - z1 + 1;
+        long row[] = new long[nz];
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                getRow(x, y, z1, z2, row);
+                for(int k = 0; k < nz; k++)
+                    attributes[ind++] = ioFunc.getAttribute(row[k]);
+            }
+        }
+    }
+
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged. Only changed voxels are written.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+
+        int nz = z2 - z1 + 1;
+        long row[] = new long[nz];
+        int ind = 0;
+        for(int y = y1; y <= y2; y++){
+            for(int x = x1; x <= x2; x++){
+                getRow(x, y, z1, z2, row);
+                for(int k = 0; k < nz; k++, ind++){
+                    long curCode = row[k];
+                    if(ioFunc.getAttribute(curCode) != attributes[ind])
+                        set(x, y, z1 + k, (int)ioFunc.updateAttribute(curCode, attributes[ind]));
+                }
+            }
+        }
+    }
+
+    /**
+     * get raw data of row (x,y) from z1 to z2 (inclusive)
+     */
+    protected void getRow(int x, int y, int z1, int z2, long row[]) {
+
+        if (x < 0 || x >= m_nx || y < 0 || y >= m_ny) {
+            throw new IllegalArgumentException(fmt("x: %d, y: %d\n", x, y));
+        }
+        RowOfInt interval = m_data[x + m_nx * y];
+        if (interval == null) {
+            for (int z = z1; z <= z2; z++)
+                row[z - z1] = 0;
+        } else if (interval instanceof ShortIntervals) {
+            ((ShortIntervals) interval).get(z1, z2, row, 0);
+        } else {
+            for (int z = z1; z <= z2; z++)
+                row[z - z1] = interval.get(z);
+        }
+    }
+
     public void getData(int x, int y, int z, VoxelData data) {
         long encoded = get(x, y, z);
 
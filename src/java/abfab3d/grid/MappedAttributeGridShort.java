@@ -0,0 +1,391 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+// External Imports
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteOrder;
+
+// Internal Imports
+import abfab3d.util.SegmentedByteBuffer;
+
+/**
+ * A grid with 16 bits per voxel stored outside of java heap.
+ *
+ * Data are stored in direct memory or in memory mapped file. Size of the grid is not limited by 2^31 voxels
+ * and grid does not use java heap. File backed grid can be larger than physical memory.
+ * Layout of data is the same as in ArrayAttributeGridShort.
+ *
+ * Grid keeps resources until close() is called or it is collected by garbage collector.
+ * Temporary file of grid created via createEmpty() is deleted on close().
+ * Deserialized grid is stored in direct memory.
+ */
+public class MappedAttributeGridShort extends BaseAttributeGrid {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int BYTES = 2;
+
+    // voxel data are serialized by writeObject()
+    protected transient SegmentedByteBuffer data;
+    // directory for temp files of grids created via createEmpty(), null for direct memory grids
+    protected File m_tempDir;
+    // deserialized grid does not own the file 
+    protected transient boolean m_deleteOnClose = false;
+
+    /**
+     * Constructor. Grid is allocated in direct memory
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public MappedAttributeGridShort(int w, int h, int d, double pixel, double sheight) {
+        this(w,h,d,pixel,sheight,null);
+    }
+
+    /**
+     * Constructor. Grid is allocated in direct memory
+     *
+     * @param bounds The grid bounds in world coords
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public MappedAttributeGridShort(Bounds bounds, double pixel, double sheight) {
+        super(bounds, pixel,sheight);
+        data = new SegmentedByteBuffer(getDataSize());
+    }
+
+    /**
+     * Constructor. Grid is allocated in direct memory
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public MappedAttributeGridShort(int w, int h, int d, double pixel, double sheight, InsideOutsideFunc ioFunc) {
+        super(w,h,d,pixel,sheight,ioFunc);
+        data = new SegmentedByteBuffer(getDataSize());
+    }
+
+    /**
+     * Constructor. Grid is stored in memory mapped file. Existing content of the file is preserved.
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     * @param file The backing file
+     */
+    public MappedAttributeGridShort(int w, int h, int d, double pixel, double sheight, InsideOutsideFunc ioFunc, File file) {
+        super(w,h,d,pixel,sheight,ioFunc);
+        try {
+            data = new SegmentedByteBuffer(getDataSize(), file);
+        } catch(IOException e){
+            throw new IllegalArgumentException("Cannot map grid file: " + file, e);
+        }
+        m_tempDir = file.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Copy Constructor. The copy is allocated in direct memory
+     *
+     * @param grid The grid
+     */
+    public MappedAttributeGridShort(MappedAttributeGridShort grid) {
+        this(grid.getWidth(), grid.getHeight(), grid.getDepth(),
+             grid.getVoxelSize(), grid.getSliceHeight(),grid.ioFunc);
+        data.copyFrom(grid.data);
+    }
+
+    /**
+       @return grid stored in temporary file in given directory, the file is deleted on close
+     */
+    public static MappedAttributeGridShort createTemp(int w, int h, int d, double pixel, double sheight, InsideOutsideFunc ioFunc, File dir) {
+
+        File file;
+        try {
+            file = File.createTempFile("grid", ".dat", dir);
+        } catch(IOException e){
+            throw new IllegalArgumentException("Cannot create grid file in: " + dir, e);
+        }
+        file.deleteOnExit();
+        MappedAttributeGridShort grid = new MappedAttributeGridShort(w,h,d,pixel,sheight,ioFunc,file);
+        grid.m_deleteOnClose = true;
+        return grid;
+    }
+
+    protected long getDataSize(){
+        return (long)height * width * depth * BYTES;
+    }
+
+    /**
+     * Create an empty grid of the specified size. File backed grid creates grid in temporary file
+     * in the same directory.
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public Grid createEmpty(int w, int h, int d, double pixel, double sheight) {
+
+        if(m_tempDir != null)
+            return createTemp(w,h,d,pixel,sheight,ioFunc,m_tempDir);
+        else
+            return new MappedAttributeGridShort(w,h,d,pixel,sheight,ioFunc);
+    }
+
+    /**
+       @return backing file or null for grid in direct memory
+     */
+    public File getFile(){
+        return data.getFile();
+    }
+
+    /**
+       writes changes of file backed grid to the disk
+     */
+    public void force(){
+        data.force();
+    }
+
+    /**
+       releases memory and backing file. The grid can not be used after that
+     */
+    public void close(){
+
+        File file = data.getFile();
+        data.close();
+        if(m_deleteOnClose && file != null)
+            file.delete();
+    }
+
+    /**
+     * Get a new instance of voxel data.  Returns this grids specific sized voxel data.
+     *
+     * @return The voxel data
+     */
+    public VoxelData getVoxelData() {
+        return new VoxelDataShort();
+    }
+
+    protected final long getIndex(int x, int y, int z){
+        return ((long)y * sliceSize + (long)x * depth + z)*BYTES;
+    }
+
+    protected final long getIndex(double x, double y, double z){
+
+        int slice = (int)((y-yorig) / sheight);
+        int s_x =   (int)((x-xorig) / pixelSize);
+        int s_z =   (int)((z-zorig) / pixelSize);
+
+        return getIndex(s_x, slice, s_z);
+    }
+
+    /**
+     * Get the data of the voxel
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public void getData(int x, int y, int z, VoxelData vd) {
+
+        long encoded = data.getShort(getIndex(x,y,z)) & 0xFFFF;
+        vd.setData(ioFunc.getState(encoded),ioFunc.getAttribute(encoded));
+    }
+
+    /**
+     * Get the data of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public void getData(double x, double y, double z, VoxelData vd) {
+
+        long encoded = data.getShort(getIndex(x,y,z)) & 0xFFFF;
+        vd.setData(ioFunc.getState(encoded),ioFunc.getAttribute(encoded));
+    }
+
+    /**
+     * Get the state of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public byte getState(double x, double y, double z) {
+        return ioFunc.getState(data.getShort(getIndex(x,y,z)) & 0xFFFF);
+    }
+
+    /**
+     * Get the state of the voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public byte getState(int x, int y, int z) {
+        return ioFunc.getState(data.getShort(getIndex(x,y,z)) & 0xFFFF);
+    }
+
+    /**
+     * Get the attribute of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public long getAttribute(double x, double y, double z) {
+        return ioFunc.getAttribute(data.getShort(getIndex(x,y,z)) & 0xFFFF);
+    }
+
+    /**
+     * Get the attribute of the voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public long getAttribute(int x, int y, int z) {
+        return ioFunc.getAttribute(data.getShort(getIndex(x,y,z)) & 0xFFFF);
+    }
+
+    /**
+     * Set the value of a voxel.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param state The voxel state
+     * @param material The material
+     */
+    public void setData(double x, double y, double z, byte state, long material) {
+        data.putShort(getIndex(x,y,z), (short) ioFunc.combineStateAndAttribute(state,material));
+    }
+
+    /**
+     * Set the value of a voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param state The voxel state
+     * @param material The material
+     */
+    public void setData(int x, int y, int z, byte state, long material) {
+        data.putShort(getIndex(x,y,z), (short) ioFunc.combineStateAndAttribute(state,material));
+    }
+
+    /**
+     * Set the material value of a voxel.  Leaves the state unchanged.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param material The materialID
+     */
+    public void setAttribute(int x, int y, int z, long material) {
+        long idx = getIndex(x,y,z);
+        data.putShort(idx, (short) ioFunc.updateAttribute(data.getShort(idx) & 0xFFFF, material));
+    }
+
+    /**
+     * Set the material value of a voxel.  Leaves the state unchanged.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param material The materialID
+     */
+    public void setAttribute(double x, double y, double z, long material) {
+        long idx = getIndex(x,y,z);
+        data.putShort(idx, (short) ioFunc.updateAttribute(data.getShort(idx) & 0xFFFF, material));
+    }
+
+    /**
+     * Set the state value of a voxel.  Leaves the material unchanged.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param state The value.  0 = nothing. > 0 materialID
+     */
+    public void setState(int x, int y, int z, byte state) {
+        long idx = getIndex(x,y,z);
+        long att = ioFunc.getAttribute(data.getShort(idx) & 0xFFFF);
+        data.putShort(idx, (short) ioFunc.combineStateAndAttribute(state,att));
+    }
+
+    /**
+     * Set the state value of a voxel.  Leaves the material unchanged.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param state The value.  0 = nothing. > 0 materialID
+     */
+    public void setState(double x, double y, double z, byte state) {
+        long idx = getIndex(x,y,z);
+        long att = ioFunc.getAttribute(data.getShort(idx) & 0xFFFF);
+        data.putShort(idx, (short) ioFunc.combineStateAndAttribute(state,att));
+    }
+
+    /**
+     * Clone the object. Clone of file backed grid is stored in temporary file in the same directory
+     */
+    public Object clone() {
+        MappedAttributeGridShort ret_val;
+        if(m_tempDir != null){
+            ret_val = createTemp(width,height,depth,pixelSize,sheight,ioFunc,m_tempDir);
+            ret_val.data.copyFrom(data);
+        } else {
+            ret_val = new MappedAttributeGridShort(this);
+        }
+
+        BaseGrid.copyBounds(this, ret_val);
+        return ret_val;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+
+        out.defaultWriteObject();
+        out.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+        data.write(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        boolean bigEndian = in.readBoolean();
+        data = new SegmentedByteBuffer(getDataSize());
+        data.read(in);
+        if(bigEndian != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN)){
+            // grid was written with other byte order
+            long size = getDataSize();
+            for(long i = 0; i < size; i += BYTES)
+                data.putShort(i, Short.reverseBytes(data.getShort(i)));
+        }
+    }
+}
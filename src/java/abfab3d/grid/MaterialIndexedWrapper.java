@@ -277,6 +277,14 @@ public class MaterialIndexedWrapper implements AttributeGridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Get the state of the voxel
      *
@@ -299,6 +307,14 @@ public class MaterialIndexedWrapper implements AttributeGridWrapper {
         return grid.getAttribute(x, y, z);
     }
 
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        grid.getAttributes(x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -396,6 +412,15 @@ public class MaterialIndexedWrapper implements AttributeGridWrapper {
         optIndex = null;
     }
 
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * Each voxel is set via setAttribute() to update the material index.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        BaseAttributeGrid.setAttributes(this, x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
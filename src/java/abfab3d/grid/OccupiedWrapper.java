@@ -145,6 +145,14 @@ public class OccupiedWrapper implements AttributeGridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Get the state of the voxel
      *
@@ -169,6 +177,14 @@ public class OccupiedWrapper implements AttributeGridWrapper {
         return grid.getAttribute(x, y, z);
     }
 
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        grid.getAttributes(x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -224,6 +240,15 @@ public class OccupiedWrapper implements AttributeGridWrapper {
         grid.setAttribute(x, y, z, material);
     }
 
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * Each voxel is set via setAttribute() to check state changes.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        BaseAttributeGrid.setAttributes(this, x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
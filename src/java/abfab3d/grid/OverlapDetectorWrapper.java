@@ -164,6 +164,14 @@ public class OverlapDetectorWrapper implements AttributeGridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Get the state of the voxel
      *
@@ -186,6 +194,14 @@ public class OverlapDetectorWrapper implements AttributeGridWrapper {
         return grid.getAttribute(x, y, z);
     }
 
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        grid.getAttributes(x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -242,6 +258,15 @@ public class OverlapDetectorWrapper implements AttributeGridWrapper {
         grid.setAttribute(x, y, z, material);
     }
 
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * Each voxel is set via setAttribute() to detect overlaps.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        BaseAttributeGrid.setAttributes(this, x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
@@ -183,6 +183,17 @@ public class RangeCheckAttributeWrapper implements AttributeGridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        verifyRange(x1,y1,z1);
+        verifyRange(x2,y2,z2);
+
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Get the state of the voxel
      *
@@ -211,6 +222,17 @@ public class RangeCheckAttributeWrapper implements AttributeGridWrapper {
         return grid.getAttribute(x, y, z);
     }
 
+    /**
+     * Get attributes of voxels in the box.
+     * @see AttributeGrid#getAttributes
+     */
+    public void getAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        verifyRange(x1,y1,z1);
+        verifyRange(x2,y2,z2);
+
+        grid.getAttributes(x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the value of a voxel.
      *
@@ -273,6 +295,17 @@ public class RangeCheckAttributeWrapper implements AttributeGridWrapper {
         grid.setAttribute(x, y, z, material);
     }
 
+    /**
+     * Set attributes of voxels in the box.  Leaves the states unchanged.
+     * @see AttributeGrid#setAttributes
+     */
+    public void setAttributes(int x1, int x2, int y1, int y2, int z1, int z2, long attributes[]) {
+        verifyRange(x1,y1,z1);
+        verifyRange(x2,y2,z2);
+
+        grid.setAttributes(x1, x2, y1, y2, z1, z2, attributes);
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
@@ -196,6 +196,17 @@ public class RangeCheckWrapper implements GridWrapper {
         return grid.getState(x,y,z);
     }
 
+    /**
+     * Get states of voxels in the box.
+     * @see Grid#getStates
+     */
+    public void getStates(int x1, int x2, int y1, int y2, int z1, int z2, byte states[]) {
+        verifyRange(x1,y1,z1);
+        verifyRange(x2,y2,z2);
+
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+    }
+
     /**
      * Set the state value of a voxel.  Leaves the material unchanged.
      *
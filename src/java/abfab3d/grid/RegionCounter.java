@@ -450,6 +450,66 @@ public class RegionCounter {
         return largeComp;
     }
 
+    /**
+       counts components with volume not smaller than minSize using parallel ComponentLabeler
+       @param threadCount count of threads to use, if threadCount < 1 - all available processors are used
+     */
+    public static int countComponentsMT(AttributeGrid grid, long material, int minSize, int threadCount){
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        labeler.setThreadCount(threadCount);
+        return countLarge(labeler, labeler.label(grid, material), minSize);
+
+    }
+
+    public static int countComponentsMT(Grid grid, byte state, int minSize, int threadCount){
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        labeler.setThreadCount(threadCount);
+        return countLarge(labeler, labeler.label(grid, state), minSize);
+
+    }
+
+    /**
+       removes components with volume smaller than minSize using parallel ComponentLabeler
+       @return count of remaining components
+     */
+    public static int removeSmallComponentsMT(AttributeGrid grid, long material, int minSize, int threadCount){
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        labeler.setThreadCount(threadCount);
+        int count = labeler.label(grid, material);
+        int removed = labeler.removeSmallComponents(grid, minSize);
+        printf("removeSmallComponentsMT(material:%d, minSize: %d) components: %d removed: %d\n", material, minSize, count, removed);
+        labeler.release();
+        return count - removed;
+
+    }
+
+    public static int removeSmallComponentsMT(Grid grid, byte state, int minSize, int threadCount){
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        labeler.setThreadCount(threadCount);
+        int count = labeler.label(grid, state);
+        int removed = labeler.removeSmallComponents(grid, minSize);
+        printf("removeSmallComponentsMT(state:%d, minSize: %d) components: %d removed: %d\n", state, minSize, count, removed);
+        labeler.release();
+        return count - removed;
+
+    }
+
+    static int countLarge(ComponentLabeler labeler, int count, int minSize){
+
+        int large = 0;
+        for(int i = 0; i < count; i++){
+            if(labeler.getVolume(i) >= minSize)
+                large++;
+        }
+        labeler.release();
+        return large;
+
+    }
+
     public static List<int[]> getComponentBoundsByVolume(AttributeGrid grid, long material, int maxCount, int minSize, boolean collectData) {
         return getComponentBoundsByVolume(grid, material, maxCount, minSize, collectData, ConnectedComponent.DEFAULT_ALGORITHM);
     }
@@ -119,6 +119,27 @@ public class ShortIntervals implements RowOfInt {
 
     }
 
+    /**
+       get values of points from x1 to x2 (inclusive) in a single pass over intervals
+       @param values array to store values
+       @param offset index in values array to store value of x1
+     */
+    public void get(int x1, int x2, long values[], int offset){
+
+        if(m_curcount <= 2){ // no intervals exist
+            for(int x = x1; x <= x2; x++)
+                values[offset++] = 0;
+            return;
+        }
+        int i = 1;
+        for(int x = x1; x <= x2; x++){
+            while(i < m_curcount && getStart(m_intervals[i]) <= x)
+                i++;
+            // data of last semi-interval is 0s
+            values[offset++] = (i < m_curcount)? getData(m_intervals[i-1]): 0;
+        }
+    }
+
     public synchronized void set(int x, long material){
         //if(true) return;
         //printX(x, material);
@@ -0,0 +1,886 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+// External Imports
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sparse grid with 16 bits per voxel stored in hierarchical tree.
+ *
+ * Tree has 3 levels: root hash table of nodes, each node covers 128^3 voxels and has 16^3 children.
+ * Each child is either leaf with 8^3 voxels or constant tile which stores single value for the whole 8^3 region.
+ * Voxels which were never set have background value and use no memory.
+ *
+ * Voxel is active if its value differs from background. Each leaf has bit mask of active voxels
+ * which makes traversal of active voxels proportional to their count.
+ * Writing background value into background region does not allocate memory.
+ * prune() replaces uniform leaves with constant tiles and removes empty nodes.
+ *
+ * Writing into different voxels from different threads is safe.
+ * prune() must not be called concurrently with any other access to the grid.
+ *
+ * Uses the X3D coordinate system.  Y-up.  Grid is located
+ * on positive right side octant.
+ */
+public class SparseAttributeGridShort extends BaseAttributeGrid {
+
+    private static final long serialVersionUID = 1L;
+
+    /** leaf has 2^LEAF_BITS voxels in each direction */
+    public static final int LEAF_BITS = 3;
+    /** node has 2^NODE_BITS children in each direction */
+    public static final int NODE_BITS = 4;
+    public static final int LEAF_SIZE = 1 << LEAF_BITS;
+    public static final int LEAF_VOLUME = LEAF_SIZE*LEAF_SIZE*LEAF_SIZE;
+
+    static final int LEAF_MASK = LEAF_SIZE - 1;
+    static final int NODE_SIZE = 1 << NODE_BITS;
+    static final int NODE_MASK = NODE_SIZE - 1;
+    static final int NODE_VOLUME = NODE_SIZE*NODE_SIZE*NODE_SIZE;
+    // voxel coordinate shift to get node coordinate
+    static final int NODE_SHIFT = LEAF_BITS + NODE_BITS;
+    // bits of node coordinate in node key
+    static final int KEY_BITS = 21;
+    static final int INITIAL_TABLE_SIZE = 64;
+
+    // encoded value of voxels which were not set
+    protected short m_background = 0;
+
+    // root hash table, open addressing with linear probing
+    // it is replaced by rehash() while other threads may read it 
+    protected volatile Node m_table[];
+    protected int m_nodeCount;
+    // last node used by each thread, speeds up coherent access
+    protected transient ThreadLocal<Node> m_lastNode = new ThreadLocal<Node>();
+
+    /**
+     * Constructor.
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public SparseAttributeGridShort(int w, int h, int d, double pixel, double sheight) {
+        this(w,h,d,pixel,sheight,null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bounds The grid bounds in world coords
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public SparseAttributeGridShort(Bounds bounds, double pixel, double sheight) {
+        super(bounds, pixel,sheight);
+        m_table = new Node[INITIAL_TABLE_SIZE];
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public SparseAttributeGridShort(int w, int h, int d, double pixel, double sheight, InsideOutsideFunc ioFunc) {
+        super(w,h,d,pixel,sheight,ioFunc);
+        if((Math.max(w, Math.max(h, d)) >> NODE_SHIFT) >= (1 << KEY_BITS))
+            throw new IllegalArgumentException("Grid size is too large.  w: " + w + " h: " + h + " d: " + d);
+        m_table = new Node[INITIAL_TABLE_SIZE];
+    }
+
+    /**
+     * Copy Constructor.
+     *
+     * @param grid The grid
+     */
+    public SparseAttributeGridShort(SparseAttributeGridShort grid) {
+        super(grid.getWidth(), grid.getHeight(), grid.getDepth(),
+            grid.getVoxelSize(), grid.getSliceHeight(),grid.ioFunc);
+        m_background = grid.m_background;
+        m_table = new Node[grid.m_table.length];
+        for(int i = 0; i < m_table.length; i++){
+            if(grid.m_table[i] != null)
+                m_table[i] = new Node(grid.m_table[i]);
+        }
+        m_nodeCount = grid.m_nodeCount;
+    }
+
+    /**
+     * Create an empty grid of the specified size.  Reuses
+     * the grid type, background and material type(byte, short, int).
+     *
+     * @param w The number of voxels in width
+     * @param h The number of voxels in height
+     * @param d The number of voxels in depth
+     * @param pixel The size of the pixels
+     * @param sheight The slice height in meters
+     */
+    public Grid createEmpty(int w, int h, int d, double pixel, double sheight) {
+        SparseAttributeGridShort ret_val = new SparseAttributeGridShort(w,h,d,pixel,sheight, ioFunc);
+        ret_val.m_background = m_background;
+        return ret_val;
+    }
+
+    /**
+     * Set the value of voxels which were not set. Can be called for empty grid only.
+     *
+     * @param state The background state
+     * @param attribute The background attribute
+     */
+    public void setBackground(byte state, long attribute) {
+        if(m_nodeCount > 0)
+            throw new IllegalStateException("Background can be changed in empty grid only");
+        m_background = (short) ioFunc.combineStateAndAttribute(state,attribute);
+    }
+
+    /**
+     * Set the attribute of voxels which were not set. Can be called for empty grid only.
+     *
+     * @param attribute The background attribute
+     */
+    public void setBackgroundAttribute(long attribute) {
+        if(m_nodeCount > 0)
+            throw new IllegalStateException("Background can be changed in empty grid only");
+        m_background = (short) ioFunc.updateAttribute(m_background & 0xFFFF, attribute);
+    }
+
+    /**
+     * @return attribute of background voxels
+     */
+    public long getBackgroundAttribute() {
+        return ioFunc.getAttribute(m_background & 0xFFFF);
+    }
+
+    /**
+     * Get a new instance of voxel data.  Returns this grids specific sized voxel data.
+     *
+     * @return The voxel data
+     */
+    public VoxelData getVoxelData() {
+        return new VoxelDataShort();
+    }
+
+    //
+    // tree access
+    //
+
+    static final long getKey(int x, int y, int z){
+        return (((long)(x >> NODE_SHIFT)) << (2*KEY_BITS)) | (((long)(y >> NODE_SHIFT)) << KEY_BITS) | (z >> NODE_SHIFT);
+    }
+
+    static final int getHash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+       index of child in node
+     */
+    static final int getChildIndex(int x, int y, int z){
+        return (((((y >> LEAF_BITS) & NODE_MASK) << NODE_BITS) | ((x >> LEAF_BITS) & NODE_MASK)) << NODE_BITS) | ((z >> LEAF_BITS) & NODE_MASK);
+    }
+
+    /**
+       index of voxel in leaf
+     */
+    static final int getVoxelIndex(int x, int y, int z){
+        return ((((y & LEAF_MASK) << LEAF_BITS) | (x & LEAF_MASK)) << LEAF_BITS) | (z & LEAF_MASK);
+    }
+
+    /**
+       @return node containing given voxel or null
+     */
+    protected final Node findNode(int x, int y, int z){
+
+        long key = getKey(x,y,z);
+        Node node = m_lastNode.get();
+        if(node != null && node.key == key)
+            return node;
+
+        Node table[] = m_table;
+        int mask = table.length - 1;
+        int i = getHash(key) & mask;
+        while(true){
+            node = table[i];
+            if(node == null)
+                return null;
+            if(node.key == key){
+                m_lastNode.set(node);
+                return node;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+       @return node containing given voxel, node is created if necessary
+     */
+    protected synchronized Node getNode(int x, int y, int z){
+
+        Node node = findNode(x,y,z);
+        if(node != null)
+            return node;
+        if(2*(m_nodeCount + 1) > m_table.length)
+            rehash(2*m_table.length);
+        node = new Node(getKey(x,y,z), m_background);
+        insert(m_table, node);
+        m_nodeCount++;
+        return node;
+    }
+
+    static void insert(Node table[], Node node){
+
+        int mask = table.length - 1;
+        int i = getHash(node.key) & mask;
+        while(table[i] != null)
+            i = (i + 1) & mask;
+        table[i] = node;
+    }
+
+    /**
+       replaces table with new table of given size
+     */
+    protected void rehash(int size){
+
+        Node table[] = new Node[size];
+        for(int i = 0; i < m_table.length; i++){
+            if(m_table[i] != null)
+                insert(table, m_table[i]);
+        }
+        // readers see old or new table, both are consistent
+        m_table = table;
+    }
+
+    /**
+       @return encoded value of voxel
+     */
+    protected final int get(int x, int y, int z){
+
+        Node node = findNode(x,y,z);
+        if(node == null)
+            return m_background & 0xFFFF;
+        int ci = getChildIndex(x,y,z);
+        Leaf leaf = node.leaves[ci];
+        if(leaf == null)
+            return node.tiles[ci] & 0xFFFF;
+        return leaf.values[getVoxelIndex(x,y,z)] & 0xFFFF;
+    }
+
+    /**
+       sets encoded value of voxel
+     */
+    protected final void set(int x, int y, int z, short value){
+
+        Node node = findNode(x,y,z);
+        if(node == null){
+            if(value == m_background)
+                return;
+            node = getNode(x,y,z);
+        }
+        int ci = getChildIndex(x,y,z);
+        Leaf leaf = node.leaves[ci];
+        if(leaf == null){
+            if(node.tiles[ci] == value)
+                return;
+            leaf = node.getLeaf(ci, m_background);
+        }
+        leaf.set(getVoxelIndex(x,y,z), value, value != m_background);
+    }
+
+    protected final int getGridX(double x){
+        return (int)((x-xorig) / pixelSize);
+    }
+
+    protected final int getGridY(double y){
+        return (int)((y-yorig) / sheight);
+    }
+
+    protected final int getGridZ(double z){
+        return (int)((z-zorig) / pixelSize);
+    }
+
+    //
+    // AttributeGrid interface
+    //
+
+    /**
+     * Get the data of the voxel
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public void getData(int x, int y, int z, VoxelData vd) {
+        long encoded = get(x,y,z);
+        vd.setData(ioFunc.getState(encoded),ioFunc.getAttribute(encoded));
+    }
+
+    /**
+     * Get the data of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public void getData(double x, double y, double z, VoxelData vd) {
+        getData(getGridX(x),getGridY(y),getGridZ(z),vd);
+    }
+
+    /**
+     * Get the state of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public byte getState(double x, double y, double z) {
+        return ioFunc.getState(get(getGridX(x),getGridY(y),getGridZ(z)));
+    }
+
+    /**
+     * Get the state of the voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public byte getState(int x, int y, int z) {
+        return ioFunc.getState(get(x,y,z));
+    }
+
+    /**
+     * Get the attribute of the voxel
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     */
+    public long getAttribute(double x, double y, double z) {
+        return ioFunc.getAttribute(get(getGridX(x),getGridY(y),getGridZ(z)));
+    }
+
+    /**
+     * Get the attribute of the voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     */
+    public long getAttribute(int x, int y, int z) {
+        return ioFunc.getAttribute(get(x,y,z));
+    }
+
+    /**
+     * Set the value of a voxel.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param state The voxel state
+     * @param material The material
+     */
+    public void setData(double x, double y, double z, byte state, long material) {
+        set(getGridX(x),getGridY(y),getGridZ(z), (short) ioFunc.combineStateAndAttribute(state,material));
+    }
+
+    /**
+     * Set the value of a voxel.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param state The voxel state
+     * @param material The material
+     */
+    public void setData(int x, int y, int z, byte state, long material) {
+        set(x,y,z, (short) ioFunc.combineStateAndAttribute(state,material));
+    }
+
+    /**
+     * Set the material value of a voxel.  Leaves the state unchanged.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param material The materialID
+     */
+    public void setAttribute(int x, int y, int z, long material) {
+        set(x,y,z, (short) ioFunc.updateAttribute(get(x,y,z), material));
+    }
+
+    /**
+     * Set the material value of a voxel.  Leaves the state unchanged.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param material The materialID
+     */
+    public void setAttribute(double x, double y, double z, long material) {
+        setAttribute(getGridX(x),getGridY(y),getGridZ(z), material);
+    }
+
+    /**
+     * Set the state value of a voxel.  Leaves the material unchanged.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param state The value.  0 = nothing. > 0 materialID
+     */
+    public void setState(int x, int y, int z, byte state) {
+        long att = ioFunc.getAttribute(get(x,y,z));
+        set(x,y,z, (short) ioFunc.combineStateAndAttribute(state,att));
+    }
+
+    /**
+     * Set the state value of a voxel.  Leaves the material unchanged.
+     *
+     * @param x The x world coordinate
+     * @param y The y world coordinate
+     * @param z The z world coordinate
+     * @param state The value.  0 = nothing. > 0 materialID
+     */
+    public void setState(double x, double y, double z, byte state) {
+        setState(getGridX(x),getGridY(y),getGridZ(z), state);
+    }
+
+    /**
+     * Set the attribute of all voxels of the leaf which contains given voxel.
+     * Leaf is replaced by constant tile and uses no memory.
+     *
+     * @param x The x grid coordinate
+     * @param y The y grid coordinate
+     * @param z The z grid coordinate
+     * @param material The materialID
+     */
+    public void setLeafAttribute(int x, int y, int z, long material) {
+
+        short value = (short) ioFunc.updateAttribute(m_background & 0xFFFF, material);
+        Node node = findNode(x,y,z);
+        if(node == null){
+            if(value == m_background)
+                return;
+            node = getNode(x,y,z);
+        }
+        node.setTile(getChildIndex(x,y,z), value);
+    }
+
+    //
+    // sparse traversal
+    //
+
+    /**
+     * Traverse a class of voxels types. If background voxels do not belong to the class,
+     * only stored voxels are visited.
+     *
+     * @param vc The class of voxels to traverse
+     * @param t The traverer to call for each voxel
+     */
+    public void find(VoxelClasses vc, ClassTraverser t) {
+
+        if(!isSparseClass(vc)){
+            super.find(vc, t);
+            return;
+        }
+        ActiveTraverser at = new ActiveTraverser(vc, t);
+        traverseLeaves(at);
+    }
+
+    /**
+     * Traverse a class of voxels types. If background voxels do not belong to the class,
+     * only stored voxels are visited.
+     *
+     * @param vc The class of voxels to traverse
+     * @param t The traverer to call for each voxel
+     */
+    public void findAttribute(VoxelClasses vc, ClassAttributeTraverser t) {
+
+        if(!isSparseClass(vc)){
+            super.findAttribute(vc, t);
+            return;
+        }
+        ActiveTraverser at = new ActiveTraverser(vc, t, getVoxelData());
+        traverseLeaves(at);
+    }
+
+    /**
+     * Count a class of voxels types.
+     *
+     * @param vc The class of voxels to traverse
+     * @return The number voxels found
+     */
+    public int findCount(VoxelClasses vc) {
+
+        if(vc == VoxelClasses.ALL)
+            return width*height*depth;
+        ActiveTraverser at = new ActiveTraverser(isSparseClass(vc)? vc: getOpposite(vc), (ClassTraverser)null);
+        traverseLeaves(at);
+        if(isSparseClass(vc))
+            return (int)at.count;
+        else
+            return (int)(width*height*depth - at.count);
+    }
+
+    /**
+     * Traverse all active voxels, i.e. voxels with value different from background.
+     *
+     * @param t The traverer to call for each voxel
+     */
+    public void findActive(ClassAttributeTraverser t) {
+
+        ActiveTraverser at = new ActiveTraverser(VoxelClasses.ALL, t, getVoxelData());
+        traverseLeaves(at);
+    }
+
+    /**
+     * @return count of active voxels, i.e. voxels with value different from background.
+     */
+    public long getActiveCount() {
+
+        ActiveTraverser at = new ActiveTraverser(VoxelClasses.ALL, (ClassTraverser)null);
+        traverseLeaves(at);
+        return at.count;
+    }
+
+    /**
+       @return true if background voxels do not belong to the class
+     */
+    protected boolean isSparseClass(VoxelClasses vc){
+
+        switch(vc){
+        default:
+        case ALL:
+            return false;
+        case INSIDE:
+            return ioFunc.getState(m_background & 0xFFFF) != Grid.INSIDE;
+        case OUTSIDE:
+            return ioFunc.getState(m_background & 0xFFFF) != Grid.OUTSIDE;
+        }
+    }
+
+    static VoxelClasses getOpposite(VoxelClasses vc){
+        return (vc == VoxelClasses.INSIDE)? VoxelClasses.OUTSIDE: VoxelClasses.INSIDE;
+    }
+
+    /**
+       leaf level access to grid data
+     */
+    public interface LeafTraverser {
+
+        /**
+           called for each allocated leaf.
+           value of voxel (x + i, y + j, z + k) is stored in values[(j*LEAF_SIZE + i)*LEAF_SIZE + k],
+           voxel is active if bit (index & 63) of activeMask[index >> 6] is set.
+           The arrays are data of the grid and may be modified by traverser, activeMask should be
+           consistent with values.
+
+           @param x x coordinate of leaf origin
+           @param y y coordinate of leaf origin
+           @param z z coordinate of leaf origin
+           @param values encoded values of voxels
+           @param activeMask bit mask of active voxels
+         */
+        public void foundLeaf(int x, int y, int z, short values[], long activeMask[]);
+
+        /**
+           called for each constant tile with value different from background.
+           tile covers region [x, x + LEAF_SIZE) x [y, y + LEAF_SIZE) x [z, z + LEAF_SIZE)
+
+           @param x x coordinate of tile origin
+           @param y y coordinate of tile origin
+           @param z z coordinate of tile origin
+           @param value encoded value of tile voxels
+         */
+        public void foundTile(int x, int y, int z, int value);
+    }
+
+    /**
+       visits all allocated leaves and active tiles of the grid
+     */
+    public void traverseLeaves(LeafTraverser t){
+
+        Node table[] = m_table;
+        for(int n = 0; n < table.length; n++){
+            Node node = table[n];
+            if(node == null)
+                continue;
+            int x0 = (int)((node.key >> (2*KEY_BITS)) << NODE_SHIFT);
+            int y0 = (int)(((node.key >> KEY_BITS) & ((1 << KEY_BITS)-1)) << NODE_SHIFT);
+            int z0 = (int)((node.key & ((1 << KEY_BITS)-1)) << NODE_SHIFT);
+            for(int ci = 0; ci < NODE_VOLUME; ci++){
+                int x = x0 + (((ci >> NODE_BITS) & NODE_MASK) << LEAF_BITS);
+                int y = y0 + ((ci >> (2*NODE_BITS)) << LEAF_BITS);
+                int z = z0 + ((ci & NODE_MASK) << LEAF_BITS);
+                Leaf leaf = node.leaves[ci];
+                if(leaf != null)
+                    t.foundLeaf(x, y, z, leaf.values, leaf.mask);
+                else if(node.tiles[ci] != m_background)
+                    t.foundTile(x, y, z, node.tiles[ci] & 0xFFFF);
+            }
+        }
+    }
+
+    /**
+       replaces leaves with all voxels of the same value by constant tiles and removes empty nodes
+     */
+    public synchronized void prune(){
+
+        Node table[] = new Node[m_table.length];
+        int count = 0;
+        for(int n = 0; n < m_table.length; n++){
+            Node node = m_table[n];
+            if(node == null)
+                continue;
+            boolean empty = true;
+            for(int ci = 0; ci < NODE_VOLUME; ci++){
+                Leaf leaf = node.leaves[ci];
+                if(leaf != null && leaf.isUniform()){
+                    node.tiles[ci] = leaf.values[0];
+                    node.leaves[ci] = null;
+                    leaf = null;
+                }
+                if(leaf != null || node.tiles[ci] != m_background)
+                    empty = false;
+            }
+            if(!empty){
+                insert(table, node);
+                count++;
+            }
+        }
+        // nodes cached by threads may be removed 
+        m_lastNode = new ThreadLocal<Node>();
+        m_table = table;
+        m_nodeCount = count;
+    }
+
+    /**
+       @return count of allocated leaves
+     */
+    public int getLeafCount(){
+
+        int count = 0;
+        Node table[] = m_table;
+        for(int n = 0; n < table.length; n++){
+            if(table[n] != null){
+                for(int ci = 0; ci < NODE_VOLUME; ci++){
+                    if(table[n].leaves[ci] != null)
+                        count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+       @return count of allocated nodes
+     */
+    public int getNodeCount(){
+        return m_nodeCount;
+    }
+
+    /**
+     * Clone the object.
+     */
+    public Object clone() {
+        SparseAttributeGridShort ret_val = new SparseAttributeGridShort(this);
+
+        BaseGrid.copyBounds(this, ret_val);
+        return ret_val;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        m_lastNode = new ThreadLocal<Node>();
+    }
+
+    /**
+       internal node of the tree
+     */
+    static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final long key;
+        // leaves or null for constant tiles
+        final Leaf leaves[];
+        // values of constant tiles
+        final short tiles[];
+
+        Node(long key, short background){
+            this.key = key;
+            leaves = new Leaf[NODE_VOLUME];
+            tiles = new short[NODE_VOLUME];
+            if(background != 0)
+                Arrays.fill(tiles, background);
+        }
+
+        Node(Node node){
+            key = node.key;
+            tiles = node.tiles.clone();
+            leaves = new Leaf[NODE_VOLUME];
+            for(int i = 0; i < NODE_VOLUME; i++){
+                if(node.leaves[i] != null)
+                    leaves[i] = new Leaf(node.leaves[i]);
+            }
+        }
+
+        /**
+           @return leaf with given index, leaf is created from the tile if necessary
+         */
+        synchronized Leaf getLeaf(int index, short background){
+            Leaf leaf = leaves[index];
+            if(leaf == null){
+                leaf = new Leaf(tiles[index], tiles[index] != background);
+                leaves[index] = leaf;
+            }
+            return leaf;
+        }
+
+        /**
+           replaces child with given index by constant tile
+         */
+        synchronized void setTile(int index, short value){
+            leaves[index] = null;
+            tiles[index] = value;
+        }
+    }
+
+    /**
+       leaf of the tree
+     */
+    static class Leaf implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final short values[];
+        final long mask[];
+
+        Leaf(short value, boolean active){
+            values = new short[LEAF_VOLUME];
+            mask = new long[LEAF_VOLUME/64];
+            if(value != 0)
+                Arrays.fill(values, value);
+            if(active)
+                Arrays.fill(mask, -1L);
+        }
+
+        Leaf(Leaf leaf){
+            values = leaf.values.clone();
+            mask = leaf.mask.clone();
+        }
+
+        final void set(int index, short value, boolean active){
+
+            values[index] = value;
+            long bit = 1L << (index & 63);
+            int w = index >> 6;
+            if(((mask[w] & bit) != 0) != active){
+                // mask words are shared by neighbor voxels
+                synchronized(this){
+                    if(active)
+                        mask[w] |= bit;
+                    else
+                        mask[w] &= ~bit;
+                }
+            }
+        }
+
+        boolean isUniform(){
+
+            short v = values[0];
+            for(int i = 1; i < LEAF_VOLUME; i++){
+                if(values[i] != v)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+       visits active voxels of given class
+     */
+    class ActiveTraverser implements LeafTraverser {
+
+        VoxelClasses vc;
+        ClassTraverser ct;
+        ClassAttributeTraverser cat;
+        VoxelData vd;
+        long count = 0;
+
+        ActiveTraverser(VoxelClasses vc, ClassTraverser ct){
+            this.vc = vc;
+            this.ct = ct;
+        }
+
+        ActiveTraverser(VoxelClasses vc, ClassAttributeTraverser cat, VoxelData vd){
+            this.vc = vc;
+            this.cat = cat;
+            this.vd = vd;
+        }
+
+        public void foundLeaf(int x0, int y0, int z0, short values[], long activeMask[]){
+            for(int w = 0; w < activeMask.length; w++){
+                long bits = activeMask[w];
+                while(bits != 0){
+                    int b = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int index = (w << 6) | b;
+                    foundVoxel(x0 + ((index >> LEAF_BITS) & LEAF_MASK), y0 + (index >> (2*LEAF_BITS)), z0 + (index & LEAF_MASK),
+                               values[index] & 0xFFFF);
+                }
+            }
+        }
+
+        public void foundTile(int x0, int y0, int z0, int value){
+            for(int y = y0; y < y0 + LEAF_SIZE; y++){
+                for(int x = x0; x < x0 + LEAF_SIZE; x++){
+                    for(int z = z0; z < z0 + LEAF_SIZE; z++){
+                        foundVoxel(x, y, z, value);
+                    }
+                }
+            }
+        }
+
+        final void foundVoxel(int x, int y, int z, int value){
+
+            byte state = ioFunc.getState(value);
+            switch(vc){
+            case INSIDE:
+                if(state != Grid.INSIDE) return;
+                break;
+            case OUTSIDE:
+                if(state != Grid.OUTSIDE) return;
+                break;
+            }
+            count++;
+            if(ct != null){
+                ct.found(x, y, z, state);
+            } else if(cat != null){
+                vd.setData(state, ioFunc.getAttribute(value));
+                cat.found(x, y, z, vd);
+            }
+        }
+    }
+}
@@ -12,9 +12,6 @@
 
 package abfab3d.grid.op;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,6 +23,7 @@ import abfab3d.grid.GridBitIntervals;
 import abfab3d.grid.ClassTraverser;
 import abfab3d.grid.GridBit;
 import abfab3d.util.AbFab3DGlobals;
+import abfab3d.util.ComputePool;
 
 import static abfab3d.util.Output.printf;
 import static abfab3d.util.Output.time;
@@ -137,19 +135,12 @@ public class DilationShapeMT implements Operation, AttributeOperation {
 
         m_slicesIdx = new AtomicInteger(0);
 
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
         for(int i = 0; i < m_threadCount; i++){
 
-            Runnable runner = new SurfaceFinderRunner(grid, surface);
-            executor.submit(runner);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = new SurfaceFinderRunner(grid, surface);
         }
+        ComputePool.execute(runners);
         
         printf("surface: %d ms\n", (time()-t0));
         t0 = time();
@@ -169,19 +160,12 @@ public class DilationShapeMT implements Operation, AttributeOperation {
 
         m_dsIdx = new AtomicInteger(0);
 
-        executor = Executors.newFixedThreadPool(m_threadCount);
+        runners = new Runnable[m_threadCount];
         for(int i = 0; i < m_threadCount; i++){
 
-            Runnable runner = new ShapeDilaterRunner(surface, grid, m_voxelShape, m_voxelChecker);
-            executor.submit(runner);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = new ShapeDilaterRunner(surface, grid, m_voxelShape, m_voxelChecker);
         }
+        ComputePool.execute(runners);
         
 
         printf("dilation: %d ms\n", (time()-t0));
@@ -193,10 +177,11 @@ public class DilationShapeMT implements Operation, AttributeOperation {
 
     
     Slice getNextSlice(){
-        if(m_slicesIdx.intValue() >= m_slices.length)
+        int idx = m_slicesIdx.getAndIncrement();
+        if(idx >= m_slices.length)
             return null;
-        
-        return m_slices[m_slicesIdx.getAndIncrement()];
+        // unused tail of array contains nulls 
+        return m_slices[idx];
         
     }
     
@@ -207,10 +192,13 @@ public class DilationShapeMT implements Operation, AttributeOperation {
 
     int getNextDilationSlice(Slice slice){
         
-        if(m_dsIdx.intValue() >= m_dilationSlices.length)
+        int idx = m_dsIdx.getAndIncrement();
+        if(idx >= m_dilationSlices.length)
             return RESULT_EMPTY;
 
-        Slice s = m_dilationSlices[m_dsIdx.getAndIncrement()];
+        Slice s = m_dilationSlices[idx];
+        if(s == null) // unused tail of array 
+            return RESULT_EMPTY;
 
         slice.ymin = s.ymin;
         slice.ymax = s.ymax;
@@ -222,10 +210,11 @@ public class DilationShapeMT implements Operation, AttributeOperation {
     /**
        class processes one slice of grid from the array of slices
      */
-    class SurfaceFinderRunner implements Runnable, ClassTraverser {
+    class SurfaceFinderRunner implements Runnable {
 
         Grid grid;
         GridBit surface; 
+        byte states[]; // states of slab of grid 
 
         SurfaceFinderRunner(Grid grid, GridBit surface){
             this.grid = grid; 
@@ -240,33 +229,44 @@ public class DilationShapeMT implements Operation, AttributeOperation {
                     // end of processing 
                     break;
                 }
-                grid.find(Grid.VoxelClasses.INSIDE, this, 0, m_nx-1, slice.ymin, slice.ymax);
+                processSlice(slice.ymin, slice.ymax);
             }
         }
-            
-        public void found(int x, int y, int z, byte state){
-            processVoxel(x,y,z);
-        }
-        
-        public boolean foundInterruptible(int x, int y, int z, byte state){
-            processVoxel(x,y,z);
-            return true;
-        }
 
         /**
-           checks 6 neighbours of this model voxel 
+           checks 6 neighbours of each model voxel 
            turn voxel ON if any of neighbours is empty
+           states of the slice and its neighbour layers are read in one call 
+           voxels outside of grid are treated as OUTSIDE
         */ 
-        void processVoxel(int x,int y,int z){
-
-            //TODO add grid bounds checker             
-            if(grid.getState(x+1,y,z) == OUTSIDE) {surface.set(x,y,z,1);return;}
-            if(grid.getState(x-1,y,z) == OUTSIDE) {surface.set(x,y,z,1);return;}
-            if(grid.getState(x,y+1,z) == OUTSIDE) {surface.set(x,y,z,1);return;}
-            if(grid.getState(x,y-1,z) == OUTSIDE) {surface.set(x,y,z,1);return;}
-            if(grid.getState(x,y,z+1) == OUTSIDE) {surface.set(x,y,z,1);return;}
-            if(grid.getState(x,y,z-1) == OUTSIDE) {surface.set(x,y,z,1);return;}
-
+        void processSlice(int ymin, int ymax){
+
+            int y0 = Math.max(ymin-1, 0);
+            int y1 = Math.min(ymax+1, m_ny-1);
+            int size = (y1 - y0 + 1)*m_nx*m_nz;
+            if(states == null || states.length < size)
+                states = new byte[size];
+            grid.getStates(0, m_nx-1, y0, y1, 0, m_nz-1, states);
+
+            int sx = m_nz; // stride in x 
+            int sy = m_nx*m_nz; // stride in y 
+            for(int y = ymin; y <= ymax; y++){
+                for(int x = 0; x < m_nx; x++){
+                    int ind = (y - y0)*sy + x*sx;
+                    for(int z = 0; z < m_nz; z++, ind++){
+                        if(states[ind] == OUTSIDE)
+                            continue;
+                        if((x == m_nx-1 || states[ind+sx] == OUTSIDE) ||
+                           (x == 0      || states[ind-sx] == OUTSIDE) ||
+                           (y == m_ny-1 || states[ind+sy] == OUTSIDE) ||
+                           (y == 0      || states[ind-sy] == OUTSIDE) ||
+                           (z == m_nz-1 || states[ind+1] == OUTSIDE) ||
+                           (z == 0      || states[ind-1] == OUTSIDE)) {
+                            surface.set(x,y,z,1);
+                        }
+                    }
+                }
+            }
         }   
 
     } // SurfaceFinderRunner
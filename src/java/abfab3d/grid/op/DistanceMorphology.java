@@ -0,0 +1,480 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.ArrayAttributeGridByte;
+import abfab3d.grid.ArrayAttributeGridShort;
+import abfab3d.grid.ArrayAttributeGridInt;
+import abfab3d.grid.ArrayAttributeGridLong;
+
+import abfab3d.grid.util.ExecutionStoppedException;
+
+import abfab3d.util.ComputePool;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+import static abfab3d.util.Units.MM;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ *
+ morphology operations (dilation, erosion, opening, closing, shell) derived from signed distance to the shape surface
+
+ the signed distance of the shape is calculated once by DistanceTransformSeparable.
+ each operation is a single thresholding pass over the distance grid,
+ therefore its cost does not depend on the distance of the operation
+
+ distance grids are cached. Repeated operations on the same grid reuse its distance grid.
+ cache entry is found by grid identity and is validated by hash of the grid content.
+ Opening and closing calculate distance of the intermediate grid, which is cached as well.
+
+ input grid should contain truncated distance data near surface layer
+ outside voxels should have values 0
+ inside voxels should have values subvoxelResolution
+
+ result grid is created via input grid createEmpty() and has the same format.
+ the surface of result is isosurface with value subvoxelResolution/2 with one voxel wide transition layer
+ the grid is processed in xz-slices of constant y. Result grids of other than array types
+ may share storage between voxels of different slices, they are written by single thread.
+ */
+public class DistanceMorphology {
+
+    public static boolean DEBUG = false;
+    public static boolean DEBUG_TIMING = false;
+
+    // no limit on distance level
+    static final int NO_LIMIT = 1 << 24;
+    // count of distance grids kept in cache
+    static final int DEFAULT_CACHE_SIZE = 2;
+
+    int m_subvoxelResolution = 100;
+    // number of threads to use in MT processing
+    int m_threadCount = 0;
+    // store distances in sparse grid
+    boolean m_narrowBand = false;
+    int m_cacheSize = DEFAULT_CACHE_SIZE;
+
+    // count of distance transforms calculated
+    int m_transformCount = 0;
+
+    ArrayList<CacheEntry> m_cache = new ArrayList<CacheEntry>();
+
+    /**
+       @param subvoxelResolution sub voxel resolution of input grids
+     */
+    public DistanceMorphology(int subvoxelResolution){
+
+        m_subvoxelResolution = subvoxelResolution;
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - all available processors are used
+     */
+    public void setThreadCount(int count){
+
+        m_threadCount = count;
+
+    }
+
+    /**
+       if narrowBand is true distance grids are stored in SparseAttributeGridShort
+     */
+    public void setNarrowBand(boolean narrowBand){
+
+        m_narrowBand = narrowBand;
+
+    }
+
+    /**
+       set count of distance grids kept in cache
+       0 - disables cache
+     */
+    public void setCacheSize(int size){
+
+        m_cacheSize = size;
+        trimCache();
+
+    }
+
+    /**
+       release all cached distance grids
+     */
+    public void clearCache(){
+
+        m_cache.clear();
+
+    }
+
+    /**
+       @return count of distance transforms calculated by this instance
+     */
+    public int getTransformCount(){
+
+        return m_transformCount;
+
+    }
+
+    /**
+       @return grid with the shape offset outward by given distance
+     */
+    public AttributeGrid dilate(AttributeGrid grid, double distance){
+
+        return extract(grid, -NO_LIMIT, toSubvoxels(grid, distance));
+
+    }
+
+    /**
+       @return grid with the shape offset inward by given distance
+     */
+    public AttributeGrid erode(AttributeGrid grid, double distance){
+
+        return extract(grid, -NO_LIMIT, -toSubvoxels(grid, distance));
+
+    }
+
+    /**
+       erosion followed by dilation
+       removes features thinner than 2*distance
+     */
+    public AttributeGrid open(AttributeGrid grid, double distance){
+
+        return dilate(erode(grid, distance), distance);
+
+    }
+
+    /**
+       dilation followed by erosion
+       fills gaps and cavities narrower than 2*distance
+     */
+    public AttributeGrid close(AttributeGrid grid, double distance){
+
+        return erode(dilate(grid, distance), distance);
+
+    }
+
+    /**
+       @return shell of given thickness inside of the shape surface
+     */
+    public AttributeGrid shell(AttributeGrid grid, double thickness){
+
+        return shell(grid, thickness, 0);
+
+    }
+
+    /**
+       @return layer of points with signed distance in the interval [-inDistance, outDistance]
+       negative values shift the layer boundary in opposite direction
+     */
+    public AttributeGrid shell(AttributeGrid grid, double inDistance, double outDistance){
+
+        return extract(grid, -toSubvoxels(grid, inDistance), toSubvoxels(grid, outDistance));
+
+    }
+
+    /**
+       returns signed distance grid of the shape calculated to given distance inside and outside
+       the result is taken from cache if possible and should not be modified
+
+       inside distances are negative
+       outside distances are positive
+     */
+    public AttributeGrid getDistanceGrid(AttributeGrid grid, double inDistance, double outDistance){
+
+        long hash = getContentHash(grid);
+
+        for(int i = 0; i < m_cache.size(); i++){
+            CacheEntry entry = m_cache.get(i);
+            if(entry.grid == grid && entry.hash == hash && entry.inDistance >= inDistance && entry.outDistance >= outDistance){
+                if(DEBUG)printf("DistanceMorphology cache hit: %s\n", grid);
+                m_cache.remove(i);
+                m_cache.add(0, entry);
+                return entry.distanceGrid;
+            }
+        }
+
+        for(int i = 0; i < m_cache.size(); i++){
+            CacheEntry entry = m_cache.get(i);
+            if(entry.grid == grid){
+                if(entry.hash == hash){
+                    // grow the range to not recalculate on small increments
+                    inDistance = max(inDistance, entry.inDistance);
+                    outDistance = max(outDistance, entry.outDistance);
+                }
+                m_cache.remove(i);
+                break;
+            }
+        }
+
+        long t0 = time();
+        DistanceTransformSeparable dts = new DistanceTransformSeparable(m_subvoxelResolution, inDistance, outDistance);
+        dts.setThreadCount(m_threadCount);
+        dts.setNarrowBand(m_narrowBand);
+        AttributeGrid distanceGrid = dts.execute(grid);
+        m_transformCount++;
+        if(DEBUG_TIMING)printf("DistanceMorphology distance in: %7.3f mm out: %7.3f mm time: %d ms\n", inDistance/MM, outDistance/MM, (time() - t0));
+
+        if(m_cacheSize > 0){
+            m_cache.add(0, new CacheEntry(grid, hash, inDistance, outDistance, distanceGrid));
+            trimCache();
+        }
+        return distanceGrid;
+    }
+
+    /**
+       extracts density of points with signed distance in the interval [lower, upper]
+       lower and upper are in subvoxels
+     */
+    protected AttributeGrid extract(AttributeGrid grid, int lower, int upper){
+
+        long t0 = time();
+        double vs = grid.getVoxelSize();
+        int svr = m_subvoxelResolution;
+        // the density ramp spans one voxel around each boundary
+        int inReach = 0, outReach = 0;
+        if(lower != -NO_LIMIT){
+            inReach = max(inReach, -lower);
+            outReach = max(outReach, lower);
+        }
+        inReach = max(inReach, -upper);
+        outReach = max(outReach, upper);
+        // cost of transform does not depend on the range, symmetric range makes the cache useful for both directions
+        double distance = (max(inReach, outReach) + svr)*vs/svr;
+        AttributeGrid distanceGrid = getDistanceGrid(grid, distance, distance);
+
+        AttributeGrid dest = (AttributeGrid)grid.createEmpty(grid.getWidth(), grid.getHeight(), grid.getDepth(), vs, grid.getSliceHeight());
+        double bounds[] = new double[6];
+        grid.getGridBounds(bounds);
+        dest.setGridBounds(bounds);
+
+        Runner runners[] = makeRunners(grid.getHeight(), isArrayGrid(dest)? m_threadCount: 1);
+        for(int i = 0; i < runners.length; i++){
+            runners[i].setExtract(distanceGrid, dest, lower, upper);
+        }
+        ComputePool.execute(runners);
+
+        if(DEBUG_TIMING)printf("DistanceMorphology extract: %d ms\n", (time() - t0));
+        return dest;
+
+    }
+
+    /**
+       @return hash of grid attributes
+     */
+    protected long getContentHash(AttributeGrid grid){
+
+        int ny = grid.getHeight();
+        long sliceHash[] = new long[ny];
+
+        Runner runners[] = makeRunners(ny, m_threadCount);
+        for(int i = 0; i < runners.length; i++){
+            runners[i].setHash(grid, sliceHash);
+        }
+        ComputePool.execute(runners);
+
+        long hash = grid.getWidth()*31 + ny*17 + grid.getDepth();
+        for(int y = 0; y < ny; y++){
+            hash = mix(hash*31 + sliceHash[y]);
+        }
+        return hash;
+
+    }
+
+    int toSubvoxels(AttributeGrid grid, double distance){
+
+        double d = distance*m_subvoxelResolution/grid.getVoxelSize();
+        if(Math.abs(d) + 2*m_subvoxelResolution >= Short.MAX_VALUE)
+            throw new IllegalArgumentException(fmt("distance %7.3f mm is too large for voxel size %7.3f mm and subvoxel resolution %d",
+                                                   distance/MM, grid.getVoxelSize()/MM, m_subvoxelResolution));
+        return (int)Math.round(d);
+
+    }
+
+    Runner[] makeRunners(int sliceCount, int threadCount){
+
+        threadCount = min(sliceCount, ComputePool.getThreadCount(threadCount));
+        AtomicInteger nextSlice = new AtomicInteger(0);
+        Runner runners[] = new Runner[max(1, threadCount)];
+        for(int i = 0; i < runners.length; i++){
+            runners[i] = new Runner(nextSlice, sliceCount);
+        }
+        return runners;
+
+    }
+
+    /**
+       @return true if voxels of different slices of the grid can be written concurrently
+     */
+    static boolean isArrayGrid(AttributeGrid grid){
+
+        return (grid instanceof ArrayAttributeGridByte || grid instanceof ArrayAttributeGridShort ||
+                grid instanceof ArrayAttributeGridInt || grid instanceof ArrayAttributeGridLong);
+
+    }
+
+    void trimCache(){
+
+        while(m_cache.size() > m_cacheSize)
+            m_cache.remove(m_cache.size()-1);
+
+    }
+
+    static long mix(long h){
+
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+
+    }
+
+    static class CacheEntry {
+
+        AttributeGrid grid;
+        long hash;
+        double inDistance;
+        double outDistance;
+        AttributeGrid distanceGrid;
+
+        CacheEntry(AttributeGrid grid, long hash, double inDistance, double outDistance, AttributeGrid distanceGrid){
+
+            this.grid = grid;
+            this.hash = hash;
+            this.inDistance = inDistance;
+            this.outDistance = outDistance;
+            this.distanceGrid = distanceGrid;
+
+        }
+    }
+
+    /**
+       processes xz-slices of the grid
+     */
+    class Runner implements Runnable {
+
+        static final int HASH = 0, EXTRACT = 1;
+
+        int phase;
+        AtomicInteger nextSlice;
+        int sliceCount;
+
+        AttributeGrid grid;
+        AttributeGrid dest;
+        long sliceHash[];
+        int lower, upper;
+        // attributes of xz-slice
+        long slice[];
+
+        Runner(AtomicInteger nextSlice, int sliceCount){
+
+            this.nextSlice = nextSlice;
+            this.sliceCount = sliceCount;
+
+        }
+
+        void setHash(AttributeGrid grid, long sliceHash[]){
+
+            this.phase = HASH;
+            this.grid = grid;
+            this.sliceHash = sliceHash;
+
+        }
+
+        void setExtract(AttributeGrid distanceGrid, AttributeGrid dest, int lower, int upper){
+
+            this.phase = EXTRACT;
+            this.grid = distanceGrid;
+            this.dest = dest;
+            this.lower = lower;
+            this.upper = upper;
+
+        }
+
+        public void run(){
+
+            while(true){
+                int y = nextSlice.getAndIncrement();
+                if(y >= sliceCount)
+                    break;
+                switch(phase){
+                case HASH: hashSlice(y); break;
+                case EXTRACT: extractSlice(y); break;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
+                }
+            }
+        }
+
+        /**
+           reads attributes of xz-slice into slice[] in x-major order
+         */
+        void readSlice(int y){
+
+            int nx = grid.getWidth();
+            int nz = grid.getDepth();
+            if(slice == null || slice.length < nx*nz)
+                slice = new long[nx*nz];
+            grid.getAttributes(0, nx-1, y, y, 0, nz-1, slice);
+
+        }
+
+        void hashSlice(int y){
+
+            readSlice(y);
+            int nx = grid.getWidth();
+            int nz = grid.getDepth();
+            long h = y;
+            for(int x = 0, i = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++, i++){
+                    h = h*31 + slice[i];
+                }
+                h = mix(h);
+            }
+            sliceHash[y] = h;
+
+        }
+
+        void extractSlice(int y){
+
+            readSlice(y);
+            int nx = grid.getWidth();
+            int nz = grid.getDepth();
+            int svr = m_subvoxelResolution;
+            int half = svr/2;
+
+            for(int x = 0, i = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++, i++){
+                    int d = (short)slice[i];
+                    int v = min(half + (upper - d), half + (d - lower));
+                    if(v <= 0)
+                        continue;
+                    if(v > svr)
+                        v = svr;
+                    dest.setAttribute(x,y,z,v);
+                }
+            }
+        }
+    } // class Runner
+
+} // DistanceMorphology
@@ -12,18 +12,12 @@
 
 package abfab3d.grid.op;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.vecmath.Tuple3d; 
 import javax.vecmath.Point3d; 
 
-import java.util.concurrent.ExecutorService; 
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
 
 import abfab3d.grid.Grid;
 import abfab3d.grid.AttributeGrid;
@@ -42,6 +36,7 @@ import abfab3d.grid.util.ExecutionStoppedException;
 
 import abfab3d.util.PointSet;
 import abfab3d.util.PointSetArray;
+import abfab3d.util.ComputePool;
 
 import abfab3d.transforms.Identity;
 
@@ -565,20 +560,14 @@ public class DistanceToPointSet implements Operation, AttributeOperation {
         }
 
         // process each slice separately by pool of threads 
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
         AtomicInteger sliceCounter = new AtomicInteger(0);
         for(int i = 0; i < m_threadCount; i++){
 
             SliceProcessorFirst sliceProcessor = new SliceProcessorFirst(neig, closestPoints, freshLayer, sliceCounter, sliceManager, pnts, inds);            
-            executor.submit(sliceProcessor);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = sliceProcessor;
         }
+        ComputePool.execute(runners);
 
         int count = sliceCounter.intValue();
 
@@ -656,21 +645,15 @@ public class DistanceToPointSet implements Operation, AttributeOperation {
 
         DistanceToPointSet.SliceManager sliceManager = new DistanceToPointSet.SliceManager(m_ny, m_sliceHeight);
         
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
         AtomicInteger sliceCounter = new AtomicInteger(0);
 
         for(int i = 0; i < m_threadCount; i++){
 
             SliceProcessorNext sliceProcessor = new SliceProcessorNext(iteration, neig, closestPoints, oldLayer, freshLayer, sliceCounter, sliceManager);            
-            executor.submit(sliceProcessor);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = sliceProcessor;
         }
+        ComputePool.execute(runners);
         int count = sliceCounter.intValue();
         
         return count;
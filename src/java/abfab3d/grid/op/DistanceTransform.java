@@ -12,11 +12,17 @@
 
 package abfab3d.grid.op;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import abfab3d.grid.AttributeGrid;
 import abfab3d.grid.ArrayAttributeGridShort;
+import abfab3d.grid.SparseAttributeGridShort;
 
+import abfab3d.util.ComputePool;
 import abfab3d.util.MathUtil;
 
+import static abfab3d.grid.SparseAttributeGridShort.LEAF_SIZE;
+
 
 /**
    base class of various distance transforms algorithms
@@ -65,4 +71,86 @@ public class DistanceTransform {
         return distGrid;
     }   
 
+    /**
+       create sparse distance grid to store narrow band distance 
+
+       grid background has outValue 
+       leaves of the grid completely inside of the shape are constant tiles with inValue
+       inside voxels of leaves crossed by the surface are set to inValue individually 
+       
+       memory is used only by leaves crossed by the surface and by voxels later set to distance values
+
+       @param densityGrid grid with density data 
+       @param surfaceValue voxels with density >= surfaceValue are inside 
+     */
+    protected AttributeGrid createNarrowBandGrid(final AttributeGrid densityGrid, final int surfaceValue, 
+                                                 final long inValue, long outValue, int threadCount){
+
+        final int nx = densityGrid.getWidth();
+        final int ny = densityGrid.getHeight();
+        final int nz = densityGrid.getDepth();
+        double bounds[] = new double[6];                
+        densityGrid.getGridBounds(bounds);
+        double vs = densityGrid.getVoxelSize();
+
+        final SparseAttributeGridShort distGrid = new SparseAttributeGridShort(nx, ny, nz, vs, vs);
+        distGrid.setGridBounds(bounds);
+        distGrid.setBackgroundAttribute(outValue);
+
+        final int leafRows = (ny + LEAF_SIZE - 1)/LEAF_SIZE;
+        final AtomicInteger nextRow = new AtomicInteger(0);
+        
+        Runnable runners[] = new Runnable[ComputePool.getThreadCount(threadCount)];
+        for(int i = 0; i < runners.length; i++){
+            runners[i] = new Runnable(){
+                    public void run(){
+                        int row;
+                        while((row = nextRow.getAndIncrement()) < leafRows){
+                            int y0 = row*LEAF_SIZE, y1 = Math.min(y0 + LEAF_SIZE, ny);
+                            for(int x0 = 0; x0 < nx; x0 += LEAF_SIZE){
+                                int x1 = Math.min(x0 + LEAF_SIZE, nx);
+                                for(int z0 = 0; z0 < nz; z0 += LEAF_SIZE){
+                                    int z1 = Math.min(z0 + LEAF_SIZE, nz);
+                                    initLeaf(densityGrid, distGrid, surfaceValue, inValue, x0, x1, y0, y1, z0, z1);
+                                }
+                            }
+                        }
+                    }
+                };
+        }
+        ComputePool.execute(runners);
+        return distGrid;
+    }
+
+    /**
+       initializes inside voxels of single leaf of narrow band grid 
+     */
+    static void initLeaf(AttributeGrid densityGrid, SparseAttributeGridShort distGrid, int surfaceValue, long inValue, 
+                         int x0, int x1, int y0, int y1, int z0, int z1){
+
+        int insideCount = 0;
+        for(int y = y0; y < y1; y++){
+            for(int x = x0; x < x1; x++){
+                for(int z = z0; z < z1; z++){
+                    if(densityGrid.getAttribute(x,y,z) >= surfaceValue)
+                        insideCount++;
+                }
+            }
+        }
+        if(insideCount == 0)
+            return;
+        if(insideCount == (x1-x0)*(y1-y0)*(z1-z0)){
+            distGrid.setLeafAttribute(x0, y0, z0, inValue);
+            return;
+        }
+        for(int y = y0; y < y1; y++){
+            for(int x = x0; x < x1; x++){
+                for(int z = z0; z < z1; z++){
+                    if(densityGrid.getAttribute(x,y,z) >= surfaceValue)
+                        distGrid.setAttribute(x,y,z,inValue);
+                }
+            }
+        }
+    }
+
 }
\ No newline at end of file
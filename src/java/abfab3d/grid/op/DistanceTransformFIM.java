@@ -0,0 +1,422 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abfab3d.grid.Grid;
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.Operation;
+import abfab3d.grid.AttributeOperation;
+
+import abfab3d.grid.util.ExecutionStoppedException;
+
+import abfab3d.util.ComputePool;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+
+import static java.lang.Math.round;
+
+/**
+
+ calculates Distance Transform on the given AttributeGrid to a specified distance inside of the shape
+
+ MT version of DistanceTransformFM
+
+ it has the same input and output as DistanceTransformFM and solves the same upwind equations,
+ but uses block Fast Iterative Method instead of Fast Marching
+
+ grid is split into blocks of BLOCK_SIZE^3 voxels. Active blocks are processed in parallel.
+ Each block is swept until its values stop changing.
+ Blocks which have changed voxels on the face activate neighbor blocks for the next iteration.
+ Iterations stop when there are no active blocks.
+ Values only decrease during iterations, therefore reading of voxels of neighbor block which is
+ processed by another thread needs no locking, the change will be seen in the next iteration.
+
+ both methods converge to the same solution of the discrete equations.
+ Values are rounded to int after each update in both methods, and because of different order of updates
+ the results may differ from DistanceTransformFM by 1 unit of distance (1% of voxel size for maxAttribute 100).
+
+ the transform uses array of shorts of grid size, therefore grid can not have more than 2^31 voxels
+ */
+public class DistanceTransformFIM extends DistanceTransform implements Operation, AttributeOperation {
+
+    public static boolean DEBUG = false;
+    public static boolean DEBUG_TIMING = false;
+
+    static final int BLOCK_BITS = 3;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    // maximal count of sweeps of block in one iteration
+    static final int MAX_SWEEPS = 2*BLOCK_SIZE;
+
+    // distance of voxels which are not reached
+    static final short INF = Short.MAX_VALUE;
+    // value of outside voxels which are not on the surface
+    static final short OUTSIDE_VALUE = Short.MIN_VALUE;
+
+    static final int FACE_XMIN = 1, FACE_XMAX = 2, FACE_YMIN = 4, FACE_YMAX = 8, FACE_ZMIN = 16, FACE_ZMAX = 32;
+
+    int m_maxAttribute = 255;
+    double m_inDistance = 0;
+    double m_outDistance = 0;
+
+    int m_maxInDistance = 0;
+    int m_defaultValue = Short.MAX_VALUE;
+    int m_threadCount = 0;
+
+    int nx, ny, nz;
+    int bnx, bny, bnz;
+    int m_surfaceValue;
+
+    // current distances
+    short m_dist[];
+    // blocks to process in current iteration
+    int m_activeBlocks[];
+    int m_activeCount;
+    // marks of blocks to process in the next iteration
+    byte m_nextActive[];
+    AtomicInteger m_nextIndex;
+
+    AttributeGrid m_grid;
+    AttributeGrid m_distGrid;
+
+    /**
+       @param maxAttribute maximal attribute value for inside voxels
+       @param inDistance maximal distance to calculate inside of the shape. Measured in meters.
+       @param outDistance maximal distance to calculate outside of the shape. Measured in meters. Is not used.
+    */
+    public DistanceTransformFIM(int maxAttribute, double inDistance, double outDistance) {
+
+        m_maxAttribute = maxAttribute;
+        m_inDistance = inDistance;
+        m_outDistance = outDistance;
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - all available processors are used
+     */
+    public void setThreadCount(int count) {
+
+        m_threadCount = count;
+
+    }
+
+    /**
+     * Execute an operation on a grid.  If the operation changes the grid
+     * dimensions then a new one will be returned from the call.
+     *
+     * @param grid The grid to use for grid A.
+     * @return new grid with distance transform data
+     */
+    public Grid execute(Grid grid) {
+        throw new IllegalArgumentException(fmt("DistanceTransformFIM.execute(%d) not implemented!\n", grid));
+    }
+
+    public AttributeGrid execute(AttributeGrid grid) {
+
+        if(DEBUG)printf("DistanceTransformFIM.execute(%s)\n", grid);
+
+        nx = grid.getWidth();
+        ny = grid.getHeight();
+        nz = grid.getDepth();
+        if((long)nx*ny*nz > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(fmt("grid is too large for DistanceTransformFIM: [%d x %d x %d]", nx, ny, nz));
+
+        bnx = (nx + BLOCK_SIZE - 1) >> BLOCK_BITS;
+        bny = (ny + BLOCK_SIZE - 1) >> BLOCK_BITS;
+        bnz = (nz + BLOCK_SIZE - 1) >> BLOCK_BITS;
+
+        m_surfaceValue = m_maxAttribute/2;
+        m_maxInDistance = (int)round(m_inDistance*m_maxAttribute/grid.getVoxelSize());
+
+        long t0 = time();
+        m_grid = grid;
+        m_distGrid = createDistanceGrid(grid);
+        m_dist = new short[nx*ny*nz];
+        m_nextActive = new byte[bnx*bny*bnz];
+        m_activeBlocks = new int[bnx*bny*bnz];
+
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+        Runner runners[] = new Runner[threadCount];
+        for(int i = 0; i < threadCount; i++){
+            runners[i] = new Runner();
+        }
+
+        try {
+            runPhase(runners, Runner.INIT, nz);
+            if(DEBUG_TIMING)printf("  DistanceTransformFIM initialization: %d ms\n", time() - t0);
+
+            int iterations = 0;
+            long updates = 0;
+            while(collectActiveBlocks()){
+                updates += m_activeCount;
+                runPhase(runners, Runner.ITERATION, m_activeCount);
+                iterations++;
+            }
+            if(DEBUG_TIMING)printf("  DistanceTransformFIM iterations: %d block updates: %d time: %d ms\n", iterations, updates, time() - t0);
+
+            runPhase(runners, Runner.OUTPUT, nz);
+            if(DEBUG_TIMING)printf("  DistanceTransformFIM done: %d ms\n", time() - t0);
+        } finally {
+            m_dist = null;
+            m_nextActive = null;
+            m_activeBlocks = null;
+            m_grid = null;
+        }
+
+        AttributeGrid distGrid = m_distGrid;
+        m_distGrid = null;
+        return distGrid;
+    }
+
+    /**
+     * Get the default value for distances inside the object.  The value will remain this for voxels past the maximal
+     * inside distance
+     */
+    public long getInsideDefault() {
+        return m_defaultValue;
+    }
+
+    /**
+     * Get the default value for distances outside the object.
+     */
+    public long getOutsideDefault() {
+        return -m_defaultValue;
+    }
+
+    void runPhase(Runner runners[], int phase, int count){
+
+        m_nextIndex = new AtomicInteger(0);
+        for(int i = 0; i < runners.length; i++){
+            runners[i].phase = phase;
+            runners[i].count = count;
+        }
+        ComputePool.execute(runners);
+
+    }
+
+    /**
+       moves marked blocks into list of active blocks
+       @return true if there are active blocks
+     */
+    boolean collectActiveBlocks(){
+
+        int count = 0;
+        byte marks[] = m_nextActive;
+        for(int b = 0; b < marks.length; b++){
+            if(marks[b] != 0){
+                marks[b] = 0;
+                m_activeBlocks[count++] = b;
+            }
+        }
+        m_activeCount = count;
+        return (count > 0);
+    }
+
+    final void markBlock(int bx, int by, int bz){
+
+        if(bx >= 0 && by >= 0 && bz >= 0 && bx < bnx && by < bny && bz < bnz)
+            m_nextActive[bx + bnx*(by + bny*bz)] = 1;
+
+    }
+
+    /**
+       runner for each thread
+     */
+    class Runner implements Runnable {
+
+        static final int INIT = 0, ITERATION = 1, OUTPUT = 2;
+
+        int phase;
+        int count;
+        int work[] = new int[3];
+
+        public void run(){
+
+            while(true){
+                int index = m_nextIndex.getAndIncrement();
+                if(index >= count)
+                    break;
+                switch(phase){
+                case INIT: initSlice(index); break;
+                case ITERATION: processBlock(m_activeBlocks[index]); break;
+                case OUTPUT: writeSlice(index); break;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
+                }
+            }
+        }
+
+        /**
+           initialize distances of z-slice the same way as DistanceTransformFM.scanSurface()
+           inside voxels on surface keep their values and activate blocks of their neighbors
+         */
+        void initSlice(int z){
+
+            AttributeGrid grid = m_grid;
+            short dist[] = m_dist;
+            int vs = m_surfaceValue;
+            int nx1 = nx-1, ny1 = ny-1, nz1 = nz-1;
+            boolean inner = (z > 0 && z < nz1);
+
+            for(int y = 0; y < ny; y++){
+                for(int x = 0; x < nx; x++){
+
+                    int v0 = (int)grid.getAttribute(x,y,z);
+                    boolean surface = false;
+                    if(inner && x > 0 && y > 0 && x < nx1 && y < ny1){
+                        if(v0 < vs){
+                            surface = ((grid.getAttribute(x+1,y,z) >= vs)||
+                                       (grid.getAttribute(x-1,y,z) >= vs)||
+                                       (grid.getAttribute(x,y+1,z) >= vs)||
+                                       (grid.getAttribute(x,y-1,z) >= vs)||
+                                       (grid.getAttribute(x,y,z+1) >= vs)||
+                                       (grid.getAttribute(x,y,z-1) >= vs));
+                        } else {
+                            surface = ((grid.getAttribute(x+1,y,z) < vs)||
+                                       (grid.getAttribute(x-1,y,z) < vs)||
+                                       (grid.getAttribute(x,y+1,z) < vs)||
+                                       (grid.getAttribute(x,y-1,z) < vs)||
+                                       (grid.getAttribute(x,y,z+1) < vs)||
+                                       (grid.getAttribute(x,y,z-1) < vs));
+                        }
+                    }
+                    short value;
+                    if(surface){
+                        value = (short)(v0 - vs);
+                        if(v0 >= vs){
+                            // neighbors may be in other blocks
+                            markBlock((x-1) >> BLOCK_BITS, y >> BLOCK_BITS, z >> BLOCK_BITS);
+                            markBlock((x+1) >> BLOCK_BITS, y >> BLOCK_BITS, z >> BLOCK_BITS);
+                            markBlock(x >> BLOCK_BITS, (y-1) >> BLOCK_BITS, z >> BLOCK_BITS);
+                            markBlock(x >> BLOCK_BITS, (y+1) >> BLOCK_BITS, z >> BLOCK_BITS);
+                            markBlock(x >> BLOCK_BITS, y >> BLOCK_BITS, (z-1) >> BLOCK_BITS);
+                            markBlock(x >> BLOCK_BITS, y >> BLOCK_BITS, (z+1) >> BLOCK_BITS);
+                        }
+                    } else {
+                        value = (v0 >= vs)? INF: OUTSIDE_VALUE;
+                    }
+                    dist[x + nx*(y + ny*z)] = value;
+                }
+            }
+        }
+
+        /**
+           writes distances of z-slice into distance grid
+         */
+        void writeSlice(int z){
+
+            AttributeGrid distGrid = m_distGrid;
+            short dist[] = m_dist;
+            long outValue = -m_defaultValue;
+            for(int y = 0; y < ny; y++){
+                for(int x = 0; x < nx; x++){
+                    short d = dist[x + nx*(y + ny*z)];
+                    distGrid.setAttribute(x,y,z,(d == OUTSIDE_VALUE)? outValue: d);
+                }
+            }
+        }
+
+        /**
+           sweeps block until it converges and activates neighbors which may be affected
+         */
+        void processBlock(int block){
+
+            int bx = block % bnx;
+            int by = (block / bnx) % bny;
+            int bz = block / (bnx*bny);
+            int x0 = bx << BLOCK_BITS, x1 = Math.min(x0 + BLOCK_SIZE, nx) - 1;
+            int y0 = by << BLOCK_BITS, y1 = Math.min(y0 + BLOCK_SIZE, ny) - 1;
+            int z0 = bz << BLOCK_BITS, z1 = Math.min(z0 + BLOCK_SIZE, nz) - 1;
+
+            int faces = 0;
+            boolean changed = true;
+            for(int sweep = 0; sweep < MAX_SWEEPS && changed; sweep++){
+
+                changed = false;
+                // alternate sweep direction
+                int start = ((sweep & 1) == 0)? 0: BLOCK_SIZE-1;
+                int step = ((sweep & 1) == 0)? 1: -1;
+                for(int k = 0, z = z0 + start; k < BLOCK_SIZE; k++, z += step){
+                    if(z < z0 || z > z1) continue;
+                    for(int j = 0, y = y0 + start; j < BLOCK_SIZE; j++, y += step){
+                        if(y < y0 || y > y1) continue;
+                        for(int i = 0, x = x0 + start; i < BLOCK_SIZE; i++, x += step){
+                            if(x < x0 || x > x1) continue;
+                            if(updateVoxel(x,y,z)){
+                                changed = true;
+                                if(x == x0) faces |= FACE_XMIN;
+                                if(x == x1) faces |= FACE_XMAX;
+                                if(y == y0) faces |= FACE_YMIN;
+                                if(y == y1) faces |= FACE_YMAX;
+                                if(z == z0) faces |= FACE_ZMIN;
+                                if(z == z1) faces |= FACE_ZMAX;
+                            }
+                        }
+                    }
+                }
+            }
+            if(changed)
+                markBlock(bx, by, bz);
+            if((faces & FACE_XMIN) != 0) markBlock(bx-1, by, bz);
+            if((faces & FACE_XMAX) != 0) markBlock(bx+1, by, bz);
+            if((faces & FACE_YMIN) != 0) markBlock(bx, by-1, bz);
+            if((faces & FACE_YMAX) != 0) markBlock(bx, by+1, bz);
+            if((faces & FACE_ZMIN) != 0) markBlock(bx, by, bz-1);
+            if((faces & FACE_ZMAX) != 0) markBlock(bx, by, bz+1);
+        }
+
+        /**
+           calculates upwind solution for inside voxel
+           @return true if voxel value was decreased
+         */
+        final boolean updateVoxel(int x, int y, int z){
+
+            short dist[] = m_dist;
+            int ind = x + nx*(y + ny*z);
+            int d = dist[ind];
+            if(d < 0)
+                return false; // outside
+
+            int sx = 1, sy = nx, sz = nx*ny;
+            int a0 = Math.min((x > 0)? get(dist, ind - sx): INF, (x < nx-1)? get(dist, ind + sx): INF);
+            int a1 = Math.min((y > 0)? get(dist, ind - sy): INF, (y < ny-1)? get(dist, ind + sy): INF);
+            int a2 = Math.min((z > 0)? get(dist, ind - sz): INF, (z < nz-1)? get(dist, ind + sz): INF);
+            if(a0 >= d && a1 >= d && a2 >= d)
+                return false;
+
+            work[0] = a0;
+            work[1] = a1;
+            work[2] = a2;
+            int v = DistanceTransformFM.getUpwindSolutionInt(work, m_maxAttribute);
+            if(v >= d || v > m_maxInDistance)
+                return false;
+            dist[ind] = (short)v;
+            return true;
+        }
+
+        /**
+           value of neighbor, outside voxels are not used
+         */
+        final int get(short dist[], int ind){
+            int d = dist[ind];
+            return (d < 0)? INF: d;
+        }
+
+    } // class Runner
+}
@@ -234,12 +234,18 @@ public class DistanceTransformFM  extends DistanceTransform implements Operation
 
         while( m_candPool.getNext(cand) ){
             if(cand.value > maxValue) {
+                // return candidate for next iteration 
+                m_candPool.add(cand.x, cand.y, cand.z, cand.value);
                 break;
             }
             int x = cand.x;
             int y = cand.y;
             int z = cand.z;
             int value = cand.value;
+            if(m_fixedGrid.get(x,y,z) != 0){
+                // stale copy of candidate which was fixed with smaller value 
+                continue;
+            }
 
             m_fixedGrid.set(x,y,z,1);
             m_candGrid.set(x,y,z,0);
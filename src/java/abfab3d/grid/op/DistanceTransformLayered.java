@@ -12,9 +12,6 @@
 
 package abfab3d.grid.op;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
 
 import javax.vecmath.Point3d;
 
@@ -25,6 +22,7 @@ import abfab3d.grid.util.ExecutionStoppedException;
 import abfab3d.util.AbFab3DGlobals;
 import abfab3d.util.PointSet;
 import abfab3d.util.PointSetArray;
+import abfab3d.util.ComputePool;
 
 
 import static abfab3d.util.Output.printf;
@@ -87,6 +85,8 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
     double m_voxelSize;
     // number of threads to use in MT processing 
     int m_threadCount = 1;
+    // store distances in sparse grid 
+    boolean m_narrowBand = false;
 
     /**
      @param subvoxelResolution sub voxel resolution 
@@ -115,6 +115,15 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
         m_threadCount = count;
     }
 
+    /**
+       if narrowBand is true the distance is stored in SparseAttributeGridShort 
+       memory is used only for voxels within in/out distance from surface 
+       inside voxels far from the surface are stored as constant tiles 
+     */
+    public void setNarrowBand(boolean narrowBand) {
+        m_narrowBand = narrowBand;
+    }
+
     /**
      * Execute an operation on a grid.  If the operation changes the grid
      * dimensions then a new one will be returned from the call.
@@ -149,7 +158,11 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
         m_ymin = bounds[2] + vs/2;
         m_zmin = bounds[4] + vs/2;
         if(DEBUG_TIMING)t0 = time();
-        AttributeGrid distanceGrid = createDistanceGrid(grid);
+        AttributeGrid distanceGrid;
+        if(m_narrowBand) 
+            distanceGrid = createNarrowBandGrid(grid, m_surfaceValue, m_defaultInValue, m_defaultOutValue, m_threadCount);
+        else 
+            distanceGrid = createDistanceGrid(grid);
 
         PointSet pnts = getSurfacePoints(grid, distanceGrid);
 
@@ -259,7 +272,7 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
 
         PointSet pnts[] = new PointSet[m_threadCount];
         
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
 
         // rough estimation of points count 
         int pointsPerThread = 2*(nx*ny + ny*nz + nz*nx)/m_threadCount;
@@ -271,15 +284,9 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
             pnts[i] = new PointSetArray(pointsPerThread);
 
             SliceProcessor sliceProcessor = new SliceProcessor(grid, distanceGrid, slicer, pnts[i]);            
-            executor.submit(sliceProcessor);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = sliceProcessor;
         }
+        ComputePool.execute(runners);
 
         // combine all points into one place 
         int count = 0;
@@ -317,6 +324,8 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
         int sv = m_surfaceValue;
         long distOut = m_defaultOutValue;
         long distIn = m_defaultInValue;
+        // narrow band grid is initialized already 
+        boolean initDistance = !m_narrowBand;
         
         for(int iy = ymin; iy < ymax; iy++){
 
@@ -330,8 +339,10 @@ public class DistanceTransformLayered extends DistanceTransform implements Opera
 
                     int v0 = (int)grid.getAttribute(ix,iy,iz)-sv;
 
-                    if(v0 >= 0) distanceGrid.setAttribute(ix,iy,iz,distIn);
-                    else        distanceGrid.setAttribute(ix,iy,iz,distOut);
+                    if(initDistance){
+                        if(v0 >= 0) distanceGrid.setAttribute(ix,iy,iz,distIn);
+                        else        distanceGrid.setAttribute(ix,iy,iz,distOut);
+                    }
                     if(ix < nx1){
                         int vx = (int)grid.getAttribute(ix+1,iy,iz)-sv;
                         if(v0 * vx <= 0 && v0 != vx)
@@ -0,0 +1,485 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abfab3d.grid.Grid;
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.Operation;
+import abfab3d.grid.AttributeOperation;
+
+import abfab3d.grid.util.ExecutionStoppedException;
+
+import abfab3d.util.ComputePool;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+import static abfab3d.util.Units.MM;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+/**
+ *
+ calculates exact Euclidean Distance Transform on the given AttributeGrid to a specified distance inside and outside of shape
+
+ voxel values are stored in grid's attribute
+ the input grid is supposed to contain truncated distance data near surface layer
+ outside voxels should have values 0
+ inside voxels should have values subvoxelResolution
+
+ the surface of the shape is isosurface with value ((double)subvoxelResolution/2.)
+
+ output distances are normalized to subvoxelResolution
+ this means that a voxel on distance K voxels from the surface will have distance value K*subvoxelResolution
+
+ inside distances are negative
+ outside distances are positive
+ inside voxels not reached by maxInDistance are initialized to DEFAULT_IN_VALUE
+ outside voxels not reached by maxOutDistance are initialized to DEFAULT_OUT_VALUE
+
+ the distance is calculated to the same set of surface points as in DistanceTransformLayered:
+ intersections of isosurface with edges between centers of neighbouring voxels
+
+ algorithm is separable squared distance transform (Saito, Felzenszwalb) which works in linear time.
+ each pass along one axis calculates lower envelope of parabolas for every grid line independently.
+ surface points on x-edges and y-edges are processed by passes x,y,z,
+ surface points on z-edges by passes z,x,y. First pass of each group uses exact sub voxel position of the surface points.
+ The two results are combined by taking minimum.
+
+ lines of each pass are distributed between threads
+
+ the transform uses two float arrays of grid size, therefore grid can not have more than 2^31 voxels
+ */
+public class DistanceTransformSeparable extends DistanceTransform implements Operation, AttributeOperation {
+
+    public static boolean DEBUG = false;
+    public static boolean DEBUG_TIMING = false;
+
+    static final float INF = Float.MAX_VALUE;
+
+    int m_subvoxelResolution = 100; // distance normalization
+    double m_inDistance = 0;
+    double m_outDistance = 0;
+
+    int m_defaultInValue = -Short.MAX_VALUE;
+    int m_defaultOutValue = Short.MAX_VALUE;
+
+    // number of threads to use in MT processing
+    int m_threadCount = 0;
+    // store distances in sparse grid
+    boolean m_narrowBand = false;
+
+    int nx, ny, nz;
+    int m_surfaceValue;
+    int m_maxInDistSubvoxels;
+    int m_maxOutDistSubvoxels;
+
+    // squared distances to points on x and y edges
+    float m_distXY[];
+    // squared distances to points on z edges
+    float m_distZ[];
+
+    AttributeGrid m_grid;
+    AttributeGrid m_distanceGrid;
+
+    // index of next line to process
+    AtomicInteger m_nextLine;
+
+    /**
+     @param subvoxelResolution sub voxel resolution
+     @param inDistance maximal distance to calculate transform inside of the shape. Measured in meters
+     @param outDistance maximal distance to calculate transform outside of the shape. Measured in meters
+    */
+    public DistanceTransformSeparable(int subvoxelResolution, double inDistance, double outDistance) {
+
+        m_subvoxelResolution = subvoxelResolution;
+        m_inDistance = inDistance;
+        m_outDistance = outDistance;
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - all available processors are used
+     */
+    public void setThreadCount(int count) {
+
+        m_threadCount = count;
+
+    }
+
+    /**
+       if narrowBand is true the distance is stored in SparseAttributeGridShort
+       memory is used only for voxels within in/out distance from surface
+     */
+    public void setNarrowBand(boolean narrowBand) {
+
+        m_narrowBand = narrowBand;
+
+    }
+
+    /**
+     * Execute an operation on a grid.  If the operation changes the grid
+     * dimensions then a new one will be returned from the call.
+     *
+     * @param grid The grid to use for grid A.
+     * @return new grid with distance transform data
+     */
+    public Grid execute(Grid grid) {
+        throw new IllegalArgumentException(fmt("DistanceTransformSeparable.execute(%d) not implemented!\n", grid));
+    }
+
+    public AttributeGrid execute(AttributeGrid grid) {
+
+        if(DEBUG)printf("DistanceTransformSeparable.execute(%s)\n", grid);
+        if(DEBUG)printf("  m_inDistance: %7.3f mm  m_outDistance: %7.3f mm \n", m_inDistance/MM, m_outDistance/MM);
+
+        nx = grid.getWidth();
+        ny = grid.getHeight();
+        nz = grid.getDepth();
+
+        if((long)nx*ny*nz > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(fmt("grid is too large for DistanceTransformSeparable: [%d x %d x %d]", nx, ny, nz));
+
+        double vs = grid.getVoxelSize();
+        m_surfaceValue = m_subvoxelResolution/2;
+        m_maxOutDistSubvoxels = (int)Math.ceil(m_outDistance*m_subvoxelResolution/vs);
+        m_maxInDistSubvoxels = (int)Math.ceil(m_inDistance*m_subvoxelResolution/vs);
+
+        long t0 = time();
+
+        m_grid = grid;
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+        if(m_narrowBand)
+            m_distanceGrid = createNarrowBandGrid(grid, m_surfaceValue, m_defaultInValue, m_defaultOutValue, threadCount);
+        else
+            m_distanceGrid = createDistanceGrid(grid);
+        m_distXY = new float[nx*ny*nz];
+        m_distZ = new float[nx*ny*nz];
+
+        Runner runners[] = new Runner[threadCount];
+        for(int i = 0; i < threadCount; i++){
+            runners[i] = new Runner();
+        }
+        if(DEBUG)printf("threadCount: %d\n", threadCount);
+
+        try {
+            runPhase(runners, Runner.SLICES_XY);
+            if(DEBUG_TIMING)printf("slices xy: %d ms\n", (time() - t0));
+            runPhase(runners, Runner.COLUMNS_Z);
+            if(DEBUG_TIMING)printf("columns z: %d ms\n", (time() - t0));
+            runPhase(runners, Runner.SLICES_RESULT);
+            if(DEBUG_TIMING)printf("DistanceTransformSeparable done: %d ms\n", (time() - t0));
+        } finally {
+            // release memory
+            m_distXY = null;
+            m_distZ = null;
+            m_grid = null;
+        }
+
+        AttributeGrid distanceGrid = m_distanceGrid;
+        m_distanceGrid = null;
+        return distanceGrid;
+    }
+
+    /**
+     * Get the default value for distances inside the object.  The value will remain this for voxels past the maximal
+     * inside distance
+     */
+    public long getInsideDefault() {
+        return m_defaultInValue;
+    }
+
+    /**
+     * Get the default value for distances outside the object.  The value will remain this for voxels past the maximal
+     * outside distance
+     */
+    public long getOutsideDefault() {
+        return m_defaultOutValue;
+    }
+
+    void runPhase(Runner runners[], int phase){
+
+        m_nextLine = new AtomicInteger(0);
+        for(int i = 0; i < runners.length; i++){
+            runners[i].phase = phase;
+        }
+        ComputePool.execute(runners);
+
+    }
+
+    /**
+       calculates lower envelope of parabolas (p - cen[k])^2 + h[k] at integer points p = 0..n-1
+       parabolas should be sorted by cen without duplicates
+
+       @param v work array of size at least count
+       @param zb work array of size at least count+1
+     */
+    static void envelope(int count, double cen[], double h[], int n, double out[], int v[], double zb[]){
+
+        if(count == 0){
+            for(int p = 0; p < n; p++)
+                out[p] = INF;
+            return;
+        }
+
+        int k = 0;
+        v[0] = 0;
+        zb[0] = -Double.MAX_VALUE;
+        zb[1] = Double.MAX_VALUE;
+
+        for(int q = 1; q < count; q++){
+
+            double fq = h[q] + cen[q]*cen[q];
+            double s;
+            while(true){
+                int r = v[k];
+                s = (fq - (h[r] + cen[r]*cen[r]))/(2*(cen[q] - cen[r]));
+                if(s <= zb[k] && k > 0)
+                    k--;
+                else
+                    break;
+            }
+            if(s <= zb[k]){
+                // k == 0, new parabola is below everywhere
+                v[0] = q;
+            } else {
+                k++;
+                v[k] = q;
+                zb[k] = s;
+            }
+            zb[k+1] = Double.MAX_VALUE;
+        }
+
+        k = 0;
+        for(int p = 0; p < n; p++){
+            while(zb[k+1] < p)
+                k++;
+            int r = v[k];
+            double d = p - cen[r];
+            out[p] = d*d + h[r];
+        }
+    }
+
+    /**
+       runner for each thread
+     */
+    class Runner implements Runnable {
+
+        static final int SLICES_XY = 0, COLUMNS_Z = 1, SLICES_RESULT = 2;
+
+        int phase;
+
+        // line buffers
+        double cen[];
+        double h[];
+        double out[];
+        double zb[];
+        int v[];
+        int att[];
+        // slice buffers
+        float slice[];
+
+        Runner(){
+
+            int n = max(nx, max(ny, nz));
+            cen = new double[n];
+            h = new double[n];
+            out = new double[n];
+            zb = new double[n+1];
+            v = new int[n];
+            att = new int[n];
+            slice = new float[nx*ny];
+
+        }
+
+        public void run(){
+
+            int count = (phase == COLUMNS_Z)? ny: nz;
+
+            while(true){
+                int line = m_nextLine.getAndIncrement();
+                if(line >= count)
+                    break;
+                switch(phase){
+                case SLICES_XY: sliceXY(line); break;
+                case COLUMNS_Z: columnsZ(line); break;
+                case SLICES_RESULT: sliceResult(line); break;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
+                }
+            }
+        }
+
+        /**
+           2D transform of z-slice to surface points on x and y edges
+         */
+        void sliceXY(int z){
+
+            float dist[] = m_distXY;
+            int offset = z*nx*ny;
+
+            // points on x-edges: pass x with seeds, then pass y
+            for(int y = 0; y < ny; y++){
+                for(int x = 0; x < nx; x++)
+                    att[x] = (int)m_grid.getAttribute(x,y,z);
+                int count = makeSeeds(nx);
+                envelope(count, cen, h, nx, out, v, zb);
+                for(int x = 0; x < nx; x++)
+                    slice[x + nx*y] = (float)out[x];
+            }
+            for(int x = 0; x < nx; x++){
+                int count = collectValues(slice, x, nx, ny);
+                envelope(count, cen, h, ny, out, v, zb);
+                for(int y = 0; y < ny; y++)
+                    dist[offset + x + nx*y] = (float)out[y];
+            }
+
+            // points on y-edges: pass y with seeds, then pass x
+            for(int x = 0; x < nx; x++){
+                for(int y = 0; y < ny; y++)
+                    att[y] = (int)m_grid.getAttribute(x,y,z);
+                int count = makeSeeds(ny);
+                envelope(count, cen, h, ny, out, v, zb);
+                for(int y = 0; y < ny; y++)
+                    slice[x + nx*y] = (float)out[y];
+            }
+            for(int y = 0; y < ny; y++){
+                int count = collectValues(slice, nx*y, 1, nx);
+                envelope(count, cen, h, nx, out, v, zb);
+                for(int x = 0; x < nx; x++){
+                    int ind = offset + x + nx*y;
+                    dist[ind] = min(dist[ind], (float)out[x]);
+                }
+            }
+        }
+
+        /**
+           pass z over all columns with given y
+         */
+        void columnsZ(int y){
+
+            int stride = nx*ny;
+            for(int x = 0; x < nx; x++){
+
+                int start = x + nx*y;
+
+                // finish transform to points on x and y edges
+                int count = collectValues(m_distXY, start, stride, nz);
+                envelope(count, cen, h, nz, out, v, zb);
+                for(int z = 0; z < nz; z++)
+                    m_distXY[start + stride*z] = (float)out[z];
+
+                // first pass for points on z edges
+                for(int z = 0; z < nz; z++)
+                    att[z] = (int)m_grid.getAttribute(x,y,z);
+                count = makeSeeds(nz);
+                envelope(count, cen, h, nz, out, v, zb);
+                for(int z = 0; z < nz; z++)
+                    m_distZ[start + stride*z] = (float)out[z];
+            }
+        }
+
+        /**
+           finish transform for points on z edges in z-slice and write result into distance grid
+         */
+        void sliceResult(int z){
+
+            int offset = z*nx*ny;
+
+            for(int y = 0; y < ny; y++){
+                int count = collectValues(m_distZ, offset + nx*y, 1, nx);
+                envelope(count, cen, h, nx, out, v, zb);
+                for(int x = 0; x < nx; x++)
+                    slice[x + nx*y] = (float)out[x];
+            }
+
+            double svr = m_subvoxelResolution;
+            int sv = m_surfaceValue;
+            // narrow band grid has default values already
+            boolean writeDefault = !m_narrowBand;
+
+            for(int x = 0; x < nx; x++){
+
+                int count = collectValues(slice, x, nx, ny);
+                envelope(count, cen, h, ny, out, v, zb);
+
+                for(int y = 0; y < ny; y++){
+
+                    double d2 = min(out[y], m_distXY[offset + x + nx*y]);
+                    boolean inside = ((int)m_grid.getAttribute(x,y,z) >= sv);
+                    long value = (inside)? m_defaultInValue: m_defaultOutValue;
+                    if(d2 < INF){
+                        int dist = (int)(sqrt(d2)*svr + 0.5);
+                        if(inside && dist <= m_maxInDistSubvoxels)
+                            value = -dist;
+                        else if(!inside && dist <= m_maxOutDistSubvoxels)
+                            value = dist;
+                        else if(!writeDefault)
+                            continue;
+                    } else if(!writeDefault){
+                        continue;
+                    }
+                    m_distanceGrid.setAttribute(x,y,z,value);
+                }
+            }
+        }
+
+        /**
+           makes parabolas for surface points on the line stored in att[]
+           returns count of points
+         */
+        int makeSeeds(int n){
+
+            int sv = m_surfaceValue;
+            int count = 0;
+            for(int i = 0; i < n-1; i++){
+                int v0 = att[i] - sv;
+                int v1 = att[i+1] - sv;
+                if(v0 != v1 && ((v0 <= 0 && v1 >= 0) || (v0 >= 0 && v1 <= 0))){
+                    double c = i + (double)v0/(v0 - v1);
+                    if(count > 0 && c <= cen[count-1])
+                        continue; // duplicate point in the voxel center
+                    cen[count] = c;
+                    h[count] = 0;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+           makes parabolas for finite values of line of array
+           returns count of parabolas
+         */
+        int collectValues(float data[], int start, int stride, int n){
+
+            int count = 0;
+            for(int i = 0, ind = start; i < n; i++, ind += stride){
+                float d = data[ind];
+                if(d < INF){
+                    cen[count] = i;
+                    h[count] = d;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+    } // class Runner
+}
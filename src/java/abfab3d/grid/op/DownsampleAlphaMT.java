@@ -15,11 +15,9 @@ import abfab3d.grid.*;
 import abfab3d.util.AbFab3DGlobals;
 import abfab3d.util.DefaultLongConverter;
 import abfab3d.util.LongConverter;
+import abfab3d.util.ComputePool;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import static abfab3d.util.Output.fmt;
 import static abfab3d.util.Output.printf;
@@ -163,7 +161,7 @@ public class DownsampleAlphaMT implements Operation {
             System.out.println("DownsampleAlpaMT Stats");
             System.out.println("Slices: " + slices.size());
         }
-        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Runnable runners[] = new Runnable[threadCount];
         for (int i = 0; i < threadCount; i++) {
             Runnable runner = null;
 
@@ -174,15 +172,9 @@ public class DownsampleAlphaMT implements Operation {
             } else {
                 runner = new DownsampleRunnerCoeffNonZero(dest,ret_val,coeff,factor,maxAttributeValue,dataConverter,kernelSize);
             }
-            executor.submit(runner);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = runner;
         }
+        ComputePool.execute(runners);
 
         dest = null;
         slices.clear();
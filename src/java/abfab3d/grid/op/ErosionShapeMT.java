@@ -13,9 +13,6 @@
 package abfab3d.grid.op;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
 
 import abfab3d.grid.Grid;
 import abfab3d.grid.AttributeGrid;
@@ -25,6 +22,7 @@ import abfab3d.grid.GridBitIntervals;
 import abfab3d.grid.ClassTraverser;
 import abfab3d.grid.GridBit;
 import abfab3d.util.AbFab3DGlobals;
+import abfab3d.util.ComputePool;
 
 import static abfab3d.util.Output.printf;
 import static abfab3d.util.Output.fmt;
@@ -135,19 +133,12 @@ public class ErosionShapeMT implements Operation, AttributeOperation {
             }
         }
         
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
+        Runnable runners[] = new Runnable[m_threadCount];
         for(int i = 0; i < m_threadCount; i++){
 
-            Runnable runner = new SurfaceFinderRunner(grid, surface);
-            executor.submit(runner);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = new SurfaceFinderRunner(grid, surface);
         }
+        ComputePool.execute(runners);
 
         //grid.find(Grid.VoxelClasses.INSIDE, new SurfaceFinder(grid, m_surface));
         printf("surface: %d ms\n", (time()-t0));
@@ -166,19 +157,12 @@ public class ErosionShapeMT implements Operation, AttributeOperation {
             }
         }
 
-        executor = Executors.newFixedThreadPool(m_threadCount);
+        runners = new Runnable[m_threadCount];
         for(int i = 0; i < m_threadCount; i++){
 
-            Runnable runner = new ShapeEroderRunner(surface, grid, m_voxelShape, m_voxelChecker);
-            executor.submit(runner);
-        }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            runners[i] = new ShapeEroderRunner(surface, grid, m_voxelShape, m_voxelChecker);
         }
+        ComputePool.execute(runners);
 
 
         //surface.find(Grid.VoxelClasses.INSIDE, new ShapeEroder(grid, m_voxelShape, m_voxelChecker));
@@ -312,10 +296,11 @@ public class ErosionShapeMT implements Operation, AttributeOperation {
     /**
        class processes one slice of grid from the array of slices
      */
-    class SurfaceFinderRunner implements Runnable, ClassTraverser {
+    class SurfaceFinderRunner implements Runnable {
 
         Grid grid;
         GridBit surface; 
+        byte states[]; // states of slab of grid 
 
         SurfaceFinderRunner(Grid grid, GridBit surface){
             this.grid = grid; 
@@ -330,46 +315,42 @@ public class ErosionShapeMT implements Operation, AttributeOperation {
                     // end of processing 
                     break;
                 }
-                grid.find(Grid.VoxelClasses.INSIDE, this, 0, m_nx-1, slice.ymin, slice.ymax);
+                processSlice(slice.ymin, slice.ymax);
             }
         }
-            
-        public void found(int x, int y, int z, byte state){
-            processVoxel(x,y,z);
-        }
-        
-        public boolean foundInterruptible(int x, int y, int z, byte state){
-            processVoxel(x,y,z);
-            return true;
-        }
 
         /**
-           checks 6 neighbours of this model voxel 
-           turn ON tyhe voxel if any neighbours are empty
+           checks 6 neighbours of each model voxel 
+           turn ON the neighbours which are empty
+           states of the slice and its neighbour layers are read in one call 
+           neighbours outside of grid are ignored
         */ 
-        void processVoxel(int x,int y,int z){
-
-            //TODO add grid bounds checker             
-            int x1, y1, z1;
-
-            x1 = x+1;
-            if(grid.getState(x1,y,z) == OUTSIDE) surface.set(x1,y,z,1);
-
-            x1 = x-1;
-            if(grid.getState(x1,y,z) == OUTSIDE) surface.set(x1,y,z,1);
-
-            y1 = y+1;
-            if(grid.getState(x,y1,z) == OUTSIDE) surface.set(x,y1,z,1);
-
-            y1 = y-1;
-            if(grid.getState(x,y1,z) == OUTSIDE) surface.set(x,y1,z,1);
-
-            z1 = z+1;
-            if(grid.getState(x,y,z1) == OUTSIDE) surface.set(x,y,z1,1);
-
-            z1 = z-1;
-            if(grid.getState(x,y,z1) == OUTSIDE) surface.set(x,y,z1,1);
-
+        void processSlice(int ymin, int ymax){
+
+            int y0 = Math.max(ymin-1, 0);
+            int y1 = Math.min(ymax+1, m_ny-1);
+            int size = (y1 - y0 + 1)*m_nx*m_nz;
+            if(states == null || states.length < size)
+                states = new byte[size];
+            grid.getStates(0, m_nx-1, y0, y1, 0, m_nz-1, states);
+
+            int sx = m_nz; // stride in x 
+            int sy = m_nx*m_nz; // stride in y 
+            for(int y = ymin; y <= ymax; y++){
+                for(int x = 0; x < m_nx; x++){
+                    int ind = (y - y0)*sy + x*sx;
+                    for(int z = 0; z < m_nz; z++, ind++){
+                        if(states[ind] == OUTSIDE)
+                            continue;
+                        if(x < m_nx-1 && states[ind+sx] == OUTSIDE) surface.set(x+1,y,z,1);
+                        if(x > 0      && states[ind-sx] == OUTSIDE) surface.set(x-1,y,z,1);
+                        if(y < m_ny-1 && states[ind+sy] == OUTSIDE) surface.set(x,y+1,z,1);
+                        if(y > 0      && states[ind-sy] == OUTSIDE) surface.set(x,y-1,z,1);
+                        if(z < m_nz-1 && states[ind+1] == OUTSIDE) surface.set(x,y,z+1,1);
+                        if(z > 0      && states[ind-1] == OUTSIDE) surface.set(x,y,z-1,1);
+                    }
+                }
+            }
         }   
 
     } // SurfaceFinderRunner
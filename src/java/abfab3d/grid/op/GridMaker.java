@@ -12,18 +12,20 @@
 
 package abfab3d.grid.op;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Vector;
 
 
-import java.util.concurrent.ExecutorService; 
-import java.util.concurrent.Executors; 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingDeque;
 
 import abfab3d.grid.Grid;
 import abfab3d.grid.AttributeDesc;
 import abfab3d.grid.AttributeMaker;
 import abfab3d.grid.AttributeMakerDensity;
 import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.ArrayAttributeGridByte;
+import abfab3d.grid.BlockBasedAttributeGridByte;
+import abfab3d.grid.BlockBasedAttributeGridShort;
 import abfab3d.grid.Operation;
 import abfab3d.grid.AttributeOperation;
 
@@ -43,6 +45,13 @@ import static abfab3d.util.Output.printf;
    This allows calculation of multi color and multimaterial grids with custom meaning and 
    resolutiuon of each AttributeChannel. 
 
+   If DataSource is Bounded and transform preserves bounds only voxels inside of the bounds are calculated. 
+
+   In adaptive mode (see setAdaptiveBlockSize()) the grid is split into blocks. If DataSource is BoundedParts, 
+   blocks which do not intersect bounds of any part are skipped without calculation. If DataSource is BoxClassifier, 
+   blocks completely outside of the shape are skipped and blocks completely inside of the shape are filled in bulk. 
+   Other blocks are split into 8 sub blocks. Small blocks are calculated voxel by voxel. 
+
    @author Vladimir Bulatov
    
  */
@@ -50,6 +59,12 @@ public class GridMaker implements Operation, AttributeOperation {
 
     
     static final int POINT_DIMENSION = 3;
+    // blocks of that size are calculated voxel by voxel in adaptive mode 
+    static final int MIN_BLOCK_SIZE = 4;
+    // default xy size of tiles in voxels 
+    static final int DEFAULT_TILE_SIZE = 32;
+    // count of slowest tiles to print in statistics 
+    static final int SLOWEST_TILES_COUNT = 10;
 
     static final boolean DEBUG = false;
     static int debugCount = 0;
@@ -66,7 +81,12 @@ public class GridMaker implements Operation, AttributeOperation {
     protected int m_threadCount = 0;
 
     private double voxelX, voxelY, voxelZ, offsetX, offsetY, offsetZ;
-    private int m_slizeSize = 2;
+    // size of tiles in voxels 
+    private int m_tileSize = DEFAULT_TILE_SIZE;
+    // collect and print tiles calculation time 
+    private boolean m_tileStatistics = false;
+    // size of top level blocks in adaptive mode, 0 - adaptive mode is off
+    private int m_adaptiveBlockSize = 0;
 
     // custom converter of Vec into long attribute
     AttributeMaker m_attributeMaker; 
@@ -79,10 +99,22 @@ public class GridMaker implements Operation, AttributeOperation {
     AttributeGrid m_grid; 
     // diimensions of the grid 
     int m_nx, m_ny, m_nz;
+    // range of voxels to calculate {xmin, xmax, ymin, ymax, zmin, zmax}, max is exclusive 
+    int m_region[] = new int[6];
+    // grid bounds of parts of data source in adaptive mode, null if parts are unknown 
+    BoundsTree m_partsTree;
+    // classifier of blocks in adaptive mode, null if data source can not classify blocks 
+    BoxClassifier m_classifier;
+    // attribute of voxels inside of the shape, 0 if inside blocks are calculated voxel by voxel 
+    long m_insideAttribute;
+    // counts of blocks skipped and filled in adaptive mode 
+    long m_skippedBlocks, m_filledBlocks;
 
     // actual voxel size of the grid 
     double voxelSize = 0;
     private boolean boundsSet = false;
+    // prototype of grids created by makeGrid(bounds, voxelSize)
+    private AttributeGrid m_gridType = new ArrayAttributeGridByte(1,1,1,0.1,0.1);
     // this is thickness of surface transitional layer (relastive to the voxel size) 
     // data sources are expected to return transitional value inside of that layer
     private double voxelScale = Math.sqrt(3) / 2.0;
@@ -117,6 +149,55 @@ public class GridMaker implements Operation, AttributeOperation {
         m_threadCount = count;
     }
 
+    /**
+       sets size of top level blocks for adaptive calculation of the grid. 
+       Blocks which do not intersect bounds of parts of BoundedParts data source are skipped. 
+       Blocks which BoxClassifier data source classifies as outside are skipped and blocks classified as inside 
+       are filled via AttributeGrid.setAttributes(). Inside blocks are filled only for single channel data sources. 
+       All other voxels are calculated, so the result is the same as in non adaptive mode. 
+       @param blockSize size of blocks in voxels, 0 turns adaptive calculation off (default)
+     */
+    public void setAdaptiveBlockSize(int blockSize){
+
+        m_adaptiveBlockSize = blockSize;
+    }
+
+    boolean isAdaptive(){
+        return m_adaptiveBlockSize > MIN_BLOCK_SIZE;
+    }
+
+    /**
+       @return count of blocks skipped without calculation in the last adaptive calculation 
+     */
+    public long getSkippedBlocksCount(){
+        return m_skippedBlocks;
+    }
+
+    /**
+       @return count of blocks filled in bulk in the last adaptive calculation 
+     */
+    public long getFilledBlocksCount(){
+        return m_filledBlocks;
+    }
+
+    /**
+       sets xy size of tiles the grid is split into for calculation. 
+       Tiles are columns spanning the whole z range of the grid. 
+       Tile size is rounded up to multiple of blocks of block based grids. 
+     */
+    public void setTileSize(int tileSize){
+
+        m_tileSize = Math.max(tileSize, 1);
+    }
+
+    /**
+       if true, calculation time of tiles is collected and printed with the slowest tiles 
+     */
+    public void setTileStatistics(boolean value){
+
+        m_tileStatistics = value;
+    }
+
     /**
        set width of transitional surface area for shape calculations.
        it is obsolete and the value is ignored 
@@ -140,6 +221,7 @@ public class GridMaker implements Operation, AttributeOperation {
        @deprecated 
        is replaced by setAttributeMaker(AttributeMaker attributeMaker) should be used instead 
      */
+    @Deprecated
     public void setMaxAttributeValue(long value){
 
         setSubvoxelResolution(value);
@@ -151,6 +233,7 @@ public class GridMaker implements Operation, AttributeOperation {
        @deprecated 
        setAttributeMaker(AttributeMaker attributeMaker) should be used instead 
      */
+    @Deprecated
     public void setSubvoxelResolution(long value){
         
         m_subvoxelResolution = value;
@@ -188,6 +271,31 @@ public class GridMaker implements Operation, AttributeOperation {
 
     }
 
+    /**
+       sets type of grids created by makeGrid(bounds, voxelSize). 
+       Grids are created via gridType.createEmpty(). Default type is ArrayAttributeGridByte. 
+       Grid stored outside of heap (MappedAttributeGridByte or MappedAttributeGridShort) can be used for large grids. 
+     */
+    public void setGridType(AttributeGrid gridType){
+
+        m_gridType = gridType;
+    }
+
+    /**
+       creates grid of current grid type with given bounds and calculates its voxels 
+       @param bounds grid bounds {xmin,xmax,ymin,ymax,zmin,zmax}
+       @param voxelSize size of voxel 
+       @return new grid 
+     */
+    public AttributeGrid makeGrid(double bounds[], double voxelSize){
+
+        int ng[] = MathUtil.getGridSize(bounds, voxelSize);
+        AttributeGrid grid = (AttributeGrid)m_gridType.createEmpty(ng[0], ng[1], ng[2], voxelSize, voxelSize);
+        grid.setGridBounds(bounds);
+        makeGrid(grid);
+        return grid;
+    }
+
     public Grid execute(Grid grid) {
         makeGrid(grid);
         return grid;
@@ -250,8 +358,15 @@ public class GridMaker implements Operation, AttributeOperation {
 
         if(DEBUG) printf("GridMaker data initialization %d ms\n", (time() - t0));
 
-        if (m_threadCount == 0) {
-            m_threadCount = Runtime.getRuntime().availableProcessors();
+        m_threadCount = ComputePool.getThreadCount(m_threadCount);
+
+        m_skippedBlocks = 0;
+        m_filledBlocks = 0;
+        initRegion();
+        initParts();
+        if(m_region[1] <= m_region[0] || m_region[3] <= m_region[2] || m_region[5] <= m_region[4]){
+            // nothing to calculate 
+            return;
         }
 
         t0 = time();
@@ -262,25 +377,130 @@ public class GridMaker implements Operation, AttributeOperation {
         if(DEBUG) printf("GridMaker grid rendering: %d ms\n", (time() - t0));
     } 
 
+    /**
+       calculates range of voxels to be calculated. 
+       It is grid without margins intersected with bounds of data source 
+     */
+    void initRegion(){
+        
+        int region[] = m_region;
+        region[0] = m_margin; region[1] = m_nx - m_margin;
+        region[2] = m_margin; region[3] = m_ny - m_margin;
+        region[4] = m_margin; region[5] = m_nz - m_margin;
+
+        double bounds[] = new double[6];
+        if(!BoundsUtil.getBounds(m_dataSource, bounds))
+            return;
+        if(!BoundsUtil.transformBounds(m_transform, bounds))
+            return;
+
+        int range[] = new int[6];
+        getGridRange(bounds, range);
+        for(int k = 0; k < 3; k++){
+            if(range[2*k] > region[2*k]) region[2*k] = range[2*k];
+            if(range[2*k+1] < region[2*k+1]) region[2*k+1] = range[2*k+1];
+        }
+        if(DEBUG) printf("GridMaker region: [%d,%d) x [%d,%d) x [%d,%d)\n", region[0],region[1],region[2],region[3],region[4],region[5]);
+    }
+
+    /**
+       calculates grid bounds of parts of data source which are used to skip empty blocks in adaptive mode 
+       and initializes classification of blocks 
+     */
+    void initParts(){
+
+        m_partsTree = null;
+        m_classifier = null;
+        m_insideAttribute = 0;
+        if(!isAdaptive())
+            return;
+
+        if(m_dataSource instanceof BoxClassifier){
+            m_classifier = (BoxClassifier)m_dataSource;
+            if(m_dataChannelsCount == 1){
+                Vec inside = new Vec(1);
+                inside.v[0] = 1.;
+                m_insideAttribute = m_attributeMaker.makeAttribute(inside);
+            }
+        }
+
+        if(!(m_dataSource instanceof BoundedParts))
+            return;
+
+        BoundedParts parts = (BoundedParts)m_dataSource;
+        int count = parts.getPartsCount();
+        double partsBounds[] = new double[6*count];
+        int ids[] = new int[count];
+        double bounds[] = new double[6];
+        int range[] = new int[6];
+
+        for(int i = 0; i < count; i++){
+            // unbounded part may be non zero in any block 
+            if(!parts.getPartBounds(i, bounds))
+                return;
+            if(!BoundsUtil.transformBounds(m_transform, bounds))
+                return;
+            getGridRange(bounds, range);
+            // inclusive range of voxels 
+            for(int k = 0; k < 3; k++){
+                partsBounds[6*i + 2*k] = range[2*k];
+                partsBounds[6*i + 2*k+1] = range[2*k+1] - 1;
+            }
+            ids[i] = i;
+        }
+        m_partsTree = new BoundsTree(partsBounds, ids, count);
+    }
+
+    /**
+       calculates range of voxels [imin, imax) outside of which data source with given world bounds is empty 
+       @param range storage for range in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+     */
+    void getGridRange(double bounds[], int range[]){
+
+        // data source is empty outside of bounds expanded by voxelSize, one extra voxel for rounding 
+        double vs[] = new double[]{voxelX, voxelY, voxelZ};
+        double offset[] = new double[]{offsetX, offsetY, offsetZ};
+        for(int k = 0; k < 3; k++){
+            range[2*k] = (int)Math.floor((bounds[2*k] - voxelSize - offset[k])/vs[k]) - 1;
+            range[2*k+1] = (int)Math.ceil((bounds[2*k+1] + voxelSize - offset[k])/vs[k]) + 2;
+        }
+    }
+
+    /**
+       @return set of tiles covering calculated region 
+     */
+    TileSet makeTiles(){
+
+        // align tiles with blocks of the grid 
+        int align = 1;
+        if(m_grid instanceof BlockBasedAttributeGridByte)
+            align = 1 << ((BlockBasedAttributeGridByte)m_grid).getBlockOrder();
+        else if(m_grid instanceof BlockBasedAttributeGridShort)
+            align = 1 << ((BlockBasedAttributeGridShort)m_grid).getBlockOrder();
+        if(isAdaptive())
+            align = lcm(align, m_adaptiveBlockSize);
+
+        return new TileSet(m_region, m_tileSize, align, m_threadCount, m_tileStatistics);
+    }
+
     /**
        multi thread version of makeGrid()
      */
     void makeGridMT(){
 
-        SliceSet slices = new SliceSet(m_margin, m_grid.getHeight()-m_margin, m_slizeSize);
+        TileSet tiles = makeTiles();
+        TileMaker makers[] = new TileMaker[m_threadCount];
 
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
         for(int i = 0; i < m_threadCount; i++){
-            executor.submit(new SliceMaker(slices));
+            makers[i] = new TileMaker(tiles);
         }
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        ComputePool.execute(makers);
+        for(int i = 0; i < m_threadCount; i++){
+            m_skippedBlocks += makers[i].skippedBlocks;
+            m_filledBlocks += makers[i].filledBlocks;
         }
-        
+        if(m_tileStatistics)
+            printTileStatistics(tiles, makers);
     }
 
     /**
@@ -288,64 +508,73 @@ public class GridMaker implements Operation, AttributeOperation {
      */
     void makeGridST(){
         
-        Vec 
-            pntGrid = new Vec(POINT_DIMENSION),
-            pntWorld = new Vec(POINT_DIMENSION),            
-            pntData = new Vec(POINT_DIMENSION),
-            dataValue = new Vec(m_dataChannelsCount);
         if(DEBUG) printf("GridMaker.makeGridST(%d x %d x %d)\n", m_nx, m_ny, m_nz );
-        int margin = m_margin; 
-        int nx = m_nx, ny = m_ny, nz = m_nz;
-        
-        int nx1 = nx-margin;
-        int ny1 = ny-margin;
-        int nz1 = nz-margin;
-
-        for(int iy = margin; iy < ny1; iy++){
-
-            for(int ix = margin; ix < nx1; ix++){
+        TileSet tiles = makeTiles();
+        TileMaker maker = new TileMaker(tiles);
 
-                for(int iz = nz1-1; iz >= margin; iz--){ // this z-order to speed up creation of GridIntervals
-                    
-                    pntGrid.set(ix, iy, iz);
-                    transformToWorldSpace(pntGrid, pntWorld);
+        while(true){
 
-                    pntWorld.setVoxelSize(voxelSize);
-
-                    int res = m_transform.inverse_transform(pntWorld, pntData);
-                    if(false){                        
-                        double s = pntData.getScaleFactor();
-                        if(s != 1.0 && debugCount-- > 0)
-                            printf("scale: %10.5f\n", s);
-                    }
-                    //pntData.voxelSize = voxelSize;
-
-                    if(res != VecTransform.RESULT_OK)
-                        continue;
-                    res = m_dataSource.getDataValue(pntData, dataValue);
-                    if(res != VecTransform.RESULT_OK)
-                        continue;
-                    long vd = m_attributeMaker.makeAttribute(dataValue);
-                    if(vd != 0)
-                    m_grid.setData(ix, iy, iz, Grid.INSIDE, vd);
-
-                }
-            }
+            Tile tile = tiles.getNextTile();
+            if(tile == null)
+                break;
+            maker.makeTile(tile);
 
             if (Thread.currentThread().isInterrupted()) {
                 throw new ExecutionStoppedException();
             }
         }
+        m_skippedBlocks = maker.skippedBlocks;
+        m_filledBlocks = maker.filledBlocks;
+        if(m_tileStatistics)
+            printTileStatistics(tiles, new TileMaker[]{maker});
+    }
 
+    /**
+       @return least common multiple 
+     */
+    static int lcm(int a, int b){
+        int x = a, y = b;
+        while(y != 0){
+            int t = x % y;
+            x = y;
+            y = t;
+        }
+        return (a/x)*b;
     }
-    
 
     /**
-       processof of single slice of grid 
+       prints tiles calculation time and the slowest tiles 
      */
-    class SliceMaker implements Runnable{
+    void printTileStatistics(TileSet tiles, TileMaker makers[]){
+
+        Tile t[] = tiles.getDoneTiles();
+        Arrays.sort(t);
+        long total = 0;
+        for(int i = 0; i < t.length; i++)
+            total += t[i].time;
+        long maxBusy = 0;
+        for(int i = 0; i < makers.length; i++)
+            if(makers[i].busyTime > maxBusy) maxBusy = makers[i].busyTime;
+
+        printf("GridMaker tiles: %d, total time: %d ms, mean tile: %6.3f ms, threads: %d, threads load: %4.1f%%\n", 
+               t.length, total/1000000, (t.length > 0)? (total*1.e-6/t.length): 0., makers.length, 
+               (maxBusy > 0)? (100.*total/(maxBusy*makers.length)): 100.);
+        for(int i = 0; i < Math.min(t.length, SLOWEST_TILES_COUNT); i++){
+            printf("  tile [%d,%d) x [%d,%d): %6.3f ms\n", t[i].xmin, t[i].xmax, t[i].ymin, t[i].ymax, t[i].time*1.e-6);
+        }
+    }
+
+    /**
+       processor of tiles of grid 
+       voxels of each z-row are calculated as single span of points 
+     */
+    class TileMaker implements Runnable{
         
-        SliceSet slices;
+        TileSet tiles;
+        // time spent in calculation of tiles (in nanoseconds)
+        long busyTime = 0;
+        // counts of blocks skipped and filled in adaptive mode 
+        long skippedBlocks = 0, filledBlocks = 0;
 
         Vec // storage for calculations 
             pntGrid = new Vec(POINT_DIMENSION),
@@ -353,70 +582,228 @@ public class GridMaker implements Operation, AttributeOperation {
             pntData = new Vec(POINT_DIMENSION),
             dataValue = new Vec(m_dataChannelsCount);
 
-        SliceMaker(SliceSet slices ){
+        // storage for span calculations 
+        double spanPnts[] = new double[m_nz*POINT_DIMENSION];
+        double spanScales[] = new double[m_nz];
+        double spanData[] = new double[m_nz*m_dataChannelsCount];
+        int spanResults[] = new int[m_nz];
+        // z-coordinates of span points 
+        int spanZ[] = new int[m_nz];
+
+        // storage for queries of parts of data source in adaptive mode 
+        double blockBounds[] = new double[6];
+        int parts[] = (m_partsTree != null)? new int[m_partsTree.getItemsCount()]: null;
+        // attributes of filled blocks 
+        long fillData[];
+
+        TileMaker(TileSet tiles){
 
-            this.slices = slices; 
+            this.tiles = tiles; 
 
         }
         
         public void run(){
-            try {
-                while(true){
-                    
-                    Slice slice = slices.getNextSlice();
-                    if(slice == null)
-                        break;
-                    makeSlice(slice);
-                    
-                }
-            } catch(Exception e){
-                e.printStackTrace(Output.out);
-            } 
-        }
-
-        void makeSlice(Slice slice){
-            
-            int margin = m_margin; 
-            int nx = m_nx, ny = m_ny, nz = m_nz;
-            
-            int nx1 = nx-margin;
-            int ny1 = ny-margin;
-            int nz1 = nz-margin;
-            int ymin = slice.ymin;
-            int ymax = slice.ymax;
-
-            for(int iy = ymin; iy <= ymax; iy++){
+            // exceptions are propagated to the caller by ComputePool 
+            while(true){
                 
-                for(int ix = margin; ix < nx1; ix++){
-                    
-                    for(int iz = nz1-1; iz >= margin; iz--){ // this z-order to speed up creation of GridIntervals
-                        //TODO make grid.setData() in one call 
-
-                        pntGrid.set(ix, iy, iz);
-                        transformToWorldSpace(pntGrid, pntWorld);
-
-                        pntWorld.setVoxelSize(voxelSize);
-                        
-                        int res = m_transform.inverse_transform(pntWorld, pntData);
-                        if(false){
-                            double s = pntData.getScaleFactor();
-                            if(s != 1.0 &&  debugCount-- > 0) {
-                                printf("scale: %10.5f\n", s);
-                            }
+                Tile tile = tiles.getNextTile();
+                if(tile == null)
+                    break;
+                makeTile(tile);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
+                }
+            }
+        }
+
+        /**
+           calculates all voxels of the tile 
+         */
+        void makeTile(Tile tile){
+
+            long t0 = System.nanoTime();
+
+            if(isAdaptive()){
+                int bs = m_adaptiveBlockSize;
+                for(int y = tile.ymin; y < tile.ymax; y += bs){
+                    for(int x = tile.xmin; x < tile.xmax; x += bs){
+                        for(int z = m_region[4]; z < m_region[5]; z += bs){
+                            makeBlock(x, Math.min(x + bs, tile.xmax), y, Math.min(y + bs, tile.ymax), z, Math.min(z + bs, m_region[5]));
                         }
-                        if(res != VecTransform.RESULT_OK)
-                            continue;                        
-                        res = m_dataSource.getDataValue(pntData, dataValue);
+                    }
+                }
+            } else {
+                for(int iy = tile.ymin; iy < tile.ymax; iy++){
+                    for(int ix = tile.xmin; ix < tile.xmax; ix++){
+                        makeRow(ix, iy);
+                    }
+                }
+            }
+            tile.time = System.nanoTime() - t0;
+            busyTime += tile.time;
+            tiles.tileDone(tile);
+        }
 
-                        if(res != VecTransform.RESULT_OK)
-                            continue;
+        /**
+           calculates block of voxels in the range [xmin,xmax) x [ymin,ymax) x [zmin,zmax) 
+           empty and outside blocks are skipped, inside blocks are filled, other blocks are split into 8 sub blocks 
+         */
+        void makeBlock(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax){
 
-                        long vd = m_attributeMaker.makeAttribute(dataValue);
-                        if(vd != 0)
-                            m_grid.setData(ix, iy, iz, Grid.INSIDE, vd);
+            if(isEmpty(xmin, xmax, ymin, ymax, zmin, zmax)){
+                skippedBlocks++;
+                return;
+            }
+
+            switch(classifyBlock(xmin, xmax, ymin, ymax, zmin, zmax)){
+            case BoxClassifier.BOX_OUTSIDE: 
+                skippedBlocks++;
+                return;
+            case BoxClassifier.BOX_INSIDE: 
+                if(m_insideAttribute != 0){
+                    fillBlock(xmin, xmax, ymin, ymax, zmin, zmax);
+                    filledBlocks++;
+                    return;
+                }
+                break;
+            }
+
+            int sx = xmax - xmin, sy = ymax - ymin, sz = zmax - zmin;
+
+            if(sx <= MIN_BLOCK_SIZE && sy <= MIN_BLOCK_SIZE && sz <= MIN_BLOCK_SIZE){
+                for(int iy = ymin; iy < ymax; iy++){
+                    for(int ix = xmin; ix < xmax; ix++){
+                        makeRow(ix, iy, zmin, zmax);
                     }
                 }
-            }              
+                return;
+            }
+
+            int xm = (sx > 1)? (xmin + xmax)/2: xmax;
+            int ym = (sy > 1)? (ymin + ymax)/2: ymax;
+            int zm = (sz > 1)? (zmin + zmax)/2: zmax;
+
+            makeBlock(xmin, xm, ymin, ym, zmin, zm);
+            if(zm < zmax) makeBlock(xmin, xm, ymin, ym, zm, zmax);
+            if(ym < ymax) {
+                makeBlock(xmin, xm, ym, ymax, zmin, zm);
+                if(zm < zmax) makeBlock(xmin, xm, ym, ymax, zm, zmax);
+            }
+            if(xm < xmax){
+                makeBlock(xm, xmax, ymin, ym, zmin, zm);
+                if(zm < zmax) makeBlock(xm, xmax, ymin, ym, zm, zmax);
+                if(ym < ymax) {
+                    makeBlock(xm, xmax, ym, ymax, zmin, zm);
+                    if(zm < zmax) makeBlock(xm, xmax, ym, ymax, zm, zmax);
+                }
+            }
+        }
+
+        /**
+           @return true if the block does not intersect grid bounds of any part of data source 
+         */
+        boolean isEmpty(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax){
+
+            if(m_partsTree == null)
+                return false;
+
+            double b[] = blockBounds;
+            b[0] = xmin; b[1] = xmax-1;
+            b[2] = ymin; b[3] = ymax-1;
+            b[4] = zmin; b[5] = zmax-1;
+            return (m_partsTree.findItems(b, 0., parts) == 0);
+        }
+
+        /**
+           classifies centers of voxels of the block 
+           @return BoxClassifier.BOX_OUTSIDE, BoxClassifier.BOX_INSIDE or BoxClassifier.BOX_BOUNDARY 
+         */
+        int classifyBlock(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax){
+
+            if(m_classifier == null)
+                return BoxClassifier.BOX_BOUNDARY;
+
+            double b[] = blockBounds;
+            b[0] = xmin*voxelX + offsetX; b[1] = (xmax-1)*voxelX + offsetX;
+            b[2] = ymin*voxelY + offsetY; b[3] = (ymax-1)*voxelY + offsetY;
+            b[4] = zmin*voxelZ + offsetZ; b[5] = (zmax-1)*voxelZ + offsetZ;
+
+            double scale = BoundsUtil.getInverseScale(m_transform, b);
+            if(scale <= 0. || !BoundsUtil.inverseTransformBounds(m_transform, b))
+                return BoxClassifier.BOX_BOUNDARY;
+            return m_classifier.classifyBox(b, voxelSize*scale);
+        }
+
+        /**
+           sets attributes of all voxels of the block to the attribute of inside voxels 
+         */
+        void fillBlock(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax){
+
+            if(fillData == null){
+                int bs = m_adaptiveBlockSize;
+                fillData = new long[bs*bs*bs];
+                Arrays.fill(fillData, m_insideAttribute);
+            }
+            m_grid.setAttributes(xmin, xmax-1, ymin, ymax-1, zmin, zmax-1, fillData);
+        }
+
+        /**
+           calculates voxels of single z-row 
+         */
+        void makeRow(int ix, int iy){
+
+            makeRow(ix, iy, m_region[4], m_region[5]);
+        }
+
+        /**
+           calculates voxels of z-row in the range [zmin, zmax)
+         */
+        void makeRow(int ix, int iy, int zmin, int zmax){
+
+            int count = 0;
+
+            for(int iz = zmax-1; iz >= zmin; iz--){ // this z-order to speed up creation of GridIntervals
+
+                pntGrid.set(ix, iy, iz);
+                transformToWorldSpace(pntGrid, pntWorld);
+                
+                pntWorld.setVoxelSize(voxelSize);
+                
+                int res = m_transform.inverse_transform(pntWorld, pntData);
+                if(res != VecTransform.RESULT_OK)
+                    continue;                        
+
+                int i3 = count*POINT_DIMENSION;
+                spanPnts[i3] = pntData.v[0];
+                spanPnts[i3+1] = pntData.v[1];
+                spanPnts[i3+2] = pntData.v[2];
+                spanScales[count] = pntData.getScaleFactor();
+                spanZ[count] = iz;
+                count++;
+            }
+
+            if(count == 0)
+                return;
+
+            DataSourceUtil.getDataValues(m_dataSource, spanPnts, spanScales, voxelSize, count, spanData, spanResults);
+
+            int cc = m_dataChannelsCount;
+            double dv[] = dataValue.v;
+
+            for(int i = 0; i < count; i++){
+
+                if(spanResults[i] != VecTransform.RESULT_OK)
+                    continue;
+
+                int ic = i*cc;
+                for(int c = 0; c < cc; c++)
+                    dv[c] = spanData[ic + c];
+
+                long vd = m_attributeMaker.makeAttribute(dataValue);
+                if(vd != 0)
+                    m_grid.setData(ix, iy, spanZ[i], Grid.INSIDE, vd);
+            }
         }
     }
 
@@ -448,47 +835,115 @@ public class GridMaker implements Operation, AttributeOperation {
     }
 
     
-    static class SliceSet {
+    /**
+       set of tiles to be calculated. 
+       Tiles are columns of region [xmin,xmax) x [ymin,ymax) x [zmin,zmax) of the grid 
+       with tile boundaries aligned to multiple of align. Each z-row is calculated by single thread. 
+       When few tiles left, the next tile is split in half to keep all threads busy till the end
+     */
+    static class TileSet {
 
-        Stack<Slice> slices;
+        LinkedBlockingDeque<Tile> tiles;
+        int align;
+        int threadCount;
+        // done tiles for statistics
+        Vector<Tile> doneTiles;
         
-        SliceSet(int start, int end, int size){
-
-            slices = new Stack<Slice>();
-            
-            for(int y = start; y < end; y+= size){
-                int ymax = y + size;
-                if(ymax > end)
-                    ymax = end;
-                if(ymax > y){
-                    // non zero slice 
-                    slices.push(new Slice(y, ymax-1));
+        TileSet(int region[], int tileSize, int align, int threadCount, boolean statistics){
+
+            this.align = align;
+            this.threadCount = threadCount;
+            if(statistics)
+                doneTiles = new Vector<Tile>();
+
+            int size = ((tileSize + align - 1)/align)*align;
+            tiles = new LinkedBlockingDeque<Tile>();
+            // start from aligned coordinate
+            int x0 = (region[0]/size)*size;
+            int y0 = (region[2]/size)*size;
+
+            for(int y = y0; y < region[3]; y += size){
+                for(int x = x0; x < region[1]; x += size){
+                    tiles.add(new Tile(Math.max(x, region[0]), Math.min(x + size, region[1]), 
+                                       Math.max(y, region[2]), Math.min(y + size, region[3])));
                 }
             }                
         }
 
-        public synchronized Slice getNextSlice(){
-            if(slices.empty())
-                return null;            
-            return slices.pop();
-            
-        }
-    }
+        /**
+           @return next tile to calculate or null if all tiles are taken 
+         */
+        Tile getNextTile(){
 
-    static class Slice {
+            Tile tile = tiles.pollFirst();
+            if(tile == null)
+                return null;
 
-        int ymin;
-        int ymax;
-        Slice(){
-            ymin = 0;
-            ymax = -1;
+            if(tiles.size() < threadCount){
+                // few tiles left - split tile and leave half for other thread 
+                Tile half = tile.split(align);
+                if(half != null)
+                    tiles.addFirst(half);
+            }
+            return tile;
+        }
 
+        void tileDone(Tile tile){
+            if(doneTiles != null)
+                doneTiles.add(tile);
         }
-        Slice(int ymin, int ymax){
 
+        Tile[] getDoneTiles(){
+            if(doneTiles == null)
+                return new Tile[0];
+            return doneTiles.toArray(new Tile[doneTiles.size()]);
+        }
+    }
+
+    /**
+       column of voxels [xmin,xmax) x [ymin,ymax) x [zmin,zmax) of calculated region 
+       tiles are ordered by decreasing calculation time 
+     */
+    static class Tile implements Comparable<Tile> {
+
+        int xmin, xmax, ymin, ymax;
+        // calculation time in nanoseconds
+        long time;
+
+        Tile(int xmin, int xmax, int ymin, int ymax){
+            this.xmin = xmin;
+            this.xmax = xmax;
             this.ymin = ymin;
             this.ymax = ymax;
-            
-        }        
+        }
+
+        /**
+           splits tile along the longest side at aligned coordinate 
+           @return second half of the tile or null if tile can't be split 
+         */
+        Tile split(int align){
+
+            if(xmax - xmin >= ymax - ymin){
+                int x = (((xmin + xmax)/2)/align)*align;
+                if(x <= xmin) 
+                    return null;
+                Tile half = new Tile(x, xmax, ymin, ymax);
+                xmax = x;
+                return half;
+            } else {
+                int y = (((ymin + ymax)/2)/align)*align;
+                if(y <= ymin) 
+                    return null;
+                Tile half = new Tile(xmin, xmax, y, ymax);
+                ymax = y;
+                return half;
+            }
+        }
+
+        public int compareTo(Tile t){
+            if(time > t.time) return -1;
+            if(time < t.time) return 1;
+            return 0;
+        }
     }
 }
@@ -2,8 +2,9 @@ package abfab3d.grid.util;
 
 /**
  * Execution was interrupted.
+ * Kept for compatibility, operations may throw its superclass abfab3d.util.ExecutionStoppedException 
  *
  * @author Alan Hudson
  */
-public class ExecutionStoppedException extends RuntimeException {
+public class ExecutionStoppedException extends abfab3d.util.ExecutionStoppedException {
 }
@@ -42,6 +42,18 @@ public class SVXReader {
     /** The manifest for the last load call */
     private SVXManifest mf;
 
+    /** prototype of loaded grids */
+    private AttributeGrid m_gridType = new ArrayAttributeGridByte(1,1,1,0.1,0.1);
+
+    /**
+     * Set the type of grid to load into. Loaded grid is created via gridType.createEmpty()
+     *
+     * @param gridType The grid prototype
+     */
+    public void setGridType(AttributeGrid gridType) {
+        m_gridType = gridType;
+    }
+
     /**
      * Load a SVX file into a grid.
      *
@@ -68,7 +80,7 @@ public class SVXReader {
                 throw new IOException("Could not parse manifest file");
             }
 
-            AttributeGrid ret_val = new ArrayAttributeGridByte(mf.getGridSizeX(),mf.getGridSizeY(),mf.getGridSizeZ(),mf.getVoxelSize(),mf.getVoxelSize());
+            AttributeGrid ret_val = (AttributeGrid)m_gridType.createEmpty(mf.getGridSizeX(),mf.getGridSizeY(),mf.getGridSizeZ(),mf.getVoxelSize(),mf.getVoxelSize());
 
             double[] bounds = new double[6];
 
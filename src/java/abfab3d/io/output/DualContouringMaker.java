@@ -0,0 +1,731 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.io.output;
+
+import java.util.Arrays;
+
+import javax.vecmath.Vector3d;
+
+import abfab3d.mesh.IndexedTriangleSetBuffer;
+
+import abfab3d.util.IndexedTriangleCollector;
+import abfab3d.util.TriangleCollector;
+
+import static abfab3d.io.output.IsosurfaceMaker.SliceCalculator;
+import static abfab3d.io.output.IsosurfaceMaker.SliceData;
+
+/**
+   makes isosurface using dual contouring
+
+   each cube of the grid crossed by the isosurface gets one vertex. Vertex is placed in the minimum
+   of quadric error function (QEF) made of tangent planes at the points where isosurface crosses
+   the cube edges. Normals of the planes are estimated from gradient of the grid data.
+   Each grid edge crossed by isosurface makes a quad of vertices of 4 cubes around the edge.
+   Vertices in sharp edges and corners of the surface are placed on the feature, so the
+   features are not rounded as in marching cubes.
+
+   adaptive variant (maxLevel > 0) merges vertices of bricks of 2x2x2 cubes (recursively up to 2^maxLevel cubes)
+   if QEF error of the merged vertex is below maxError and sign of data at the brick nodes guarantees
+   that the merge does not change topology of the surface. Flat areas of the surface get few large triangles.
+
+   grid data is requested from SliceCalculator slice by slice in increasing z order. Only few slices are kept in memory.
+ */
+public class DualContouringMaker {
+
+    // relative threshold of small eigenvalues in QEF solution
+    static final double EIGENVALUE_THRESHOLD = 0.1;
+
+    // size of QEF data
+    static final int QEF_SIZE = 14;
+    // offsets in QEF data: A^T*A (xx,xy,xz,yy,yz,zz), A^T*b, b^T*b, sum of points, count of points
+    static final int ATA = 0, ATB = 6, BTB = 9, MASS = 10, COUNT = 13;
+
+    // states of bricks in adaptive variant
+    static final byte EMPTY = 0, MERGED = 1, SPLIT = 2;
+
+    protected double m_isoValue = 0.;
+    protected double m_bounds[] = new double[]{-1, 1, -1, 1, -1, 1};
+    int m_nx = 10, m_ny = 10, m_nz = 10;
+    int m_maxLevel = 0;
+    double m_maxError = 0.;
+
+    // work data
+    double xmin, ymin, zmin, dx, dy, dz;
+    // count of cubes
+    int ncx, ncy, ncz;
+    SliceCalculator m_scalc;
+    // ring of loaded slices
+    SliceData m_slices[];
+    int m_loadedSlices;
+
+    // current slab
+    int m_slabSize;
+    int m_slabZ;
+    // cluster of each cube of the slab or -1
+    int m_cellCluster[];
+    // output vertex of each cube of the last layer of previous slab or -1
+    int m_prevLayer[];
+
+    // clusters data
+    double m_qef[];
+    double m_pos[];
+    int m_outIndex[];
+    int m_clusterCount;
+
+    // brick states in adaptive variant
+    byte m_brickState[][];
+    int m_brickCluster[][];
+
+    // scratch
+    double m_tmpQef[] = new double[QEF_SIZE];
+    double m_eigen[] = new double[12];
+    double m_point[] = new double[3];
+    double m_grad0[] = new double[3], m_grad1[] = new double[3];
+    Vector3d m_vertex = new Vector3d();
+    double m_nodeValues[] = new double[27];
+
+    /**
+       set bounds of area where isosurface is made
+     */
+    public void setBounds(double bounds[]){
+
+        m_bounds = bounds.clone();
+
+    }
+
+    /**
+       set grid size to calculate isosurface on
+       the area is divide into [(nx-1) x (ny-1) x (nz-1)] cubes
+       data is calculated in the corners of the cubes
+     */
+    public void setGridSize(int nx, int ny, int nz){
+
+        m_nx = nx;
+        m_ny = ny;
+        m_nz = nz;
+
+    }
+
+    /**
+       set value of isosurface
+     */
+    public void setIsovalue(double isoValue){
+        m_isoValue = isoValue;
+    }
+
+    /**
+       set max level of vertex merging in adaptive variant
+       vertices of up to 2^level x 2^level x 2^level cubes may be merged into one vertex
+       0 - no merging (default)
+     */
+    public void setMaxLevel(int level){
+        m_maxLevel = level;
+    }
+
+    /**
+       set max QEF error of merged vertex in adaptive variant
+       the error is sum of squared distances from merged vertex to tangent planes
+     */
+    public void setMaxError(double error){
+        m_maxError = error;
+    }
+
+    /**
+       generates isosurface from given @scalculator and passes triangles to @tcollector
+     */
+    public void makeIsosurface(SliceCalculator scalculator, TriangleCollector tcollector){
+
+        IndexedTriangleSetBuffer itb = new IndexedTriangleSetBuffer();
+        makeIndexedIsosurface(scalculator, itb);
+        itb.getTriangles(tcollector);
+
+    }
+
+    /**
+       generates isosurface from given @scalculator and passes indexed triangles to @tcollector
+
+       slice calculator is called sequentially from zmin to zmax
+     */
+    public void makeIndexedIsosurface(SliceCalculator scalculator, IndexedTriangleCollector tcollector){
+
+        xmin = m_bounds[0];
+        ymin = m_bounds[2];
+        zmin = m_bounds[4];
+        ncx = m_nx-1;
+        ncy = m_ny-1;
+        ncz = m_nz-1;
+        dx = (m_bounds[1] - xmin)/ncx;
+        dy = (m_bounds[3] - ymin)/ncy;
+        dz = (m_bounds[5] - zmin)/ncz;
+
+        m_slabSize = 1 << m_maxLevel;
+        m_scalc = scalculator;
+        m_slices = new SliceData[m_slabSize + 3];
+        m_loadedSlices = 0;
+        m_cellCluster = new int[ncx*ncy*m_slabSize];
+        m_prevLayer = new int[ncx*ncy];
+        Arrays.fill(m_prevLayer, -1);
+        if(m_qef == null){
+            int capacity = 1000;
+            m_qef = new double[capacity*QEF_SIZE];
+            m_pos = new double[capacity*3];
+            m_outIndex = new int[capacity];
+        }
+        if(m_maxLevel > 0){
+            m_brickState = new byte[m_maxLevel+1][];
+            m_brickCluster = new int[m_maxLevel+1][];
+            for(int level = 0; level <= m_maxLevel; level++){
+                int s = 1 << level;
+                int size = ((ncx + s-1)/s)*((ncy + s-1)/s)*(m_slabSize/s);
+                m_brickState[level] = new byte[size];
+                m_brickCluster[level] = new int[size];
+            }
+        }
+
+        for(m_slabZ = 0; m_slabZ < ncz; m_slabZ += m_slabSize){
+
+            int layers = Math.min(m_slabSize, ncz - m_slabZ);
+            m_clusterCount = 0;
+            makeCellVertices(layers);
+            if(m_maxLevel > 0)
+                mergeBricks(layers);
+            addVertices(tcollector);
+            addFaces(layers, tcollector);
+
+            // remember output vertices of the last layer
+            int offset = (layers-1)*ncx*ncy;
+            for(int i = 0; i < ncx*ncy; i++){
+                int c = m_cellCluster[offset + i];
+                m_prevLayer[i] = (c >= 0)? m_outIndex[c]: -1;
+            }
+        }
+
+        // release memory
+        m_slices = null;
+        m_scalc = null;
+        m_brickState = null;
+        m_brickCluster = null;
+    }
+
+    /**
+       returns data of slice with node index iz
+       slices are requested in increasing order and only last few slices are kept
+     */
+    final double[] getSlice(int iz){
+
+        if(iz < 0) iz = 0;
+        if(iz > ncz) iz = ncz;
+        while(m_loadedSlices <= iz){
+            int k = m_loadedSlices % m_slices.length;
+            if(m_slices[k] == null)
+                m_slices[k] = new SliceData(m_nx, m_ny, xmin, m_bounds[1], ymin, m_bounds[3]);
+            m_slices[k].setZ(zmin + dz*m_loadedSlices);
+            m_scalc.getSlice(m_slices[k]);
+            double data[] = m_slices[k].data;
+            for(int i = 0; i < data.length; i++){
+                data[i] -= m_isoValue;
+            }
+            m_loadedSlices++;
+        }
+        return m_slices[iz % m_slices.length].data;
+    }
+
+    final double getValue(int ix, int iy, int iz){
+
+        return getSlice(iz)[ix + iy*m_nx];
+
+    }
+
+    /**
+       gradient of data at the grid node
+     */
+    void getGradient(int ix, int iy, int iz, double grad[]){
+
+        int x0 = Math.max(ix-1, 0), x1 = Math.min(ix+1, ncx);
+        int y0 = Math.max(iy-1, 0), y1 = Math.min(iy+1, ncy);
+        int z0 = Math.max(iz-1, 0), z1 = Math.min(iz+1, ncz);
+        grad[0] = (getValue(x1, iy, iz) - getValue(x0, iy, iz))/((x1-x0)*dx);
+        grad[1] = (getValue(ix, y1, iz) - getValue(ix, y0, iz))/((y1-y0)*dy);
+        grad[2] = (getValue(ix, iy, z1) - getValue(ix, iy, z0))/((z1-z0)*dz);
+
+    }
+
+    /**
+       makes one vertex in each cube of the slab crossed by isosurface
+     */
+    void makeCellVertices(int layers){
+
+        for(int cl = 0; cl < layers; cl++){
+            int iz = m_slabZ + cl;
+            double s0[] = getSlice(iz);
+            double s1[] = getSlice(iz+1);
+            // slices for gradient
+            getSlice(iz+2);
+
+            for(int iy = 0; iy < ncy; iy++){
+                for(int ix = 0; ix < ncx; ix++){
+
+                    int cind = ix + ncx*(iy + ncy*cl);
+                    m_cellCluster[cind] = -1;
+
+                    int b = ix + iy*m_nx;
+                    int mask = 0;
+                    if(s0[b] < 0) mask |= 1;
+                    if(s0[b+1] < 0) mask |= 2;
+                    if(s0[b+m_nx] < 0) mask |= 4;
+                    if(s0[b+m_nx+1] < 0) mask |= 8;
+                    if(s1[b] < 0) mask |= 16;
+                    if(s1[b+1] < 0) mask |= 32;
+                    if(s1[b+m_nx] < 0) mask |= 64;
+                    if(s1[b+m_nx+1] < 0) mask |= 128;
+                    if(mask == 0 || mask == 255)
+                        continue;
+
+                    double qef[] = m_tmpQef;
+                    Arrays.fill(qef, 0.);
+                    for(int j = 0; j < 2; j++){
+                        for(int i = 0; i < 2; i++){
+                            addEdge(ix, iy+i, iz+j, 0, qef);
+                            addEdge(ix+i, iy, iz+j, 1, qef);
+                            addEdge(ix+i, iy+j, iz, 2, qef);
+                        }
+                    }
+                    int c = newCluster(qef);
+                    solve(c, ix, ix+1, iy, iy+1, iz, iz+1);
+                    m_cellCluster[cind] = c;
+                }
+            }
+        }
+    }
+
+    /**
+       adds to qef tangent plane of grid edge if it is crossed by isosurface
+       edge starts at given node and goes in direction dir (0 - x, 1 - y, 2 - z)
+     */
+    void addEdge(int ix, int iy, int iz, int dir, double qef[]){
+
+        int jx = ix, jy = iy, jz = iz;
+        switch(dir){
+        case 0: jx++; break;
+        case 1: jy++; break;
+        case 2: jz++; break;
+        }
+        double v0 = getValue(ix, iy, iz);
+        double v1 = getValue(jx, jy, jz);
+        if((v0 < 0) == (v1 < 0))
+            return;
+
+        double t = v0/(v0 - v1);
+        double p[] = m_point;
+        p[0] = xmin + dx*(ix + t*(jx - ix));
+        p[1] = ymin + dy*(iy + t*(jy - iy));
+        p[2] = zmin + dz*(iz + t*(jz - iz));
+
+        double g0[] = m_grad0, g1[] = m_grad1;
+        getGradient(ix, iy, iz, g0);
+        getGradient(jx, jy, jz, g1);
+        double nx = g0[0] + t*(g1[0] - g0[0]);
+        double ny = g0[1] + t*(g1[1] - g0[1]);
+        double nz = g0[2] + t*(g1[2] - g0[2]);
+        double len = Math.sqrt(nx*nx + ny*ny + nz*nz);
+        if(len > 0.){
+            nx /= len; ny /= len; nz /= len;
+        } else {
+            // use edge direction
+            nx = (dir == 0)? 1: 0;
+            ny = (dir == 1)? 1: 0;
+            nz = (dir == 2)? 1: 0;
+        }
+        double d = nx*p[0] + ny*p[1] + nz*p[2];
+
+        qef[ATA]   += nx*nx;
+        qef[ATA+1] += nx*ny;
+        qef[ATA+2] += nx*nz;
+        qef[ATA+3] += ny*ny;
+        qef[ATA+4] += ny*nz;
+        qef[ATA+5] += nz*nz;
+        qef[ATB]   += nx*d;
+        qef[ATB+1] += ny*d;
+        qef[ATB+2] += nz*d;
+        qef[BTB]   += d*d;
+        qef[MASS]   += p[0];
+        qef[MASS+1] += p[1];
+        qef[MASS+2] += p[2];
+        qef[COUNT] += 1;
+    }
+
+    int newCluster(double qef[]){
+
+        int c = m_clusterCount++;
+        if(c >= m_outIndex.length){
+            int n = 2*m_outIndex.length;
+            double q[] = new double[n*QEF_SIZE];
+            System.arraycopy(m_qef, 0, q, 0, m_qef.length);
+            m_qef = q;
+            double p[] = new double[n*3];
+            System.arraycopy(m_pos, 0, p, 0, m_pos.length);
+            m_pos = p;
+            int o[] = new int[n];
+            System.arraycopy(m_outIndex, 0, o, 0, m_outIndex.length);
+            m_outIndex = o;
+        }
+        System.arraycopy(qef, 0, m_qef, c*QEF_SIZE, QEF_SIZE);
+        m_outIndex[c] = 0;
+        return c;
+    }
+
+    /**
+       finds vertex of cluster which minimizes its QEF
+       vertex outside of the given cube range is replaced by the mass point
+       returns QEF error of the vertex
+     */
+    double solve(int c, int x0, int x1, int y0, int y1, int z0, int z1){
+
+        int q = c*QEF_SIZE;
+        double qef[] = m_qef;
+        double count = qef[q+COUNT];
+        double mx = qef[q+MASS]/count, my = qef[q+MASS+1]/count, mz = qef[q+MASS+2]/count;
+
+        // solve A^T*A * (x - m) = A^T*b - A^T*A*m with pseudo inverse
+        double axx = qef[q+ATA], axy = qef[q+ATA+1], axz = qef[q+ATA+2], ayy = qef[q+ATA+3], ayz = qef[q+ATA+4], azz = qef[q+ATA+5];
+        double rx = qef[q+ATB]   - (axx*mx + axy*my + axz*mz);
+        double ry = qef[q+ATB+1] - (axy*mx + ayy*my + ayz*mz);
+        double rz = qef[q+ATB+2] - (axz*mx + ayz*my + azz*mz);
+
+        double e[] = m_eigen;
+        eigenSymmetric(axx, axy, axz, ayy, ayz, azz, e);
+        double maxValue = Math.max(Math.abs(e[0]), Math.max(Math.abs(e[1]), Math.abs(e[2])));
+        double x = mx, y = my, z = mz;
+        for(int k = 0; k < 3; k++){
+            double ev = e[k];
+            if(Math.abs(ev) <= EIGENVALUE_THRESHOLD*maxValue || ev == 0.)
+                continue;
+            double vx = e[3+3*k], vy = e[4+3*k], vz = e[5+3*k];
+            double s = (vx*rx + vy*ry + vz*rz)/ev;
+            x += s*vx;
+            y += s*vy;
+            z += s*vz;
+        }
+        if(x < xmin + dx*x0 || x > xmin + dx*x1 ||
+           y < ymin + dy*y0 || y > ymin + dy*y1 ||
+           z < zmin + dz*z0 || z > zmin + dz*z1){
+            x = mx; y = my; z = mz;
+        }
+        int p = 3*c;
+        m_pos[p] = x;
+        m_pos[p+1] = y;
+        m_pos[p+2] = z;
+
+        // error = x^T*A*x - 2*x^T*b + b^T*b
+        double err = x*(axx*x + axy*y + axz*z) + y*(axy*x + ayy*y + ayz*z) + z*(axz*x + ayz*y + azz*z)
+            - 2*(x*qef[q+ATB] + y*qef[q+ATB+1] + z*qef[q+ATB+2]) + qef[q+BTB];
+        return Math.max(err, 0.);
+    }
+
+    /**
+       merges vertices of bricks of cubes of current slab bottom up
+     */
+    void mergeBricks(int layers){
+
+        if(layers < m_slabSize){
+            // partial slab at the top of grid is not merged
+            return;
+        }
+        setLeafBricks();
+
+        for(int level = 1; level <= m_maxLevel; level++){
+
+            int s = 1 << level;
+            int h = s/2;
+            int bnx = (ncx + s-1)/s, bny = (ncy + s-1)/s, bnz = m_slabSize/s;
+            int cnx = (ncx + h-1)/h, cny = (ncy + h-1)/h;
+            byte childState[] = m_brickState[level-1];
+            int childCluster[] = m_brickCluster[level-1];
+            byte state[] = m_brickState[level];
+            int cluster[] = m_brickCluster[level];
+
+            for(int bz = 0; bz < bnz; bz++){
+                for(int by = 0; by < bny; by++){
+                    for(int bx = 0; bx < bnx; bx++){
+
+                        int bind = bx + bnx*(by + bny*bz);
+                        int merged = 0, split = 0;
+                        double qef[] = m_tmpQef;
+                        Arrays.fill(qef, 0.);
+                        for(int k = 0; k < 8; k++){
+                            int cx = 2*bx + (k & 1), cy = 2*by + ((k>>1) & 1), cz = 2*bz + ((k>>2) & 1);
+                            if(cx >= cnx || cy >= cny){
+                                split++;
+                                continue;
+                            }
+                            int cind = cx + cnx*(cy + cny*cz);
+                            switch(childState[cind]){
+                            case SPLIT:
+                                split++;
+                                break;
+                            case MERGED:
+                                merged++;
+                                int q = childCluster[cind]*QEF_SIZE;
+                                for(int i = 0; i < QEF_SIZE; i++)
+                                    qef[i] += m_qef[q+i];
+                                break;
+                            }
+                        }
+                        if(merged == 0 && split == 0){
+                            state[bind] = EMPTY;
+                            continue;
+                        }
+                        state[bind] = SPLIT;
+                        int x0 = bx*s, y0 = by*s, z0 = m_slabZ + bz*s;
+                        if(split > 0 || x0 + s > ncx || y0 + s > ncy || !isSafeToMerge(x0, y0, z0, s))
+                            continue;
+
+                        int c = newCluster(qef);
+                        double err = solve(c, x0, x0+s, y0, y0+s, z0, z0+s);
+                        if(err > m_maxError){
+                            m_clusterCount--;
+                            continue;
+                        }
+                        state[bind] = MERGED;
+                        cluster[bind] = c;
+                        // assign cubes of the brick to new cluster
+                        for(int z = bz*s; z < bz*s + s; z++){
+                            for(int y = y0; y < y0 + s; y++){
+                                int offset = ncx*(y + ncy*z);
+                                for(int x = x0; x < x0 + s; x++){
+                                    int cc = m_cellCluster[offset + x];
+                                    if(cc >= 0){
+                                        m_outIndex[cc] = -1;
+                                        m_cellCluster[offset + x] = c;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    void setLeafBricks(){
+
+        byte state[] = m_brickState[0];
+        int cluster[] = m_brickCluster[0];
+        int count = ncx*ncy*m_slabSize;
+        for(int i = 0; i < count; i++){
+            int c = m_cellCluster[i];
+            state[i] = (c >= 0)? MERGED: EMPTY;
+            cluster[i] = c;
+        }
+    }
+
+    /**
+       checks that replacing the brick of cubes by a single cube does not change topology of the surface
+       the coarse cube shall have a manifold configuration and signs in middle of its edges, faces and in the center
+       shall match sign of one of the corresponding coarse corners
+     */
+    boolean isSafeToMerge(int x0, int y0, int z0, int s){
+
+        int h = s/2;
+        double v[] = m_nodeValues;
+        for(int k = 0; k < 3; k++){
+            for(int j = 0; j < 3; j++){
+                for(int i = 0; i < 3; i++){
+                    v[i + 3*(j + 3*k)] = getValue(x0 + i*h, y0 + j*h, z0 + k*h);
+                }
+            }
+        }
+        int mask = 0;
+        for(int k = 0; k < 8; k++){
+            int i = 2*(k & 1), j = 2*((k>>1) & 1), l = 2*((k>>2) & 1);
+            if(v[i + 3*(j + 3*l)] < 0)
+                mask |= (1 << k);
+        }
+        if(!isManifoldCube(mask))
+            return false;
+
+        // every middle node shall have sign of one of its coarse corners
+        for(int n = 0; n < 27; n++){
+            int i = n % 3, j = (n/3) % 3, l = n/9;
+            if(i != 1 && j != 1 && l != 1)
+                continue; // corner
+            boolean inside = (v[n] < 0);
+            boolean found = false;
+            for(int ci = (i == 1? 0: i); ci <= (i == 1? 2: i) && !found; ci += 2){
+                for(int cj = (j == 1? 0: j); cj <= (j == 1? 2: j) && !found; cj += 2){
+                    for(int cl = (l == 1? 0: l); cl <= (l == 1? 2: l) && !found; cl += 2){
+                        if((v[ci + 3*(cj + 3*cl)] < 0) == inside)
+                            found = true;
+                    }
+                }
+            }
+            if(!found)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+       returns true if inside corners of cube and outside corners of the cube form single connected component each
+       corners are connected by cube edges
+     */
+    static boolean isManifoldCube(int mask){
+
+        return isConnected(mask) && isConnected((~mask) & 0xFF);
+    }
+
+    static boolean isConnected(int mask){
+
+        if(mask == 0)
+            return true;
+        int start = Integer.numberOfTrailingZeros(mask);
+        int visited = 1 << start;
+        int prev = 0;
+        while(visited != prev){
+            prev = visited;
+            for(int k = 0; k < 8; k++){
+                if((visited & (1 << k)) == 0)
+                    continue;
+                // neighbors differ in one bit of index
+                for(int b = 1; b < 8; b <<= 1){
+                    int n = k ^ b;
+                    if((mask & (1 << n)) != 0)
+                        visited |= (1 << n);
+                }
+            }
+        }
+        return visited == mask;
+    }
+
+    /**
+       passes vertices of alive clusters to collector
+     */
+    void addVertices(IndexedTriangleCollector tcollector){
+
+        for(int c = 0; c < m_clusterCount; c++){
+            if(m_outIndex[c] < 0)
+                continue;
+            m_vertex.set(m_pos[3*c], m_pos[3*c+1], m_pos[3*c+2]);
+            m_outIndex[c] = tcollector.addVertex(m_vertex);
+        }
+    }
+
+    final int getOutVertex(int ix, int iy, int iz){
+
+        int cl = iz - m_slabZ;
+        if(cl < 0)
+            return m_prevLayer[ix + ncx*iy];
+        int c = m_cellCluster[ix + ncx*(iy + ncy*cl)];
+        return (c >= 0)? m_outIndex[c]: -1;
+    }
+
+    /**
+       makes quads for grid edges crossed by isosurface which have all 4 adjacent cubes in the current or previous slab
+     */
+    void addFaces(int layers, IndexedTriangleCollector tcollector){
+
+        for(int cl = 0; cl < layers; cl++){
+            int iz = m_slabZ + cl;
+            double s0[] = getSlice(iz);
+            double s1[] = getSlice(iz+1);
+            for(int iy = 0; iy <= ncy; iy++){
+                for(int ix = 0; ix <= ncx; ix++){
+                    int b = ix + iy*m_nx;
+                    boolean inside = (s0[b] < 0);
+                    // x-edge
+                    if(ix < ncx && iy > 0 && iy < ncy && iz > 0 && inside != (s0[b+1] < 0)){
+                        addQuad(getOutVertex(ix, iy-1, iz-1), getOutVertex(ix, iy, iz-1),
+                                getOutVertex(ix, iy, iz), getOutVertex(ix, iy-1, iz), inside, tcollector);
+                    }
+                    // y-edge
+                    if(iy < ncy && ix > 0 && ix < ncx && iz > 0 && inside != (s0[b+m_nx] < 0)){
+                        addQuad(getOutVertex(ix-1, iy, iz-1), getOutVertex(ix-1, iy, iz),
+                                getOutVertex(ix, iy, iz), getOutVertex(ix, iy, iz-1), inside, tcollector);
+                    }
+                    // z-edge
+                    if(ix > 0 && ix < ncx && iy > 0 && iy < ncy && inside != (s1[b] < 0)){
+                        addQuad(getOutVertex(ix-1, iy-1, iz), getOutVertex(ix, iy-1, iz),
+                                getOutVertex(ix, iy, iz), getOutVertex(ix-1, iy, iz), inside, tcollector);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+       adds quad as 2 triangles. Vertices are ordered counterclockwise around the edge direction
+       triangles collapsed by merged vertices are skipped
+     */
+    void addQuad(int v0, int v1, int v2, int v3, boolean inside, IndexedTriangleCollector tcollector){
+
+        if(v0 < 0 || v1 < 0 || v2 < 0 || v3 < 0)
+            return;
+        if(v0 == v2 || v1 == v3)
+            return;
+        if(!inside){
+            int t = v1; v1 = v3; v3 = t;
+        }
+        if(v0 != v1 && v1 != v2)
+            tcollector.addTri(v0, v1, v2);
+        if(v2 != v3 && v3 != v0)
+            tcollector.addTri(v0, v2, v3);
+    }
+
+    /**
+       eigen decomposition of symmetric 3x3 matrix using Jacobi rotations
+       result: 3 eigenvalues followed by 3 eigenvectors
+     */
+    static void eigenSymmetric(double axx, double axy, double axz, double ayy, double ayz, double azz, double result[]){
+
+        double a[][] = new double[][]{{axx, axy, axz},{axy, ayy, ayz},{axz, ayz, azz}};
+        double v[][] = new double[][]{{1,0,0},{0,1,0},{0,0,1}};
+
+        for(int iter = 0; iter < 20; iter++){
+            double off = a[0][1]*a[0][1] + a[0][2]*a[0][2] + a[1][2]*a[1][2];
+            if(off < 1.e-24)
+                break;
+            for(int p = 0; p < 2; p++){
+                for(int q = p+1; q < 3; q++){
+                    if(a[p][q] == 0.)
+                        continue;
+                    double theta = (a[q][q] - a[p][p])/(2*a[p][q]);
+                    double t = Math.signum(theta)/(Math.abs(theta) + Math.sqrt(theta*theta + 1));
+                    if(theta == 0.) t = 1;
+                    double c = 1/Math.sqrt(t*t + 1);
+                    double s = t*c;
+                    for(int k = 0; k < 3; k++){
+                        double akp = a[k][p], akq = a[k][q];
+                        a[k][p] = c*akp - s*akq;
+                        a[k][q] = s*akp + c*akq;
+                    }
+                    for(int k = 0; k < 3; k++){
+                        double apk = a[p][k], aqk = a[q][k];
+                        a[p][k] = c*apk - s*aqk;
+                        a[q][k] = s*apk + c*aqk;
+                    }
+                    for(int k = 0; k < 3; k++){
+                        double vkp = v[k][p], vkq = v[k][q];
+                        v[k][p] = c*vkp - s*vkq;
+                        v[k][q] = s*vkp + c*vkq;
+                    }
+                }
+            }
+        }
+        for(int k = 0; k < 3; k++){
+            result[k] = a[k][k];
+            result[3+3*k] = v[0][k];
+            result[4+3*k] = v[1][k];
+            result[5+3*k] = v[2][k];
+        }
+    }
+}
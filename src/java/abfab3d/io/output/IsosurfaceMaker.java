@@ -22,10 +22,17 @@ import abfab3d.grid.Grid;
 import abfab3d.grid.DensityMaker;
 import abfab3d.grid.DensityMakerSubvoxel;
 
+import abfab3d.mesh.IndexedTriangleSetBuilder;
+import abfab3d.mesh.IndexedTriangleSetBuffer;
+
 import abfab3d.util.TriangleCollector;
+import abfab3d.util.IndexedTriangleCollector;
+import abfab3d.util.ComputePool;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static abfab3d.util.Output.printf;
 
 
@@ -60,6 +67,9 @@ public class IsosurfaceMaker {
     protected double m_isoValue = 0.; // value of isosurface 
     protected double m_bounds[] = new double[]{-1, 1, -1, 1, -1, 1}; // bounds of the area 
     int m_nx=10, m_ny=10, m_nz=10;
+    int m_threadCount = 1;
+    // more slabs than threads to balance load 
+    static final int SLABS_PER_THREAD = 4;
 
     /**
        set bounds of area where isosurface is made
@@ -83,6 +93,14 @@ public class IsosurfaceMaker {
 
     }
     
+    /**
+       set count of threads used by makeIsosurface(SliceCalculatorFactory, ...) 
+       if count is less than 1 - count of available processors is used 
+     */
+    public void setThreadCount(int count){
+        m_threadCount = count;
+    }
+
     /**
        set value of isosurface
      */
@@ -147,10 +165,19 @@ public class IsosurfaceMaker {
         SliceData slice1 = new SliceData(m_nx, m_ny, xmin, xmax, ymin, ymax);
 
         Vector3d triangles[] = new Vector3d[15]; // max number of triagles is 5         
+        for(int i = 0; i < triangles.length; i++){
+            // polygonizeCube_tetra() stores vertices in these vectors 
+            triangles[i] = new Vector3d();
+        }
         Cell cell = new Cell();
+        byte sign0[] = new byte[m_nx*m_ny];
+        byte sign1[] = new byte[m_nx*m_ny];
+        int cubes[] = new int[nx1]; 
+        int active[] = new int[nx1]; 
 
         slice0.setZ(zmin);
         scalculator.getSlice(slice0); 
+        int count0 = classifySlice(slice0.data, m_isoValue, sign0);
 
         for(int iz = 0; iz < nz1; iz++) {
             double z = zmin + dz * iz;
@@ -158,15 +185,20 @@ public class IsosurfaceMaker {
 
             slice1.setZ(z1);
             scalculator.getSlice(slice1); 
+            int count1 = classifySlice(slice1.data, m_isoValue, sign1);
+            boolean emptyLayer = isEmptyLayer(count0, count1, sign1.length);
             
-            for(int iy = 0; iy < ny1; iy++) {
+            for(int iy = 0; iy < ny1 && !emptyLayer; iy++) {
 
                 double y = ymin + dy*iy;
                 int iy1 = iy+1;
                 double y1 = y+dy;
                 
-                for(int ix = 0; ix < nx1; ix++) {
+                int activeCount = classifyRow(sign0, sign1, iy*m_nx, nx1, m_nx, cubes, active);
+
+                for(int k = 0; k < activeCount; k++) {
 
+                    int ix = active[k];
                     int ix1 = ix+1;
                     double x = xmin + dx*ix;
                     double x1 = x+dx;
@@ -209,10 +241,418 @@ public class IsosurfaceMaker {
             SliceData stmp = slice0;
             slice0 = slice1;
             slice1 = stmp;            
+            byte btmp[] = sign0;
+            sign0 = sign1;
+            sign1 = btmp;
+            count0 = count1;
+
+        }  // for(iz...           
+    }
+
+    /**
+       stores in @sign 1 for points with value below isosurface and 0 otherwise 
+       values closer than ISOEPS to isosurface are counted above, as in shiftFromZero() 
+       the loop works on primitive arrays and is simple enough to be vectorized by JIT 
+
+       returns count of points below isosurface 
+     */
+    static int classifySlice(double data[], double isoValue, byte sign[]){
+
+        int count = 0;
+        for(int i = 0; i < sign.length; i++){
+            byte b = (data[i] - isoValue <= -ISOEPS)? (byte)1: (byte)0;
+            sign[i] = b;
+            count += b;
+        }
+        return count;
+    }
+
+    /**
+       returns true if layer of cubes between two slices with given counts of points below isosurface 
+       has no cubes crossed by isosurface 
+     */
+    static final boolean isEmptyLayer(int count0, int count1, int size){
+
+        return (count0 == 0 && count1 == 0) || (count0 == size && count1 == size);
+
+    }
+
+    /**
+       calculates cube indices of a row of cubes between two slices and compacts cubes crossed by isosurface 
+       @param sign0 signs of lower slice 
+       @param sign1 signs of upper slice 
+       @param base offset of the first point of the row 
+       @param count count of cubes in the row 
+       @param nx size of slice in x direction 
+       @param cubes output cube indices of active cubes 
+       @param active output x-indices of active cubes 
+       @return count of active cubes 
+     */
+    static int classifyRow(byte sign0[], byte sign1[], int base, int count, int nx, int cubes[], int active[]){
+
+        int base1 = base + nx;
+        int activeCount = 0;
+        for(int ix = 0; ix < count; ix++){
+            int b = base + ix, b1 = base1 + ix;
+            int index = 
+                sign0[b] |
+                (sign0[b + 1] << 1) |
+                (sign1[b + 1] << 2) | 
+                (sign1[b] << 3) | 
+                (sign0[b1] << 4) | 
+                (sign0[b1 + 1] << 5) | 
+                (sign1[b1 + 1] << 6) | 
+                (sign1[b1] << 7);
+            // store unconditionally, advance only for active cubes 
+            cubes[activeCount] = index;
+            active[activeCount] = ix;
+            if(index != 0 && index != 0xFF)
+                activeCount++;
+        }
+        return activeCount;
+    }
+
+
+    /**
+       generates isosurface from given @scalculator and passes indexed triangles to @tcollector 
+
+       vertices are shared between adjacent cubes. Vertex indices of the cubes edges are cached 
+       for the two active slices, so each vertex is calculated and passed to collector once 
+       and no welding of vertices is needed. 
+
+       only CUBES algorithm is supported, TETRAHEDRA algorithm falls back to welding of loose triangles 
+     */
+    public void makeIndexedIsosurface(SliceCalculator scalculator, IndexedTriangleCollector tcollector){
+
+        if(m_algorithm != CUBES){
+            IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+            makeIsosurface(scalculator, its);
+            copyTriangles(its, tcollector);
+            return;
+        }
+        makeIndexedSlab(scalculator, tcollector, 0, m_nz-1, null, null);
+    }
+
+    /**
+       generates isosurface in several threads and passes triangles to @tcollector 
+
+       @see #makeIndexedIsosurface(SliceCalculatorFactory, IndexedTriangleCollector) 
+     */
+    public void makeIsosurface(SliceCalculatorFactory factory, TriangleCollector tcollector){
+
+        IndexedTriangleSetBuffer itb = new IndexedTriangleSetBuffer();
+        makeIndexedIsosurface(factory, itb);
+        itb.getTriangles(tcollector);
+
+    }
+
+    /**
+       generates isosurface in several threads and passes indexed triangles to @tcollector 
+
+       z-range of the area is split into slabs, which are processed concurrently. 
+       Each slab uses its own slice calculator created by @factory. 
+       Vertices on the boundary between slabs are stitched and slabs are passed to collector in z-order, 
+       so the result is identical to the result of makeIndexedIsosurface(SliceCalculator, IndexedTriangleCollector)
+       regardless of count of threads. 
+
+       only CUBES algorithm is processed in parallel 
+     */
+    public void makeIndexedIsosurface(SliceCalculatorFactory factory, IndexedTriangleCollector tcollector){
+
+        int nz1 = m_nz-1;
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+        int slabCount = Math.min(nz1, threadCount*SLABS_PER_THREAD);
+
+        if(m_algorithm != CUBES || threadCount == 1 || slabCount <= 1){
+            makeIndexedIsosurface(factory.createSliceCalculator(), tcollector);
+            return;
+        }
+
+        final Slab slabs[] = new Slab[slabCount];
+        Runnable tasks[] = new Runnable[slabCount];
+        for(int i = 0; i < slabCount; i++){
+            final Slab slab = new Slab((int)(((long)nz1*i)/slabCount), (int)(((long)nz1*(i+1))/slabCount));
+            slabs[i] = slab;
+            final SliceCalculator scalculator = factory.createSliceCalculator();
+            tasks[i] = new Runnable(){
+                    public void run(){
+                        makeIndexedSlab(scalculator, slab.triangles, slab.izmin, slab.izmax, slab.bottomEdges, slab.topEdges);
+                    }
+                };
+        }
+
+        ComputePool.execute(tasks);
+
+        // stitch slabs in z-order
+        double vert[] = null;
+        int faces[] = null;
+        Vector3d pnt = new Vector3d();
+        int prevTop[][] = null; // global indices of vertices on top of previous slab 
+
+        for(int k = 0; k < slabCount; k++){
+
+            Slab slab = slabs[k];
+            int vcount = slab.triangles.getVertexCount();
+            int fcount = slab.triangles.getFaceCount();
+            vert = slab.triangles.getVertices(vert);
+            faces = slab.triangles.getFaces(faces);
+
+            int vind[] = new int[vcount];
+            Arrays.fill(vind, -1);
+            if(prevTop != null){
+                // vertices on the bottom are shared with previous slab
+                for(int e = 0; e < 2; e++){
+                    int bottom[] = slab.bottomEdges[e];
+                    int top[] = prevTop[e];
+                    for(int i = 0; i < bottom.length; i++){
+                        if(bottom[i] >= 0)
+                            vind[bottom[i]] = top[i];
+                    }
+                }
+            }
+            for(int i = 0; i < vcount; i++){
+                if(vind[i] < 0){
+                    pnt.set(vert[3*i], vert[3*i+1], vert[3*i+2]);
+                    vind[i] = tcollector.addVertex(pnt);
+                }
+            }
+            for(int i = 0; i < fcount; i++){
+                tcollector.addTri(vind[faces[3*i]], vind[faces[3*i+1]], vind[faces[3*i+2]]);
+            }
+
+            // convert top edges into global indices
+            for(int e = 0; e < 2; e++){
+                int top[] = slab.topEdges[e];
+                for(int i = 0; i < top.length; i++){
+                    if(top[i] >= 0)
+                        top[i] = vind[top[i]];
+                }
+            }
+            prevTop = slab.topEdges;
+            slabs[k] = null; // release memory 
+        }
+    }
+
+    /**
+       generates isosurface in the layers of cubes [izmin, izmax)
+       
+       if @bottomEdges is not null, vertex indices of x and y edges of bottom plane of slab are stored in it 
+       if @topEdges is not null, vertex indices of x and y edges of top plane of slab are stored in it 
+     */
+    void makeIndexedSlab(SliceCalculator scalculator, IndexedTriangleCollector tcollector, int izmin, int izmax, 
+                         int bottomEdges[][], int topEdges[][]){
+
+        double 
+            xmin = m_bounds[0],
+            xmax = m_bounds[1],
+            ymin = m_bounds[2],
+            ymax = m_bounds[3],
+            zmin = m_bounds[4],
+            zmax = m_bounds[5];
+
+        int nx1 = m_nx-1;
+        int ny1 = m_ny-1;
+        int nz1 = m_nz-1;
+
+        double dx = (xmax - xmin)/nx1;
+        double dy = (ymax - ymin)/ny1;
+        double dz = (zmax - zmin)/nz1;
+
+        SliceData slice0 = new SliceData(m_nx, m_ny, xmin, xmax, ymin, ymax);
+        SliceData slice1 = new SliceData(m_nx, m_ny, xmin, xmax, ymin, ymax);
+
+        Cell cell = new Cell();
+        EdgeCache cache = new EdgeCache(m_nx, m_ny);
+        int ev[] = new int[12]; // vertex indices of cube edges 
+        Vector3d pnt = new Vector3d();
+
+        byte sign0[] = new byte[m_nx*m_ny];
+        byte sign1[] = new byte[m_nx*m_ny];
+        int cubes[] = new int[nx1]; 
+        int active[] = new int[nx1]; 
+
+        slice0.setZ(zmin + dz * izmin);
+        scalculator.getSlice(slice0); 
+        int count0 = classifySlice(slice0.data, m_isoValue, sign0);
+
+        for(int iz = izmin; iz < izmax; iz++) {
+            double z = zmin + dz * iz;
+            double z1 = zmin + dz * (iz+1); // not z+dz, so that slabs get bitwise equal planes
+
+            slice1.setZ(z1);
+            scalculator.getSlice(slice1); 
+            int count1 = classifySlice(slice1.data, m_isoValue, sign1);
+            boolean emptyLayer = isEmptyLayer(count0, count1, sign1.length);
+            
+            for(int iy = 0; iy < ny1 && !emptyLayer; iy++) {
+
+                double y = ymin + dy*iy;
+                double y1 = y+dy;
+                
+                int activeCount = classifyRow(sign0, sign1, iy*m_nx, nx1, m_nx, cubes, active);
+
+                for(int k = 0; k < activeCount; k++) {
+
+                    int ix = active[k];
+                    int base = ix  + iy * m_nx; // offset of point (x,y)
+                    int base1 = base + m_nx;     // offset of point (x, y+1)
+
+                    cell.val[0] = slice0.data[base] - m_isoValue;
+                    cell.val[1] = slice0.data[base + 1] - m_isoValue;
+                    cell.val[2] = slice1.data[base + 1] - m_isoValue;
+                    cell.val[3] = slice1.data[base] - m_isoValue;
+                    cell.val[4] = slice0.data[base1] - m_isoValue;
+                    cell.val[5] = slice0.data[base1 + 1] - m_isoValue;
+                    cell.val[6] = slice1.data[base1 + 1] - m_isoValue;
+                    cell.val[7] = slice1.data[base1] - m_isoValue;
+                    shiftFromZero(cell.val);
+
+                    int cubeindex = cubes[k];
+                    int edges = edgeTable[cubeindex];
+                    
+                    double x = xmin + dx*ix;
+                    double x1 = x+dx;
+
+                    cell.p[0].set(x, y, z );
+                    cell.p[1].set(x1,y, z );
+                    cell.p[2].set(x1,y, z1);
+                    cell.p[3].set(x, y, z1);
+                    cell.p[4].set(x, y1,z );
+                    cell.p[5].set(x1,y1,z );
+                    cell.p[6].set(x1,y1,z1);
+                    cell.p[7].set(x, y1,z1);
+                    
+                    // edges are interpolated from lower to upper corner 
+                    // and stored in the cache at the index of the lower corner 
+                    if((edges & 1) != 0)    ev[0]  = getEdgeVertex(cache.xedges0, base,    cell, 0, 1, pnt, tcollector);
+                    if((edges & 2) != 0)    ev[1]  = getEdgeVertex(cache.zedges,  base+1,  cell, 1, 2, pnt, tcollector);
+                    if((edges & 4) != 0)    ev[2]  = getEdgeVertex(cache.xedges1, base,    cell, 3, 2, pnt, tcollector);
+                    if((edges & 8) != 0)    ev[3]  = getEdgeVertex(cache.zedges,  base,    cell, 0, 3, pnt, tcollector);
+                    if((edges & 16) != 0)   ev[4]  = getEdgeVertex(cache.xedges0, base1,   cell, 4, 5, pnt, tcollector);
+                    if((edges & 32) != 0)   ev[5]  = getEdgeVertex(cache.zedges,  base1+1, cell, 5, 6, pnt, tcollector);
+                    if((edges & 64) != 0)   ev[6]  = getEdgeVertex(cache.xedges1, base1,   cell, 7, 6, pnt, tcollector);
+                    if((edges & 128) != 0)  ev[7]  = getEdgeVertex(cache.zedges,  base1,   cell, 4, 7, pnt, tcollector);
+                    if((edges & 256) != 0)  ev[8]  = getEdgeVertex(cache.yedges0, base,    cell, 0, 4, pnt, tcollector);
+                    if((edges & 512) != 0)  ev[9]  = getEdgeVertex(cache.yedges0, base+1,  cell, 1, 5, pnt, tcollector);
+                    if((edges & 1024) != 0) ev[10] = getEdgeVertex(cache.yedges1, base+1,  cell, 2, 6, pnt, tcollector);
+                    if((edges & 2048) != 0) ev[11] = getEdgeVertex(cache.yedges1, base,    cell, 3, 7, pnt, tcollector);
+
+                    int tri[] = triTable[cubeindex];
+                    for (int i = 0; i < tri.length; i += 3) {
+                        tcollector.addTri(ev[tri[i]], ev[tri[i+1]], ev[tri[i+2]]);
+                    }
+                }// ix
+            } // iy 
+
+            if(iz == izmin && bottomEdges != null){
+                bottomEdges[0] = cache.xedges0.clone();
+                bottomEdges[1] = cache.yedges0.clone();
+            }
+            if(iz == izmax-1 && topEdges != null){
+                topEdges[0] = cache.xedges1.clone();
+                topEdges[1] = cache.yedges1.clone();
+            }
+            // switch calculated slices
+            SliceData stmp = slice0;
+            slice0 = slice1;
+            slice1 = stmp;            
+            byte btmp[] = sign0;
+            sign0 = sign1;
+            sign1 = btmp;
+            count0 = count1;
+            cache.nextSlice();
 
         }  // for(iz...           
     }
 
+    /**
+       returns index of vertex on the cube edge between corners c0 and c1
+       the vertex is calculated and added to collector if it is not in cache yet 
+     */
+    final int getEdgeVertex(int cache[], int index, Cell cell, int c0, int c1, Vector3d pnt, IndexedTriangleCollector tcollector){
+
+        int v = cache[index];
+        if(v < 0){
+            vertexInterp(0., cell.p[c0], cell.p[c1], cell.val[c0], cell.val[c1], pnt);
+            v = tcollector.addVertex(pnt);
+            cache[index] = v;
+        }
+        return v;
+    }
+
+    /**
+       copies triangles from its into indexed collector 
+     */
+    static void copyTriangles(IndexedTriangleSetBuilder its, IndexedTriangleCollector tcollector){
+
+        double vert[] = its.getVertices();
+        int faces[] = its.getFaces();
+        int vcount = its.getVertexCount();
+        int fcount = its.getFaceCount();
+        int vind[] = new int[vcount];
+        Vector3d pnt = new Vector3d();
+        for(int i = 0; i < vcount; i++){
+            pnt.set(vert[3*i], vert[3*i+1], vert[3*i+2]);
+            vind[i] = tcollector.addVertex(pnt);
+        }
+        for(int i = 0; i < fcount; i++){
+            tcollector.addTri(vind[faces[3*i]], vind[faces[3*i+1]], vind[faces[3*i+2]]);
+        }
+    }
+
+    /**
+       slab of layers of cubes processed by one task 
+     */
+    static class Slab {
+
+        int izmin, izmax;
+        IndexedTriangleSetBuffer triangles = new IndexedTriangleSetBuffer();
+        int bottomEdges[][] = new int[2][];
+        int topEdges[][] = new int[2][];
+
+        Slab(int izmin, int izmax){
+            this.izmin = izmin;
+            this.izmax = izmax;
+        }
+    }
+
+    /**
+       vertex indices of edges of grid in two active slices 
+       -1 means vertex is not calculated yet 
+     */
+    static class EdgeCache {
+
+        int xedges0[], yedges0[]; // edges in the lower slice 
+        int xedges1[], yedges1[]; // edges in the upper slice 
+        int zedges[]; // edges between slices 
+
+        EdgeCache(int nx, int ny){
+
+            int size = nx*ny;
+            xedges0 = new int[size];
+            yedges0 = new int[size];
+            xedges1 = new int[size];
+            yedges1 = new int[size];
+            zedges = new int[size];
+            Arrays.fill(xedges0, -1);
+            Arrays.fill(yedges0, -1);
+            Arrays.fill(xedges1, -1);
+            Arrays.fill(yedges1, -1);
+            Arrays.fill(zedges, -1);
+        }
+
+        /**
+           upper slice becomes lower slice 
+         */
+        void nextSlice(){
+
+            int t[] = xedges0; xedges0 = xedges1; xedges1 = t;
+            t = yedges0; yedges0 = yedges1; yedges1 = t;
+            Arrays.fill(xedges1, -1);
+            Arrays.fill(yedges1, -1);
+            Arrays.fill(zedges, -1);
+        }
+    }
     
     static final double ISOEPS = 1.e-2;
 
@@ -758,6 +1198,16 @@ public class IsosurfaceMaker {
     }
 
 
+    /**
+       creates slice calculators for concurrent processing of slabs
+       each returned calculator is used by one thread only 
+     */
+    public static interface SliceCalculatorFactory {
+
+        public SliceCalculator createSliceCalculator();
+    }
+
+
     /**
        interface to return data value at the given point 
      */
@@ -861,6 +1311,8 @@ public class IsosurfaceMaker {
         double gdx, gdy, gdz; // pixel size of grid 
         double gxmin, gymin, gzmin; // origin of the grid 
         int m_smoothSteps = 0;
+        byte m_planeStates[]; // states of z-plane of grid 
+        int m_planeZ = -1; // z-coordinate of plane read in current getSlice() 
 
         public SliceGrid(Grid grid, double bounds[], int smoothSteps){
 
@@ -901,6 +1353,9 @@ public class IsosurfaceMaker {
             int gz = round((z - gzmin)/gdz);
             
             double data[] = sliceData.data;
+
+            if(m_smoothSteps == 0 && gz >= 0 && gz < gnz)
+                readPlane(gz);
            
             for(int iy = 0; iy < ny; iy++){
 
@@ -917,6 +1372,19 @@ public class IsosurfaceMaker {
                     data[offset + ix] = getGridData(gx,gy,gz, m_smoothSteps);
                 }
             }            
+            // grid may change between calls 
+            m_planeZ = -1;
+        }
+
+        /**
+           reads states of the whole z-plane of grid in one call 
+         */
+        void readPlane(int gz){
+
+            if(m_planeStates == null)
+                m_planeStates = new byte[gnx*gny];
+            grid.getStates(0, gnx-1, 0, gny-1, gz, gz, m_planeStates);
+            m_planeZ = gz;
         }
 
         /**
@@ -929,7 +1397,7 @@ public class IsosurfaceMaker {
                 if(gx <  0 || gy < 0 || gz < 0 || gx >= gnx || gy >= gny || gz >= gnz){
                     return 1;
                 } else {
-                    byte state = grid.getState(gx,gy,gz);
+                    byte state = (gz == m_planeZ)? m_planeStates[gy*gnx + gx]: grid.getState(gx,gy,gz);
                     if(state == Grid.OUTSIDE)
                         return 1;
                     else 
@@ -1101,6 +1569,7 @@ public class IsosurfaceMaker {
         
         double blockData[]; // data of the block 
         double rowData[];// data for one row for convolution 
+        long attData[];// attributes of the block read from grid 
 
         // bondary of 3D block of grid 
         // it is larger than actual block of data due to increase by size of the kernel
@@ -1196,28 +1665,45 @@ public class IsosurfaceMaker {
                 rowData = new double[maxSize];
             
             boolean hasPlus = false, hasMinus = false;
-            
-            // fill block with data from grid 
-            for(int y = 0; y < bsizey; y++){
-                int y0 = y + bymin;
-                int xoffset  = y*bsizez*bsizex;
-
-                for(int x = 0; x < bsizex; x++){
-                    int x0 = x + bxmin;
-                    int zoffset  = xoffset + x*bsizez;
 
-                    for(int z = 0; z < bsizez; z++){
-                        // TODO et data for z row in one call 
-                        double v = getGridData(x0, y0, z + bzmin);
-                        if(v > 0.)
-                            hasPlus = true;
-                        else if(v < 0.)
-                            hasMinus = true;
-                        blockData[zoffset + z] = v;
-                        
+            // part of the block inside of the grid 
+            int cxmin = max(bxmin, 0), cxmax = min(bxmin + bsizex - 1, gnx-1);
+            int cymin = max(bymin, 0), cymax = min(bymin + bsizey - 1, gny-1);
+            int czmin = max(bzmin, 0), czmax = min(bzmin + bsizez - 1, gnz-1);
+            int csizex = cxmax - cxmin + 1;
+            int csizey = cymax - cymin + 1;
+            int csizez = czmax - czmin + 1;
+
+            if(csizex < bsizex || csizey < bsizey || csizez < bsizez){
+                // voxels outside of grid are outside 
+                Arrays.fill(blockData, 0, dataSize, 1.);
+                hasPlus = true;
+            }
+            
+            if(csizex > 0 && csizey > 0 && csizez > 0){
+                // fill block with data from grid read in one call 
+                int csize = csizex * csizey * csizez;
+                if(attData == null || attData.length < csize)
+                    attData = new long[csize];
+                agrid.getAttributes(cxmin, cxmax, cymin, cymax, czmin, czmax, attData);
+
+                int ind = 0;
+                for(int y = cymin; y <= cymax; y++){
+                    int xoffset  = (y - bymin)*bsizez*bsizex;
+                    for(int x = cxmin; x <= cxmax; x++){
+                        int zoffset  = xoffset + (x - bxmin)*bsizez - bzmin;
+                        for(int z = czmin; z <= czmax; z++){
+                            // normalize output to interval (-1, 1) 
+                            double v = 1-2*m_densityMaker.makeDensity(attData[ind++]);
+                            if(v > 0.)
+                                hasPlus = true;
+                            else if(v < 0.)
+                                hasMinus = true;
+                            blockData[zoffset + z] = v;
+                        }
                     }
                 }
-            } 
+            }
             
             if(hasPlus && hasMinus){
 
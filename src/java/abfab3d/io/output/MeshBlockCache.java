@@ -0,0 +1,170 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.io.output;
+
+import java.util.HashMap;
+
+import abfab3d.mesh.IndexedTriangleSetBuilder;
+
+/**
+   cache of meshes of MeshMakerMT blocks to be reused between runs of the mesher
+
+   blocks are identified by their bounds in grid coordinates.
+   each entry stores hash of grid content used to make the mesh of the block
+   (including margin used by smoothing kernel) and the resulting triangles.
+   Leaf block is re-extracted only if its content hash has changed.
+   Joined block is re-joined only if hash of some of its children has changed.
+   Block boundary is never decimated, so reused blocks fit freshly made neighbours.
+
+   cache is cleared automatically if mesher settings or grid dimensions change
+
+   cache keeps triangles of blocks of all octree levels, which needs more memory than the final mesh
+ */
+public class MeshBlockCache {
+
+    HashMap<BlockKey, Entry> m_entries = new HashMap<BlockKey, Entry>();
+    // signature of settings used to make the cached meshes
+    long m_settings;
+
+    int m_hitCount;
+    int m_missCount;
+
+    public MeshBlockCache(){
+    }
+
+    /**
+       remove all cached blocks
+     */
+    public synchronized void clear(){
+
+        m_entries.clear();
+        m_hitCount = 0;
+        m_missCount = 0;
+
+    }
+
+    /**
+       returns count of cached blocks
+     */
+    public synchronized int size(){
+        return m_entries.size();
+    }
+
+    /**
+       returns count of blocks reused since last resetStat()
+     */
+    public synchronized int getHitCount(){
+        return m_hitCount;
+    }
+
+    /**
+       returns count of blocks remeshed since last resetStat()
+     */
+    public synchronized int getMissCount(){
+        return m_missCount;
+    }
+
+    public synchronized void resetStat(){
+
+        m_hitCount = 0;
+        m_missCount = 0;
+
+    }
+
+    /**
+       clears the cache if settings differ from settings of cached blocks
+     */
+    synchronized void checkSettings(long settings){
+
+        if(settings != m_settings){
+            m_entries.clear();
+            m_settings = settings;
+        }
+    }
+
+    /**
+       returns entry for block with given bounds and content hash or null
+     */
+    synchronized Entry get(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax, long hash){
+
+        Entry entry = m_entries.get(new BlockKey(xmin, xmax, ymin, ymax, zmin, zmax));
+        if(entry != null && entry.hash == hash){
+            m_hitCount++;
+            return entry;
+        }
+        m_missCount++;
+        return null;
+    }
+
+    synchronized void put(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax, Entry entry){
+
+        m_entries.put(new BlockKey(xmin, xmax, ymin, ymax, zmin, zmax), entry);
+
+    }
+
+    /**
+       mixes value into hash
+     */
+    static long mix(long hash, long value){
+
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+
+    }
+
+    static final long HASH_START = 0xcbf29ce484222325L;
+
+    /**
+       cached mesh of one block
+       the arrays are shared between runs and should not be modified
+     */
+    static class Entry {
+
+        long hash;
+        int faces[];
+        double vertices[];
+        IndexedTriangleSetBuilder its;
+        int origFaceCount;
+        int finalFaceCount;
+
+    }
+
+    static class BlockKey {
+
+        int xmin, xmax, ymin, ymax, zmin, zmax;
+
+        BlockKey(int xmin, int xmax, int ymin, int ymax, int zmin, int zmax){
+
+            this.xmin = xmin;
+            this.xmax = xmax;
+            this.ymin = ymin;
+            this.ymax = ymax;
+            this.zmin = zmin;
+            this.zmax = zmax;
+        }
+
+        public int hashCode(){
+
+            return (int)mix(mix(mix(mix(mix(mix(HASH_START, xmin), xmax), ymin), ymax), zmin), zmax);
+
+        }
+
+        public boolean equals(Object obj){
+
+            if(!(obj instanceof BlockKey))
+                return false;
+            BlockKey k = (BlockKey)obj;
+            return (xmin == k.xmin && xmax == k.xmax && ymin == k.ymin && ymax == k.ymax && zmin == k.zmin && zmax == k.zmax);
+        }
+    }
+}
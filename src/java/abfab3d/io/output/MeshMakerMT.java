@@ -16,24 +16,27 @@ import java.util.Arrays;
 
 import javax.vecmath.Vector3d;
 import java.util.Vector;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
+import abfab3d.grid.AttributeGrid;
 import abfab3d.grid.Grid;
 import abfab3d.grid.DensityMaker;
 import abfab3d.grid.DensityMakerSubvoxel;
+import abfab3d.grid.util.ExecutionStoppedException;
 
 import abfab3d.mesh.EdgeTester;
 import abfab3d.mesh.IndexedTriangleSetBuilder;
+import abfab3d.mesh.IndexedTriangleSetBuffer;
 import abfab3d.mesh.MeshDecimator;
+import abfab3d.mesh.MeshDecimatorPQ;
+import abfab3d.mesh.MeshDecimatorParallel;
 import abfab3d.mesh.WingedEdgeTriangleMesh;
 
 import abfab3d.util.AbFab3DGlobals;
 import abfab3d.util.MathUtil;
 import abfab3d.util.TriangleCollector;
+import abfab3d.util.ComputePool;
 
 
 
@@ -78,6 +81,8 @@ public class MeshMakerMT {
     
     // converter from grid attribute into density 
     protected DensityMaker m_densityMaker = new DensityMakerSubvoxel(255); 
+    // count of attributes used for signature of unknown density maker in block cache settings 
+    static final int DENSITY_SIGNATURE_SIZE = 1 << 16;
 
 
     protected int m_maxDecimationCount = 7;
@@ -86,6 +91,15 @@ public class MeshMakerMT {
     protected int m_maxTriangles = Integer.MAX_VALUE;
     protected EdgeTester m_edgeTester;
 
+    // octree level at which finished blocks are streamed into output, -1 - no streaming 
+    protected int m_streamingLevel = -1;
+
+    // compact decimated meshes 
+    protected boolean m_compactMesh = false;
+
+    // cache of block meshes from previous runs 
+    protected MeshBlockCache m_blockCache;
+
     public MeshMakerMT() {
         m_threadCount = ((Number)AbFab3DGlobals.get(AbFab3DGlobals.MAX_PROCESSOR_COUNT_KEY)).intValue();
     }
@@ -102,6 +116,11 @@ public class MeshMakerMT {
         m_threadCount = count;
     }
 
+    /**
+     * set max count of triangles in the output mesh
+     * mesh with more triangles is decimated to that count without error limit
+     * the limit is not applied in streaming mode
+     */
     public void setMaxTriangles(int tris) {
         this.m_maxTriangles = tris;
     }
@@ -157,6 +176,46 @@ public class MeshMakerMT {
     }
 
 
+    /**
+     * if true, meshes are compacted and reordered in spatial order between decimation passes
+     * @see MeshDecimator#setCompactMesh(boolean)
+     */
+    public void setCompactMesh(boolean value) {
+
+        m_compactMesh = value;
+
+    }
+
+    /**
+     * set octree level at which finished blocks are streamed into output
+     * blocks at that level (and leaf blocks above it) are written into TriangleCollector
+     * as soon as they are decimated and their memory is released. They are not joined further.
+     * Block boundaries are not decimated, so streamed blocks fit each other.
+     *
+     * level 0 is the whole grid, each next level splits blocks in halves
+     * -1 - no streaming, the whole mesh is joined before output (default)
+     *
+     * TriangleCollector is called from several threads, but calls are serialized 
+     */
+    public void setStreamingLevel(int level) {
+
+        m_streamingLevel = level;
+
+    }
+
+    /**
+     * set cache of block meshes to be reused between runs 
+     * blocks whose grid content did not change since previous run are taken from the cache 
+     * instead of being extracted and decimated again. 
+     * cache is not used if edge tester is set
+     * @see MeshBlockCache 
+     */
+    public void setBlockCache(MeshBlockCache cache) {
+
+        m_blockCache = cache;
+
+    }
+
     /**
        set interpolation algorith to use 
        INTERPOLATION_LINEAR
@@ -189,11 +248,16 @@ public class MeshMakerMT {
         printf("Mesh maker using threads: %d\n",m_threadCount);
         long t0 = time();
         GridBlockSet blocks = makeBlocksOctree(grid.getWidth(), grid.getHeight(), grid.getDepth(), m_blockSize);
+        if(m_streamingLevel >= 0)
+            blocks.setOutput(tc, m_streamingLevel);
+        if(m_blockCache != null && m_edgeTester == null && grid instanceof AttributeGrid){
+            blocks.cache = m_blockCache;
+            m_blockCache.checkSettings(getCacheSettings(grid));
+            m_blockCache.resetStat();
+        }
                 
         //blocks.dump();
 
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
-
         BlockProcessor threads[] = new BlockProcessor[m_threadCount];
         double smoothKernel[] = null;
         if (m_smoothingWidth > 0.) {
@@ -205,32 +269,107 @@ public class MeshMakerMT {
             if (m_edgeTester != null) {
                 threads[i].setEdgeTester((EdgeTester) (m_edgeTester.clone()));
             }
-            executor.submit(threads[i]);
-
         }
+        ComputePool.execute(threads);
 
-        executor.shutdown();
+        printf("MESH_EXTRACTION_TIME: %d ms\n", (time() - t0));
+        if(blocks.cache != null)
+            printf("    cachedBlocks: %d remeshedBlocks: %d\n", blocks.cache.getHitCount(), blocks.cache.getMissCount());
 
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (Exception e) {
-            e.printStackTrace();
+        if(m_streamingLevel >= 0){
+            // all blocks are already written
+            printf("    streamedBlocks: %d\n", blocks.streamedCount);
+            return RESULT_OK;
         }
 
-        printf("MESH_EXTRACTION_TIME: %d ms\n", (time() - t0));
-
         // last block has the final mesh 
         GridBlock block = blocks.getLast(); 
+        if(block.needsDecimation){
+            decimateRoot(block);
+            blocks.putToCache(block);
+        }
         if(true){
             //printf("    lastBlock: %s\n", block);
             printf("    origFaceCount: %d\n", block.origFaceCount);
             printf("    finalFaceCount: %d\n", block.finalFaceCount);
         }
+        if(block.finalFaceCount > m_maxTriangles){
+            // decimate to the triangles budget in one pass 
+            BlockDecimator decimator = new BlockDecimator(blocks, (double)m_maxTriangles / block.finalFaceCount);
+            if (m_edgeTester != null) {
+                decimator.setEdgeTester((EdgeTester) (m_edgeTester.clone()));
+            }
+            decimator.processBlock(block);
+            printf("    budgetFaceCount: %d\n", block.finalFaceCount);
+        }
         block.writeTriangles(tc);        
         return RESULT_OK;
 
     }
 
+    /**
+       decimates joined mesh of the root block using all threads 
+       it is done outside of BlockProcessor, because ComputePool runs nested tasks in the calling thread 
+     */
+    void decimateRoot(GridBlock block){
+
+        long t0 = time();
+        int faceCount = block.its.getFaceCount();
+        WingedEdgeTriangleMesh mesh = new WingedEdgeTriangleMesh(block.its.getVertices(), block.its.getVertexCount(), 
+                                                                 block.its.getFaces(), faceCount);
+        MeshDecimatorParallel decimator = new MeshDecimatorParallel();
+        decimator.setThreadCount(m_threadCount);
+        decimator.setCompactMesh(m_compactMesh);
+        decimator.setMaxCollapseError(m_maxDecimationError);
+
+        int iterations = m_maxDecimationCount;
+        int fcount = mesh.getTriangleCount();
+        while(iterations-- > 0){
+            decimator.processMesh(mesh, fcount/2);
+            int fc = mesh.getTriangleCount();
+            if(fc > (int)(fcount*0.99))
+                break;
+            fcount = fc;
+        }
+        fcount = mesh.getTriangleCount();
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder(fcount);
+        mesh.getTriangles(its);
+        block.its = its;
+        block.finalFaceCount = fcount;
+        block.needsDecimation = false;
+        printf("ROOT_DECIMATION_TIME: %d ms\n", (time() - t0));
+    }
+
+    /**
+       signature of settings which affect meshes of blocks 
+     */
+    long getCacheSettings(Grid grid){
+        
+        double bounds[] = new double[6];
+        grid.getGridBounds(bounds);
+        long s = MeshBlockCache.HASH_START;
+        s = MeshBlockCache.mix(s, grid.getWidth());
+        s = MeshBlockCache.mix(s, grid.getHeight());
+        s = MeshBlockCache.mix(s, grid.getDepth());
+        for(int i = 0; i < bounds.length; i++)
+            s = MeshBlockCache.mix(s, Double.doubleToLongBits(bounds[i]));
+        s = MeshBlockCache.mix(s, m_blockSize);
+        s = MeshBlockCache.mix(s, Double.doubleToLongBits(m_smoothingWidth));
+        s = MeshBlockCache.mix(s, m_noDecimationSize);
+        s = MeshBlockCache.mix(s, m_maxDecimationCount);
+        s = MeshBlockCache.mix(s, m_interpolationAlgorithm);
+        s = MeshBlockCache.mix(s, m_compactMesh? 1: 0);
+        s = MeshBlockCache.mix(s, m_densityMaker.getClass().getName().hashCode());
+        if(m_densityMaker instanceof DensityMakerSubvoxel){
+            s = MeshBlockCache.mix(s, ((DensityMakerSubvoxel)m_densityMaker).getSubvoxelResolution());
+        } else {
+            // parameters of other density makers are unknown, use densities of all 16 bit attributes 
+            for(int a = 0; a < DENSITY_SIGNATURE_SIZE; a++)
+                s = MeshBlockCache.mix(s, Double.doubleToLongBits(m_densityMaker.makeDensity(a)));
+        }
+        return s;
+    }
+
     /**
        uses array for block
      */
@@ -241,8 +380,6 @@ public class MeshMakerMT {
         GridBlockSet blocks = makeBlocks(grid.getWidth() - 1, grid.getHeight() - 1, grid.getDepth() - 1, m_blockSize);
 
 
-        ExecutorService executor = Executors.newFixedThreadPool(m_threadCount);
-
         BlockProcessor threads[] = new BlockProcessor[m_threadCount];
         double smoothKernel[] = null;
         if (m_smoothingWidth > 0.) {
@@ -254,17 +391,8 @@ public class MeshMakerMT {
             if (m_edgeTester != null) {
                 threads[i].setEdgeTester((EdgeTester) (m_edgeTester.clone()));
             }
-            executor.submit(threads[i]);
-
-        }
-
-        executor.shutdown();
-
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        ComputePool.execute(threads);
 
         long num_tris = 0;
         for(int i=0; i < threads.length;i++) {
@@ -292,55 +420,20 @@ public class MeshMakerMT {
         if(DEBUG)
             printf("finalFaceCount: %d\n", finalFaceCount);
 
-        int max_loop = 3;
-        int attempts = 0;
-        int last_tri_count =0;
-
-        while(finalFaceCount > m_maxTriangles && attempts < max_loop) {
+        if(finalFaceCount > m_maxTriangles) {
+            // decimate each block to its share of triangles budget in one pass 
+            double budgetRatio = (double)m_maxTriangles / finalFaceCount;
+            printf("Count is above max triangle limit: %d, budget ratio: %5.3f\n", finalFaceCount, budgetRatio);
             blocks.rewind();
-            // TODO: Not sure how aggressive to change decimation error;
-            m_maxDecimationError *= 10;
-            System.out.println("Count is above max triangle limit: " + finalFaceCount + " new decimationError: " + m_maxDecimationError);
-
-            executor = Executors.newFixedThreadPool(m_threadCount);
 
             BlockDecimator[] workers = new BlockDecimator[m_threadCount];
             for (int i = 0; i < m_threadCount; i++) {
-                workers[i] = new BlockDecimator(blocks);
+                workers[i] = new BlockDecimator(blocks, budgetRatio);
                 if (m_edgeTester != null) {
                     workers[i].setEdgeTester((EdgeTester) (m_edgeTester.clone()));
                 }
-
-                executor.submit(workers[i]);
-            }
-
-            executor.shutdown();
-
-            try {
-                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
-            blocks.rewind();
-
-            finalFaceCount = 0;
-            while ((block = blocks.getNext()) != null) {
-
-                //printf(" isosurface: %d ms, decimation: %d ms  faces: %d -> : %d\n",
-                //       block.timeIsosurface, block.timeDecimation, block.origFaceCount,block.finalFaceCount);
-                finalFaceCount += block.finalFaceCount;
-            }
-
-            System.out.println("Current faceCount: " + finalFaceCount);
-            attempts++;
-
-            if (finalFaceCount == last_tri_count) {
-                System.out.println("No new triangles found, bailing");
-                break;
             }
-
-            last_tri_count = finalFaceCount;
+            ComputePool.execute(workers);
         }
 
         blocks.rewind();
@@ -476,6 +569,9 @@ public class MeshMakerMT {
         int finishedChildCount;
         GridBlock parent; // parent in octree 
         int level; // subdivision level of that block 
+        boolean needsDecimation; // joined triangles are not decimated yet 
+        long contentHash; // hash of grid content used to make the block 
+        boolean hasHash; 
 
         static final int 
             C000 = 0,
@@ -652,11 +748,25 @@ public class MeshMakerMT {
 
         void informParent(GridBlockSet blocks){
 
+            blocks.putToCache(this);
             blocks.faceCounts[level].addAndGet(finalFaceCount);
 
+            if(blocks.isStreamed(this)){
+                blocks.write(this);
+                return;
+            }
             if(parent != null)
                 parent.childFinished(blocks);
         }
+
+        /**
+           release memory used by triangles 
+         */
+        void release(){
+            its = null;
+            faces = null;
+            vertices = null;
+        }
         boolean hasChildren(){
             return (children != null);
         }
@@ -680,10 +790,49 @@ public class MeshMakerMT {
         AtomicInteger currentBlock = new AtomicInteger(0);
         int currentLevel;
         AtomicInteger faceCounts[];
+        // output for streamed blocks 
+        TriangleCollector output;
+        int streamingLevel = -1;
+        int streamedCount = 0;
+
+        // cache of block meshes or null 
+        MeshBlockCache cache;
 
         GridBlockSet() {
             gridBlocks = new Vector<GridBlock>();
         }
+
+        /**
+           take mesh of the block from cache
+           returns true if block was found 
+         */
+        boolean getFromCache(GridBlock block){
+
+            MeshBlockCache.Entry entry = cache.get(block.xmin, block.xmax, block.ymin, block.ymax, block.zmin, block.zmax, 
+                                                   block.contentHash);
+            if(entry == null)
+                return false;
+            block.faces = entry.faces;
+            block.vertices = entry.vertices;
+            block.its = entry.its;
+            block.origFaceCount = entry.origFaceCount;
+            block.finalFaceCount = entry.finalFaceCount;
+            return true;
+        }
+
+        void putToCache(GridBlock block){
+
+            if(cache == null || !block.hasHash || block.needsDecimation)
+                return;
+            MeshBlockCache.Entry entry = new MeshBlockCache.Entry();
+            entry.hash = block.contentHash;
+            entry.faces = block.faces;
+            entry.vertices = block.vertices;
+            entry.its = block.its;
+            entry.origFaceCount = block.origFaceCount;
+            entry.finalFaceCount = block.finalFaceCount;
+            cache.put(block.xmin, block.xmax, block.ymin, block.ymax, block.zmin, block.zmax, entry);
+        }
         
         public void rewind() {
             currentBlock.set(0);
@@ -727,6 +876,32 @@ public class MeshMakerMT {
             gridBlocks.add(block);
         }
 
+        /**
+           finished blocks of given level will be written into output 
+         */
+        public void setOutput(TriangleCollector output, int streamingLevel){
+            this.output = output;
+            this.streamingLevel = streamingLevel;
+        }
+
+        /**
+           returns true if finished block is written into output instead of joining with parent 
+         */
+        public boolean isStreamed(GridBlock block){
+            return (output != null && block.level <= streamingLevel);
+        }
+
+        /**
+           write finished block into output and release its memory 
+         */
+        public void write(GridBlock block){
+            synchronized(output){
+                block.writeTriangles(output);
+                streamedCount++;
+            }
+            block.release();
+        }
+
         public int size(){
             return gridBlocks.size();
         }
@@ -787,9 +962,11 @@ public class MeshMakerMT {
         GridBlockSet blocks;
 
         WingedEdgeTriangleMesh mesh;
-        IndexedTriangleSetBuilder its;
+        IndexedTriangleSetBuilder its; // joined triangles of children blocks 
+        IndexedTriangleSetBuffer itb; // triangles of isosurface of the block 
         double vertices[]; // intermediate memory for vertices 
         int faces[];  // intermediate memory for face indexes 
+        long attData[]; // intermediate memory for grid attributes 
 
         int gnx, gny, gnz;
         double gxmin, gymin, gzmin;
@@ -849,16 +1026,14 @@ public class MeshMakerMT {
                 if (block == null)
                     break;
                 
-                try {
-                    if(block.hasChildren())
-                        joinAndDecimate(block);
-                    else 
-                        buildAndDecimate(block);
-
-                } catch (Exception e) {
-
-                    e.printStackTrace();
-                    break;
+                // failure is propagated to the caller via ComputePool 
+                if(block.hasChildren())
+                    joinAndDecimate(block);
+                else 
+                    buildAndDecimate(block);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
                 }
             }
         }
@@ -867,6 +1042,14 @@ public class MeshMakerMT {
 
             if(DEBUG)
                 printf("buildAndDecimate(%s)\n", block);
+            if(blocks.cache != null){
+                block.contentHash = getContentHash(block);
+                block.hasHash = true;
+                if(blocks.getFromCache(block)){
+                    block.informParent(blocks);
+                    return;
+                }
+            }
             blockBounds[0] = gxmin + block.xmin * gdx + gdx / 2;
             blockBounds[1] = blockBounds[0] + (block.xmax - block.xmin) * gdx;
             blockBounds[2] = gymin + block.ymin * gdy + gdy / 2;
@@ -886,10 +1069,10 @@ public class MeshMakerMT {
             imaker.setGridSize(block.xmax - block.xmin + 1, block.ymax - block.ymin + 1, block.zmax - block.zmin + 1);
             imaker.setInterpolationAlgorithm(m_interpolationAlgorithm);
 
-            if (its == null) {
-                its = new IndexedTriangleSetBuilder();
+            if (itb == null) {
+                itb = new IndexedTriangleSetBuffer();
             } else {
-                its.clear();
+                itb.clear();
             }
 
             long t0;
@@ -904,7 +1087,7 @@ public class MeshMakerMT {
                 block.informParent(blocks);
                 return;
             }
-            imaker.makeIsosurface(slicer, its);
+            imaker.makeIndexedIsosurface(slicer, itb);
 
 
             long t1;
@@ -914,8 +1097,8 @@ public class MeshMakerMT {
                 block.timeIsosurface = (t1 - t0);
             }
 
-            int vertexCount = its.getVertexCount();
-            int faceCount = its.getFaceCount();
+            int vertexCount = itb.getVertexCount();
+            int faceCount = itb.getFaceCount();
 
             origNumTriangles += faceCount;
 
@@ -924,9 +1107,9 @@ public class MeshMakerMT {
             if (faceCount < m_noDecimationSize) {
                 // no decimation is needed 
                 block.faces = new int[faceCount * 3];
-                its.getFaces(block.faces);
-                block.vertices = new double[3 * its.getVertexCount()];
-                its.getVertices(block.vertices);
+                itb.getFaces(block.faces);
+                block.vertices = new double[3 * itb.getVertexCount()];
+                itb.getVertices(block.vertices);
 
                 // TODO: added this, I suspect total faceCount was wrong without this.
                 block.finalFaceCount = faceCount;
@@ -936,35 +1119,14 @@ public class MeshMakerMT {
             }
 
             // will do decimation 
-            vertices = its.getVertices(vertices);
-            faces = its.getFaces(faces);
+            vertices = itb.getVertices(vertices);
+            faces = itb.getFaces(faces);
 
             block.origFaceCount = faceCount;
 
             //printf("vertCount: %d faceCont: %d\n", vertexCount, faceCount);        
 
-            if (mesh == null) {
-                //printf("new mesh\n");
-                mesh = new WingedEdgeTriangleMesh(vertices, vertexCount, faces, faceCount);
-            } else {
-                //printf("reusing old mesh\n");
-                mesh.clear();
-                mesh.setFaces(vertices, vertexCount, faces, faceCount);
-            }
-
-            //block.mesh = 
-            //intf("mesh created: %d ms\n", (time() - t0));
-
-            if (decimator == null) {
-                decimator = new MeshDecimator();
-                if (edgeTester != null) {
-                    decimator.setEdgeTester(edgeTester);
-                }
-            }
-
-            if (edgeTester != null) {
-                edgeTester.initialize(mesh);
-            }
+            initMesh(vertexCount, faceCount);
 
             //printf("start decimation\n");
 
@@ -1004,7 +1166,30 @@ public class MeshMakerMT {
             if(DEBUG)
                 printf("joinAndDecimate(%s)\n", block);
 
-            its.clear();
+            if(blocks.cache != null && hasChildrenHash(block)){
+                long hash = MeshBlockCache.mix(MeshBlockCache.HASH_START, Double.doubleToLongBits(m_maxDecimationError));
+                for(int i = 0; i < block.children.length; i++){
+                    GridBlock child = block.children[i];
+                    if(child != null)
+                        hash = MeshBlockCache.mix(hash, child.contentHash);
+                }
+                block.contentHash = hash;
+                block.hasHash = true;
+                if(blocks.getFromCache(block)){
+                    for(int i = 0; i < block.children.length; i++){
+                        if(block.children[i] != null)
+                            block.children[i].release();
+                    }
+                    block.informParent(blocks);
+                    return;
+                }
+            }
+
+            if (its == null) {
+                its = new IndexedTriangleSetBuilder();
+            } else {
+                its.clear();
+            }
 
             for(int i = 0; i < block.children.length; i++){
                 GridBlock child = block.children[i];
@@ -1012,6 +1197,7 @@ public class MeshMakerMT {
                     if(DEBUG)
                         printf("  child %s origFaces: %d finalFaces: %d\n", child, child.origFaceCount, child.finalFaceCount);
                     child.writeTriangles(its);
+                    child.release();
                     block.origFaceCount += child.origFaceCount;
                 }
             }
@@ -1033,12 +1219,21 @@ public class MeshMakerMT {
                 return;
             }
 
+            if(block.parent == null && m_threadCount > 1 && m_edgeTester == null){
+                // root block is decimated after all threads are done by parallel decimator 
+                block.its = its;
+                its = null;
+                block.finalFaceCount = faceCount;
+                block.needsDecimation = true;
+                block.informParent(blocks);
+                return;
+            }
+
             // will do decimation 
             vertices = its.getVertices(vertices);
             faces = its.getFaces(faces);
             
-            mesh.clear();
-            mesh.setFaces(vertices, vertexCount, faces, faceCount);
+            initMesh(vertexCount, faceCount);
             
             int iterations = m_maxDecimationCount;
 
@@ -1060,12 +1255,69 @@ public class MeshMakerMT {
             mesh.getTriangles(ts);
             block.its = ts;
             block.finalFaceCount = fcount; 
-            //TODO - release children memory
 
             block.informParent(blocks);
 
         }
 
+        /**
+           loads vertices and faces into the mesh 
+           mesh and decimator are created on first use, because processor may get only blocks taken from cache 
+         */
+        void initMesh(int vertexCount, int faceCount){
+
+            if (mesh == null) {
+                mesh = new WingedEdgeTriangleMesh(vertices, vertexCount, faces, faceCount);
+            } else {
+                mesh.clear();
+                mesh.setFaces(vertices, vertexCount, faces, faceCount);
+            }
+
+            if (decimator == null) {
+                decimator = new MeshDecimator();
+                decimator.setCompactMesh(m_compactMesh);
+                if (edgeTester != null) {
+                    decimator.setEdgeTester(edgeTester);
+                }
+            }
+
+            if (edgeTester != null) {
+                edgeTester.initialize(mesh);
+            }
+        }
+
+        boolean hasChildrenHash(GridBlock block){
+
+            for(int i = 0; i < block.children.length; i++){
+                GridBlock child = block.children[i];
+                if(child != null && !child.hasHash)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+           hash of grid attributes of the block including margin used by smoothing kernel 
+         */
+        long getContentHash(GridBlock block){
+
+            int margin = (smoothKernel != null)? smoothKernel.length/2: 0;
+            int xmin = Math.max(block.xmin - margin, 0), xmax = Math.min(block.xmax + margin, gnx-1);
+            int ymin = Math.max(block.ymin - margin, 0), ymax = Math.min(block.ymax + margin, gny-1);
+            int zmin = Math.max(block.zmin - margin, 0), zmax = Math.min(block.zmax + margin, gnz-1);
+
+            long hash = MeshBlockCache.mix(MeshBlockCache.HASH_START, Double.doubleToLongBits(m_maxDecimationError));
+            if(xmin > xmax || ymin > ymax || zmin > zmax)
+                return hash;
+            int size = (xmax - xmin + 1)*(ymax - ymin + 1)*(zmax - zmin + 1);
+            if(attData == null || attData.length < size)
+                attData = new long[size];
+            ((AttributeGrid)grid).getAttributes(xmin, xmax, ymin, ymax, zmin, zmax, attData);
+            for(int i = 0; i < size; i++)
+                hash = MeshBlockCache.mix(hash, attData[i]);
+            return hash;
+        }
+
         public long getNumTriangles() {
             return origNumTriangles;
         }
@@ -1073,24 +1325,27 @@ public class MeshMakerMT {
     } // class BlockProcessor
 
     /**
-     * Decimate a block further
+     * Decimate a block further to fit the triangles budget
+     * uses priority queue decimator without error limit to get exact face count in one pass  
      */
     class BlockDecimator implements Runnable {
 
         GridBlockSet blocks;
+        // ratio of target face count to current face count 
+        double budgetRatio;
 
         WingedEdgeTriangleMesh mesh;
         double vertices[]; // intermediate memory for vertices
         int faces[];  // intermediate memory for face indexes
 
         //double maxDecimationError;
-        MeshDecimator decimator;
+        MeshDecimatorPQ decimator;
         EdgeTester edgeTester;
 
-        BlockDecimator(GridBlockSet blocks){
+        BlockDecimator(GridBlockSet blocks, double budgetRatio){
 
             this.blocks = blocks;
-            //this.maxDecimationError = maxDecimationError;
+            this.budgetRatio = budgetRatio;
         }
 
         void setEdgeTester(EdgeTester edgeTester) {
@@ -1105,13 +1360,10 @@ public class MeshMakerMT {
                 if (block == null)
                     break;
 
-                try {
-                    processBlock(block);
-
-                } catch (Exception e) {
+                processBlock(block);
 
-                    e.printStackTrace();
-                    break;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ExecutionStoppedException();
                 }
             }
         }
@@ -1134,7 +1386,7 @@ public class MeshMakerMT {
 
             block.origFaceCount = block.finalFaceCount;
 
-            int vertexCount = vertices.length / 3;
+            int vertexCount = block.its.getVertexCount();
             int faceCount = block.finalFaceCount;
 
             //printf("decimate faceCount: %d vertexCount: %d\n", faceCount, vertexCount);
@@ -1154,8 +1406,8 @@ public class MeshMakerMT {
             //intf("mesh created: %d ms\n", (time() - t0));
 
             if (decimator == null) {
-                decimator = new MeshDecimator();
-                decimator.setMaxCollapseError(m_maxDecimationError);
+                decimator = new MeshDecimatorPQ();
+                decimator.setCompactMesh(m_compactMesh);
                 if (edgeTester != null) {
                     decimator.setEdgeTester(edgeTester);
                 }
@@ -1166,17 +1418,7 @@ public class MeshMakerMT {
             }
 
 
-            int count = m_maxDecimationCount;
-
-            int fcount = mesh.getTriangleCount();
-
-            while (count-- > 0) {
-
-                int target = fcount / 2;
-                decimator.processMesh(mesh, target);
-                fcount = mesh.getTriangleCount();
-
-            }
+            int fcount = decimator.processMesh(mesh, (int)(faceCount * budgetRatio));
 
             //printf("decimation done. orig: %d --> fcount: %d\n",block.origFaceCount,fcount);
 
@@ -36,6 +36,7 @@ public class SingleMaterialModelWriter implements ModelWriter {
     private double minPartVolume = minimumVolumeDefault;
     private int threadCount;
     private TriangleMesh mesh;
+    private MeshBlockCache blockCache;
 
     private static HashSet<String> SUPPORTED_FORMATS;
 
@@ -80,6 +81,7 @@ public class SingleMaterialModelWriter implements ModelWriter {
         meshmaker.setMaxDecimationError(maxDecimationError);
         meshmaker.setMaxDecimationCount(10);
         meshmaker.setMaxAttributeValue(255);
+        meshmaker.setBlockCache(blockCache);
 
         IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder(160000);
         meshmaker.makeMesh(grid, its);
@@ -187,6 +189,15 @@ public class SingleMaterialModelWriter implements ModelWriter {
         return mesh;
     }
 
+    /**
+     * Set cache of mesh blocks to reuse between executions.  Only blocks with changed voxels are remeshed.
+     *
+     * @param cache The cache or null to remesh everything
+     */
+    public void setBlockCache(MeshBlockCache cache) {
+        this.blockCache = cache;
+    }
+
     public double getSmoothingWidth() {
         return smoothingWidth;
     }
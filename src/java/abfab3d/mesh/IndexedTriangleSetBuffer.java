@@ -0,0 +1,167 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.mesh;
+
+import javax.vecmath.Vector3d;
+
+import abfab3d.util.IndexedTriangleCollector;
+import abfab3d.util.TriangleCollector;
+import abfab3d.util.TriangleProducer;
+
+/**
+   indexed triangle set stored in flat arrays of vertex coordinates and face indices
+
+   unlike IndexedTriangleSetBuilder it does no welding of vertices,
+   the caller is responsible for passing each vertex once.
+   It is intended for generators which know vertices connectivity, like indexed isosurface extraction
+ */
+public class IndexedTriangleSetBuffer implements IndexedTriangleCollector, TriangleProducer {
+
+    static final int INITIAL_SIZE = 10000;
+
+    double m_vertices[];
+    int m_faces[];
+    int m_vertexCount = 0;
+    int m_faceCount = 0;
+
+    public IndexedTriangleSetBuffer(){
+        this(INITIAL_SIZE);
+    }
+
+    public IndexedTriangleSetBuffer(int expectedFaces){
+
+        expectedFaces = Math.max(expectedFaces, 1);
+        m_faces = new int[3*expectedFaces];
+        // from Euler formula V-E+F=2 for simple closed surfaces
+        m_vertices = new double[3*(expectedFaces/2 + 2)];
+    }
+
+    public void clear(){
+
+        m_vertexCount = 0;
+        m_faceCount = 0;
+    }
+
+    /**
+       add vertex and return its index
+     */
+    public int addVertex(Vector3d v){
+
+        int offset = 3*m_vertexCount;
+        if(offset + 3 > m_vertices.length){
+            double nv[] = new double[2*m_vertices.length];
+            System.arraycopy(m_vertices, 0, nv, 0, offset);
+            m_vertices = nv;
+        }
+        m_vertices[offset] = v.x;
+        m_vertices[offset+1] = v.y;
+        m_vertices[offset+2] = v.z;
+        return m_vertexCount++;
+    }
+
+    /**
+       add triangle
+       returns false for degenerate triangle with repeated indices
+     */
+    public boolean addTri(int v0, int v1, int v2){
+
+        if(v0 == v1 || v1 == v2 || v2 == v0)
+            return false;
+
+        int offset = 3*m_faceCount;
+        if(offset + 3 > m_faces.length){
+            int nf[] = new int[2*m_faces.length];
+            System.arraycopy(m_faces, 0, nf, 0, offset);
+            m_faces = nf;
+        }
+        m_faces[offset] = v0;
+        m_faces[offset+1] = v1;
+        m_faces[offset+2] = v2;
+        m_faceCount++;
+        return true;
+    }
+
+    /**
+       returns count of vertices
+     */
+    public int getVertexCount(){
+        return m_vertexCount;
+    }
+
+    /**
+       returns count of faces
+     */
+    public int getFaceCount(){
+        return m_faceCount;
+    }
+
+    /**
+     * Get the vertices.
+     *
+     * @return array x,y,z vertices
+     */
+    public double[] getVertices(){
+        return getVertices(null);
+    }
+
+    /**
+       return vertices in the given array of x,y,z values or allocates new array if not enough space
+     */
+    public double[] getVertices(double vert[]){
+
+        int len = 3*m_vertexCount;
+        if(vert == null || vert.length < len)
+            vert = new double[len];
+        System.arraycopy(m_vertices, 0, vert, 0, len);
+        return vert;
+    }
+
+    public int[] getFaces(){
+        return getFaces(null);
+    }
+
+    /**
+       return faces indices in the given array or allocates new array if not enough space
+     */
+    public int[] getFaces(int farray[]){
+
+        int len = 3*m_faceCount;
+        if(farray == null || farray.length < len)
+            farray = new int[len];
+        System.arraycopy(m_faces, 0, farray, 0, len);
+        return farray;
+    }
+
+    /**
+       feeds triangles to TriangleCollector interface
+     */
+    public boolean getTriangles(TriangleCollector tcollector){
+
+        Vector3d
+            v0 = new Vector3d(),
+            v1 = new Vector3d(),
+            v2 = new Vector3d();
+
+        for(int i = 0; i < m_faceCount; i++){
+
+            int i0 = 3*m_faces[3*i];
+            int i1 = 3*m_faces[3*i+1];
+            int i2 = 3*m_faces[3*i+2];
+
+            v0.set(m_vertices[i0], m_vertices[i0 + 1], m_vertices[i0 + 2]);
+            v1.set(m_vertices[i1], m_vertices[i1 + 1], m_vertices[i1 + 2]);
+            v2.set(m_vertices[i2], m_vertices[i2 + 1], m_vertices[i2 + 2]);
+            tcollector.addTri(v0,v1,v2);
+        }
+        return true;
+    }
+}
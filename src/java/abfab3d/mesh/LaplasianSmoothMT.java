@@ -0,0 +1,360 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.mesh;
+
+import abfab3d.util.ComputePool;
+import abfab3d.util.StructMixedData;
+import abfab3d.util.TriangleMesh;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.time;
+
+/**
+   performs smoothing operation on WingedEdgeTriangeMesh
+
+   MT version
+
+   vertex rings are flattened once into int arrays and vertices are split into chunks processed in parallel.
+   each pass reads positions from one buffer and writes into another (Jacobi style),
+   therefore the result does not depend on count of threads.
+
+   two modes are supported
+   Laplasian: new position is weighted average of vertex (with center weight) and its neighbours
+   Taubin: each iteration is a pair of passes p += lambda*(avg - p) and p += mu*(avg - p) with mu < -lambda,
+   which smooths the surface without shrinkage
+
+   vertices on mesh boundary are not moved
+ */
+public class LaplasianSmoothMT {
+
+    static boolean DEBUG = false;
+    static boolean m_printStat = false;
+
+    // count of vertices processed by one task
+    static final int CHUNK_SIZE = 0x4000;
+
+    protected int m_threadCount = 0;
+
+    // maximal displacement of vertex from its original position, 0 - no limit
+    private double m_maxError = 0;
+    // relative weight of central vertex contribution to new vertex position
+    private double m_centerWeight = 1;
+
+    private boolean m_taubin = false;
+    private double m_lambda = 0.5;
+    private double m_mu = -0.53;
+
+    // vertices to process
+    private int m_verts[];
+    // m_ring[m_ringStart[i]] ... m_ring[m_ringStart[i+1]-1] are neighbours of m_verts[i]
+    private int m_ringStart[];
+    private int m_ring[];
+
+    // positions buffers
+    private double m_src[];
+    private double m_dst[];
+    private double m_orig[];
+
+    /**
+       the instance of the LaplasianSmoothMT can be reused for several meshes
+     */
+    public LaplasianSmoothMT(){
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - all available processors are used
+     */
+    public void setThreadCount(int count){
+
+        m_threadCount = count;
+
+    }
+
+    /**
+       maximal distance vertex is allowed to move from its original position
+       0 - no limit
+     */
+    public void setMaxError(double maxError){
+        m_maxError = maxError;
+    }
+
+    /**
+       relative weight of the central vertex in Laplasian mode
+     */
+    public void setCenterWeight(double centerWeight){
+        m_centerWeight = centerWeight;
+    }
+
+    /**
+       switch to Taubin smoothing with given factors
+       typical values are lambda = 0.5, mu = -0.53
+     */
+    public void setTaubin(double lambda, double mu){
+
+        m_taubin = true;
+        m_lambda = lambda;
+        m_mu = mu;
+
+    }
+
+    /**
+       switch back to Laplasian smoothing
+     */
+    public void setLaplasian(){
+        m_taubin = false;
+    }
+
+    /**
+
+       run several smoothing iterations on the mesh
+
+     */
+    public void processMesh(TriangleMesh mesh, int iterationsCount){
+
+        long t0 = time();
+
+        StructMixedData vertices = mesh.getVertices();
+
+        if (Vertex.DEFINITION.getDoubleDataSize() != 3) {
+            throw new IllegalArgumentException("Vertex no longer 3 values, assumption broken");
+        }
+
+        makeRings(mesh);
+
+        double data[] = vertices.getDoubleData();
+        m_src = ensureSize(m_src, data.length);
+        m_dst = ensureSize(m_dst, data.length);
+        System.arraycopy(data, 0, m_src, 0, data.length);
+        System.arraycopy(data, 0, m_dst, 0, data.length);
+        if(m_maxError > 0){
+            m_orig = ensureSize(m_orig, data.length);
+            System.arraycopy(data, 0, m_orig, 0, data.length);
+        }
+
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+        int chunkCount = (m_verts.length + CHUNK_SIZE - 1)/CHUNK_SIZE;
+        int taskCount = Math.max(1, Math.min(threadCount, chunkCount));
+
+        if(m_printStat)
+            printf("LaplasianSmoothMT vertices: %d threads: %d init: %d ms\n", m_verts.length, taskCount, (time() - t0));
+
+        for(int i = 0; i < iterationsCount; i++){
+            if(m_taubin){
+                doPass(taskCount, m_lambda, true);
+                doPass(taskCount, m_mu, true);
+            } else {
+                doPass(taskCount, 0, false);
+            }
+        }
+
+        System.arraycopy(m_src, 0, data, 0, data.length);
+
+        if(m_printStat)
+            printf("LaplasianSmoothMT iterations: %d time: %d ms\n", iterationsCount, (time() - t0));
+
+        // release memory
+        m_verts = null;
+        m_ringStart = null;
+        m_ring = null;
+        m_src = null;
+        m_dst = null;
+        m_orig = null;
+    }
+
+    /**
+       one pass over all vertices from m_src into m_dst
+     */
+    protected void doPass(int taskCount, double factor, boolean umbrella){
+
+        int chunkCount = (m_verts.length + CHUNK_SIZE - 1)/CHUNK_SIZE;
+        ChunkSelector selector = new ChunkSelector(chunkCount);
+
+        Runnable runners[] = new Runnable[taskCount];
+        for(int i = 0; i < taskCount; i++){
+            runners[i] = new Runner(selector, factor, umbrella);
+        }
+        ComputePool.execute(runners);
+
+        double t[] = m_src;
+        m_src = m_dst;
+        m_dst = t;
+
+    }
+
+    /**
+       flattens vertex rings of the mesh into int arrays
+       boundary vertices get empty ring
+     */
+    protected void makeRings(TriangleMesh mesh){
+
+        StructMixedData vertices = mesh.getVertices();
+        StructMixedData hedges = mesh.getHalfEdges();
+
+        int vcount = mesh.getVertexCount();
+        m_verts = new int[vcount];
+        m_ringStart = new int[vcount+1];
+        int ring[] = new int[Math.max(6*vcount, 16)];
+
+        int count = 0;
+        int rcount = 0;
+
+        for(int v = mesh.getStartVertex(); v != -1; v = Vertex.getNext(vertices, v)){
+
+            if(count == m_verts.length){
+                m_verts = grow(m_verts, count+1);
+                m_ringStart = grow(m_ringStart, count+2);
+            }
+            m_verts[count] = v;
+            m_ringStart[count] = rcount;
+
+            int start = Vertex.getLink(vertices, v);
+            int he = start;
+            int rstart = rcount;
+            while(he != -1){
+
+                if(rcount == ring.length)
+                    ring = grow(ring, rcount+1);
+                ring[rcount++] = HalfEdge.getEnd(hedges, he);
+
+                int twin = HalfEdge.getTwin(hedges, he);
+                if(twin == -1){
+                    // boundary vertex is not moved
+                    rcount = rstart;
+                    break;
+                }
+                he = HalfEdge.getNext(hedges, twin);
+                if(he == start)
+                    break;
+            }
+            count++;
+        }
+        if(count < m_verts.length){
+            int v[] = new int[count];
+            System.arraycopy(m_verts, 0, v, 0, count);
+            m_verts = v;
+        }
+        m_ringStart[count] = rcount;
+        m_ring = ring;
+    }
+
+    static int[] grow(int array[], int minSize){
+
+        int a[] = new int[Math.max(minSize, 2*array.length)];
+        System.arraycopy(array, 0, a, 0, array.length);
+        return a;
+    }
+
+    static double[] ensureSize(double array[], int size){
+
+        if(array == null || array.length < size)
+            return new double[size];
+        return array;
+    }
+
+    /**
+       hands out chunks of vertices to runners
+     */
+    static class ChunkSelector {
+
+        int m_next = 0;
+        int m_count;
+
+        ChunkSelector(int count){
+            m_count = count;
+        }
+
+        synchronized int getNext(){
+            if(m_next < m_count)
+                return m_next++;
+            return -1;
+        }
+    }
+
+    class Runner implements Runnable {
+
+        ChunkSelector selector;
+        double factor;
+        boolean umbrella;
+
+        Runner(ChunkSelector selector, double factor, boolean umbrella){
+
+            this.selector = selector;
+            this.factor = factor;
+            this.umbrella = umbrella;
+
+        }
+
+        public void run(){
+
+            double src[] = m_src;
+            double dst[] = m_dst;
+            double orig[] = m_orig;
+            int verts[] = m_verts;
+            int ringStart[] = m_ringStart;
+            int ring[] = m_ring;
+            double maxError = m_maxError;
+            double maxError2 = maxError*maxError;
+            double cw = m_centerWeight;
+
+            int chunk;
+            while((chunk = selector.getNext()) >= 0){
+
+                int end = Math.min(verts.length, (chunk+1)*CHUNK_SIZE);
+
+                for(int i = chunk*CHUNK_SIZE; i < end; i++){
+
+                    int v = 3*verts[i];
+                    double x = src[v], y = src[v+1], z = src[v+2];
+                    int r0 = ringStart[i];
+                    int r1 = ringStart[i+1];
+                    int n = r1 - r0;
+                    if(n == 0){
+                        dst[v] = x; dst[v+1] = y; dst[v+2] = z;
+                        continue;
+                    }
+                    double sx = 0, sy = 0, sz = 0;
+                    for(int r = r0; r < r1; r++){
+                        int u = 3*ring[r];
+                        sx += src[u];
+                        sy += src[u+1];
+                        sz += src[u+2];
+                    }
+                    if(umbrella){
+                        double s = 1./n;
+                        x += factor*(sx*s - x);
+                        y += factor*(sy*s - y);
+                        z += factor*(sz*s - z);
+                    } else {
+                        double s = 1./(cw + n);
+                        x = (cw*x + sx)*s;
+                        y = (cw*y + sy)*s;
+                        z = (cw*z + sz)*s;
+                    }
+                    if(maxError > 0){
+                        double dx = x - orig[v], dy = y - orig[v+1], dz = z - orig[v+2];
+                        double d2 = dx*dx + dy*dy + dz*dz;
+                        if(d2 > maxError2){
+                            double s = maxError/Math.sqrt(d2);
+                            x = orig[v] + dx*s;
+                            y = orig[v+1] + dy*s;
+                            z = orig[v+2] + dz*s;
+                        }
+                    }
+                    dst[v] = x; dst[v+1] = y; dst[v+2] = z;
+                }
+            }
+        }
+    } // class Runner
+
+} // LaplasianSmoothMT
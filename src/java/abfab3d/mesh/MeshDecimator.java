@@ -89,6 +89,11 @@ public class MeshDecimator {
 
     static final int RANDOM_CANDIDATES_COUNT = 10;
 
+    // mesh is compacted if ratio of allocated to live elements exceeds that value
+    static final double COMPACTION_RATIO = 1.5;
+
+    protected boolean m_compactMesh = false;
+
     protected EdgeTester m_edgeTester = null;
 
     StructMixedData quadrics;
@@ -143,6 +148,32 @@ public class MeshDecimator {
 
     }
 
+    /**
+       if true, WingedEdgeTriangleMesh with many removed elements is compacted and reordered
+       in spatial order before decimation. It reduces memory and cache misses during edge collapses.
+       EdgeTester is initialized again after compaction because element indices are changed. 
+       Mesh with vertex attributes is not compacted. 
+     */
+    public void setCompactMesh(boolean value){
+
+        m_compactMesh = value;
+
+    }
+
+    /**
+       compacts WingedEdgeTriangleMesh with many removed elements if compaction is enabled
+     */
+    protected void compactMesh(TriangleMesh mesh){
+
+        if(!m_compactMesh || !(mesh instanceof WingedEdgeTriangleMesh))
+            return;
+        WingedEdgeTriangleMesh wmesh = (WingedEdgeTriangleMesh)mesh;
+        if(wmesh.getGarbageRatio() > COMPACTION_RATIO && wmesh.compact(WingedEdgeTriangleMesh.ORDER_SPATIAL)){
+            if(m_edgeTester != null)
+                m_edgeTester.initialize(mesh);
+        }
+    }
+
     /**
        supply external tester for edges 
      */
@@ -157,6 +188,9 @@ public class MeshDecimator {
        
      */
     public int processMesh(TriangleMesh mesh, int targetFaceCount){
+
+        compactMesh(mesh);
+
         quadrics = new StructMixedData(new Quadric(), mesh.getVertexCount() + RANDOM_CANDIDATES_COUNT);
 
         //printf("MeshDecimator.processMesh(%s, %d)\n", mesh, targetFaceCount);
@@ -681,6 +715,14 @@ public class MeshDecimator {
             this.quadrics = quadrics;
         }
 
+        /**
+           set mesh without init of vertex quadrics 
+           used by several instances working on the same mesh and quadrics 
+         */
+        public void setMesh(TriangleMesh mesh){
+            m_mesh = mesh;
+        }
+
         public void init(TriangleMesh mesh){
             m_mesh = mesh;
 
@@ -0,0 +1,366 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.mesh;
+
+import java.util.Arrays;
+
+import abfab3d.util.EdgeCollapseParams;
+import abfab3d.util.EdgeCollapseResult;
+import abfab3d.util.StructMixedData;
+import abfab3d.util.TriangleMesh;
+
+/**
+   decimator to reduce face count of triangle mesh
+
+   priority queue version
+
+   all internal edges are kept in binary heap ordered by the quadric error of collapse.
+   decimator always collapses the edge with lowest error and updates errors of edges
+   around the new vertex. Target face count is reached in one pass.
+   Collapse stops early only if the lowest error exceeds max collapse error or no collapsable edges left.
+
+   edges which can not be collapsed (surface pinch or face flip) are removed from the heap
+   and return back when their neighborhood is changed
+ */
+public class MeshDecimatorPQ extends MeshDecimator {
+
+    // heap of edges
+    EdgeHeap m_heap;
+
+    // data of edge being processed
+    EdgeData m_ed;
+
+    /**
+       the instance of the MeshDecimatorPQ can be reused for several meshes
+     */
+    public MeshDecimatorPQ(){
+
+    }
+
+    /**
+       decimates the mesh to have targetFaceCount
+
+       returns final face count of the mesh
+     */
+    public int processMesh(TriangleMesh mesh, int targetFaceCount){
+
+        compactMesh(mesh);
+
+        m_mesh = mesh;
+        m_faceCount = mesh.getFaceCount();
+        m_origFaceCount = m_faceCount;
+        m_surfacePinchCount = 0;
+        m_faceFlipCount = 0;
+        m_longEdgeCount = 0;
+        m_ignoreCount = 0;
+        m_edgeTestCount = 0;
+        m_attemptCount = 0;
+        m_collapseCount = 0;
+        m_maxError = 0;
+
+        quadrics = new StructMixedData(new Quadric(), mesh.getVertexCount() + 1);
+        m_errorFunction = new ErrorQuadric(quadrics);
+        m_errorFunction.init(mesh);
+        m_ed = new EdgeData(Quadric.create(quadrics));
+        m_ecr = new EdgeCollapseResult();
+        m_ecp = new EdgeCollapseParams();
+        m_ecp.maxEdgeLength2 = m_maxEdgeLength2;
+
+        StructMixedData edges = mesh.getEdges();
+        if(m_heap == null)
+            m_heap = new EdgeHeap(edges.getLength());
+        else
+            m_heap.clear();
+
+        for(int e = mesh.getStartEdge(); e != NO_DATA; e = Edge.getNext(edges, e)){
+            updateEdge(e);
+        }
+
+        while(m_faceCount > targetFaceCount && m_heap.size() > 0){
+
+            if(m_heap.getMinCost() > m_maxCollapseError){
+                m_ignoreCount++;
+                break;
+            }
+            collapseEdge(m_heap.pop());
+        }
+
+        if(m_printStat){
+            printStat();
+        }
+
+        int faceCount = mesh.getFaceCount();
+
+        // release variables for faster garbage collection
+        m_errorFunction = null;
+        m_mesh = null;
+        quadrics = null;
+
+        return faceCount;
+    }
+
+    /**
+       collapse edge with optimal vertex placement and update edges around new vertex
+     */
+    protected boolean collapseEdge(int e){
+
+        StructMixedData edges = m_mesh.getEdges();
+        if(Edge.getHe(edges, e) == NO_DATA) {
+            // edge was removed
+            return false;
+        }
+        if(m_edgeTester != null){
+            if(!m_edgeTester.canCollapse(e))
+                return false;
+            m_edgeTestCount++;
+        }
+
+        EdgeData ed = m_ed;
+        ed.edge = e;
+        // calculates new vertex and its quadric
+        m_errorFunction.calculateError(ed);
+        m_errorFunction.calculateVertex(ed);
+
+        m_ecr.reset();
+        m_attemptCount++;
+        if(!m_mesh.collapseEdge(e, ed.point, m_ecp, m_ecr)){
+
+            switch(m_ecr.returnCode){
+            case EdgeCollapseResult.FAILURE_SURFACE_PINCH:
+                m_surfacePinchCount++;
+                break;
+            case EdgeCollapseResult.FAILURE_FACE_FLIP:
+                m_faceFlipCount++;
+                break;
+            case EdgeCollapseResult.FAILURE_LONG_EDGE:
+                m_longEdgeCount++;
+                break;
+            }
+            return false;
+        }
+
+        m_faceCount -= m_ecr.faceCount;
+        if(ed.errorValue > m_maxError)
+            m_maxError = ed.errorValue;
+
+        // assign new quadric to moved vertex
+        int v = m_ecr.insertedVertex;
+        StructMixedData vertices = m_mesh.getVertices();
+        Quadric.set(quadrics, ed.vertexUserData, quadrics, Vertex.getUserData(vertices, v));
+
+        int removed[] = m_ecr.removedEdges;
+        m_collapseCount += removed.length;
+        for(int i = 0; i < removed.length; i++){
+            if(removed[i] != NO_DATA)
+                m_heap.remove(removed[i]);
+        }
+
+        // update edges around moved vertex
+        StructMixedData hedges = m_mesh.getHalfEdges();
+        int start = Vertex.getLink(vertices, v);
+        int he = start;
+        do {
+            updateEdge(HalfEdge.getEdge(hedges, he));
+            he = HalfEdge.getTwin(hedges, he);
+            if(he == NO_DATA)
+                break;
+            he = HalfEdge.getNext(hedges, he);
+        } while(he != start && he != NO_DATA);
+
+        return true;
+    }
+
+    /**
+       calculate collapse error of the edge and put it into the heap
+       boundary edges are not collapsed
+     */
+    protected void updateEdge(int e){
+
+        StructMixedData edges = m_mesh.getEdges();
+        int he = Edge.getHe(edges, e);
+        if(he == NO_DATA){
+            m_heap.remove(e);
+            return;
+        }
+        StructMixedData hedges = m_mesh.getHalfEdges();
+        StructMixedData vertices = m_mesh.getVertices();
+        if(Vertex.getUserData(vertices, HalfEdge.getStart(hedges, he)) == NO_DATA ||
+           Vertex.getUserData(vertices, HalfEdge.getEnd(hedges, he)) == NO_DATA){
+            m_heap.remove(e);
+            return;
+        }
+        m_ed.edge = e;
+        m_errorFunction.calculateError(m_ed);
+        m_heap.put(e, m_ed.errorValue);
+
+    }
+
+    /**
+       indexed binary heap of edges with minimal cost on top
+       supports change of the cost and removal of arbitrary edge
+     */
+    static class EdgeHeap {
+
+        int m_heap[]; // edges in heap order
+        double m_cost[]; // costs in heap order
+        int m_pos[]; // position of edge in the heap or -1
+        int m_size = 0;
+
+        EdgeHeap(int capacity){
+
+            capacity = Math.max(capacity, 1);
+            m_heap = new int[capacity];
+            m_cost = new double[capacity];
+            m_pos = new int[capacity];
+            Arrays.fill(m_pos, -1);
+        }
+
+        int size(){
+            return m_size;
+        }
+
+        void clear(){
+            for(int i = 0; i < m_size; i++)
+                m_pos[m_heap[i]] = -1;
+            m_size = 0;
+        }
+
+        boolean contains(int e){
+            return (e < m_pos.length && m_pos[e] >= 0);
+        }
+
+        double getMinCost(){
+            return m_cost[0];
+        }
+
+        /**
+           add edge or change its cost
+         */
+        void put(int e, double cost){
+
+            if(e >= m_pos.length)
+                growIndex(e+1);
+            int i = m_pos[e];
+            if(i < 0) {
+                if(m_size == m_heap.length)
+                    growHeap();
+                i = m_size++;
+                m_heap[i] = e;
+                m_cost[i] = cost;
+                m_pos[e] = i;
+                siftUp(i);
+            } else {
+                double old = m_cost[i];
+                m_cost[i] = cost;
+                if(cost < old)
+                    siftUp(i);
+                else
+                    siftDown(i);
+            }
+        }
+
+        /**
+           remove and return edge with minimal cost
+         */
+        int pop(){
+
+            int e = m_heap[0];
+            removeAt(0);
+            return e;
+        }
+
+        void remove(int e){
+
+            if(contains(e))
+                removeAt(m_pos[e]);
+        }
+
+        void removeAt(int i){
+
+            int e = m_heap[i];
+            m_pos[e] = -1;
+            m_size--;
+            if(i == m_size)
+                return;
+            // move last element into the hole
+            m_heap[i] = m_heap[m_size];
+            m_cost[i] = m_cost[m_size];
+            m_pos[m_heap[i]] = i;
+            if(i > 0 && m_cost[i] < m_cost[(i-1)/2])
+                siftUp(i);
+            else
+                siftDown(i);
+        }
+
+        void siftUp(int i){
+
+            int e = m_heap[i];
+            double c = m_cost[i];
+            while(i > 0){
+                int parent = (i-1)/2;
+                if(m_cost[parent] <= c)
+                    break;
+                m_heap[i] = m_heap[parent];
+                m_cost[i] = m_cost[parent];
+                m_pos[m_heap[i]] = i;
+                i = parent;
+            }
+            m_heap[i] = e;
+            m_cost[i] = c;
+            m_pos[e] = i;
+        }
+
+        void siftDown(int i){
+
+            int e = m_heap[i];
+            double c = m_cost[i];
+            int half = m_size/2;
+            while(i < half){
+                int child = 2*i+1;
+                int right = child+1;
+                if(right < m_size && m_cost[right] < m_cost[child])
+                    child = right;
+                if(c <= m_cost[child])
+                    break;
+                m_heap[i] = m_heap[child];
+                m_cost[i] = m_cost[child];
+                m_pos[m_heap[i]] = i;
+                i = child;
+            }
+            m_heap[i] = e;
+            m_cost[i] = c;
+            m_pos[e] = i;
+        }
+
+        void growHeap(){
+
+            int n = 2*m_heap.length;
+            int h[] = new int[n];
+            double c[] = new double[n];
+            System.arraycopy(m_heap, 0, h, 0, m_size);
+            System.arraycopy(m_cost, 0, c, 0, m_size);
+            m_heap = h;
+            m_cost = c;
+        }
+
+        void growIndex(int minSize){
+
+            int n = Math.max(minSize, 2*m_pos.length);
+            int p[] = new int[n];
+            System.arraycopy(m_pos, 0, p, 0, m_pos.length);
+            Arrays.fill(p, m_pos.length, n, -1);
+            m_pos = p;
+        }
+
+    } // class EdgeHeap
+
+}
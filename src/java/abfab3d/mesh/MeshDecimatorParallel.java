@@ -0,0 +1,393 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.mesh;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import abfab3d.util.ComputePool;
+import abfab3d.util.EdgeCollapseParams;
+import abfab3d.util.EdgeCollapseResult;
+import abfab3d.util.StructMixedData;
+import abfab3d.util.TriangleMesh;
+
+import static abfab3d.util.Output.printf;
+
+/**
+   decimator to reduce face count of large triangle mesh using several threads
+
+   decimation is done in rounds. Each round
+   1) quadric errors of all internal edges are calculated in parallel
+   2) cheapest edges are collapsed in parallel. Before collapse the thread claims all vertices
+      of 1-ring of both edge vertices via atomic marks. Collapses with disjoint claimed sets
+      touch disjoint parts of the mesh and need no other locking. Edge which fails to claim
+      its neighborhood waits for next round.
+   3) removed elements are unlinked from the mesh
+
+   works with WingedEdgeTriangleMesh only, other meshes are processed by single threaded MeshDecimator
+   EdgeTester, if used, is called from several threads
+ */
+public class MeshDecimatorParallel extends MeshDecimator {
+
+    static final boolean DEBUG = false;
+
+    // fraction of cheapest edges to collapse in one round
+    static final double ROUND_FRACTION = 0.25;
+
+    // max valence of vertex to walk around
+    static final int MAX_VALENCE = 100;
+
+    protected int m_threadCount = 0;
+
+    // edges to process in current round
+    int m_edges[];
+    int m_edgeCount;
+    // error of collapse of each edge
+    double m_errors[];
+    // max error of collapse in current round
+    double m_roundError;
+    // vertices claimed by collapses
+    AtomicIntegerArray m_vertexMarks;
+    // count of collapses left
+    AtomicInteger m_collapsesLeft;
+
+    /**
+       the instance of the MeshDecimatorParallel can be reused for several meshes
+     */
+    public MeshDecimatorParallel(){
+
+    }
+
+    /**
+       set count of threads to use
+       if count < 1 - count of available processors is used
+     */
+    public void setThreadCount(int count){
+
+        m_threadCount = count;
+
+    }
+
+    /**
+       decimates the mesh to have targetFaceCount
+
+       returns final face count of the mesh
+     */
+    public int processMesh(TriangleMesh mesh, int targetFaceCount){
+
+        if(!(mesh instanceof WingedEdgeTriangleMesh))
+            return super.processMesh(mesh, targetFaceCount);
+
+        WingedEdgeTriangleMesh wmesh = (WingedEdgeTriangleMesh)mesh;
+        compactMesh(wmesh);
+
+        int threadCount = ComputePool.getThreadCount(m_threadCount);
+
+        m_mesh = mesh;
+        m_faceCount = mesh.getFaceCount();
+        m_origFaceCount = m_faceCount;
+        m_collapseCount = 0;
+        m_attemptCount = 0;
+        m_surfacePinchCount = 0;
+        m_faceFlipCount = 0;
+        m_longEdgeCount = 0;
+        m_edgeTestCount = 0;
+        m_ignoreCount = 0;
+        m_maxError = 0;
+
+        quadrics = new StructMixedData(new Quadric(), mesh.getVertexCount() + threadCount + 1);
+        ErrorQuadric errorFunction = new ErrorQuadric(quadrics);
+        errorFunction.init(mesh);
+
+        Runner runners[] = new Runner[threadCount];
+        for(int i = 0; i < threadCount; i++){
+            // scratch quadrics are allocated before threads start
+            runners[i] = new Runner(Quadric.create(quadrics));
+        }
+
+        m_collapsesLeft = new AtomicInteger();
+
+        wmesh.setDeferredRemoval(true);
+        try {
+            int round = 0;
+            while(m_faceCount > targetFaceCount){
+
+                collectEdges();
+                if(m_edgeCount == 0)
+                    break;
+
+                setPhase(runners, Runner.ERRORS);
+                ComputePool.execute(runners);
+
+                double sorted[] = new double[m_edgeCount];
+                System.arraycopy(m_errors, 0, sorted, 0, m_edgeCount);
+                Arrays.sort(sorted);
+                if(sorted[0] > m_maxCollapseError){
+                    m_ignoreCount++;
+                    break;
+                }
+                int roundCount = Math.max(1, (int)(m_edgeCount * ROUND_FRACTION));
+                m_roundError = Math.min(sorted[roundCount-1], m_maxCollapseError);
+
+                m_collapsesLeft.set((m_faceCount - targetFaceCount + 1)/2);
+                m_vertexMarks = new AtomicIntegerArray(mesh.getVertices().getLength());
+
+                setPhase(runners, Runner.COLLAPSES);
+                ComputePool.execute(runners);
+
+                wmesh.purgeRemoved();
+                int faceCount = wmesh.getFaceCount();
+                if(DEBUG)printf("round %d: edges: %d error: %10.3e faces: %d -> %d\n",
+                                round, m_edgeCount, m_roundError, m_faceCount, faceCount);
+                round++;
+                if(faceCount == m_faceCount)
+                    break;
+                m_faceCount = faceCount;
+            }
+        } finally {
+            wmesh.setDeferredRemoval(false);
+        }
+
+        for(int i = 0; i < threadCount; i++){
+            Runner r = runners[i];
+            m_collapseCount += r.collapseCount;
+            m_attemptCount += r.attemptCount;
+            m_surfacePinchCount += r.surfacePinchCount;
+            m_faceFlipCount += r.faceFlipCount;
+            m_longEdgeCount += r.longEdgeCount;
+            m_edgeTestCount += r.edgeTestCount;
+            if(r.maxError > m_maxError)
+                m_maxError = r.maxError;
+        }
+
+        if(m_printStat){
+            printStat();
+        }
+
+        int faceCount = mesh.getFaceCount();
+
+        // release variables for faster garbage collection
+        m_mesh = null;
+        quadrics = null;
+        m_vertexMarks = null;
+        m_edges = null;
+        m_errors = null;
+
+        return faceCount;
+    }
+
+    /**
+       collect internal edges of the mesh
+     */
+    void collectEdges(){
+
+        StructMixedData edges = m_mesh.getEdges();
+        StructMixedData hedges = m_mesh.getHalfEdges();
+        StructMixedData vertices = m_mesh.getVertices();
+
+        int ecount = m_mesh.getEdgeCount();
+        if(m_edges == null || m_edges.length < ecount){
+            m_edges = new int[ecount];
+            m_errors = new double[ecount];
+        }
+        int count = 0;
+        for(int e = m_mesh.getStartEdge(); e != NO_DATA; e = Edge.getNext(edges, e)){
+            int he = Edge.getHe(edges, e);
+            if(he == NO_DATA)
+                continue;
+            if(Vertex.getUserData(vertices, HalfEdge.getStart(hedges, he)) == NO_DATA ||
+               Vertex.getUserData(vertices, HalfEdge.getEnd(hedges, he)) == NO_DATA)
+                continue;
+            m_edges[count++] = e;
+        }
+        m_edgeCount = count;
+    }
+
+    void setPhase(Runner runners[], int phase){
+
+        for(int i = 0; i < runners.length; i++){
+            runners[i].phase = phase;
+            runners[i].first = (int)(((long)m_edgeCount * i)/runners.length);
+            runners[i].last = (int)(((long)m_edgeCount * (i+1))/runners.length);
+        }
+    }
+
+    /**
+       does the work of one thread on a range of edges
+     */
+    class Runner implements Runnable {
+
+        static final int ERRORS = 0, COLLAPSES = 1;
+
+        int phase;
+        // range of edges to process
+        int first, last;
+
+        ErrorQuadric errorFunction;
+        EdgeData ed;
+        EdgeCollapseResult ecr = new EdgeCollapseResult();
+        EdgeCollapseParams ecp = new EdgeCollapseParams();
+        // vertices claimed by current edge
+        int claimed[] = new int[2*MAX_VALENCE+2];
+        int claimedCount;
+
+        int collapseCount;
+        int attemptCount;
+        int surfacePinchCount;
+        int faceFlipCount;
+        int longEdgeCount;
+        int edgeTestCount;
+        double maxError;
+
+        Runner(int scratchQuadric){
+
+            errorFunction = new ErrorQuadric(quadrics);
+            errorFunction.setMesh(m_mesh);
+            ed = new EdgeData(scratchQuadric);
+            ecp.maxEdgeLength2 = m_maxEdgeLength2;
+        }
+
+        public void run(){
+
+            switch(phase){
+            case ERRORS:
+                for(int i = first; i < last; i++){
+                    ed.edge = m_edges[i];
+                    errorFunction.calculateError(ed);
+                    m_errors[i] = ed.errorValue;
+                }
+                break;
+            case COLLAPSES:
+                for(int i = first; i < last; i++){
+                    if(m_errors[i] <= m_roundError){
+                        if(m_collapsesLeft.get() <= 0)
+                            break;
+                        collapse(m_edges[i], i+1);
+                    }
+                }
+                break;
+            }
+        }
+
+        /**
+           collapse edge if its neighborhood can be claimed
+         */
+        void collapse(int e, int tag){
+
+            if(!claimNeighborhood(e, tag)){
+                releaseClaimed();
+                return;
+            }
+            if(m_edgeTester != null){
+                if(!m_edgeTester.canCollapse(e))
+                    return;
+                edgeTestCount++;
+            }
+            if(m_collapsesLeft.decrementAndGet() < 0){
+                m_collapsesLeft.incrementAndGet();
+                return;
+            }
+
+            ed.edge = e;
+            errorFunction.calculateError(ed);
+            errorFunction.calculateVertex(ed);
+
+            ecr.reset();
+            attemptCount++;
+            if(!m_mesh.collapseEdge(e, ed.point, ecp, ecr)){
+                m_collapsesLeft.incrementAndGet();
+                switch(ecr.returnCode){
+                case EdgeCollapseResult.FAILURE_SURFACE_PINCH:
+                    surfacePinchCount++;
+                    break;
+                case EdgeCollapseResult.FAILURE_FACE_FLIP:
+                    faceFlipCount++;
+                    break;
+                case EdgeCollapseResult.FAILURE_LONG_EDGE:
+                    longEdgeCount++;
+                    break;
+                }
+                return;
+            }
+            // assign new quadric to moved vertex
+            Quadric.set(quadrics, ed.vertexUserData, quadrics, Vertex.getUserData(m_mesh.getVertices(), ecr.insertedVertex));
+            collapseCount += ecr.removedEdges.length;
+            if(ed.errorValue > maxError)
+                maxError = ed.errorValue;
+        }
+
+        /**
+           claims both vertices of the edge and their 1-ring
+           returns false if some vertex is claimed by other edge
+         */
+        boolean claimNeighborhood(int e, int tag){
+
+            claimedCount = 0;
+
+            StructMixedData edges = m_mesh.getEdges();
+            StructMixedData hedges = m_mesh.getHalfEdges();
+            StructMixedData vertices = m_mesh.getVertices();
+
+            int he = Edge.getHe(edges, e);
+            if(he == NO_DATA)
+                return false;
+            int v0 = HalfEdge.getStart(hedges, he);
+            int v1 = HalfEdge.getEnd(hedges, he);
+            if(!claim(v0, tag) || !claim(v1, tag))
+                return false;
+            // neighborhood could be changed before we claimed the vertices
+            if(Edge.getHe(edges, e) != he || Vertex.getLink(vertices, v0) == NO_DATA || Vertex.getLink(vertices, v1) == NO_DATA)
+                return false;
+
+            return claimRing(v0, tag) && claimRing(v1, tag);
+        }
+
+        boolean claimRing(int v, int tag){
+
+            StructMixedData hedges = m_mesh.getHalfEdges();
+            int start = Vertex.getLink(m_mesh.getVertices(), v);
+            int he = start;
+            int count = MAX_VALENCE;
+            do {
+                if(!claim(HalfEdge.getEnd(hedges, he), tag))
+                    return false;
+                he = HalfEdge.getTwin(hedges, he);
+                if(he == NO_DATA)
+                    return false;
+                he = HalfEdge.getNext(hedges, he);
+                if(--count < 0)
+                    return false;
+            } while(he != start);
+            return true;
+        }
+
+        boolean claim(int v, int tag){
+
+            if(m_vertexMarks.get(v) == tag)
+                return true;
+            if(claimedCount >= claimed.length || !m_vertexMarks.compareAndSet(v, 0, tag))
+                return false;
+            claimed[claimedCount++] = v;
+            return true;
+        }
+
+        void releaseClaimed(){
+
+            for(int i = 0; i < claimedCount; i++)
+                m_vertexMarks.set(claimed[i], 0);
+            claimedCount = 0;
+        }
+
+    } // class Runner
+
+}
@@ -18,6 +18,7 @@ import abfab3d.util.*;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import static abfab3d.util.Output.printf;
 
@@ -31,6 +32,14 @@ import static abfab3d.util.Output.printf;
 public class WingedEdgeTriangleMesh implements TriangleMesh {
     static boolean DEBUG = false;
 
+    /** order of elements after compaction */
+    public static final int
+        ORDER_CREATION = 0, // elements keep order of traversal
+        ORDER_SPATIAL = 1;  // vertices are ordered along Morton curve, faces are ordered by their vertices 
+
+    // bits per coordinate in Morton code used for spatial ordering 
+    static final int MORTON_BITS = 10;
+
     private final StructMixedData vertices;  // of Vertex
     private int startVertex = -1;
     private int lastVertex = -1;
@@ -48,6 +57,9 @@ public class WingedEdgeTriangleMesh implements TriangleMesh {
     private int faceCount = 0;
     private int edgeCount = 0;
 
+    // if true, removed elements are only marked as removed and unlinked later by purgeRemoved()
+    private boolean deferredRemoval = false;
+
     /** The semantic definition of the attribute, 0-15 reserved for internal usage */
     private int[] semantics;
 
@@ -289,6 +301,234 @@ public class WingedEdgeTriangleMesh implements TriangleMesh {
         }
     }
 
+    /**
+     * Sets deferred removal mode.
+     *
+     * In that mode removed elements are only marked as removed and stay in the lists of elements and
+     * the counts of elements are not updated. Collapses of edges with disjoint neighborhoods touch
+     * disjoint data and can be done concurrently. Call purgeRemoved() to unlink marked elements.
+     */
+    public void setDeferredRemoval(boolean value) {
+
+        if (deferredRemoval && !value)
+            purgeRemoved();
+        deferredRemoval = value;
+    }
+
+    /**
+     * Unlinks elements marked as removed in deferred removal mode and updates counts of elements.
+     */
+    public void purgeRemoved() {
+
+        int prev = -1;
+        int count = 0;
+        for (int v = startVertex; v != -1; ) {
+            int next = Vertex.getNext(vertices, v);
+            if (Vertex.getLink(vertices, v) == -1) {
+                Vertex.setNext(-1, vertices, v);
+                Vertex.setPrev(-1, vertices, v);
+            } else {
+                if (prev == -1) startVertex = v;
+                else Vertex.setNext(v, vertices, prev);
+                Vertex.setPrev(prev, vertices, v);
+                prev = v;
+                count++;
+            }
+            v = next;
+        }
+        if (prev == -1) startVertex = -1;
+        else Vertex.setNext(-1, vertices, prev);
+        lastVertex = prev;
+        vertexCount = count;
+
+        prev = -1;
+        count = 0;
+        for (int e = startEdge; e != -1; ) {
+            int next = Edge.getNext(edges, e);
+            if (Edge.getHe(edges, e) != -1) {
+                if (prev == -1) startEdge = e;
+                else Edge.setNext(e, edges, prev);
+                Edge.setPrev(prev, edges, e);
+                prev = e;
+                count++;
+            }
+            e = next;
+        }
+        if (prev == -1) startEdge = -1;
+        else Edge.setNext(-1, edges, prev);
+        lastEdge = prev;
+        edgeCount = count;
+
+        prev = -1;
+        count = 0;
+        for (int f = startFace; f != -1; ) {
+            int next = Face.getNext(faces, f);
+            if (Face.getHe(faces, f) != -1) {
+                if (prev == -1) startFace = f;
+                else Face.setNext(f, faces, prev);
+                Face.setPrev(prev, faces, f);
+                prev = f;
+                count++;
+            }
+            f = next;
+        }
+        if (prev == -1) startFace = -1;
+        else Face.setNext(-1, faces, prev);
+        lastFace = prev;
+        faceCount = count;
+    }
+
+    /**
+     * Returns ratio of allocated to live vertices, edges and faces.
+     * Removed elements are never reused, so the ratio grows during decimation.
+     */
+    public double getGarbageRatio() {
+
+        int live = vertexCount + edgeCount + faceCount;
+        if (live == 0)
+            return 1.;
+        return (double)(vertices.getLength() + edges.getLength() + faces.getLength()) / live;
+    }
+
+    /**
+     * Rebuilds the mesh from live elements only and releases memory of removed elements.
+     *
+     * With ORDER_SPATIAL vertices are sorted along Morton curve inside of the mesh bounds and
+     * faces are sorted by their smallest vertex index, so elements which are close on the surface
+     * are close in memory as well.
+     *
+     * Element indices and user data of vertices and edges are not preserved.
+     * Mesh with vertex attributes is left unchanged.
+     *
+     * @param order ORDER_CREATION or ORDER_SPATIAL
+     * @return true if the mesh was compacted
+     */
+    public boolean compact(int order) {
+
+        if (semantics != null && semantics.length > 0) {
+            // attributes are not rebuilt by setFaces()
+            return false;
+        }
+
+        int vcount = vertexCount;
+        int fcount = faceCount;
+
+        double coord[] = new double[3 * vcount];
+        int vmap[] = new int[vertices.getLength()];
+        double pnt[] = new double[3];
+
+        int vc = 0;
+        for (int v = startVertex; v != -1; v = Vertex.getNext(vertices, v)) {
+            Vertex.getPoint(vertices, v, pnt);
+            coord[3 * vc] = pnt[0];
+            coord[3 * vc + 1] = pnt[1];
+            coord[3 * vc + 2] = pnt[2];
+            vmap[v] = vc++;
+        }
+
+        if (order == ORDER_SPATIAL && vcount > 0) {
+
+            int perm[] = getMortonOrder(coord, vcount);
+            double pcoord[] = new double[3 * vcount];
+            int iperm[] = new int[vcount];
+            for (int i = 0; i < vcount; i++) {
+                int k = perm[i];
+                iperm[k] = i;
+                pcoord[3 * i] = coord[3 * k];
+                pcoord[3 * i + 1] = coord[3 * k + 1];
+                pcoord[3 * i + 2] = coord[3 * k + 2];
+            }
+            coord = pcoord;
+            for (int v = startVertex; v != -1; v = Vertex.getNext(vertices, v)) {
+                vmap[v] = iperm[vmap[v]];
+            }
+        }
+
+        int findex[] = new int[3 * fcount];
+        int fc = 0;
+        for (int f = startFace; f != -1; f = Face.getNext(faces, f)) {
+            int he = Face.getHe(faces, f);
+            int he1 = HalfEdge.getNext(hedges, he);
+            findex[fc++] = vmap[HalfEdge.getStart(hedges, he)];
+            findex[fc++] = vmap[HalfEdge.getEnd(hedges, he)];
+            findex[fc++] = vmap[HalfEdge.getEnd(hedges, he1)];
+        }
+
+        if (order == ORDER_SPATIAL && fcount > 0) {
+
+            long keys[] = new long[fcount];
+            for (int i = 0; i < fcount; i++) {
+                int vmin = Math.min(findex[3 * i], Math.min(findex[3 * i + 1], findex[3 * i + 2]));
+                keys[i] = ((long) vmin << 32) | i;
+            }
+            Arrays.sort(keys);
+            int sorted[] = new int[3 * fcount];
+            for (int i = 0; i < fcount; i++) {
+                int k = (int) (keys[i] & 0xFFFFFFFFL);
+                sorted[3 * i] = findex[3 * k];
+                sorted[3 * i + 1] = findex[3 * k + 1];
+                sorted[3 * i + 2] = findex[3 * k + 2];
+            }
+            findex = sorted;
+        }
+
+        clear();
+
+        // shrink memory to the live size
+        vertices.resize(vcount + 1);
+        faces.resize(fcount + 1);
+        edges.resize(fcount * 3 / 2 + 1);
+        hedges.resize(fcount * 3 + 1);
+        edgeMap = new StructMap((int) Math.round((fcount * 3 * 1.25)) + 1, 0.75f, hedges, new HalfEdgeHashFunction());
+
+        setFaces(coord, vcount, findex, fcount);
+        return true;
+    }
+
+    /**
+     * returns permutation of points sorted along Morton curve
+     */
+    static int[] getMortonOrder(double coord[], int count) {
+
+        double
+            xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE,
+            ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE,
+            zmin = Double.MAX_VALUE, zmax = -Double.MAX_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            double x = coord[3 * i], y = coord[3 * i + 1], z = coord[3 * i + 2];
+            if (x < xmin) xmin = x;
+            if (x > xmax) xmax = x;
+            if (y < ymin) ymin = y;
+            if (y > ymax) ymax = y;
+            if (z < zmin) zmin = z;
+            if (z > zmax) zmax = z;
+        }
+
+        int cells = (1 << MORTON_BITS) - 1;
+        double size = Math.max(xmax - xmin, Math.max(ymax - ymin, zmax - zmin));
+        double scale = (size > 0) ? cells / size : 0;
+
+        long keys[] = new long[count];
+        for (int i = 0; i < count; i++) {
+            int x = (int) ((coord[3 * i] - xmin) * scale);
+            int y = (int) ((coord[3 * i + 1] - ymin) * scale);
+            int z = (int) ((coord[3 * i + 2] - zmin) * scale);
+            long code = 0;
+            for (int b = MORTON_BITS - 1; b >= 0; b--) {
+                code = (code << 3) | (((x >> b) & 1) << 2) | (((y >> b) & 1) << 1) | ((z >> b) & 1);
+            }
+            keys[i] = (code << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int perm[] = new int[count];
+        for (int i = 0; i < count; i++) {
+            perm[i] = (int) (keys[i] & 0xFFFFFFFFL);
+        }
+        return perm;
+    }
+
     /**
      * Get the semantic definitions of the vertices
      * @return The definitions or null if none
@@ -839,6 +1079,10 @@ public class WingedEdgeTriangleMesh implements TriangleMesh {
         if (DEBUG) {
             System.out.println("Removing face: " + f);
         }
+        if (deferredRemoval) {
+            Face.setHe(-1,faces,f);
+            return;
+        }
         int prev = Face.getPrev(faces,f);
 
         if (prev != -1) {
@@ -879,6 +1123,10 @@ public class WingedEdgeTriangleMesh implements TriangleMesh {
         if (DEBUG) {
             System.out.println("Removing Edge: " + e);
         }
+        if (deferredRemoval) {
+            Edge.setHe(-1,edges,e);
+            return;
+        }
         int prev = Edge.getPrev(edges,e);
 
         if (prev != -1) {
@@ -920,6 +1168,10 @@ public class WingedEdgeTriangleMesh implements TriangleMesh {
         if (DEBUG) {
             System.out.println("Removing vertex: " + v);
         }
+        if (deferredRemoval) {
+            Vertex.setLink(-1, vertices, v);
+            return;
+        }
         int prev = Vertex.getPrev(vertices, v);
 
         if (prev != -1) {
@@ -25,6 +25,8 @@ import abfab3d.util.Initializable;
 import abfab3d.util.Symmetry;
 import abfab3d.util.ReflectionGroup;
 import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTransformer;
+import abfab3d.util.BoundsUtil;
 
 import net.jafama.FastMath;
 
@@ -38,7 +40,7 @@ import static abfab3d.util.Symmetry.toFundamentalDomain;
    Arbitrary long chain of transformation to be applied to the shape. 
    
  */
-public class CompositeTransform implements VecTransform, Initializable {
+public class CompositeTransform implements VecTransform, Initializable, BoundsTransformer {
     
     private Vector<VecTransform> vTransforms = new Vector<VecTransform>();
     
@@ -130,4 +132,30 @@ public class CompositeTransform implements VecTransform, Initializable {
         return RESULT_OK;
         
     }
+
+    /**
+       transforms bounds by each transform of the chain
+       @noRefGuide
+     */
+    public boolean transformBounds(double bounds[]){
+        
+        for(int i = 0; i < aTransforms.length; i++){
+            if(!BoundsUtil.transformBounds(aTransforms[i], bounds))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+       transforms bounds by inverse of each transform of the chain in reverse order
+       @noRefGuide
+     */
+    public boolean inverseTransformBounds(double bounds[]){
+        
+        for(int i = aTransforms.length-1; i >= 0; i--){
+            if(!BoundsUtil.inverseTransformBounds(aTransforms[i], bounds))
+                return false;
+        }
+        return true;
+    }
 }  // class CompositeTransform
@@ -25,6 +25,7 @@ import abfab3d.util.Initializable;
 import abfab3d.util.Symmetry;
 import abfab3d.util.ReflectionGroup;
 import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTransformer;
 
 import net.jafama.FastMath;
 
@@ -39,7 +40,7 @@ import static abfab3d.util.Symmetry.toFundamentalDomain;
    only transfers data 
    
 */
-public class Identity implements VecTransform {
+public class Identity implements VecTransform, BoundsTransformer {
     /**
        @noRefGuide
      */
@@ -54,5 +55,19 @@ public class Identity implements VecTransform {
         out.set(in);
         return RESULT_OK;
     }
+
+    /**
+       @noRefGuide
+     */
+    public boolean transformBounds(double bounds[]){
+        return true;
+    }
+
+    /**
+       @noRefGuide
+     */
+    public boolean inverseTransformBounds(double bounds[]){
+        return true;
+    }
     
 }
@@ -25,6 +25,8 @@ import abfab3d.util.Initializable;
 import abfab3d.util.Symmetry;
 import abfab3d.util.ReflectionGroup;
 import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTransformer;
+import abfab3d.util.BoundsUtil;
 
 import net.jafama.FastMath;
 
@@ -35,7 +37,7 @@ import static abfab3d.util.Symmetry.toFundamentalDomain;
 /**
    performs rotation about given axis 
 */
-public class Rotation implements VecTransform, Initializable {
+public class Rotation implements VecTransform, Initializable, BoundsTransformer {
     
     private Vector3d m_axis = new Vector3d(1,0,0); 
     private double m_angle = 0;
@@ -183,5 +185,19 @@ public class Rotation implements VecTransform, Initializable {
         return RESULT_OK;
         
     }
+
+    /**
+       @noRefGuide
+     */
+    public boolean transformBounds(double bounds[]){
+        return BoundsUtil.transformCorners(this, bounds);
+    }
+
+    /**
+       @noRefGuide
+     */
+    public boolean inverseTransformBounds(double bounds[]){
+        return BoundsUtil.inverseTransformCorners(this, bounds);
+    }
     
 } // class Rotation
@@ -25,6 +25,8 @@ import abfab3d.util.Initializable;
 import abfab3d.util.Symmetry;
 import abfab3d.util.ReflectionGroup;
 import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTransformer;
+import abfab3d.util.BoundsUtil;
 
 import net.jafama.FastMath;
 
@@ -36,7 +38,7 @@ import static abfab3d.util.Symmetry.toFundamentalDomain;
 /**
    performs scaling by given factor
 */
-public class Scale  implements VecTransform {
+public class Scale  implements VecTransform, BoundsTransformer {
     
     protected double sx = 1., sy = 1., sz = 1.; 
     protected double averageScale = 1.;
@@ -120,4 +122,25 @@ public class Scale  implements VecTransform {
         return RESULT_OK;
         
     }
+
+    /**
+       non uniform scaling changes the width of transitional surface layer and can not transform bounds 
+       @noRefGuide
+     */
+    public boolean transformBounds(double bounds[]){
+
+        if(sx != sy || sx != sz)
+            return false;
+        return BoundsUtil.transformCorners(this, bounds);
+    }
+
+    /**
+       @noRefGuide
+     */
+    public boolean inverseTransformBounds(double bounds[]){
+
+        if(sx != sy || sx != sz)
+            return false;
+        return BoundsUtil.inverseTransformCorners(this, bounds);
+    }
 } // class Scale
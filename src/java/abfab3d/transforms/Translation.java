@@ -25,6 +25,7 @@ import abfab3d.util.Initializable;
 import abfab3d.util.Symmetry;
 import abfab3d.util.ReflectionGroup;
 import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTransformer;
 
 import net.jafama.FastMath;
 
@@ -37,7 +38,7 @@ import static abfab3d.util.Symmetry.toFundamentalDomain;
    Performs translation in space 
    
 */
-public class Translation  implements VecTransform {
+public class Translation  implements VecTransform, BoundsTransformer {
     
     protected double tx = 1, ty = 1, tz = 1; 
    
@@ -107,4 +108,32 @@ public class Translation  implements VecTransform {
         return RESULT_OK;
         
     }
+
+    /**
+       @noRefGuide
+     */
+    public boolean transformBounds(double bounds[]){
+
+        bounds[0] += tx;
+        bounds[1] += tx;
+        bounds[2] += ty;
+        bounds[3] += ty;
+        bounds[4] += tz;
+        bounds[5] += tz;
+        return true;
+    }
+
+    /**
+       @noRefGuide
+     */
+    public boolean inverseTransformBounds(double bounds[]){
+
+        bounds[0] -= tx;
+        bounds[1] -= tx;
+        bounds[2] -= ty;
+        bounds[3] -= ty;
+        bounds[4] -= tz;
+        bounds[5] -= tz;
+        return true;
+    }
 } // class Translation
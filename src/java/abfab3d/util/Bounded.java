@@ -0,0 +1,32 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+
+   interface of DataSource which knows bounds of the area where its data may be non zero
+
+   outside of the bounds expanded by the scaled voxel size of the point (transitional surface layer) 
+   the value of the first data channel (density) is 0. 
+   Bounds are calculated after initialization of the data source. 
+ */
+public interface Bounded {
+
+    /**
+       calculates conservative bounds of the data source
+       @param bounds storage for bounds in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+       @return true if data source is bounded and false otherwise
+     */
+    public boolean getBounds(double bounds[]);
+
+}
@@ -0,0 +1,40 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+
+   interface of DataSource which data may be non zero only inside of bounds of its parts
+
+   outside of the bounds of all parts expanded by the scaled voxel size of the point 
+   the value of the first data channel (density) is 0. 
+   Bounds of parts are given in the same coordinates as bounds of the data source (see Bounded). 
+   Bounds are calculated after initialization of the data source. 
+
+ */
+public interface BoundedParts extends Bounded {
+
+    /**
+       @return count of parts of the data source
+     */
+    public int getPartsCount();
+
+    /**
+       calculates conservative bounds of part of the data source
+       @param index index of the part 
+       @param bounds storage for bounds in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+       @return true if the part is bounded and false otherwise
+     */
+    public boolean getPartBounds(int index, double bounds[]);
+
+}
@@ -0,0 +1,39 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+
+   interface of VecTransform which can calculate bounds of the transformed box
+
+   transform should preserve distances up to the scale factor accumulated in Vec.getScaleFactor() 
+   (translations, rotations, uniform scaling and their compositions). 
+   This keeps the width of the transitional surface layer of the transformed shape equal to the voxel size. 
+ */
+public interface BoundsTransformer {
+
+    /**
+       replaces bounds with bounds of the box transformed by the direct transform 
+       @param bounds bounds in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+       @return true if the bounds were transformed and false if transformed bounds can not be calculated
+     */
+    public boolean transformBounds(double bounds[]);
+
+    /**
+       replaces bounds with bounds of the box transformed by the inverse transform 
+       @param bounds bounds in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+       @return true if the bounds were transformed and false if transformed bounds can not be calculated
+     */
+    public boolean inverseTransformBounds(double bounds[]);
+
+}
@@ -0,0 +1,209 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+   bounding volume hierarchy of axis aligned boxes.
+
+   It is used to find quickly items which bounds contain given point or intersect given box.
+   The tree is built once and is read only after that, so queries are thread safe and allocate no memory.
+ */
+public class BoundsTree {
+
+    // max count of items in leaf node
+    static final int LEAF_SIZE = 4;
+
+    // bounds of items
+    double m_itemBounds[];
+    // ids of items ordered by nodes
+    int m_items[];
+    // node bounds, 6 values per node
+    double m_nodeBounds[];
+    // children of internal nodes
+    int m_left[], m_right[];
+    // start and count of items in leaf nodes (count is 0 for internal nodes)
+    int m_start[], m_count[];
+    int m_nodeCount = 0;
+
+    /**
+       @param itemBounds bounds of items, 6 values per item {xmin, xmax, ymin, ymax, zmin, zmax}
+       @param itemIds ids of items returned from queries
+       @param count count of items
+     */
+    public BoundsTree(double itemBounds[], int itemIds[], int count){
+
+        m_itemBounds = new double[6*count];
+        System.arraycopy(itemBounds, 0, m_itemBounds, 0, 6*count);
+
+        int maxNodes = 2*count + 1;
+        m_nodeBounds = new double[6*maxNodes];
+        m_left = new int[maxNodes];
+        m_right = new int[maxNodes];
+        m_start = new int[maxNodes];
+        m_count = new int[maxNodes];
+
+        // work with items indices, replace by ids after the tree is built
+        m_items = new int[count];
+        for(int i = 0; i < count; i++)
+            m_items[i] = i;
+
+        double centers[] = new double[3*count];
+        for(int i = 0; i < count; i++){
+            for(int k = 0; k < 3; k++)
+                centers[3*i+k] = (m_itemBounds[6*i + 2*k] + m_itemBounds[6*i + 2*k + 1])/2;
+        }
+
+        if(count > 0)
+            buildNode(0, count, centers);
+
+        // replace item indices by ids
+        double ib[] = new double[6*count];
+        for(int i = 0; i < count; i++){
+            System.arraycopy(m_itemBounds, 6*m_items[i], ib, 6*i, 6);
+            m_items[i] = itemIds[m_items[i]];
+        }
+        // item bounds are ordered as m_items now
+        m_itemBounds = ib;
+    }
+
+    /**
+       @return count of items in the tree
+     */
+    public int getItemsCount(){
+        return m_items.length;
+    }
+
+    /**
+       finds items which bounds expanded by margin contain given point
+       @param items storage for found item ids, it should have size of items count
+       @return count of found items
+     */
+    public int findItems(double x, double y, double z, double margin, int items[]){
+
+        if(m_nodeCount == 0)
+            return 0;
+        return findItems(0, x, x, y, y, z, z, margin, items, 0);
+    }
+
+    /**
+       finds items which bounds expanded by margin intersect given box
+       @param bounds box to intersect in the form {xmin, xmax, ymin, ymax, zmin, zmax}
+       @param items storage for found item ids, it should have size of items count
+       @return count of found items
+     */
+    public int findItems(double bounds[], double margin, int items[]){
+
+        if(m_nodeCount == 0)
+            return 0;
+        return findItems(0, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], margin, items, 0);
+    }
+
+    /**
+       recursive query
+     */
+    int findItems(int node, double xmin, double xmax, double ymin, double ymax, double zmin, double zmax,
+                  double margin, int items[], int found){
+
+        if(!intersects(m_nodeBounds, 6*node, xmin, xmax, ymin, ymax, zmin, zmax, margin))
+            return found;
+
+        int cnt = m_count[node];
+        if(cnt > 0){
+            // leaf
+            int start = m_start[node];
+            for(int i = start; i < start + cnt; i++){
+                if(intersects(m_itemBounds, 6*i, xmin, xmax, ymin, ymax, zmin, zmax, margin))
+                    items[found++] = m_items[i];
+            }
+            return found;
+        }
+        found = findItems(m_left[node], xmin, xmax, ymin, ymax, zmin, zmax, margin, items, found);
+        return findItems(m_right[node], xmin, xmax, ymin, ymax, zmin, zmax, margin, items, found);
+    }
+
+    static final boolean intersects(double b[], int offset, double xmin, double xmax, double ymin, double ymax, double zmin, double zmax,
+                                    double margin){
+        return (b[offset] - margin <= xmax && b[offset+1] + margin >= xmin &&
+                b[offset+2] - margin <= ymax && b[offset+3] + margin >= ymin &&
+                b[offset+4] - margin <= zmax && b[offset+5] + margin >= zmin);
+    }
+
+    /**
+       builds node for items in the range [start, end) of m_items
+       @return index of node
+     */
+    int buildNode(int start, int end, double centers[]){
+
+        int node = m_nodeCount++;
+        int nb = 6*node;
+        // node bounds
+        for(int k = 0; k < 6; k += 2){
+            m_nodeBounds[nb + k] = Double.MAX_VALUE;
+            m_nodeBounds[nb + k + 1] = -Double.MAX_VALUE;
+        }
+        double cbounds[] = new double[]{Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+        for(int i = start; i < end; i++){
+            int item = m_items[i];
+            for(int k = 0; k < 6; k += 2){
+                if(m_itemBounds[6*item + k] < m_nodeBounds[nb + k]) m_nodeBounds[nb + k] = m_itemBounds[6*item + k];
+                if(m_itemBounds[6*item + k + 1] > m_nodeBounds[nb + k + 1]) m_nodeBounds[nb + k + 1] = m_itemBounds[6*item + k + 1];
+            }
+            BoundsUtil.addPoint(cbounds, centers[3*item], centers[3*item+1], centers[3*item+2]);
+        }
+
+        int cnt = end - start;
+        if(cnt <= LEAF_SIZE){
+            m_start[node] = start;
+            m_count[node] = cnt;
+            return node;
+        }
+
+        // split along the longest axis of centers bounds at the median
+        int axis = 0;
+        double size = cbounds[1] - cbounds[0];
+        if(cbounds[3] - cbounds[2] > size) { axis = 1; size = cbounds[3] - cbounds[2]; }
+        if(cbounds[5] - cbounds[4] > size) { axis = 2; }
+
+        int mid = (start + end)/2;
+        select(m_items, start, end-1, mid, centers, axis);
+
+        m_count[node] = 0;
+        m_left[node] = buildNode(start, mid, centers);
+        m_right[node] = buildNode(mid, end, centers);
+        return node;
+    }
+
+    /**
+       partially sorts items in the range [left, right] so that item at index k is at its sorted position
+       according to center coordinate along axis
+     */
+    static void select(int items[], int left, int right, int k, double centers[], int axis){
+
+        while(right > left){
+            double pivot = centers[3*items[(left + right) >>> 1] + axis];
+            int i = left, j = right;
+            while(i <= j){
+                while(centers[3*items[i] + axis] < pivot) i++;
+                while(centers[3*items[j] + axis] > pivot) j--;
+                if(i <= j){
+                    int t = items[i]; items[i] = items[j]; items[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) right = j;
+            else if(k >= i) left = i;
+            else return;
+        }
+    }
+}
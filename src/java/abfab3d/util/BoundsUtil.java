@@ -0,0 +1,190 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+   utilities to work with axis aligned bounds stored as array {xmin, xmax, ymin, ymax, zmin, zmax}
+ */
+public class BoundsUtil {
+
+    /**
+       @return bounds of data source or false if data source is unbounded
+     */
+    public static boolean getBounds(DataSource ds, double bounds[]){
+
+        if(ds instanceof Bounded)
+            return ((Bounded)ds).getBounds(bounds);
+        return false;
+    }
+
+    /**
+       transforms bounds by the transform
+       @return false if transform can not transform bounds
+     */
+    public static boolean transformBounds(VecTransform trans, double bounds[]){
+
+        if(trans == null)
+            return true;
+        if(trans instanceof BoundsTransformer)
+            return ((BoundsTransformer)trans).transformBounds(bounds);
+        return false;
+    }
+
+    /**
+       transforms bounds by the inverse of the transform
+       @return false if transform can not transform bounds
+     */
+    public static boolean inverseTransformBounds(VecTransform trans, double bounds[]){
+
+        if(trans == null)
+            return true;
+        if(trans instanceof BoundsTransformer)
+            return ((BoundsTransformer)trans).inverseTransformBounds(bounds);
+        return false;
+    }
+
+    /**
+       @return scale factor of the inverse transform at the center of bounds or 0 if the center can not be transformed
+     */
+    public static double getInverseScale(VecTransform trans, double bounds[]){
+
+        if(trans == null)
+            return 1.;
+        Vec pnt = new Vec(3);
+        pnt.set((bounds[0] + bounds[1])/2, (bounds[2] + bounds[3])/2, (bounds[4] + bounds[5])/2);
+        if(trans.inverse_transform(pnt, pnt) != VecTransform.RESULT_OK)
+            return 0.;
+        return pnt.getScaleFactor();
+    }
+
+    /**
+       replaces bounds with bounds of 8 corners of the box transformed by direct transform.
+       It is valid for affine transforms only
+     */
+    public static boolean transformCorners(VecTransform trans, double bounds[]){
+
+        return transformCorners(trans, bounds, false);
+    }
+
+    /**
+       replaces bounds with bounds of 8 corners of the box transformed by inverse transform.
+       It is valid for affine transforms only
+     */
+    public static boolean inverseTransformCorners(VecTransform trans, double bounds[]){
+
+        return transformCorners(trans, bounds, true);
+    }
+
+    static boolean transformCorners(VecTransform trans, double bounds[], boolean inverse){
+
+        Vec in = new Vec(3);
+        Vec out = new Vec(3);
+        double tb[] = new double[]{Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+
+        for(int i = 0; i < 8; i++){
+            in.set(bounds[(i & 1)], bounds[2 + ((i >> 1) & 1)], bounds[4 + ((i >> 2) & 1)]);
+            int res = inverse? trans.inverse_transform(in, out): trans.transform(in, out);
+            if(res != VecTransform.RESULT_OK)
+                return false;
+            addPoint(tb, out.v[0], out.v[1], out.v[2]);
+        }
+        System.arraycopy(tb, 0, bounds, 0, 6);
+        return true;
+    }
+
+    /**
+       expands bounds to include the point
+     */
+    public static final void addPoint(double bounds[], double x, double y, double z){
+
+        if(x < bounds[0]) bounds[0] = x;
+        if(x > bounds[1]) bounds[1] = x;
+        if(y < bounds[2]) bounds[2] = y;
+        if(y > bounds[3]) bounds[3] = y;
+        if(z < bounds[4]) bounds[4] = z;
+        if(z > bounds[5]) bounds[5] = z;
+    }
+
+    /**
+       calculates bounds of span of points stored as (x0,y0,z0,x1,y1,z1,...)
+     */
+    public static final void getBounds(double pnts[], int count, double bounds[]){
+
+        bounds[0] = bounds[2] = bounds[4] = Double.MAX_VALUE;
+        bounds[1] = bounds[3] = bounds[5] = -Double.MAX_VALUE;
+        for(int i = 0, i3 = 0; i < count; i++, i3 += 3){
+            addPoint(bounds, pnts[i3], pnts[i3+1], pnts[i3+2]);
+        }
+    }
+
+    /**
+       stores in bounds the union of bounds and bounds1
+     */
+    public static final void union(double bounds[], double bounds1[]){
+
+        for(int i = 0; i < 6; i += 2){
+            if(bounds1[i] < bounds[i]) bounds[i] = bounds1[i];
+            if(bounds1[i+1] > bounds[i+1]) bounds[i+1] = bounds1[i+1];
+        }
+    }
+
+    /**
+       stores in bounds the intersection of bounds and bounds1. Result may be empty (min > max)
+     */
+    public static final void intersect(double bounds[], double bounds1[]){
+
+        for(int i = 0; i < 6; i += 2){
+            if(bounds1[i] > bounds[i]) bounds[i] = bounds1[i];
+            if(bounds1[i+1] < bounds[i+1]) bounds[i+1] = bounds1[i+1];
+        }
+    }
+
+    /**
+       @return true if point is inside of bounds expanded by margin
+     */
+    public static final boolean contains(double bounds[], double x, double y, double z, double margin){
+
+        return contains(bounds, 0, x, y, z, margin);
+    }
+
+    /**
+       @return true if point is inside of bounds stored at given offset and expanded by margin
+     */
+    public static final boolean contains(double bounds[], int offset, double x, double y, double z, double margin){
+
+        return (x >= bounds[offset] - margin && x <= bounds[offset+1] + margin &&
+                y >= bounds[offset+2] - margin && y <= bounds[offset+3] + margin &&
+                z >= bounds[offset+4] - margin && z <= bounds[offset+5] + margin);
+    }
+
+    /**
+       collects bounds of data sources 
+       @param bounds storage for bounds, 6 values per data source 
+       @param bounded storage for flags of bounded data sources 
+       @return count of bounded data sources 
+     */
+    public static int getBounds(DataSource dss[], double bounds[], boolean bounded[]){
+
+        double b[] = new double[6];
+        int count = 0;
+        for(int i = 0; i < dss.length; i++){
+            bounded[i] = getBounds(dss[i], b);
+            if(bounded[i]){
+                System.arraycopy(b, 0, bounds, 6*i, 6);
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
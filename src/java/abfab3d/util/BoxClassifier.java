@@ -0,0 +1,49 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+
+   interface of DataSource which can find boxes of points where the first data channel (density) is constant
+
+   Box is given in the same coordinates as bounds of the data source (see Bounded).
+   Classification is conservative, box which can not be classified is BOX_BOUNDARY.
+   Classification is valid after initialization of the data source.
+
+ */
+public interface BoxClassifier {
+
+    /**
+       density is 0 or data source is not defined at all points of the box
+     */
+    public static final int BOX_OUTSIDE = 0;
+
+    /**
+       density is 1 at all points of the box
+     */
+    public static final int BOX_INSIDE = 1;
+
+    /**
+       box may contain points with other values of density
+     */
+    public static final int BOX_BOUNDARY = 2;
+
+    /**
+       classifies box of points
+       @param box box in the form {xmin, xmax, ymin, ymax, zmin, zmax}, it is not modified
+       @param voxelSize scaled voxel size of points of the box (see Vec.getScaledVoxelSize())
+       @return BOX_OUTSIDE, BOX_INSIDE or BOX_BOUNDARY
+     */
+    public int classifyBox(double box[], double voxelSize);
+
+}
@@ -0,0 +1,213 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static abfab3d.util.Output.printf;
+
+/**
+   shared pool of threads used by multi threaded operations.
+
+   The pool is created on first use and lives for the whole application.
+   Size of the pool is AbFab3DGlobals.MAX_PROCESSOR_COUNT_KEY.
+   Each operation submits its tasks via execute() which waits till all tasks are done.
+   Operations running concurrently share threads of the pool, so the total count of calculating
+   threads never exceeds the pool size.
+
+   If the calling thread is interrupted, the tasks are cancelled and ExecutionStoppedException is thrown.
+   Running tasks are interrupted and should check Thread.isInterrupted() to stop early.
+   Tasks submitted from threads of the pool are run in the calling thread to prevent deadlock.
+ */
+public class ComputePool {
+
+    static final boolean DEBUG = false;
+    // idle threads are terminated after that time
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static ThreadPoolExecutor sm_pool;
+    private static int sm_poolSize;
+
+    /**
+       @return count of threads in the pool
+     */
+    public static int getPoolSize(){
+
+        return ((Number)AbFab3DGlobals.get(AbFab3DGlobals.MAX_PROCESSOR_COUNT_KEY)).intValue();
+    }
+
+    /**
+       @return count of threads an operation should use
+       @param requested requested count of threads, if less than 1 - count of available processors is used
+     */
+    public static int getThreadCount(int requested){
+
+        if(requested < 1)
+            requested = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(requested, getPoolSize()));
+    }
+
+    /**
+       runs all tasks and waits till they are done.
+       exception thrown by a task cancels other tasks and is rethrown.
+       the method returns only after all started tasks are finished
+     */
+    public static void execute(Runnable tasks[]){
+
+        if(tasks.length == 1 || Thread.currentThread() instanceof PoolThread){
+            // run in the calling thread
+            for(int i = 0; i < tasks.length; i++){
+                if(Thread.currentThread().isInterrupted())
+                    throw new ExecutionStoppedException();
+                tasks[i].run();
+            }
+            return;
+        }
+
+        TaskGroup group = new TaskGroup();
+        // tasks are taken in order of completion to see the first exception without delay
+        CompletionService<Object> service = new ExecutorCompletionService<Object>(getPool());
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.length);
+        for(int i = 0; i < tasks.length; i++){
+            futures.add(service.submit(group.wrap(tasks[i]), null));
+        }
+
+        try {
+            for(int i = 0; i < tasks.length; i++){
+                service.take().get();
+            }
+        } catch(InterruptedException e){
+            group.cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new ExecutionStoppedException();
+        } catch(ExecutionException e){
+            group.cancel(futures);
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if(cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+       tasks of one execute() call
+       keeps count of running tasks to wait for them after cancellation
+     */
+    static class TaskGroup {
+
+        int running = 0;
+        boolean stopped = false;
+
+        Runnable wrap(final Runnable task){
+
+            return new Runnable(){
+                public void run(){
+                    synchronized(TaskGroup.this){
+                        if(stopped)
+                            return;
+                        running++;
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        synchronized(TaskGroup.this){
+                            running--;
+                            TaskGroup.this.notifyAll();
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+           cancels tasks and waits till running tasks are finished
+         */
+        void cancel(List<Future<?>> futures){
+
+            synchronized(this){
+                stopped = true;
+            }
+            for(int i = 0; i < futures.size(); i++){
+                futures.get(i).cancel(true);
+            }
+            boolean interrupted = false;
+            synchronized(this){
+                while(running > 0){
+                    try {
+                        wait();
+                    } catch(InterruptedException e){
+                        interrupted = true;
+                    }
+                }
+            }
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+       @return the pool resized to current pool size
+     */
+    static synchronized ThreadPoolExecutor getPool(){
+
+        int size = getPoolSize();
+        if(sm_pool == null){
+            sm_pool = new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                             new LinkedBlockingQueue<Runnable>(), new PoolThreadFactory());
+            sm_pool.allowCoreThreadTimeOut(true);
+            sm_poolSize = size;
+        } else if(size != sm_poolSize){
+            if(DEBUG) printf("ComputePool size: %d -> %d\n", sm_poolSize, size);
+            if(size > sm_poolSize){
+                sm_pool.setMaximumPoolSize(size);
+                sm_pool.setCorePoolSize(size);
+            } else {
+                sm_pool.setCorePoolSize(size);
+                sm_pool.setMaximumPoolSize(size);
+            }
+            sm_poolSize = size;
+        }
+        return sm_pool;
+    }
+
+    /**
+       thread of the pool
+     */
+    static class PoolThread extends Thread {
+        PoolThread(Runnable runnable, String name){
+            super(runnable, name);
+            setDaemon(true);
+        }
+    }
+
+    static class PoolThreadFactory implements ThreadFactory {
+
+        AtomicInteger count = new AtomicInteger(0);
+
+        public Thread newThread(Runnable runnable){
+            return new PoolThread(runnable, "ComputePool-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+
+   interface to calculate data values of DataSource for a span of points in one call
+
+   points are stored in primitive arrays. This saves virtual call and transform chain walk
+   per point for composite data sources with many children
+
+   span layout:
+   <pre>
+   pnts[3*i], pnts[3*i+1], pnts[3*i+2] - coordinates of i-th point
+   scales[i] - accumulated scale factor of i-th point (see Vec.getScaleFactor())
+   data[i*cc + c] - value of c-th channel of i-th point, where cc = getChannelsCount()
+   results[i] - result code of calculation at i-th point
+   </pre>
+
+   coordinates and scales of the points may be modified (transformed) by the call
+ */
+public interface DataSourceSpan extends DataSource {
+
+    /**
+       data values at the span of points
+       @param pnts coordinates of points
+       @param scales scale factors of points
+       @param voxelSize size of voxel in physical units (the same for all points of span)
+       @param count count of points in the span
+       @param data storage for returned calculated data
+       @param results storage for result codes of each point
+       @return result code
+     */
+    public int getDataValues(double pnts[], double scales[], double voxelSize, int count, double data[], int results[]);
+
+}
@@ -0,0 +1,150 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+/**
+   utilities to calculate data values of DataSource over span of points
+
+   @see DataSourceSpan
+ */
+public class DataSourceUtil {
+
+    static final int POINT_DIMENSION = 3;
+
+    /**
+       calculates data values at the span of points
+       uses DataSourceSpan.getDataValues() if data source implements it and per point calls otherwise
+     */
+    public static int getDataValues(DataSource ds, double pnts[], double scales[], double voxelSize, int count, double data[], int results[]){
+
+        if(ds instanceof DataSourceSpan)
+            return ((DataSourceSpan)ds).getDataValues(pnts, scales, voxelSize, count, data, results);
+        else
+            return getDataValuesPerPoint(ds, pnts, scales, voxelSize, count, data, results);
+    }
+
+    /**
+       calculates data values at the span of points via calls to ds.getDataValue() for each point
+     */
+    public static int getDataValuesPerPoint(DataSource ds, double pnts[], double scales[], double voxelSize, int count, double data[], int results[]){
+
+        return getDataValuesPerPoint(ds, pnts, scales, voxelSize, count, data, results, 
+                                     new Vec(POINT_DIMENSION), new Vec(ds.getChannelsCount()));
+    }
+
+    /**
+       calculates data values at the span of points via calls to ds.getDataValue() for each point
+       @param pnt storage for the point 
+       @param value storage for data value, it should have ds.getChannelsCount() channels 
+     */
+    public static int getDataValuesPerPoint(DataSource ds, double pnts[], double scales[], double voxelSize, int count, double data[], int results[], 
+                                            Vec pnt, Vec value){
+
+        int cc = ds.getChannelsCount();
+        double v[] = value.v;
+
+        for(int i = 0, i3 = 0, ic = 0; i < count; i++, i3 += POINT_DIMENSION, ic += cc){
+
+            pnt.v[0] = pnts[i3];
+            pnt.v[1] = pnts[i3+1];
+            pnt.v[2] = pnts[i3+2];
+            pnt.setVoxelSize(voxelSize);
+            pnt.setScaleFactor(scales[i]);
+
+            results[i] = ds.getDataValue(pnt, value);
+
+            for(int c = 0; c < cc; c++)
+                data[ic + c] = v[c];
+        }
+        return DataSource.RESULT_OK;
+    }
+
+    /**
+       applies inverse transform to each point of the span
+       @return count of points transformed with result other than RESULT_OK
+     */
+    public static int inverseTransform(VecTransform trans, double pnts[], double scales[], double voxelSize, int count, int results[]){
+
+        return inverseTransform(trans, pnts, scales, voxelSize, count, results, new Vec(POINT_DIMENSION));
+    }
+
+    /**
+       applies inverse transform to each point of the span
+       @param pnt storage for the point 
+       @return count of points transformed with result other than RESULT_OK
+     */
+    public static int inverseTransform(VecTransform trans, double pnts[], double scales[], double voxelSize, int count, int results[], Vec pnt){
+
+        int failed = 0;
+
+        for(int i = 0, i3 = 0; i < count; i++, i3 += POINT_DIMENSION){
+
+            pnt.v[0] = pnts[i3];
+            pnt.v[1] = pnts[i3+1];
+            pnt.v[2] = pnts[i3+2];
+            pnt.setVoxelSize(voxelSize);
+            pnt.setScaleFactor(scales[i]);
+
+            int res = trans.inverse_transform(pnt, pnt);
+            results[i] = res;
+            if(res != DataSource.RESULT_OK)
+                failed++;
+
+            pnts[i3] = pnt.v[0];
+            pnts[i3+1] = pnt.v[1];
+            pnts[i3+2] = pnt.v[2];
+            scales[i] = pnt.getScaleFactor();
+        }
+        return failed;
+    }
+
+    /**
+       copies point with index src in the span (inPnts, inScales) into point with index dest of span (outPnts, outScales)
+     */
+    public static final void copyPoint(double inPnts[], double inScales[], int src, double outPnts[], double outScales[], int dest){
+
+        int s3 = src*POINT_DIMENSION;
+        int d3 = dest*POINT_DIMENSION;
+        outPnts[d3] = inPnts[s3];
+        outPnts[d3+1] = inPnts[s3+1];
+        outPnts[d3+2] = inPnts[s3+2];
+        outScales[dest] = inScales[src];
+
+    }
+
+    /**
+       copies data channels of point with index src in span with srcChannels channels
+       into point with index dest in span with destChannels channels
+     */
+    public static final void copyData(double inData[], int src, int srcChannels, double outData[], int dest, int destChannels){
+
+        int cnt = (srcChannels < destChannels)? srcChannels: destChannels;
+        int s = src*srcChannels;
+        int d = dest*destChannels;
+        for(int c = 0; c < cnt; c++){
+            outData[d + c] = inData[s + c];
+        }
+    }
+
+    /**
+       classifies box of points of data source, data sources which are not BoxClassifier are not classified 
+       @return BoxClassifier.BOX_OUTSIDE, BoxClassifier.BOX_INSIDE or BoxClassifier.BOX_BOUNDARY
+       @see BoxClassifier
+     */
+    public static int classifyBox(DataSource ds, double box[], double voxelSize){
+
+        if(ds instanceof BoxClassifier)
+            return ((BoxClassifier)ds).classifyBox(box, voxelSize);
+        return BoxClassifier.BOX_BOUNDARY;
+    }
+}
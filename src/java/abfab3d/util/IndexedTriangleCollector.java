@@ -0,0 +1,38 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+import javax.vecmath.Vector3d;
+
+/**
+   interface accepts indexed triangles
+   vertices are added first and triangles refer to vertices by index
+ */
+public interface IndexedTriangleCollector {
+
+    /**
+       add vertex
+       vertex is copied into internal structure and can be reused after return
+
+       returns index of the vertex
+     */
+    public int addVertex(Vector3d v);
+
+    /**
+       add triangle made of previously added vertices
+
+       returns true if success, false if faiure
+     */
+    public boolean addTri(int v0, int v1, int v2);
+
+}
@@ -0,0 +1,244 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.lang.reflect.Method;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+   off heap storage of bytes addressed by long offset.
+
+   Storage is split into segments of 2^SEGMENT_BITS bytes, so the total size is not limited by 2GB.
+   Segments are direct buffers or regions of memory mapped file.
+   Direct buffers are limited by -XX:MaxDirectMemorySize, file backed storage is limited by disk space only.
+
+   Absolute get/put methods don't change the state of buffers and may be called from several threads
+   as long as the threads write to different offsets.
+
+   Multibyte values use native byte order and should be aligned to their size.
+ */
+public class SegmentedByteBuffer {
+
+    static final boolean DEBUG = false;
+
+    public static final int SEGMENT_BITS = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    // size of buffer used for stream io
+    static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private ByteBuffer m_segments[];
+    private long m_size;
+    private File m_file;
+    private RandomAccessFile m_raf;
+
+    /**
+       allocates storage in direct memory
+
+       @param size size of storage in bytes
+     */
+    public SegmentedByteBuffer(long size){
+
+        m_size = size;
+        m_segments = new ByteBuffer[getSegmentCount(size)];
+        for(int i = 0; i < m_segments.length; i++){
+            m_segments[i] = ByteBuffer.allocateDirect(getSegmentLength(i)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+       maps storage to file. The file is created if it does not exist and resized to the given size.
+       Content of existing file is preserved.
+
+       @param size size of storage in bytes
+       @param file backing file
+     */
+    public SegmentedByteBuffer(long size, File file) throws IOException {
+
+        m_size = size;
+        m_file = file;
+        m_raf = new RandomAccessFile(file, "rw");
+        m_raf.setLength(size);
+        FileChannel channel = m_raf.getChannel();
+        m_segments = new ByteBuffer[getSegmentCount(size)];
+        for(int i = 0; i < m_segments.length; i++){
+            m_segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i*SEGMENT_SIZE, getSegmentLength(i)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private int getSegmentCount(long size){
+
+        long count = (size + SEGMENT_SIZE - 1) >> SEGMENT_BITS;
+        if(count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("size is too large: " + size);
+        return (int)Math.max(1, count);
+    }
+
+    private int getSegmentLength(int segment){
+
+        return (int)Math.min(SEGMENT_SIZE, m_size - segment*SEGMENT_SIZE);
+    }
+
+    /**
+       @return size of storage in bytes
+     */
+    public long size(){
+        return m_size;
+    }
+
+    /**
+       @return backing file or null for direct memory
+     */
+    public File getFile(){
+        return m_file;
+    }
+
+    public final byte get(long offset){
+        return m_segments[(int)(offset >> SEGMENT_BITS)].get((int)(offset & SEGMENT_MASK));
+    }
+
+    public final void put(long offset, byte value){
+        m_segments[(int)(offset >> SEGMENT_BITS)].put((int)(offset & SEGMENT_MASK), value);
+    }
+
+    public final short getShort(long offset){
+        return m_segments[(int)(offset >> SEGMENT_BITS)].getShort((int)(offset & SEGMENT_MASK));
+    }
+
+    public final void putShort(long offset, short value){
+        m_segments[(int)(offset >> SEGMENT_BITS)].putShort((int)(offset & SEGMENT_MASK), value);
+    }
+
+    public final int getInt(long offset){
+        return m_segments[(int)(offset >> SEGMENT_BITS)].getInt((int)(offset & SEGMENT_MASK));
+    }
+
+    public final void putInt(long offset, int value){
+        m_segments[(int)(offset >> SEGMENT_BITS)].putInt((int)(offset & SEGMENT_MASK), value);
+    }
+
+    /**
+       copies content of another buffer of the same size into this buffer
+     */
+    public void copyFrom(SegmentedByteBuffer src){
+
+        if(src.m_size != m_size)
+            throw new IllegalArgumentException("buffers sizes differ: " + src.m_size + " != " + m_size);
+        for(int i = 0; i < m_segments.length; i++){
+            ByteBuffer s = src.m_segments[i].duplicate();
+            ByteBuffer d = m_segments[i].duplicate();
+            s.clear();
+            d.clear();
+            d.put(s);
+        }
+    }
+
+    /**
+       writes content of the buffer to the stream. Multibyte values are written in native byte order
+     */
+    public void write(DataOutput out) throws IOException {
+
+        byte buffer[] = new byte[COPY_BUFFER_SIZE];
+        for(int i = 0; i < m_segments.length; i++){
+            ByteBuffer s = m_segments[i].duplicate();
+            s.clear();
+            while(s.remaining() > 0){
+                int count = Math.min(buffer.length, s.remaining());
+                s.get(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+        }
+    }
+
+    /**
+       replaces content of the buffer with bytes read from the stream
+     */
+    public void read(DataInput in) throws IOException {
+
+        byte buffer[] = new byte[COPY_BUFFER_SIZE];
+        for(int i = 0; i < m_segments.length; i++){
+            ByteBuffer d = m_segments[i].duplicate();
+            d.clear();
+            while(d.remaining() > 0){
+                int count = Math.min(buffer.length, d.remaining());
+                in.readFully(buffer, 0, count);
+                d.put(buffer, 0, count);
+            }
+        }
+    }
+
+    /**
+       writes changes of file backed storage to the disk
+     */
+    public void force(){
+
+        if(m_file == null)
+            return;
+        for(int i = 0; i < m_segments.length; i++){
+            ((MappedByteBuffer)m_segments[i]).force();
+        }
+    }
+
+    /**
+       releases the memory and closes the backing file. The buffer can not be used after that.
+     */
+    public void close(){
+
+        if(m_segments == null)
+            return;
+        force();
+        for(int i = 0; i < m_segments.length; i++){
+            release(m_segments[i]);
+        }
+        m_segments = null;
+        if(m_raf != null){
+            try {
+                m_raf.close();
+            } catch(IOException e){
+                if(DEBUG) e.printStackTrace();
+            }
+            m_raf = null;
+        }
+    }
+
+    /**
+       tries to free memory of direct buffer without waiting for garbage collector.
+       It is not supported by all JVMs, in that case memory is freed by garbage collector
+     */
+    static void release(ByteBuffer buffer){
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null){
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch(Exception e){
+            // not supported, leave it to garbage collector
+            if(DEBUG) e.printStackTrace();
+        }
+    }
+}
@@ -75,6 +75,9 @@ public class StructMixedData {
         return size - 1;
     }
 
+    /**
+     * Change capacity of the struct.  Items above new capacity are discarded.
+     */
     public void resize(int newSize) {
         byte[] oldByteData = byteData;
         short[] oldShortData = shortData;
@@ -90,51 +93,52 @@ public class StructMixedData {
 
         if (oldByteData != null) {
             byteData = new byte[newSize * def.getByteDataSize()];
-            System.arraycopy(oldByteData, 0, byteData, 0, oldByteData.length);
+            System.arraycopy(oldByteData, 0, byteData, 0, Math.min(oldByteData.length, byteData.length));
         }
         if (oldShortData != null) {
             shortData = new short[newSize * def.getShortDataSize()];
-            System.arraycopy(oldShortData, 0, shortData, 0, oldShortData.length);
+            System.arraycopy(oldShortData, 0, shortData, 0, Math.min(oldShortData.length, shortData.length));
         }
         if (oldIntData != null) {
             intData = new int[newSize * def.getIntDataSize()];
-            System.arraycopy(oldIntData, 0, intData, 0, oldIntData.length);
+            System.arraycopy(oldIntData, 0, intData, 0, Math.min(oldIntData.length, intData.length));
         }
         if (oldPointerData != null) {
             pointerData = new int[newSize * def.getPointerDataSize()];
-            System.arraycopy(oldPointerData, 0, pointerData, 0, oldPointerData.length);
+            System.arraycopy(oldPointerData, 0, pointerData, 0, Math.min(oldPointerData.length, pointerData.length));
 
-            if (pointerData.length > 0) {
+            if (pointerData.length > oldPointerData.length) {
                 // Clear pointers to -1
                 Arrays.fill(pointerData,oldPointerData.length, pointerData.length-1,-1);
             }
         }
         if (oldLongData != null) {
             longData = new long[newSize * def.getLongDataSize()];
-            System.arraycopy(oldLongData, 0, longData, 0, oldLongData.length);
+            System.arraycopy(oldLongData, 0, longData, 0, Math.min(oldLongData.length, longData.length));
         }
         if (oldCharData != null) {
             charData = new char[newSize * def.getCharDataSize()];
-            System.arraycopy(oldCharData, 0, charData, 0, oldCharData.length);
+            System.arraycopy(oldCharData, 0, charData, 0, Math.min(oldCharData.length, charData.length));
         }
         if (oldDoubleData != null) {
             doubleData = new double[newSize * def.getDoubleDataSize()];
-            System.arraycopy(oldDoubleData, 0, doubleData, 0, oldDoubleData.length);
+            System.arraycopy(oldDoubleData, 0, doubleData, 0, Math.min(oldDoubleData.length, doubleData.length));
         }
         if (oldFloatData != null) {
             floatData = new float[newSize * def.getFloatDataSize()];
-            System.arraycopy(oldFloatData, 0, floatData, 0, oldFloatData.length);
+            System.arraycopy(oldFloatData, 0, floatData, 0, Math.min(oldFloatData.length, floatData.length));
         }
         if (oldBooleanData != null) {
             booleanData = new boolean[newSize * def.getBooleanDataSize()];
-            System.arraycopy(oldBooleanData, 0, booleanData, 0, oldBooleanData.length);
+            System.arraycopy(oldBooleanData, 0, booleanData, 0, Math.min(oldBooleanData.length, booleanData.length));
         }
         if (oldObjectData != null) {
             objectData = new Object[newSize * def.getObjectDataSize()];
-            System.arraycopy(oldObjectData, 0, objectData, 0, oldObjectData.length);
+            System.arraycopy(oldObjectData, 0, objectData, 0, Math.min(oldObjectData.length, objectData.length));
         }
 
         items = newSize;
+        if (size > items) size = items;
     }
 
     public void clear() {
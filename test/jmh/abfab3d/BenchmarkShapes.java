@@ -0,0 +1,121 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d;
+
+import java.util.Random;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.ArrayAttributeGridByte;
+import abfab3d.grid.AttributeMakerDensity;
+import abfab3d.grid.op.GridMaker;
+
+import abfab3d.datasources.Box;
+import abfab3d.datasources.Intersection;
+import abfab3d.datasources.Sphere;
+import abfab3d.datasources.Subtraction;
+import abfab3d.datasources.Torus;
+import abfab3d.datasources.Union;
+import abfab3d.datasources.VolumePatterns;
+
+import abfab3d.transforms.Rotation;
+
+import abfab3d.util.DataSource;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   shapes and grids shared by benchmarks
+ */
+public class BenchmarkShapes {
+
+    public static final String SPHERE = "sphere";
+    public static final String UNION = "union";
+    public static final String GYROID = "gyroid";
+
+    /** half size of the shapes */
+    public static final double SIZE = 10*MM;
+    /** subvoxel resolution of density grids */
+    public static final int SUBVOXEL_RESOLUTION = 255;
+
+    /**
+       @return bounds of all shapes
+     */
+    public static double[] getBounds(){
+        double s = SIZE + 1*MM;
+        return new double[]{-s, s, -s, s, -s, s};
+    }
+
+    /**
+       @param name one of SPHERE, UNION, GYROID
+       @return data source tree of given type
+     */
+    public static DataSource makeShape(String name){
+
+        if(SPHERE.equals(name)){
+            return new Sphere(0, 0, 0, SIZE);
+        } else if(UNION.equals(name)){
+            // many small shapes, exercises bounds culling
+            Random rnd = new Random(101);
+            Union union = new Union();
+            for(int i = 0; i < 200; i++){
+                double x = 0.8*SIZE*(2*rnd.nextDouble()-1);
+                double y = 0.8*SIZE*(2*rnd.nextDouble()-1);
+                double z = 0.8*SIZE*(2*rnd.nextDouble()-1);
+                double r = SIZE*(0.05 + 0.1*rnd.nextDouble());
+                if((i & 1) == 0){
+                    union.add(new Sphere(x, y, z, r));
+                } else {
+                    Box box = new Box(x, y, z, r, 2*r, r);
+                    box.setTransform(new Rotation(rnd.nextDouble(), rnd.nextDouble(), 1, rnd.nextDouble()));
+                    union.add(box);
+                }
+            }
+            union.add(new Torus(0.7*SIZE, 0.1*SIZE));
+            return union;
+        } else if(GYROID.equals(name)){
+            // deep tree of boolean operations with periodic pattern
+            Intersection inter = new Intersection();
+            inter.add(new Subtraction(new Sphere(0, 0, 0, SIZE), new Sphere(0, 0, 0, 0.5*SIZE)));
+            inter.add(new VolumePatterns.Gyroid(SIZE/3, 0.5*MM));
+            return inter;
+        }
+        throw new IllegalArgumentException("unknown shape: " + name);
+    }
+
+    /**
+       @return density grid of given shape
+     */
+    public static AttributeGrid makeGrid(String shape, double voxelSize){
+
+        double bounds[] = getBounds();
+        int n = (int)Math.round((bounds[1] - bounds[0])/voxelSize);
+        AttributeGrid grid = new ArrayAttributeGridByte(n, n, n, voxelSize, voxelSize);
+        grid.setGridBounds(bounds);
+        makeGrid(grid, makeShape(shape), 0, 0);
+        return grid;
+    }
+
+    /**
+       fills grid with density of given data source
+     */
+    public static void makeGrid(AttributeGrid grid, DataSource source, int adaptiveBlockSize, int threadCount){
+
+        GridMaker gm = new GridMaker();
+        gm.setBounds(getBounds());
+        gm.setSource(source);
+        gm.setAttributeMaker(new AttributeMakerDensity(SUBVOXEL_RESOLUTION));
+        gm.setAdaptiveBlockSize(adaptiveBlockSize);
+        gm.setThreadCount(threadCount);
+        gm.makeGrid(grid);
+    }
+}
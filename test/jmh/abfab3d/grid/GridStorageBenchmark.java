@@ -0,0 +1,146 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   read and write speed of grid implementations.
+
+   Grid is filled with solid ball written in the natural x,y,z loop order.
+   Random read uses fixed sequence of coordinates to make runs comparable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GridStorageBenchmark {
+
+    static final double VOXEL = 0.1*MM;
+    static final int RANDOM_READS = 1000000;
+
+    @Param({"ArrayAttributeGridByte", "ArrayAttributeGridShort", "BlockBasedAttributeGridByte", "BlockBasedAttributeGridShort", "GridShortIntervals"})
+    public String gridType;
+
+    @Param({"128", "256"})
+    public int size;
+
+    AttributeGrid m_grid;
+    int m_coords[];
+
+    @Setup(Level.Trial)
+    public void setup(){
+
+        m_grid = makeGrid(gridType, size);
+        fillBall(m_grid);
+
+        Random rnd = new Random(7);
+        m_coords = new int[3*RANDOM_READS];
+        for(int i = 0; i < m_coords.length; i++)
+            m_coords[i] = rnd.nextInt(size);
+    }
+
+    @Benchmark
+    public AttributeGrid write(){
+
+        AttributeGrid grid = makeGrid(gridType, size);
+        fillBall(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public long readSequential(){
+
+        AttributeGrid grid = m_grid;
+        int nx = grid.getWidth(), ny = grid.getHeight(), nz = grid.getDepth();
+        long sum = 0;
+        for(int y = 0; y < ny; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++){
+                    sum += grid.getAttribute(x,y,z);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readRandom(){
+
+        AttributeGrid grid = m_grid;
+        int coords[] = m_coords;
+        long sum = 0;
+        for(int i = 0; i < coords.length; i += 3){
+            sum += grid.getAttribute(coords[i],coords[i+1],coords[i+2]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int findInterior(){
+
+        return m_grid.findCount(Grid.VoxelClasses.INSIDE);
+    }
+
+    static AttributeGrid makeGrid(String type, int n){
+
+        if("ArrayAttributeGridByte".equals(type))
+            return new ArrayAttributeGridByte(n, n, n, VOXEL, VOXEL);
+        else if("ArrayAttributeGridShort".equals(type))
+            return new ArrayAttributeGridShort(n, n, n, VOXEL, VOXEL);
+        else if("BlockBasedAttributeGridByte".equals(type))
+            return new BlockBasedAttributeGridByte(n, n, n, VOXEL, VOXEL);
+        else if("BlockBasedAttributeGridShort".equals(type))
+            return new BlockBasedAttributeGridShort(n, n, n, VOXEL, VOXEL);
+        else if("GridShortIntervals".equals(type))
+            return new GridShortIntervals(n, n, n, VOXEL, VOXEL);
+        throw new IllegalArgumentException("unknown grid type: " + type);
+    }
+
+    /**
+       writes ball of radius 0.4*size centered in the grid
+     */
+    static void fillBall(AttributeGrid grid){
+
+        int nx = grid.getWidth(), ny = grid.getHeight(), nz = grid.getDepth();
+        double c = nx/2.;
+        double r2 = (0.4*nx)*(0.4*nx);
+        for(int y = 0; y < ny; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++){
+                    double dx = x - c, dy = y - c, dz = z - c;
+                    if(dx*dx + dy*dy + dz*dz < r2)
+                        grid.setData(x,y,z,Grid.INSIDE,1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.grid.op;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import abfab3d.BenchmarkShapes;
+
+import abfab3d.grid.AttributeGrid;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   distance transforms of density grid 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class DistanceTransformBenchmark {
+
+    static final double VOXEL = 0.1*MM;
+
+    @Param({BenchmarkShapes.SPHERE, BenchmarkShapes.GYROID})
+    public String shape;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    /** max distance calculated inside and outside of the shape in mm */
+    @Param({"0.5", "2"})
+    public double distance;
+
+    AttributeGrid m_grid;
+
+    @Setup(Level.Trial)
+    public void setup(){
+
+        m_grid = BenchmarkShapes.makeGrid(shape, VOXEL);
+    }
+
+    @Benchmark
+    public AttributeGrid distanceTransformLayered(){
+
+        DistanceTransformLayered dt = new DistanceTransformLayered(BenchmarkShapes.SUBVOXEL_RESOLUTION, distance*MM, distance*MM);
+        dt.setThreadCount(threads);
+        return dt.execute(m_grid);
+    }
+
+    /** single threaded reference for distanceTransformFIM */
+    @Benchmark
+    public AttributeGrid distanceTransformFM(){
+
+        DistanceTransformFM dt = new DistanceTransformFM(BenchmarkShapes.SUBVOXEL_RESOLUTION, distance*MM, distance*MM);
+        return dt.execute(m_grid);
+    }
+
+    @Benchmark
+    public AttributeGrid distanceTransformFIM(){
+
+        DistanceTransformFIM dt = new DistanceTransformFIM(BenchmarkShapes.SUBVOXEL_RESOLUTION, distance*MM, distance*MM);
+        dt.setThreadCount(threads);
+        return dt.execute(m_grid);
+    }
+}
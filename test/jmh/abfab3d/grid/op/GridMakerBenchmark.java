@@ -0,0 +1,79 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.grid.op;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import abfab3d.BenchmarkShapes;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.ArrayAttributeGridByte;
+
+import abfab3d.util.DataSource;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   rasterization of data source trees by GridMaker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class GridMakerBenchmark {
+
+    static final double VOXEL = 0.1*MM;
+
+    @Param({BenchmarkShapes.SPHERE, BenchmarkShapes.UNION, BenchmarkShapes.GYROID})
+    public String shape;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    /** 0 - exact calculation */
+    @Param({"0", "16"})
+    public int adaptiveBlockSize;
+
+    DataSource m_source;
+    AttributeGrid m_grid;
+
+    @Setup(Level.Trial)
+    public void setup(){
+
+        m_source = BenchmarkShapes.makeShape(shape);
+        double bounds[] = BenchmarkShapes.getBounds();
+        int n = (int)Math.round((bounds[1] - bounds[0])/VOXEL);
+        m_grid = new ArrayAttributeGridByte(n, n, n, VOXEL, VOXEL);
+    }
+
+    @Benchmark
+    public AttributeGrid makeGrid(){
+
+        BenchmarkShapes.makeGrid(m_grid, m_source, adaptiveBlockSize, threads);
+        return m_grid;
+    }
+}
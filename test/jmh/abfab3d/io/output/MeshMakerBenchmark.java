@@ -0,0 +1,82 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.io.output;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import abfab3d.BenchmarkShapes;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.DensityMakerSubvoxel;
+
+import abfab3d.mesh.IndexedTriangleSetBuilder;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   extraction of decimated mesh from density grid 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MeshMakerBenchmark {
+
+    static final double VOXEL = 0.1*MM;
+
+    @Param({BenchmarkShapes.SPHERE, BenchmarkShapes.GYROID})
+    public String shape;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    /** max decimation error in voxel size units, 0 - no decimation */
+    @Param({"0", "0.1"})
+    public double decimationError;
+
+    AttributeGrid m_grid;
+
+    @Setup(Level.Trial)
+    public void setup(){
+
+        m_grid = BenchmarkShapes.makeGrid(shape, VOXEL);
+    }
+
+    @Benchmark
+    public IndexedTriangleSetBuilder makeMesh(){
+
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        meshmaker.setThreadCount(threads);
+        meshmaker.setSmoothingWidth(0.5);
+        meshmaker.setMaxDecimationError(decimationError*VOXEL*VOXEL);
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(BenchmarkShapes.SUBVOXEL_RESOLUTION));
+
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(m_grid, its);
+        return its;
+    }
+}
@@ -0,0 +1,90 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+package abfab3d.mesh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import abfab3d.BenchmarkShapes;
+
+import abfab3d.grid.AttributeGrid;
+
+import abfab3d.io.output.MeshMakerMT;
+
+import static abfab3d.util.Units.MM;
+
+/**
+   decimation of mesh extracted from density grid 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MeshDecimatorBenchmark {
+
+    static final double VOXEL = 0.2*MM;
+
+    @Param({BenchmarkShapes.SPHERE, BenchmarkShapes.GYROID})
+    public String shape;
+
+    /** target faces count as fraction of original faces count */
+    @Param({"0.5", "0.1"})
+    public double reduction;
+
+    double m_vertices[];
+    int m_faces[];
+    WingedEdgeTriangleMesh m_mesh;
+
+    @Setup(Level.Trial)
+    public void setupTrial(){
+
+        AttributeGrid grid = BenchmarkShapes.makeGrid(shape, VOXEL);
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        // no decimation
+        meshmaker.setMaxDecimationError(0);
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its);
+        m_vertices = its.getVertices();
+        m_faces = its.getFaces();
+    }
+
+    /**
+       decimator modifies the mesh, each invocation needs fresh copy
+     */
+    @Setup(Level.Invocation)
+    public void setupInvocation(){
+
+        m_mesh = new WingedEdgeTriangleMesh(m_vertices, m_faces);
+    }
+
+    @Benchmark
+    public int processMesh(){
+
+        MeshDecimator md = new MeshDecimator();
+        md.setMaxCollapseError(VOXEL*VOXEL);
+        return md.processMesh(m_mesh, (int)(reduction*m_mesh.getFaceCount()));
+    }
+}
@@ -0,0 +1,478 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.datasources;
+
+import java.util.Random;
+
+// external imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.util.Vec;
+import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.Initializable;
+import abfab3d.util.VecTransform;
+import abfab3d.util.BoundsTree;
+import abfab3d.util.BoundsUtil;
+import abfab3d.util.BoxClassifier;
+
+import abfab3d.transforms.Rotation;
+import abfab3d.transforms.Scale;
+import abfab3d.transforms.Translation;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Units.MM;
+
+/**
+ * Tests that data sources culled by bounds give the same result as evaluation of all data sources
+ *
+ * @version
+ */
+public class TestBoundsCulling extends TestCase {
+
+    static final double EPS = 1.e-10;
+    static final double SIZE = 10*MM;
+    static final double VOXEL = 0.1*MM;
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestBoundsCulling.class);
+    }
+
+    public void testBoundsTree() {
+
+        Random rnd = new Random(11);
+        int count = 100;
+        double bounds[] = new double[6*count];
+        int ids[] = new int[count];
+        for(int i = 0; i < count; i++){
+            for(int k = 0; k < 3; k++){
+                double c = SIZE*(2*rnd.nextDouble()-1);
+                double r = SIZE*0.1*rnd.nextDouble();
+                bounds[6*i + 2*k] = c - r;
+                bounds[6*i + 2*k + 1] = c + r;
+            }
+            ids[i] = 1000 + i;
+        }
+        BoundsTree tree = new BoundsTree(bounds, ids, count);
+        int items[] = new int[count];
+
+        for(int t = 0; t < 10000; t++){
+            double x = SIZE*(2*rnd.nextDouble()-1);
+            double y = SIZE*(2*rnd.nextDouble()-1);
+            double z = SIZE*(2*rnd.nextDouble()-1);
+            int found = tree.findItems(x, y, z, VOXEL, items);
+            int expected = 0;
+            for(int i = 0; i < count; i++){
+                if(BoundsUtil.contains(bounds, 6*i, x, y, z, VOXEL)){
+                    expected++;
+                    assertTrue("item not found", contains(items, found, ids[i]));
+                }
+            }
+            assertEquals("found items count", expected, found);
+        }
+    }
+
+    public void testUnion() {
+
+        Union union = makeUnion(new Random(17), 200);
+        union.initialize();
+        checkCulling(union, 20000);
+    }
+
+    public void testComposition() {
+
+        Random rnd = new Random(23);
+        Composition comp = new Composition(Composition.AoverB);
+        for(int i = 0; i < 50; i++)
+            comp.add(makeShape(rnd));
+        comp.initialize();
+
+        // composition with culled union as child
+        Composition comp1 = new Composition(Composition.AoverB, makeUnion(rnd, 50), comp);
+        comp1.initialize();
+        checkSpan(comp1, 20000);
+
+        // the same composition without bounds of children 
+        for(int type = Composition.A; type <= Composition.AxorB; type++){
+            rnd = new Random(29);
+            Composition comp2 = new Composition(type);
+            Composition comp3 = new Composition(type);
+            for(int i = 0; i < 20; i++){
+                DataSource ds = makeShape(rnd);
+                comp2.add(ds);
+                comp3.add(new Unculled(ds));
+            }
+            comp2.initialize();
+            comp3.initialize();
+            checkSame(comp2, comp3, 20000);
+        }
+    }
+
+    /**
+       compares intersection and subtraction with the same data sources without bounds 
+     */
+    public void testIntersectionSubtraction() {
+
+        Random rnd = new Random(37);
+        for(int t = 0; t < 10; t++){
+            DataSource ds1 = makeShape(rnd), ds2 = makeShape(rnd), ds3 = makeShape(rnd);
+
+            Intersection inter = new Intersection(ds1, ds2);
+            inter.add(ds3);
+            Intersection inter1 = new Intersection(new Unculled(ds1), new Unculled(ds2));
+            inter1.add(new Unculled(ds3));
+            inter.initialize();
+            inter1.initialize();
+            checkSame(inter, inter1, 2000);
+
+            Subtraction sub = new Subtraction(ds1, ds2);
+            Subtraction sub1 = new Subtraction(new Unculled(ds1), new Unculled(ds2));
+            sub.initialize();
+            sub1.initialize();
+            checkSame(sub, sub1, 2000);
+        }
+    }
+
+    /**
+       points which failed to transform have result of the transform 
+     */
+    public void testTransformResults() {
+
+        Random rnd = new Random(41);
+        Union union = makeUnion(rnd, 20);
+        Intersection inter = new Intersection(makeShape(rnd), new Sphere(0, 0, 0, -(SIZE*0.9)));
+        Subtraction sub = new Subtraction(makeShape(rnd), makeShape(rnd));
+        Composition comp = new Composition(Composition.BoverA, makeShape(rnd), makeShape(rnd));
+        TransformableDataSource dss[] = new TransformableDataSource[]{union, inter, sub, comp};
+
+        int count = 1000;
+        double pnts[] = new double[3*count];
+        double scales[] = new double[count];
+        int results[] = new int[count];
+
+        for(int k = 0; k < dss.length; k++){
+            TransformableDataSource ds = dss[k];
+            ds.setTransform(new HalfSpace());
+            ds.initialize();
+            double data[] = new double[ds.getChannelsCount()*count];
+            for(int i = 0; i < count; i++){
+                for(int c = 0; c < 3; c++)
+                    pnts[3*i + c] = SIZE*(2*rnd.nextDouble()-1);
+                scales[i] = 1.;
+            }
+            double x[] = new double[count];
+            for(int i = 0; i < count; i++)
+                x[i] = pnts[3*i];
+            DataSourceUtil.getDataValues(ds, pnts, scales, VOXEL, count, data, results);
+            for(int i = 0; i < count; i++){
+                int expected = (x[i] > 0)? VecTransform.RESULT_OUTSIDE: VecTransform.RESULT_OK;
+                assertEquals("result of " + ds.getClass().getSimpleName(), expected, results[i]);
+            }
+        }
+    }
+
+    /**
+       checks that bounds of transformed composite data source contain all non zero values
+     */
+    public void testTransformedBounds() {
+
+        Random rnd = new Random(31);
+        Union union = new Union();
+        for(int i = 0; i < 20; i++)
+            union.add(makeShape(rnd));
+        union.setTransform(new Rotation(1,2,3,0.7));
+        Union union1 = new Union(union, new Sphere(2*MM, 3*MM, 0, 1*MM));
+        union1.setTransform(new Translation(1*MM, -2*MM, 0.5*MM));
+        union1.initialize();
+
+        double bounds[] = new double[6];
+        assertTrue("union should be bounded", union1.getBounds(bounds));
+        printf("bounds: (%7.2f %7.2f %7.2f %7.2f %7.2f %7.2f)mm\n",
+               bounds[0]/MM, bounds[1]/MM, bounds[2]/MM, bounds[3]/MM, bounds[4]/MM, bounds[5]/MM);
+
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(1);
+        for(int i = 0; i < 20000; i++){
+            double x = 2*SIZE*(2*rnd.nextDouble()-1);
+            double y = 2*SIZE*(2*rnd.nextDouble()-1);
+            double z = 2*SIZE*(2*rnd.nextDouble()-1);
+            setPoint(pnt, x, y, z);
+            union1.getDataValue(pnt, value);
+            if(value.v[0] > 0.)
+                assertTrue("point with non zero value is outside of bounds", BoundsUtil.contains(bounds, x, y, z, VOXEL));
+        }
+
+        Sphere sphere = new Sphere(0, 0, 0, 1*MM);
+        sphere.setTransform(new Scale(1, 2, 1));
+        Union union2 = new Union(sphere, new Sphere(2*MM, 0, 0, 1*MM));
+        union2.initialize();
+        assertFalse("non uniform scale should make union unbounded", union2.getBounds(bounds));
+    }
+
+    /**
+       checks that density is 0 at all points of boxes classified as outside and 1 in boxes classified as inside 
+     */
+    public void testClassifyBox() {
+
+        Random rnd = new Random(43);
+        Union union = makeUnion(rnd, 30);
+        union.setTransform(new Rotation(1,2,3,0.7));
+        Box box1 = new Box(0, 0, 0, 1.2*SIZE, 1.2*SIZE, 1.2*SIZE);
+        box1.setTransform(new Rotation(1, 1, 0, 0.5));
+        Intersection inter = new Intersection(box1, new Sphere(0, 0, 0, SIZE*0.8));
+        inter.add(new Sphere(0.5*SIZE, 0, 0, -0.2*SIZE));
+        Subtraction sub = new Subtraction(new Box(0, 0, 0, SIZE, SIZE, SIZE), makeUnion(rnd, 30));
+        sub.setTransform(new Translation(1*MM, 0, 0));
+        TransformableDataSource dss[] = new TransformableDataSource[]{union, inter, sub};
+
+        double box[] = new double[6];
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(1);
+        for(int k = 0; k < dss.length; k++){
+            BoxClassifier ds = (BoxClassifier)dss[k];
+            dss[k].initialize();
+            int counts[] = new int[3];
+            for(int t = 0; t < 2000; t++){
+                double size = SIZE*0.2*rnd.nextDouble();
+                for(int c = 0; c < 3; c++){
+                    box[2*c] = SIZE*(2*rnd.nextDouble()-1);
+                    box[2*c+1] = box[2*c] + size;
+                }
+                int res = ds.classifyBox(box, VOXEL);
+                counts[res]++;
+                if(res == BoxClassifier.BOX_BOUNDARY)
+                    continue;
+                for(int i = 0; i < 64; i++){
+                    // corners and random points
+                    double x = box[0] + size*((i < 8)? (i & 1): rnd.nextDouble());
+                    double y = box[2] + size*((i < 8)? ((i >> 1) & 1): rnd.nextDouble());
+                    double z = box[4] + size*((i < 8)? ((i >> 2) & 1): rnd.nextDouble());
+                    setPoint(pnt, x, y, z);
+                    int r = dss[k].getDataValue(pnt, value);
+                    if(res == BoxClassifier.BOX_INSIDE)
+                        assertEquals("value in inside box", 1., value.v[0], EPS);
+                    else if(r == VecTransform.RESULT_OK)
+                        assertEquals("value in outside box", 0., value.v[0], EPS);
+                }
+            }
+            printf("%s boxes outside: %d inside: %d boundary: %d\n", dss[k].getClass().getSimpleName(), counts[0], counts[1], counts[2]);
+            assertTrue("no outside boxes", counts[BoxClassifier.BOX_OUTSIDE] > 0);
+            assertTrue("no inside boxes", counts[BoxClassifier.BOX_INSIDE] > 0);
+        }
+    }
+
+    /**
+       @return union of random shapes
+     */
+    static Union makeUnion(Random rnd, int count){
+
+        Union union = new Union();
+        for(int i = 0; i < count; i++)
+            union.add(makeShape(rnd));
+        // unbounded child
+        union.add(new Sphere(0, 0, 0, -(SIZE*0.9)));
+        return union;
+    }
+
+    static DataSource makeShape(Random rnd){
+
+        double x = SIZE*(2*rnd.nextDouble()-1);
+        double y = SIZE*(2*rnd.nextDouble()-1);
+        double z = SIZE*(2*rnd.nextDouble()-1);
+        double r = SIZE*(0.05 + 0.1*rnd.nextDouble());
+        switch(rnd.nextInt(3)){
+        default:
+        case 0:
+            return new Sphere(x, y, z, r);
+        case 1:
+            {
+                Box box = new Box(x, y, z, r, 2*r, r);
+                box.setTransform(new Rotation(rnd.nextDouble(), rnd.nextDouble(), 1, rnd.nextDouble()));
+                return box;
+            }
+        case 2:
+            {
+                Sphere sphere = new Sphere(0, 0, 0, r);
+                sphere.setTransform(new Translation(x, y, z));
+                Union u = new Union(sphere, new Torus(r, r/3));
+                u.setTransform(new Scale(0.5));
+                return u;
+            }
+        }
+    }
+
+    /**
+       compares values of culled union with maximum of values of all children
+     */
+    static void checkCulling(Union union, int count){
+
+        Random rnd = new Random(101);
+        DataSource dss[] = union.vDataSources;
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(1);
+        Vec value1 = new Vec(1);
+
+        for(int i = 0; i < count; i++){
+
+            double x = SIZE*(2*rnd.nextDouble()-1);
+            double y = SIZE*(2*rnd.nextDouble()-1);
+            double z = SIZE*(2*rnd.nextDouble()-1);
+
+            double expected = 0;
+            for(int k = 0; k < dss.length; k++){
+                setPoint(pnt, x, y, z);
+                dss[k].getDataValue(pnt, value1);
+                if(value1.v[0] > expected)
+                    expected = value1.v[0];
+            }
+            setPoint(pnt, x, y, z);
+            union.getDataValue(pnt, value);
+            assertEquals("culled value", expected, value.v[0], EPS);
+        }
+        checkSpan(union, count);
+    }
+
+    /**
+       compares span evaluation with per point evaluation
+     */
+    static void checkSpan(DataSource ds, int count){
+
+        Random rnd = new Random(103);
+        int cc = ds.getChannelsCount();
+        double pnts[] = new double[3*count];
+        double scales[] = new double[count];
+        double data[] = new double[cc*count];
+        int results[] = new int[count];
+        // points along a row as in grid maker
+        double x = SIZE*(2*rnd.nextDouble()-1);
+        double y = SIZE*(2*rnd.nextDouble()-1);
+        for(int i = 0; i < count; i++){
+            if(i % 200 == 0){
+                x = SIZE*(2*rnd.nextDouble()-1);
+                y = SIZE*(2*rnd.nextDouble()-1);
+            }
+            pnts[3*i] = x;
+            pnts[3*i+1] = y;
+            pnts[3*i+2] = -SIZE + (2*SIZE*(i % 200))/200;
+            scales[i] = 1.;
+        }
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(cc);
+        double expected[] = new double[cc*count];
+        for(int i = 0; i < count; i++){
+            setPoint(pnt, pnts[3*i], pnts[3*i+1], pnts[3*i+2]);
+            ds.getDataValue(pnt, value);
+            System.arraycopy(value.v, 0, expected, cc*i, cc);
+        }
+        DataSourceUtil.getDataValues(ds, pnts, scales, VOXEL, count, data, results);
+        for(int i = 0; i < cc*count; i++){
+            assertEquals("span value", expected[i], data[i], EPS);
+        }
+    }
+
+    /**
+       compares per point and span values of two data sources 
+     */
+    static void checkSame(DataSource ds, DataSource ds1, int count){
+
+        Random rnd = new Random(107);
+        int cc = ds.getChannelsCount();
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(cc);
+        Vec value1 = new Vec(cc);
+        double pnts[] = new double[3*count];
+        double scales[] = new double[count];
+        for(int i = 0; i < count; i++){
+            double x = SIZE*(2*rnd.nextDouble()-1);
+            double y = SIZE*(2*rnd.nextDouble()-1);
+            double z = SIZE*(2*rnd.nextDouble()-1);
+            setPoint(pnt, x, y, z);
+            ds.getDataValue(pnt, value);
+            setPoint(pnt, x, y, z);
+            ds1.getDataValue(pnt, value1);
+            for(int c = 0; c < cc; c++)
+                assertEquals("culled value", value1.v[c], value.v[c], EPS);
+            pnts[3*i] = x;
+            pnts[3*i+1] = y;
+            pnts[3*i+2] = z;
+            scales[i] = 1.;
+        }
+        double data[] = new double[cc*count];
+        double data1[] = new double[cc*count];
+        int results[] = new int[count];
+        DataSourceUtil.getDataValues(ds, pnts.clone(), scales.clone(), VOXEL, count, data, results);
+        DataSourceUtil.getDataValues(ds1, pnts, scales, VOXEL, count, data1, results);
+        for(int i = 0; i < cc*count; i++)
+            assertEquals("culled span value", data1[i], data[i], EPS);
+    }
+
+    static void setPoint(Vec pnt, double x, double y, double z){
+        pnt.set(x, y, z);
+        pnt.setScaleFactor(1.);
+        pnt.setVoxelSize(VOXEL);
+    }
+
+    static boolean contains(int items[], int count, int item){
+        for(int i = 0; i < count; i++)
+            if(items[i] == item)
+                return true;
+        return false;
+    }
+
+    /**
+       data source without bounds 
+     */
+    static class Unculled implements DataSource, Initializable {
+
+        DataSource source;
+
+        Unculled(DataSource source){
+            this.source = source;
+        }
+
+        public int initialize(){
+            return ((Initializable)source).initialize();
+        }
+
+        public int getDataValue(Vec pnt, Vec data){
+            return source.getDataValue(pnt, data);
+        }
+
+        public int getChannelsCount(){
+            return source.getChannelsCount();
+        }
+    }
+
+    /**
+       transform which is defined in half space x <= 0 
+     */
+    static class HalfSpace implements VecTransform {
+
+        public int transform(Vec in, Vec out){
+            return inverse_transform(in, out);
+        }
+
+        public int inverse_transform(Vec in, Vec out){
+            out.set(in);
+            if(in.v[0] > 0)
+                return RESULT_OUTSIDE;
+            return RESULT_OK;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.datasources;
+
+import java.lang.management.ManagementFactory;
+
+import javax.vecmath.Vector3d;
+
+// external imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.util.Vec;
+import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.Initializable;
+
+import abfab3d.transforms.Scale;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Units.MM;
+
+/**
+ * Tests that composite data sources do not allocate memory during evaluation
+ *
+ * @version
+ */
+public class TestDataSourceAllocation extends TestCase {
+
+    static final int POINTS_COUNT = 100000;
+    // bytes which may be allocated by the measurement itself
+    static final long MAX_ALLOCATION = 1000;
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestDataSourceAllocation.class);
+    }
+
+    public void testUnion() {
+
+        Union union = new Union();
+        union.add(new Sphere(2*MM, 0, 0, 3*MM));
+        union.add(new Box(0, 1*MM, 0, 4*MM, 3*MM, 2*MM));
+        union.add(new Cylinder(new Vector3d(0,0,0), new Vector3d(0,3*MM,0), 1*MM));
+        union.setTransform(new Scale(1.1));
+
+        checkAllocation(union);
+    }
+
+    public void testIntersection() {
+
+        Intersection inter = new Intersection(new Sphere(0, 0, 0, 5*MM), new Box(0, 0, 0, 6*MM, 6*MM, 6*MM));
+        checkAllocation(inter);
+    }
+
+    public void testSubtraction() {
+
+        Subtraction sub = new Subtraction(new Box(0, 0, 0, 8*MM, 8*MM, 8*MM), new Sphere(1*MM, 0, 0, 4*MM));
+        checkAllocation(sub);
+    }
+
+    public void testComposition() {
+
+        Composition comp = new Composition(Composition.AoverB, new Sphere(-1*MM, 0, 0, 4*MM),
+                                           new Union(new Sphere(0, 2*MM, 0, 2*MM), new Box(1*MM, 0, 0, 5*MM, 5*MM, 5*MM)));
+        checkAllocation(comp);
+    }
+
+    /**
+       evaluates data source per point and per span and checks that no memory was allocated
+     */
+    void checkAllocation(DataSource ds){
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if(!bean.isThreadAllocatedMemorySupported()){
+            printf("thread allocated memory is not supported, test skipped\n");
+            return;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        ((Initializable)ds).initialize();
+        long tid = Thread.currentThread().getId();
+
+        int cc = ds.getChannelsCount();
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(cc);
+        double pnts[] = new double[3*POINTS_COUNT];
+        double scales[] = new double[POINTS_COUNT];
+        double data[] = new double[cc*POINTS_COUNT];
+        int results[] = new int[POINTS_COUNT];
+
+        // warm up to let buffers grow to needed size
+        evalPoints(ds, pnt, value, 10);
+        evalSpan(ds, pnts, scales, data, results);
+
+        long b0 = bean.getThreadAllocatedBytes(tid);
+        evalPoints(ds, pnt, value, POINTS_COUNT);
+        long b1 = bean.getThreadAllocatedBytes(tid);
+        evalSpan(ds, pnts, scales, data, results);
+        long b2 = bean.getThreadAllocatedBytes(tid);
+
+        printf("%s allocation per point: %d bytes, per span: %d bytes\n", ds.getClass().getSimpleName(), (b1 - b0), (b2 - b1));
+        assertTrue("per point evaluation allocates memory", (b1 - b0) < MAX_ALLOCATION);
+        assertTrue("span evaluation allocates memory", (b2 - b1) < MAX_ALLOCATION);
+    }
+
+    static void evalPoints(DataSource ds, Vec pnt, Vec value, int count){
+
+        for(int i = 0; i < count; i++){
+            pnt.set(-6*MM + (12*MM*i)/count, 0.5*MM, 0.1*MM);
+            pnt.setScaleFactor(1.);
+            pnt.setVoxelSize(0.1*MM);
+            ds.getDataValue(pnt, value);
+        }
+    }
+
+    static void evalSpan(DataSource ds, double pnts[], double scales[], double data[], int results[]){
+
+        int count = scales.length;
+        for(int i = 0; i < count; i++){
+            pnts[3*i] = -6*MM + (12*MM*i)/count;
+            pnts[3*i+1] = 0.5*MM;
+            pnts[3*i+2] = 0.1*MM;
+            scales[i] = 1.;
+        }
+        DataSourceUtil.getDataValues(ds, pnts, scales, 0.1*MM, count, data, results);
+    }
+}
@@ -0,0 +1,139 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.datasources;
+
+import java.util.Random;
+
+// external imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.util.Vec;
+import abfab3d.util.DataSource;
+import abfab3d.util.DataSourceUtil;
+import abfab3d.util.Initializable;
+
+import abfab3d.transforms.Rotation;
+import abfab3d.transforms.Scale;
+import abfab3d.transforms.Translation;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Units.MM;
+
+/**
+ * Tests that span evaluation of data sources gives the same result as per point evaluation
+ *
+ * @version
+ */
+public class TestDataSourceSpan extends TestCase {
+
+    static final double EPS = 1.e-10;
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestDataSourceSpan.class);
+    }
+
+    public void testUnion() {
+
+        Union union = new Union();
+        union.add(new Sphere(2*MM, 0, 0, 3*MM));
+        union.add(new Box(0, 1*MM, 0, 4*MM, 3*MM, 2*MM));
+        Sphere sphere = new Sphere(-2*MM, 0, 0, 2*MM);
+        sphere.setTransform(new Scale(1.3));
+        union.add(sphere);
+        union.setTransform(new Translation(0.5*MM, 0, 0));
+
+        checkSpan(union, 3000);
+    }
+
+    public void testIntersection() {
+
+        Intersection inter = new Intersection();
+        inter.add(new Sphere(0, 0, 0, 5*MM));
+        inter.add(new Box(0, 0, 0, 6*MM, 6*MM, 6*MM));
+        Box box = new Box(0, 0, 0, 8*MM, 2*MM, 8*MM);
+        box.setTransform(new Rotation(1,1,0,0.5));
+        inter.add(box);
+
+        checkSpan(inter, 3000);
+    }
+
+    public void testSubtraction() {
+
+        Subtraction sub = new Subtraction(new Box(0, 0, 0, 8*MM, 8*MM, 8*MM), new Sphere(1*MM, 0, 0, 4*MM));
+        sub.setTransform(new Scale(0.9));
+
+        checkSpan(sub, 3000);
+    }
+
+    public void testComposition() {
+
+        for(int t = 0; t < Composition.allTypes.length; t++){
+            Composition comp = new Composition(Composition.allTypes[t]);
+            comp.add(new Sphere(-1*MM, 0, 0, 4*MM));
+            comp.add(new Box(1*MM, 0, 0, 5*MM, 5*MM, 5*MM));
+            comp.add(new Union(new Sphere(0, 2*MM, 0, 2*MM), new Sphere(0, -2*MM, 0, 2*MM)));
+
+            checkSpan(comp, 1000);
+        }
+    }
+
+    /**
+       compares span calculation with per point calculation on random points
+     */
+    void checkSpan(DataSource ds, int count){
+
+        ((Initializable)ds).initialize();
+
+        int cc = ds.getChannelsCount();
+        double voxelSize = 0.1*MM;
+        Random rnd = new Random(121);
+
+        double pnts[] = new double[3*count];
+        double scales[] = new double[count];
+        double data[] = new double[cc*count];
+        int results[] = new int[count];
+
+        for(int i = 0; i < count; i++){
+            for(int k = 0; k < 3; k++)
+                pnts[3*i + k] = (2*rnd.nextDouble() - 1)*6*MM;
+            scales[i] = 1.;
+        }
+        double pnts0[] = pnts.clone();
+
+        DataSourceUtil.getDataValues(ds, pnts, scales, voxelSize, count, data, results);
+
+        Vec pnt = new Vec(3);
+        Vec value = new Vec(cc);
+        int nonzero = 0;
+
+        for(int i = 0; i < count; i++){
+
+            pnt.set(pnts0[3*i], pnts0[3*i+1], pnts0[3*i+2]);
+            pnt.setVoxelSize(voxelSize);
+            pnt.setScaleFactor(1.);
+            int res = ds.getDataValue(pnt, value);
+
+            assertEquals("result code", res, results[i]);
+            assertEquals("data value", value.v[0], data[i*cc], EPS);
+            if(value.v[0] > 0.)
+                nonzero++;
+        }
+        printf("%s: %d of %d points are non empty\n", ds.getClass().getSimpleName(), nonzero, count);
+    }
+}
@@ -681,6 +681,68 @@ public class BaseTestAttributeGrid extends BaseTestGrid implements ClassAttribut
         assertEquals("State should be ", 0, grid.getAttribute(0.0999, 0.0999, 0.1499));
     }
 
+    /**
+     * Test bulk getStates, getAttributes and setAttributes against per voxel access.
+     * The grid should be at least 37x29x41 and empty.
+     */
+    public void bulkAccess(AttributeGrid grid) {
+        // fill part of the grid, leaving empty regions
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 37; x++) {
+                for (int z = 0; z < 41; z++) {
+                    if ((x + 2*y + 3*z) % 7 != 0)
+                        grid.setData(x, y, z, Grid.INSIDE, (x + y + z) % 100 + 1);
+                }
+            }
+        }
+
+        // box crosses filled and empty regions and is not aligned
+        int x1 = 3, x2 = 35, y1 = 5, y2 = 27, z1 = 1, z2 = 38;
+        int count = (x2 - x1 + 1) * (y2 - y1 + 1) * (z2 - z1 + 1);
+        byte states[] = new byte[count];
+        long atts[] = new long[count];
+        grid.getStates(x1, x2, y1, y2, z1, z2, states);
+        grid.getAttributes(x1, x2, y1, y2, z1, z2, atts);
+
+        int ind = 0;
+        for (int y = y1; y <= y2; y++) {
+            for (int x = x1; x <= x2; x++) {
+                for (int z = z1; z <= z2; z++) {
+                    assertEquals("State at " + x + " " + y + " " + z, grid.getState(x, y, z), states[ind]);
+                    assertEquals("Attribute at " + x + " " + y + " " + z, grid.getAttribute(x, y, z), atts[ind]);
+                    ind++;
+                }
+            }
+        }
+
+        AttributeGrid bulkGrid = (AttributeGrid) grid.clone();
+        AttributeGrid voxelGrid = (AttributeGrid) grid.clone();
+        for (int i = 0; i < count; i++) {
+            atts[i] = (i % 5 == 0) ? 0 : (i % 50 + 1);
+        }
+        bulkGrid.setAttributes(x1, x2, y1, y2, z1, z2, atts);
+
+        ind = 0;
+        for (int y = y1; y <= y2; y++) {
+            for (int x = x1; x <= x2; x++) {
+                for (int z = z1; z <= z2; z++) {
+                    voxelGrid.setAttribute(x, y, z, atts[ind++]);
+                }
+            }
+        }
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                for (int z = 0; z < grid.getDepth(); z++) {
+                    assertEquals("Attribute at " + x + " " + y + " " + z,
+                            voxelGrid.getAttribute(x, y, z), bulkGrid.getAttribute(x, y, z));
+                    assertEquals("State at " + x + " " + y + " " + z,
+                            voxelGrid.getState(x, y, z), bulkGrid.getState(x, y, z));
+                }
+            }
+        }
+    }
+
     /**
      * Test setAttribute.
      */
@@ -682,6 +682,14 @@ public class TestArrayAttributeGridByte extends BaseTestAttributeGrid {
         removeMaterialIterator(grid);
     }
 
+    /**
+     * Test bulk access to a box of voxels.
+     */
+    public void testBulkAccess() {
+        AttributeGrid grid = new ArrayAttributeGridByte(40, 30, 42, 0.001, 0.001);
+
+        bulkAccess(grid);
+    }
 }
 
 
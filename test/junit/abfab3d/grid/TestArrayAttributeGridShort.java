@@ -502,4 +502,13 @@ public class TestArrayAttributeGridShort extends BaseTestAttributeGrid {
         AttributeGrid grid = new ArrayAttributeGridShort(width, height, depth, 0.001, 0.001);
         removeMaterialIterator(grid);
     }
+
+    /**
+     * Test bulk access to a box of voxels.
+     */
+    public void testBulkAccess() {
+        AttributeGrid grid = new ArrayAttributeGridShort(40, 30, 42, 0.001, 0.001);
+
+        bulkAccess(grid);
+    }
 }
@@ -1430,4 +1430,13 @@ public class TestBlockBasedAttributeGridByte extends BaseTestAttributeGrid {
                 ft.foundAllVoxels());
 
     }
+
+    /**
+     * Test bulk access to a box of voxels.
+     */
+    public void testBulkAccess() {
+        AttributeGrid grid = new BlockBasedAttributeGridByte(40, 30, 42, 0.001, 0.001);
+
+        bulkAccess(grid);
+    }
 }
\ No newline at end of file
@@ -1165,4 +1165,12 @@ public class TestBlockBasedGridShort extends BaseTestAttributeGrid {
 
     }
 
+    /**
+     * Test bulk access to a box of voxels.
+     */
+    public void testBulkAccess() {
+        AttributeGrid grid = new BlockBasedAttributeGridShort(40, 30, 42, 0.001, 0.001);
+
+        bulkAccess(grid);
+    }
 }
\ No newline at end of file
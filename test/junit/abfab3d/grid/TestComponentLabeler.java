@@ -0,0 +1,195 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+
+/**
+ * Tests the functionality of ComponentLabeler
+ */
+public class TestComponentLabeler extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestComponentLabeler.class);
+    }
+
+    /**
+       compare with flood fill components of random material grid
+     */
+    public void testMaterial() {
+
+        int n = 30;
+        AttributeGrid grid = makeRandomGrid(n, 0.35, 1);
+        long material = 3;
+
+        Vector<ConnectedComponent> comp = RegionCounter.findComponents(grid, material);
+        long volumes[] = new long[comp.size()];
+        for(int i = 0; i < volumes.length; i++)
+            volumes[i] = comp.get(i).getVolume();
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        labeler.setBlockSize(7);
+        int count = labeler.label(grid, material);
+        printf("components: %d\n", count);
+        assertEquals("component count", volumes.length, count);
+        assertEquals("volumes", sort(volumes), sort(getVolumes(labeler)));
+
+        // each component is found by flood fill from its seed
+        int seed[] = new int[3];
+        GridBit mask = new GridBitIntervals(n, n, n);
+        for(int i = 0; i < count; i++){
+            labeler.getSeed(i, seed);
+            assertEquals("seed label", i, labeler.getLabel(seed[0], seed[1], seed[2]));
+            ConnectedComponent cc = new ConnectedComponent(grid, mask, seed[0], seed[1], seed[2], material, false);
+            assertEquals("volume", cc.getVolume(), labeler.getVolume(i));
+        }
+    }
+
+    /**
+       compare with flood fill components of random state grid
+     */
+    public void testState() {
+
+        int n = 30;
+        Grid grid = makeRandomGrid(n, 0.3, 2);
+
+        Vector<ConnectedComponentState> comp = RegionCounter.findComponents(grid, Grid.INSIDE);
+        long volumes[] = new long[comp.size()];
+        for(int i = 0; i < volumes.length; i++)
+            volumes[i] = comp.get(i).getVolume();
+
+        ComponentLabeler labeler = new ComponentLabeler();
+        int count = labeler.label(grid, Grid.INSIDE);
+        assertEquals("component count", volumes.length, count);
+        assertEquals("volumes", sort(volumes), sort(getVolumes(labeler)));
+
+        // bounds contain all voxels of component
+        for(int z = 0; z < n; z++){
+            for(int y = 0; y < n; y++){
+                for(int x = 0; x < n; x++){
+                    int c = labeler.getLabel(x,y,z);
+                    assertEquals("background", grid.getState(x,y,z) != Grid.INSIDE, c < 0);
+                    if(c < 0)
+                        continue;
+                    int b[] = labeler.getBounds(c);
+                    assertTrue(fmt("bounds (%d %d %d)",x,y,z), x >= b[0] && y >= b[1] && z >= b[2] && x <= b[3] && y <= b[4] && z <= b[5]);
+                }
+            }
+        }
+    }
+
+    /**
+       labels do not depend on count of threads and block size
+     */
+    public void testMT() {
+
+        int n = 50;
+        AttributeGrid grid = makeRandomGrid(n, 0.32, 3);
+
+        ComponentLabeler labeler1 = new ComponentLabeler();
+        labeler1.setThreadCount(1);
+        labeler1.setBlockSize(n);
+        ComponentLabeler labeler4 = new ComponentLabeler();
+        labeler4.setThreadCount(4);
+        labeler4.setBlockSize(4);
+
+        int count = labeler1.label(grid, 3);
+        assertEquals("component count", count, labeler4.label(grid, 3));
+
+        for(int z = 0; z < n; z++){
+            for(int y = 0; y < n; y++){
+                for(int x = 0; x < n; x++){
+                    assertEquals(fmt("label (%d %d %d)",x,y,z), labeler1.getLabel(x,y,z), labeler4.getLabel(x,y,z));
+                }
+            }
+        }
+        for(int i = 0; i < count; i++){
+            assertEquals("volume", labeler1.getVolume(i), labeler4.getVolume(i));
+            assertTrue("bounds", Arrays.equals(labeler1.getBounds(i), labeler4.getBounds(i)));
+        }
+    }
+
+    /**
+       removal of small components gives the same grid as flood fill removal
+     */
+    public void testRemoveSmallComponents() {
+
+        int n = 30;
+        int minSize = 5;
+        AttributeGrid grid1 = makeRandomGrid(n, 0.3, 4);
+        AttributeGrid grid2 = makeRandomGrid(n, 0.3, 4);
+
+        Vector<ConnectedComponent> large = RegionCounter.removeSmallComponents(grid1, 3, minSize);
+        int count = RegionCounter.removeSmallComponentsMT(grid2, 3, minSize, 4);
+        assertEquals("large components", large.size(), count);
+        assertEquals("large components", count, RegionCounter.countComponentsMT(grid2, 3, 0, 4));
+
+        for(int z = 0; z < n; z++){
+            for(int y = 0; y < n; y++){
+                for(int x = 0; x < n; x++){
+                    assertEquals(fmt("state (%d %d %d)",x,y,z), grid1.getState(x,y,z), grid2.getState(x,y,z));
+                }
+            }
+        }
+    }
+
+    /**
+       grid with voxels of material 3 and 5 placed at random
+     */
+    static AttributeGrid makeRandomGrid(int n, double probability, long randomSeed){
+
+        AttributeGrid grid = new ArrayAttributeGridByte(n, n, n, 0.001, 0.001);
+        Random rnd = new Random(randomSeed);
+        for(int z = 0; z < n; z++){
+            for(int y = 0; y < n; y++){
+                for(int x = 0; x < n; x++){
+                    double r = rnd.nextDouble();
+                    if(r < probability)
+                        grid.setData(x,y,z, Grid.INSIDE, 3);
+                    else if(r < 1.5*probability)
+                        grid.setData(x,y,z, Grid.INSIDE, 5);
+                }
+            }
+        }
+        return grid;
+    }
+
+    static long[] getVolumes(ComponentLabeler labeler){
+
+        long v[] = new long[labeler.getComponentCount()];
+        for(int i = 0; i < v.length; i++)
+            v[i] = labeler.getVolume(i);
+        return v;
+
+    }
+
+    static String sort(long v[]){
+
+        Arrays.sort(v);
+        return Arrays.toString(v);
+
+    }
+}
@@ -0,0 +1,572 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+// External Imports
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+// Internal Imports
+
+/**
+ * Tests the functionality of a MappedAttributeGridShort.
+ */
+public class TestMappedAttributeGridShort extends BaseTestAttributeGrid {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestMappedAttributeGridShort.class);
+    }
+
+    public void testToString() {
+        Grid grid = new MappedAttributeGridShort(1, 1, 1, 0.001, 0.001);
+
+        runToString(grid);
+    }
+
+    /**
+     * Test the constructors and the grid size.
+     */
+    public void testConstructors() {
+        AttributeGrid grid = new MappedAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        assertEquals("Array size is not 1", 1, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        grid = new MappedAttributeGridShort(100, 101, 102, 0.001, 0.001);
+        assertEquals("Array size is not 1030200", 1030200, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        grid = new MappedAttributeGridShort(new Bounds(1.0, 1.0, 1.0), 0.2, 0.1);
+        assertEquals("Array size is not 250", 250, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        // grid size should be 6x6x11
+        grid = new MappedAttributeGridShort(new Bounds(1.1, 1.1, 1.1), 0.2, 0.1);
+        assertEquals("Array size is not 396", 396, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        // test > int index size, file is sparse, only written pages use disk
+        MappedAttributeGridByte bgrid = MappedAttributeGridByte.createTemp(1400, 1400, 1100, 0.2, 0.1, null, new File(System.getProperty("java.io.tmpdir")));
+        bgrid.setData(1399, 1399, 1099, Grid.INSIDE, 5);
+        bgrid.setData(1000, 1399, 1000, Grid.INSIDE, 7);
+        assertEquals("Last voxel", 5, bgrid.getAttribute(1399, 1399, 1099));
+        assertEquals("Voxel above 2^31", 7, bgrid.getAttribute(1000, 1399, 1000));
+        assertEquals("Voxel below 2^31", 0, bgrid.getAttribute(10, 10, 10));
+        bgrid.close();
+
+    }
+
+    /**
+     * Test creating an empty grid.
+     */
+    public void testCreateEmpty() {
+        AttributeGrid grid = new MappedAttributeGridShort(100, 101, 102, 0.001, 0.001);
+
+        createEmpty(grid);
+    }
+
+    /**
+     * Test clone.
+     */
+    public void testClone() {
+        int size = 10;
+        double voxelSize = 0.002;
+        double sliceHeight = 0.001;
+
+        Grid grid = new MappedAttributeGridShort(size,size,size,voxelSize,sliceHeight);
+        runClone(grid);
+    }
+
+    /**
+     * Test set/get all data points.
+     */
+    public void testSetGetByVoxelCoords() {
+        AttributeGrid grid = new MappedAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new MappedAttributeGridShort(3, 2, 2, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new MappedAttributeGridShort(11, 11, 11, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new MappedAttributeGridShort(100, 91, 85, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+    }
+
+    /**
+     * Test set/get all data points.
+     */
+    public void testSetGetByWorldCoords() {
+        AttributeGrid grid = new MappedAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new MappedAttributeGridShort(3, 2, 2, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new MappedAttributeGridShort(11, 11, 11, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new MappedAttributeGridShort(100, 91, 85, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+    }
+
+    /**
+     * Test getState by voxels.
+     */
+    public void testGetStateByVoxel() {
+        AttributeGrid grid = new MappedAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getStateByVoxel(grid);
+    }
+
+    /**
+     * Test getData by voxels.
+     */
+    public void testGetDataByVoxel() {
+        AttributeGrid grid = new MappedAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getDataByVoxel(grid);
+    }
+
+    /**
+     * Test getData by voxels.
+     */
+    public void testGetDataByCoord() {
+        AttributeGrid grid = new MappedAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getDataByCoord(grid);
+    }
+
+    /**
+     * Test getState by world coordinates.
+     */
+    public void testGetStateByCoord() {
+        AttributeGrid grid = new MappedAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getStateByCoord1(grid);
+
+        // should expect width=3, height=6, depth=4
+        // set data for a mid-voxel and test the bounds
+        grid = new MappedAttributeGridShort(new Bounds(0.15, 0.12, 0.20), 0.05, 0.02);
+        getStateByCoord2(grid);
+    }
+
+    /**
+     * Test getAttribute by voxels.
+     */
+    public void testGetMaterialByVoxel() {
+        AttributeGrid grid = new MappedAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getMaterialByVoxel(grid);
+    }
+
+    /**
+     * Test getAttribute by world coordinates.
+     */
+    public void testGetMaterialByCoord() {
+        AttributeGrid grid = new MappedAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getMaterialByCoord1(grid);
+
+
+        // should expect width=3, height=6, depth=4
+        // set data for a mid-voxel and test the bounds
+        grid = new MappedAttributeGridShort(new Bounds(0.15, 0.12, 0.20), 0.05, 0.02);
+        getMaterialByCoord2(grid);
+    }
+
+    /**
+     * Test setAttribute.
+     */
+    public void testsetAttribute() {
+        int size = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(size, size, size, 0.001, 0.001);
+        setAttribute(grid);
+    }
+
+    public void testSetAttributeShort() {
+        AttributeGrid grid = new MappedAttributeGridShort(78, 112, 26, 0.001, 0.001);
+
+        grid.setAttribute(0, 0, 0, 1);
+        grid.setAttribute(9, 9, 9, 256);
+        grid.setAttribute(63, 111, 24, 1000);
+
+        System.out.println("Val: " + grid.getAttribute(63,111,24));
+        // check that the material changed, but the state did not
+        assertEquals("Material should be ", 1, grid.getAttribute(0, 0, 0));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(0, 0, 0));
+
+        assertEquals("Material should be ", 256, grid.getAttribute(9, 9, 9));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(9, 9, 9));
+
+        assertEquals("Material should be ", 1000, grid.getAttribute(63, 111, 24));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(63, 111, 24));
+    }
+
+    /**
+     * Test setState.
+     */
+    public void testSetState() {
+        int size = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(size, size, size, 0.001, 0.001);
+        setState(grid);
+    }
+
+    /**
+     * Test reassignAttribute.
+     */
+    public void testReassignMaterial() {
+        int size = 20;
+
+        AttributeGrid grid = new MappedAttributeGridShort(size, size, size, 0.001, 0.001);
+        reassignMaterial(grid);
+    }
+
+    /**
+     * Test set/get short material range.
+     */
+    public void testShortMaterialRange() {
+        int width = 100;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, 1, 1, 0.001, 0.001);
+        shortMaterialRange(grid);
+    }
+
+    /**
+     * Test findCount by voxel class.
+     */
+    public void testFindCountByVoxelClass() {
+        int width = 6;
+        int height = 3;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findCountByVoxelClass(grid);
+
+    }
+
+    /**
+     * Test findCount by material.
+     */
+    public void testFindCountByMat() {
+        int width = 3;
+        int height = 4;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findCountByMat(grid);
+    }
+
+    /**
+     * Test find voxels by voxel class
+     */
+    public void testFindVoxelClass() {
+        int width = 3;
+        int height = 4;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findVoxelClass(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass actually found the voxels in the correct coordinates
+     */
+    public void testFindVoxelClassIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findVoxelClassIterator1(grid);
+
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findVoxelClassIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptableVoxelClassIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptableVoxelClassIterator1(grid);
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptableVoxelClassIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by material actually found the voxels in the correct coordinates
+     */
+    public void testFindMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialIterator1(grid);
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by material actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptablMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialIterator1(grid);
+
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass and material actually found the voxels in the correct coordinates
+     */
+    public void testFindMaterialAndVCIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialAndVCIterator1(grid);
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialAndVCIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by voxel class and material actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptablMaterialAndVCIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialAndVCIterator1(grid);
+        grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialAndVCIterator2(grid);
+    }
+
+    /**
+     * Test getGridCoords.
+     */
+    public void testGetGridCoords() {
+        double xWorldCoord = 1.0;
+        double yWorldCoord = 0.15;
+        double zWorldCoord = 0.61;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new MappedAttributeGridShort(new Bounds(xWorldCoord, yWorldCoord, zWorldCoord), voxelWidth, sliceHeight);
+        getGridCoords(grid);
+    }
+
+    /**
+     * Test getWorldCoords.
+     */
+    public void testGetWorldCoords() {
+        int xVoxels = 50;
+        int yVoxels = 15;
+        int zVoxels = 31;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new MappedAttributeGridShort(xVoxels, yVoxels, zVoxels, voxelWidth, sliceHeight);
+        getWorldCoords(grid);
+    }
+
+    /**
+     * Test getWorldCoords.
+     */
+    public void testGetGridBounds() {
+        int xVoxels = 50;
+        int yVoxels = 15;
+        int zVoxels = 31;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new MappedAttributeGridShort(xVoxels, yVoxels, zVoxels, voxelWidth, sliceHeight);
+        getGridBounds(grid);
+    }
+
+    /**
+     * Test getWidth with both constructor methods.
+     */
+    public void testGetWidth() {
+        int width = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new MappedAttributeGridShort(width, 50, 25, 0.05, 0.01);
+        assertEquals("Width is not " + width, width, grid.getWidth());
+
+        // world coordinates
+        double xcoord = 0.12;
+        double voxelSize = 0.05;
+        width = BaseGrid.roundSize(xcoord / voxelSize);
+
+        grid = new MappedAttributeGridShort(new Bounds(xcoord, 0.11, 0.16), voxelSize, 0.02);
+        assertEquals("Width is not " + width, width, grid.getWidth());
+    }
+
+    /**
+     * Test getHeight with both constructor methods.
+     */
+    public void testGetHeight() {
+        int height = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new MappedAttributeGridShort(50, height, 25, 0.05, 0.02);
+        assertEquals("Height is not " + height, height, grid.getHeight());
+
+        // world coordinates
+        double ycoord = 0.11;
+        double sliceHeight = 0.02;
+        height = BaseGrid.roundSize(ycoord / sliceHeight);
+
+        grid = new MappedAttributeGridShort(new Bounds(0.12, ycoord, 0.16), 0.05, sliceHeight);
+        assertEquals("Height is not " + height, height, grid.getHeight());
+    }
+
+    /**
+     * Test getDepth with both constructor methods.
+     */
+    public void testGetDepth() {
+        int depth = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new MappedAttributeGridShort(50, 25, depth, 0.05, 0.01);
+        assertEquals("Depth is not " + depth, depth, grid.getDepth());
+
+        // world coordinates
+        double zcoord = 0.12;
+        double voxelSize = 0.05;
+        depth = BaseGrid.roundSize(zcoord / voxelSize);
+
+        grid = new MappedAttributeGridShort(new Bounds(0.12, 0.11, zcoord), voxelSize, 0.02);
+        assertEquals("Depth is not " + depth, depth, grid.getDepth());
+    }
+
+    /**
+     * Test getSliceHeight with both constructor methods.
+     */
+    public void testGetSliceHeight() {
+        double sliceHeight = 0.0015;
+
+        // voxel coordinates
+        AttributeGrid grid = new MappedAttributeGridShort(50, 25, 70, 0.05, sliceHeight);
+        assertEquals("Slice height is not " + sliceHeight, sliceHeight, grid.getSliceHeight());
+
+        // world coordinates
+        grid = new MappedAttributeGridShort(new Bounds(0.12, 0.11, 0.12), 0.05, sliceHeight);
+        assertEquals("Slice height is not" + sliceHeight, sliceHeight, grid.getSliceHeight());
+    }
+
+    /**
+     * Test getVoxelSize with both constructor methods.
+     */
+    public void testGetVoxelSize() {
+        double voxelSize = 0.025;
+
+        // voxel coordinates
+        AttributeGrid grid = new MappedAttributeGridShort(50, 25, 70, voxelSize, 0.01);
+        assertEquals("Voxel size is not " + voxelSize, voxelSize, grid.getVoxelSize());
+
+        // world coordinates
+        grid = new MappedAttributeGridShort(new Bounds(0.12, 0.11, 0.12), voxelSize, 0.01);
+        assertEquals("Voxel size is not " + voxelSize, voxelSize, grid.getVoxelSize());
+    }
+
+    /**
+     * Test that remove material removes all specified material
+     */
+    public void testRemoveMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new MappedAttributeGridShort(width, height, depth, 0.001, 0.001);
+        removeMaterialIterator(grid);
+    }
+
+    /**
+     * Test that data of file backed grid are preserved in the file
+     */
+    public void testFileBacked() throws Exception {
+        File file = File.createTempFile("grid", ".dat");
+        file.deleteOnExit();
+
+        MappedAttributeGridShort grid = new MappedAttributeGridShort(50, 40, 30, 0.001, 0.001, null, file);
+        for(int y = 0; y < 40; y++)
+            for(int x = 0; x < 50; x++)
+                for(int z = 0; z < 30; z++)
+                    grid.setData(x, y, z, Grid.INSIDE, (x + y + z) % 1000 + 1);
+        grid.close();
+
+        grid = new MappedAttributeGridShort(50, 40, 30, 0.001, 0.001, null, file);
+        for(int y = 0; y < 40; y++)
+            for(int x = 0; x < 50; x++)
+                for(int z = 0; z < 30; z++)
+                    assertEquals("Attribute from file", (x + y + z) % 1000 + 1, grid.getAttribute(x, y, z));
+
+        // empty grid of file backed grid should be file backed in temp file
+        MappedAttributeGridShort empty = (MappedAttributeGridShort)grid.createEmpty(10, 10, 10, 0.001, 0.001);
+        File emptyFile = empty.getFile();
+        assertNotNull("Empty grid should be file backed", emptyFile);
+        assertTrue("Temp file should exist", emptyFile.exists());
+        empty.close();
+        assertFalse("Temp file should be deleted", emptyFile.exists());
+        grid.close();
+        file.delete();
+    }
+
+    /**
+     * Test that deserialized grid has the same voxels and is stored in direct memory
+     */
+    public void testSerialization() throws Exception {
+        File file = File.createTempFile("grid", ".dat");
+        file.deleteOnExit();
+
+        MappedAttributeGridShort grid = new MappedAttributeGridShort(50, 40, 30, 0.001, 0.001, null, file);
+        for(int y = 0; y < 40; y++)
+            for(int x = 0; x < 50; x++)
+                for(int z = 0; z < 30; z++)
+                    grid.setData(x, y, z, Grid.INSIDE, (x*y + z) % 3000 + 1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(grid);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        MappedAttributeGridShort grid1 = (MappedAttributeGridShort)in.readObject();
+
+        assertNull("Deserialized grid should be in direct memory", grid1.getFile());
+        for(int y = 0; y < 40; y++)
+            for(int x = 0; x < 50; x++)
+                for(int z = 0; z < 30; z++)
+                    assertEquals("Deserialized attribute", (x*y + z) % 3000 + 1, grid1.getAttribute(x, y, z));
+
+        grid1.close();
+        assertTrue("File of original grid should not be deleted", file.exists());
+        grid.close();
+        file.delete();
+    }
+}
@@ -483,6 +483,15 @@ public class TestShortIntervals extends BaseTestAttributeGrid {
         AttributeGrid grid = new GridShortIntervals(width, height, depth, 0.001, 0.001);
         removeMaterialIterator(grid);
     }
+
+    /**
+     * Test bulk access to a box of voxels.
+     */
+    public void testBulkAccess() {
+        AttributeGrid grid = new GridShortIntervals(40, 30, 42, 0.001, 0.001);
+
+        bulkAccess(grid);
+    }
 }
 
 
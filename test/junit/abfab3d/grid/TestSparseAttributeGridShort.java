@@ -0,0 +1,639 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid;
+
+// External Imports
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.datasources.Sphere;
+import abfab3d.datasources.Subtraction;
+import abfab3d.grid.op.GridMaker;
+
+import static abfab3d.util.Units.MM;
+
+/**
+ * Tests the functionality of a SparseAttributeGridShort.
+ */
+public class TestSparseAttributeGridShort extends BaseTestAttributeGrid {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestSparseAttributeGridShort.class);
+    }
+
+    public void testToString() {
+        Grid grid = new SparseAttributeGridShort(1, 1, 1, 0.001, 0.001);
+
+        runToString(grid);
+    }
+
+    /**
+     * Test the constructors and the grid size.
+     */
+    public void testConstructors() {
+        AttributeGrid grid = new SparseAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        assertEquals("Array size is not 1", 1, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        grid = new SparseAttributeGridShort(100, 101, 102, 0.001, 0.001);
+        assertEquals("Array size is not 1030200", 1030200, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        grid = new SparseAttributeGridShort(new Bounds(1.0, 1.0, 1.0), 0.2, 0.1);
+        assertEquals("Array size is not 250", 250, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        // grid size should be 6x6x11
+        grid = new SparseAttributeGridShort(new Bounds(1.1, 1.1, 1.1), 0.2, 0.1);
+        assertEquals("Array size is not 396", 396, grid.getWidth() * grid.getHeight() * grid.getDepth());
+
+        // sparse grid may be larger than 2^31 voxels
+        grid = new SparseAttributeGridShort(10000,10000,10000, 0.2,0.1);
+        grid.setData(9999, 9999, 9999, Grid.INSIDE, 5);
+        assertEquals("Last voxel", 5, grid.getAttribute(9999, 9999, 9999));
+
+    }
+
+    /**
+     * Test creating an empty grid.
+     */
+    public void testCreateEmpty() {
+        AttributeGrid grid = new SparseAttributeGridShort(100, 101, 102, 0.001, 0.001);
+
+        createEmpty(grid);
+    }
+
+    /**
+     * Test clone.
+     */
+    public void testClone() {
+        int size = 10;
+        double voxelSize = 0.002;
+        double sliceHeight = 0.001;
+
+        Grid grid = new SparseAttributeGridShort(size,size,size,voxelSize,sliceHeight);
+        runClone(grid);
+    }
+
+    /**
+     * Test set/get all data points.
+     */
+    public void testSetGetByVoxelCoords() {
+        AttributeGrid grid = new SparseAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new SparseAttributeGridShort(3, 2, 2, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new SparseAttributeGridShort(11, 11, 11, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+
+        grid = new SparseAttributeGridShort(100, 91, 85, 0.001, 0.001);
+        setGetAllVoxelCoords(grid);
+    }
+
+    /**
+     * Test set/get all data points.
+     */
+    public void testSetGetByWorldCoords() {
+        AttributeGrid grid = new SparseAttributeGridShort(1, 1, 1, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new SparseAttributeGridShort(3, 2, 2, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new SparseAttributeGridShort(11, 11, 11, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+
+        grid = new SparseAttributeGridShort(100, 91, 85, 0.001, 0.001);
+        setGetAllVoxelByWorldCoords(grid);
+    }
+
+    /**
+     * Test getState by voxels.
+     */
+    public void testGetStateByVoxel() {
+        AttributeGrid grid = new SparseAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getStateByVoxel(grid);
+    }
+
+    /**
+     * Test getData by voxels.
+     */
+    public void testGetDataByVoxel() {
+        AttributeGrid grid = new SparseAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getDataByVoxel(grid);
+    }
+
+    /**
+     * Test getData by voxels.
+     */
+    public void testGetDataByCoord() {
+        AttributeGrid grid = new SparseAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getDataByCoord(grid);
+    }
+
+    /**
+     * Test getState by world coordinates.
+     */
+    public void testGetStateByCoord() {
+        AttributeGrid grid = new SparseAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getStateByCoord1(grid);
+
+        // should expect width=3, height=6, depth=4
+        // set data for a mid-voxel and test the bounds
+        grid = new SparseAttributeGridShort(new Bounds(0.15, 0.12, 0.20), 0.05, 0.02);
+        getStateByCoord2(grid);
+    }
+
+    /**
+     * Test getAttribute by voxels.
+     */
+    public void testGetMaterialByVoxel() {
+        AttributeGrid grid = new SparseAttributeGridShort(10, 9, 8, 0.001, 0.001);
+        getMaterialByVoxel(grid);
+    }
+
+    /**
+     * Test getAttribute by world coordinates.
+     */
+    public void testGetMaterialByCoord() {
+        AttributeGrid grid = new SparseAttributeGridShort(new Bounds(1.0, 0.4, 0.5), 0.05, 0.01);
+        getMaterialByCoord1(grid);
+
+
+        // should expect width=3, height=6, depth=4
+        // set data for a mid-voxel and test the bounds
+        grid = new SparseAttributeGridShort(new Bounds(0.15, 0.12, 0.20), 0.05, 0.02);
+        getMaterialByCoord2(grid);
+    }
+
+    /**
+     * Test setAttribute.
+     */
+    public void testsetAttribute() {
+        int size = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+        setAttribute(grid);
+    }
+
+    public void testSetAttributeShort() {
+        AttributeGrid grid = new SparseAttributeGridShort(78, 112, 26, 0.001, 0.001);
+
+        grid.setAttribute(0, 0, 0, 1);
+        grid.setAttribute(9, 9, 9, 256);
+        grid.setAttribute(63, 111, 24, 1000);
+
+        System.out.println("Val: " + grid.getAttribute(63,111,24));
+        // check that the material changed, but the state did not
+        assertEquals("Material should be ", 1, grid.getAttribute(0, 0, 0));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(0, 0, 0));
+
+        assertEquals("Material should be ", 256, grid.getAttribute(9, 9, 9));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(9, 9, 9));
+
+        assertEquals("Material should be ", 1000, grid.getAttribute(63, 111, 24));
+        assertEquals("State should be ", Grid.INSIDE, grid.getState(63, 111, 24));
+    }
+
+    /**
+     * Test setState.
+     */
+    public void testSetState() {
+        int size = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+        setState(grid);
+    }
+
+    /**
+     * Test reassignAttribute.
+     */
+    public void testReassignMaterial() {
+        int size = 20;
+
+        AttributeGrid grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+        reassignMaterial(grid);
+    }
+
+    /**
+     * Test set/get short material range.
+     */
+    public void testShortMaterialRange() {
+        int width = 100;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, 1, 1, 0.001, 0.001);
+        shortMaterialRange(grid);
+    }
+
+    /**
+     * Test findCount by voxel class.
+     */
+    public void testFindCountByVoxelClass() {
+        int width = 6;
+        int height = 3;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findCountByVoxelClass(grid);
+
+    }
+
+    /**
+     * Test findCount by material.
+     */
+    public void testFindCountByMat() {
+        int width = 3;
+        int height = 4;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findCountByMat(grid);
+    }
+
+    /**
+     * Test find voxels by voxel class
+     */
+    public void testFindVoxelClass() {
+        int width = 3;
+        int height = 4;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.05, 0.02);
+        findVoxelClass(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass actually found the voxels in the correct coordinates
+     */
+    public void testFindVoxelClassIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findVoxelClassIterator1(grid);
+
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findVoxelClassIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptableVoxelClassIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptableVoxelClassIterator1(grid);
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptableVoxelClassIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by material actually found the voxels in the correct coordinates
+     */
+    public void testFindMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialIterator1(grid);
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by material actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptablMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialIterator1(grid);
+
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by VoxelClass and material actually found the voxels in the correct coordinates
+     */
+    public void testFindMaterialAndVCIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialAndVCIterator1(grid);
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findMaterialAndVCIterator2(grid);
+    }
+
+    /**
+     * Test that find voxels by voxel class and material actually found the voxels in the correct coordinates
+     */
+    public void testFindInterruptablMaterialAndVCIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialAndVCIterator1(grid);
+        grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        findInterruptablMaterialAndVCIterator2(grid);
+    }
+
+    /**
+     * Test getGridCoords.
+     */
+    public void testGetGridCoords() {
+        double xWorldCoord = 1.0;
+        double yWorldCoord = 0.15;
+        double zWorldCoord = 0.61;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new SparseAttributeGridShort(new Bounds(xWorldCoord, yWorldCoord, zWorldCoord), voxelWidth, sliceHeight);
+        getGridCoords(grid);
+    }
+
+    /**
+     * Test getWorldCoords.
+     */
+    public void testGetWorldCoords() {
+        int xVoxels = 50;
+        int yVoxels = 15;
+        int zVoxels = 31;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new SparseAttributeGridShort(xVoxels, yVoxels, zVoxels, voxelWidth, sliceHeight);
+        getWorldCoords(grid);
+    }
+
+    /**
+     * Test getWorldCoords.
+     */
+    public void testGetGridBounds() {
+        int xVoxels = 50;
+        int yVoxels = 15;
+        int zVoxels = 31;
+        double voxelWidth = 0.02;
+        double sliceHeight = 0.01;
+
+        AttributeGrid grid = new SparseAttributeGridShort(xVoxels, yVoxels, zVoxels, voxelWidth, sliceHeight);
+        getGridBounds(grid);
+    }
+
+    /**
+     * Test getWidth with both constructor methods.
+     */
+    public void testGetWidth() {
+        int width = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new SparseAttributeGridShort(width, 50, 25, 0.05, 0.01);
+        assertEquals("Width is not " + width, width, grid.getWidth());
+
+        // world coordinates
+        double xcoord = 0.12;
+        double voxelSize = 0.05;
+        width = BaseGrid.roundSize(xcoord / voxelSize);
+
+        grid = new SparseAttributeGridShort(new Bounds(xcoord, 0.11, 0.16), voxelSize, 0.02);
+        assertEquals("Width is not " + width, width, grid.getWidth());
+    }
+
+    /**
+     * Test getHeight with both constructor methods.
+     */
+    public void testGetHeight() {
+        int height = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new SparseAttributeGridShort(50, height, 25, 0.05, 0.02);
+        assertEquals("Height is not " + height, height, grid.getHeight());
+
+        // world coordinates
+        double ycoord = 0.11;
+        double sliceHeight = 0.02;
+        height = BaseGrid.roundSize(ycoord / sliceHeight);
+
+        grid = new SparseAttributeGridShort(new Bounds(0.12, ycoord, 0.16), 0.05, sliceHeight);
+        assertEquals("Height is not " + height, height, grid.getHeight());
+    }
+
+    /**
+     * Test getDepth with both constructor methods.
+     */
+    public void testGetDepth() {
+        int depth = 70;
+
+        // voxel coordinates
+        AttributeGrid grid = new SparseAttributeGridShort(50, 25, depth, 0.05, 0.01);
+        assertEquals("Depth is not " + depth, depth, grid.getDepth());
+
+        // world coordinates
+        double zcoord = 0.12;
+        double voxelSize = 0.05;
+        depth = BaseGrid.roundSize(zcoord / voxelSize);
+
+        grid = new SparseAttributeGridShort(new Bounds(0.12, 0.11, zcoord), voxelSize, 0.02);
+        assertEquals("Depth is not " + depth, depth, grid.getDepth());
+    }
+
+    /**
+     * Test getSliceHeight with both constructor methods.
+     */
+    public void testGetSliceHeight() {
+        double sliceHeight = 0.0015;
+
+        // voxel coordinates
+        AttributeGrid grid = new SparseAttributeGridShort(50, 25, 70, 0.05, sliceHeight);
+        assertEquals("Slice height is not " + sliceHeight, sliceHeight, grid.getSliceHeight());
+
+        // world coordinates
+        grid = new SparseAttributeGridShort(new Bounds(0.12, 0.11, 0.12), 0.05, sliceHeight);
+        assertEquals("Slice height is not" + sliceHeight, sliceHeight, grid.getSliceHeight());
+    }
+
+    /**
+     * Test getVoxelSize with both constructor methods.
+     */
+    public void testGetVoxelSize() {
+        double voxelSize = 0.025;
+
+        // voxel coordinates
+        AttributeGrid grid = new SparseAttributeGridShort(50, 25, 70, voxelSize, 0.01);
+        assertEquals("Voxel size is not " + voxelSize, voxelSize, grid.getVoxelSize());
+
+        // world coordinates
+        grid = new SparseAttributeGridShort(new Bounds(0.12, 0.11, 0.12), voxelSize, 0.01);
+        assertEquals("Voxel size is not " + voxelSize, voxelSize, grid.getVoxelSize());
+    }
+
+    /**
+     * Test that remove material removes all specified material
+     */
+    public void testRemoveMaterialIterator() {
+        int width = 20;
+        int height = 10;
+        int depth = 10;
+
+        AttributeGrid grid = new SparseAttributeGridShort(width, height, depth, 0.001, 0.001);
+        removeMaterialIterator(grid);
+    }
+
+    /**
+     * Test that memory is allocated for non background voxels only and prune collapses uniform leaves
+     */
+    public void testSparsity() {
+        int size = 1000;
+        SparseAttributeGridShort grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+
+        // writing background allocates nothing
+        for(int x = 0; x < size; x += 3)
+            grid.setData(x, x, x, Grid.OUTSIDE, 0);
+        assertEquals("Leaf count", 0, grid.getLeafCount());
+
+        // thin shell of sphere
+        double r = 400, c = 500;
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                double d2 = (x-c)*(x-c) + (y-c)*(y-c);
+                if(d2 > r*r) continue;
+                int z = (int)(c + Math.sqrt(r*r - d2));
+                grid.setData(x, y, z, Grid.INSIDE, 7);
+            }
+        }
+        long active = grid.getActiveCount();
+        assertEquals("Active count", active, grid.findCount(Grid.VoxelClasses.INSIDE));
+        assertTrue("Too many leaves: " + grid.getLeafCount(), grid.getLeafCount() < 4*active/SparseAttributeGridShort.LEAF_SIZE);
+
+        // solid block
+        for(int y = 0; y < 64; y++)
+            for(int x = 0; x < 64; x++)
+                for(int z = 0; z < 64; z++)
+                    grid.setData(x, y, z, Grid.INSIDE, 3);
+        int leaves = grid.getLeafCount();
+        grid.prune();
+        assertEquals("Pruned leaves", leaves - 512, grid.getLeafCount());
+        assertEquals("Tile value", 3, grid.getAttribute(10, 20, 30));
+        assertEquals("Active count after prune", active + 64*64*64, grid.getActiveCount());
+
+        // clearing solid block
+        for(int y = 0; y < 64; y++)
+            for(int x = 0; x < 64; x++)
+                for(int z = 0; z < 64; z++)
+                    grid.setData(x, y, z, Grid.OUTSIDE, 0);
+        assertEquals("Active count after clear", active, grid.getActiveCount());
+    }
+
+    /**
+     * Test background attribute and constant leaf tiles
+     */
+    public void testLeafAttribute() {
+        int size = 100;
+        SparseAttributeGridShort grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+        grid.setBackgroundAttribute(Short.MAX_VALUE);
+        assertEquals("Background", Short.MAX_VALUE, grid.getAttribute(50, 50, 50));
+
+        grid.setLeafAttribute(17, 9, 30, -Short.MAX_VALUE);
+        assertEquals("Leaf count", 0, grid.getLeafCount());
+        assertEquals("Tile value", -Short.MAX_VALUE, (short)grid.getAttribute(16, 8, 24));
+        assertEquals("Tile value", -Short.MAX_VALUE, (short)grid.getAttribute(23, 15, 31));
+        assertEquals("Background", Short.MAX_VALUE, grid.getAttribute(24, 8, 24));
+
+        // writing into tile makes leaf, setting tile again releases it
+        grid.setAttribute(20, 10, 25, 5);
+        assertEquals("Leaf count", 1, grid.getLeafCount());
+        assertEquals("Voxel value", 5, grid.getAttribute(20, 10, 25));
+        assertEquals("Tile value", -Short.MAX_VALUE, (short)grid.getAttribute(20, 10, 26));
+        grid.setLeafAttribute(20, 10, 25, -Short.MAX_VALUE);
+        assertEquals("Leaf count", 0, grid.getLeafCount());
+        assertEquals("Tile value", -Short.MAX_VALUE, (short)grid.getAttribute(20, 10, 25));
+    }
+
+    /**
+     * Test that deserialized grid has the same voxels and can be written
+     */
+    public void testSerialization() throws Exception {
+        int size = 300;
+        SparseAttributeGridShort grid = new SparseAttributeGridShort(size, size, size, 0.001, 0.001);
+        for(int x = 0; x < size; x += 7)
+            grid.setData(x, size - 1 - x, (x*x) % size, Grid.INSIDE, x + 1);
+        grid.setLeafAttribute(200, 10, 100, 9);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(grid);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SparseAttributeGridShort grid1 = (SparseAttributeGridShort)in.readObject();
+
+        assertEquals("Active count", grid.getActiveCount(), grid1.getActiveCount());
+        for(int x = 0; x < size; x += 7)
+            assertEquals("Voxel value", x + 1, grid1.getAttribute(x, size - 1 - x, (x*x) % size));
+        assertEquals("Tile value", 9, grid1.getAttribute(201, 12, 103));
+
+        grid1.setData(150, 150, 150, Grid.INSIDE, 5);
+        assertEquals("Voxel value", 5, grid1.getAttribute(150, 150, 150));
+    }
+
+    /**
+     * Test that grid made by multi threaded GridMaker is the same as array grid
+     */
+    public void testGridMaker() {
+
+        double bounds[] = new double[]{-5*MM, 5*MM, -5*MM, 5*MM, -5*MM, 5*MM};
+        double vs = 0.1*MM;
+        int n = 100;
+        Subtraction shape = new Subtraction(new Sphere(0, 0, 0, 4*MM), new Sphere(1*MM, 0, 0, 3*MM));
+
+        AttributeGrid grid = new ArrayAttributeGridShort(n, n, n, vs, vs);
+        AttributeGrid sgrid = new SparseAttributeGridShort(n, n, n, vs, vs);
+        AttributeGrid grids[] = new AttributeGrid[]{grid, sgrid};
+        for(int i = 0; i < grids.length; i++){
+            grids[i].setGridBounds(bounds);
+            GridMaker gm = new GridMaker();
+            gm.setSource(shape);
+            gm.setThreadCount(4);
+            gm.makeGrid(grids[i]);
+        }
+        long count = 0;
+        for(int y = 0; y < n; y++){
+            for(int x = 0; x < n; x++){
+                for(int z = 0; z < n; z++){
+                    assertEquals("Voxel value", grid.getAttribute(x,y,z), sgrid.getAttribute(x,y,z));
+                    if(grid.getAttribute(x,y,z) != 0) count++;
+                }
+            }
+        }
+        assertEquals("Active count", count, ((SparseAttributeGridShort)sgrid).getActiveCount());
+        assertEquals("Inside count", grid.findCount(Grid.VoxelClasses.INSIDE), sgrid.findCount(Grid.VoxelClasses.INSIDE));
+    }
+}
@@ -0,0 +1,225 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.ArrayAttributeGridByte;
+import abfab3d.grid.AttributeMakerDensity;
+import abfab3d.grid.GridShortIntervals;
+
+import abfab3d.datasources.Box;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.PI;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Units.MM;
+
+/**
+ * Test the DistanceMorphology class.
+ */
+public class TestDistanceMorphology extends BaseTestDistanceTransform {
+
+    double surfaceThickness = Math.sqrt(3)/2;
+    static int subvoxelResolution = 100;
+    double voxelSize = 0.1*MM;
+
+    /**
+       volumes of offsets of sphere
+     */
+    public void testSphere(){
+
+        int nx = 50;
+        double radius = 1*MM;
+        AttributeGrid grid = makeSphere(nx, radius, voxelSize, subvoxelResolution, surfaceThickness);
+
+        DistanceMorphology dm = new DistanceMorphology(subvoxelResolution);
+
+        checkVolume(dm.dilate(grid, 0.6*MM), sphereVolume(1.6*MM));
+        checkVolume(dm.erode(grid, 0.4*MM), sphereVolume(0.6*MM));
+        checkVolume(dm.shell(grid, 0.3*MM), sphereVolume(1*MM) - sphereVolume(0.7*MM));
+        checkVolume(dm.shell(grid, 0.2*MM, 0.3*MM), sphereVolume(1.3*MM) - sphereVolume(0.8*MM));
+        // sphere is invariant under opening and closing
+        checkVolume(dm.open(grid, 0.5*MM), sphereVolume(1*MM));
+        checkVolume(dm.close(grid, 0.5*MM), sphereVolume(1*MM));
+
+    }
+
+    /**
+       closing fills gap between two boxes, opening removes thin plate
+     */
+    public void testOpenClose(){
+
+        int nx = 40;
+        double s = nx*voxelSize;
+        AttributeGrid grid = makeBlock(nx, s*0.6, s*0.6, s*0.6, voxelSize, subvoxelResolution, surfaceThickness);
+        double boxVolume = getVolume(grid);
+
+        DistanceMorphology dm = new DistanceMorphology(subvoxelResolution);
+
+        // thin plate is removed by opening
+        AttributeGrid plate = makeBlock(nx, s*0.6, s*0.6, 0.3*MM, voxelSize, subvoxelResolution, surfaceThickness);
+        assertTrue("plate volume", getVolume(plate) > 0);
+        assertEquals("opened plate volume", 0., getVolume(dm.open(plate, 0.3*MM)), 1.e-12);
+
+        // box keeps volume under closing, its edges are not rounded
+        assertEquals("closed box volume", boxVolume, getVolume(dm.close(grid, 0.3*MM)), boxVolume*0.01);
+        // opening rounds the edges of box
+        double opened = getVolume(dm.open(grid, 0.3*MM));
+        assertTrue(fmt("opened box volume %g < %g", opened, boxVolume), opened < boxVolume);
+
+    }
+
+    /**
+       distance grid is calculated once for repeated operations
+     */
+    public void testCache(){
+
+        int nx = 30;
+        AttributeGrid grid = makeSphere(nx, 0.8*MM, voxelSize, subvoxelResolution, surfaceThickness);
+
+        DistanceMorphology dm = new DistanceMorphology(subvoxelResolution);
+
+        dm.dilate(grid, 0.5*MM);
+        dm.erode(grid, 0.3*MM);
+        dm.shell(grid, 0.2*MM);
+        dm.dilate(grid, 0.2*MM);
+        assertEquals("transform count", 1, dm.getTransformCount());
+
+        // larger distance requires new transform
+        dm.dilate(grid, 0.6*MM);
+        assertEquals("transform count", 2, dm.getTransformCount());
+        dm.erode(grid, 0.3*MM);
+        assertEquals("transform count", 2, dm.getTransformCount());
+
+        // modified grid requires new transform
+        grid.setAttribute(0,0,0,subvoxelResolution);
+        dm.erode(grid, 0.3*MM);
+        assertEquals("transform count", 3, dm.getTransformCount());
+
+        dm.setCacheSize(0);
+        dm.erode(grid, 0.3*MM);
+        assertEquals("transform count", 4, dm.getTransformCount());
+
+    }
+
+    /**
+       result does not depend on count of threads
+     */
+    public void testMT(){
+
+        int nx = 40;
+        AttributeGrid grid = makeTorus(nx, 1.2*MM, 0.5*MM, voxelSize, subvoxelResolution, surfaceThickness);
+
+        DistanceMorphology dm1 = new DistanceMorphology(subvoxelResolution);
+        dm1.setThreadCount(1);
+        DistanceMorphology dm4 = new DistanceMorphology(subvoxelResolution);
+        dm4.setThreadCount(4);
+
+        assertGridsEqual(dm1.close(grid, 0.4*MM), dm4.close(grid, 0.4*MM));
+
+        dm4.setNarrowBand(true);
+        assertGridsEqual(dm1.shell(grid, 0.2*MM, 0.1*MM), dm4.shell(grid, 0.2*MM, 0.1*MM));
+
+    }
+
+    /**
+       interval grids share rows between z-slices, result does not depend on grid type and count of threads
+     */
+    public void testIntervals(){
+
+        int nx = 40;
+        AttributeGrid grid = makeTorus(nx, 1.2*MM, 0.5*MM, voxelSize, subvoxelResolution, surfaceThickness);
+        AttributeGrid igrid = new GridShortIntervals(nx, nx, nx, voxelSize, voxelSize);
+        double bounds[] = new double[6];
+        grid.getGridBounds(bounds);
+        igrid.setGridBounds(bounds);
+        for(int y = 0; y < nx; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nx; z++){
+                    long a = grid.getAttribute(x,y,z);
+                    if(a != 0)
+                        igrid.setAttribute(x,y,z,a);
+                }
+            }
+        }
+
+        DistanceMorphology dm1 = new DistanceMorphology(subvoxelResolution);
+        dm1.setThreadCount(1);
+        DistanceMorphology dm4 = new DistanceMorphology(subvoxelResolution);
+        dm4.setThreadCount(4);
+
+        AttributeGrid dilated = dm1.dilate(grid, 0.3*MM);
+        AttributeGrid idilated = dm4.dilate(igrid, 0.3*MM);
+        assertTrue("result type", idilated instanceof GridShortIntervals);
+        assertGridsEqual(dilated, idilated);
+        assertGridsEqual(dm1.shell(grid, 0.2*MM), dm4.shell(igrid, 0.2*MM));
+
+    }
+
+    AttributeGrid makeBlock(int gridSize, double sx, double sy, double sz, double voxelSize, int maxAttribute, double surfaceThickness){
+
+        double s = gridSize*voxelSize;
+        AttributeGrid grid = new ArrayAttributeGridByte(gridSize, gridSize, gridSize, voxelSize, voxelSize);
+        grid.setGridBounds(new double[]{-s/2, s/2, -s/2, s/2, -s/2, s/2});
+
+        GridMaker gm = new GridMaker();
+        gm.setAttributeMaker(new AttributeMakerDensity(maxAttribute));
+        gm.setVoxelScale(surfaceThickness);
+        gm.setSource(new Box(voxelSize/4, voxelSize/4, voxelSize/4, sx, sy, sz));
+        gm.makeGrid(grid);
+        return grid;
+
+    }
+
+    void checkVolume(AttributeGrid grid, double expected){
+
+        double volume = getVolume(grid);
+        printf("volume: %8.4f mm^3 expected: %8.4f mm^3\n", volume/(MM*MM*MM), expected/(MM*MM*MM));
+        assertTrue(fmt("volume %g expected %g", volume, expected), abs(volume - expected) < 0.03*expected);
+
+    }
+
+    static double sphereVolume(double r){
+        return 4*PI*r*r*r/3;
+    }
+
+    static double getVolume(AttributeGrid grid){
+
+        double sum = 0;
+        int nx = grid.getWidth(), ny = grid.getHeight(), nz = grid.getDepth();
+        for(int y = 0; y < ny; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++){
+                    sum += grid.getAttribute(x,y,z);
+                }
+            }
+        }
+        double vs = grid.getVoxelSize();
+        return sum*vs*vs*vs/subvoxelResolution;
+
+    }
+
+    static void assertGridsEqual(AttributeGrid g1, AttributeGrid g2){
+
+        int nx = g1.getWidth(), ny = g1.getHeight(), nz = g1.getDepth();
+        for(int y = 0; y < ny; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++){
+                    assertEquals(fmt("(%d %d %d)",x,y,z), g1.getAttribute(x,y,z), g2.getAttribute(x,y,z));
+                }
+            }
+        }
+    }
+}
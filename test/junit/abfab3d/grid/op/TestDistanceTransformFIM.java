@@ -0,0 +1,65 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import abfab3d.grid.AttributeGrid;
+
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Units.MM;
+
+/**
+ * Test the DistanceTransformFIM class.
+ */
+public class TestDistanceTransformFIM extends BaseTestDistanceTransform {
+
+    double surfaceThickness = Math.sqrt(3)/2;
+    int maxAttribute = 100;
+    double voxelSize = 0.1*MM;
+
+    /**
+       result should be within tolerance of DistanceTransformFM for any count of threads
+     */
+    public void testCompareFM(){
+
+        int nx = 64;
+        AttributeGrid grids[] = new AttributeGrid[]{
+            makeSphere(nx, 2.5*MM, voxelSize, maxAttribute, surfaceThickness),
+            makeBox(nx, 4.0*MM, voxelSize, maxAttribute, surfaceThickness),
+            makeTorus(nx, 2.2*MM, 0.9*MM, voxelSize, maxAttribute, surfaceThickness),
+        };
+        double maxInDistance = 1.5*MM;
+
+        for(int i = 0; i < grids.length; i++){
+
+            AttributeGrid grid = grids[i];
+
+            DistanceTransformFM dt_fm = new DistanceTransformFM(maxAttribute, maxInDistance, 0);
+            AttributeGrid dg_fm = dt_fm.execute(grid);
+
+            int threads[] = new int[]{1, 4};
+            for(int t = 0; t < threads.length; t++){
+
+                DistanceTransformFIM dt_fim = new DistanceTransformFIM(maxAttribute, maxInDistance, 0);
+                dt_fim.setThreadCount(threads[t]);
+                AttributeGrid dg_fim = dt_fim.execute(grid);
+
+                long errors[] = getDiffHistogram(dg_fm, dg_fim);
+                printDiffHistogram(errors);
+                assertEquals("voxels reached by only one transform", 0, errors[errors.length-1]);
+                for(int k = 2; k < errors.length; k++){
+                    assertTrue(fmt("grid: %d threads: %d error[%d] = %d (but should be 0)\n", i, threads[t], k, errors[k]), (errors[k] == 0));
+                }
+            }
+        }
+    }
+}
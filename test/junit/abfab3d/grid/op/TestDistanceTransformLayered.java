@@ -13,6 +13,7 @@
 package abfab3d.grid.op;
 
 import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.SparseAttributeGridShort;
 
 import java.io.File;
 
@@ -201,6 +202,34 @@ public class TestDistanceTransformLayered extends BaseTestDistanceTransform {
         }
     }
 
+    /**
+       narrow band distance should be the same as dense distance and use less memory
+     */
+    public void testNarrowBand(){
+
+        int nx = 80;
+        AttributeGrid grid = makeSphere(nx, nx*voxelSize/4, voxelSize, subvoxelResolution, surfaceThickness);
+
+        double maxInDistance = 0.3*MM;
+        double maxOutDistance = 0.2*MM;
+
+        DistanceTransformLayered dt = new DistanceTransformLayered(subvoxelResolution, maxInDistance, maxOutDistance);
+        // MT results may differ slightly between runs
+        dt.setThreadCount(1);
+        AttributeGrid dg_dense = dt.execute(grid);
+        dt.setNarrowBand(true);
+        AttributeGrid dg_band = dt.execute(grid);
+
+        assertTrue("sparse grid", dg_band instanceof SparseAttributeGridShort);
+        int leafCount = ((SparseAttributeGridShort)dg_band).getLeafCount();
+        int denseLeafCount = ((nx + 7)/8)*((nx + 7)/8)*((nx + 7)/8);
+        printf("narrow band leaves: %d of %d\n", leafCount, denseLeafCount);
+
+        long errors[] = getDiffHistogram(dg_dense, dg_band);
+        assertEquals("narrow band differs from dense", (long)nx*nx*nx, errors[0]);
+        assertTrue("narrow band uses too much memory", leafCount < denseLeafCount/4);
+    }
+
     static void subtract(AttributeGrid g1, AttributeGrid g2){
         int nx = g1.getWidth();
         int ny = g1.getHeight();
@@ -0,0 +1,173 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.grid.op;
+
+import abfab3d.grid.AttributeGrid;
+import abfab3d.grid.SparseAttributeGridShort;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+import static abfab3d.util.Output.printf;
+import static abfab3d.util.Output.fmt;
+import static abfab3d.util.Output.time;
+import static abfab3d.util.Units.MM;
+
+import static abfab3d.util.MathUtil.L2S;
+
+/**
+ * Test the DistanceTransformSeparable class.
+ */
+public class TestDistanceTransformSeparable extends BaseTestDistanceTransform {
+
+    double surfaceThickness = Math.sqrt(3)/2;
+    static int subvoxelResolution = 100;
+    double voxelSize = 0.1*MM;
+
+    /**
+       compare with brute force distance to the same surface points
+     */
+    public void testBruteForce(){
+
+        int nx = 24;
+        AttributeGrid grid = makeTorus(nx, 0.8 * MM, 0.35 * MM, voxelSize, subvoxelResolution, surfaceThickness);
+        double maxInDistance = 0.5*MM;
+        double maxOutDistance = 0.7*MM;
+
+        DistanceTransformSeparable dt = new DistanceTransformSeparable(subvoxelResolution, maxInDistance, maxOutDistance);
+        AttributeGrid dg = dt.execute(grid);
+
+        double pnts[] = getSurfacePoints(grid);
+        int maxIn = (int)Math.ceil(maxInDistance*subvoxelResolution/voxelSize);
+        int maxOut = (int)Math.ceil(maxOutDistance*subvoxelResolution/voxelSize);
+        int sv = subvoxelResolution/2;
+        int maxDiff = 0;
+
+        for(int y = 0; y < nx; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nx; z++){
+                    double d2 = Double.MAX_VALUE;
+                    for(int k = 0; k < pnts.length; k += 3){
+                        double dx = pnts[k]-x, dy = pnts[k+1]-y, dz = pnts[k+2]-z;
+                        d2 = Math.min(d2, dx*dx + dy*dy + dz*dz);
+                    }
+                    int dist = (int)(sqrt(d2)*subvoxelResolution + 0.5);
+                    int expect;
+                    if(grid.getAttribute(x,y,z) >= sv)
+                        expect = (dist > maxIn)? -Short.MAX_VALUE: -dist;
+                    else
+                        expect = (dist > maxOut)? Short.MAX_VALUE: dist;
+                    int value = L2S(dg.getAttribute(x,y,z));
+                    int diff = abs(value - expect);
+                    if(diff > maxDiff) maxDiff = diff;
+                    // values near the cutoff may round differently
+                    if(abs(abs(expect) - maxIn) > 1 && abs(abs(expect) - maxOut) > 1)
+                        assertTrue(fmt("distance at (%d,%d,%d): %d expected: %d", x,y,z,value,expect), diff <= 1);
+                }
+            }
+        }
+        printf("surface points: %d maxDiff: %d\n", pnts.length/3, maxDiff);
+    }
+
+    /**
+       result should not depend on threads count and should be close to DistanceTransformLayered
+     */
+    public void testMT(){
+
+        int nx = 50;
+        AttributeGrid grid = makeSphere(nx, 0.9*nx*voxelSize/2, voxelSize, subvoxelResolution, surfaceThickness);
+
+        double maxInDistance = 2*MM;
+        double maxOutDistance = 0.5*MM;
+
+        long t0 = time();
+        DistanceTransformSeparable dt_st = new DistanceTransformSeparable(subvoxelResolution, maxInDistance, maxOutDistance);
+        dt_st.setThreadCount(1);
+        AttributeGrid dg_st = dt_st.execute(grid);
+        printf("DistanceTransformSeparable ST done: %d ms\n", time() - t0);
+
+        t0 = time();
+        DistanceTransformSeparable dt_mt = new DistanceTransformSeparable(subvoxelResolution, maxInDistance, maxOutDistance);
+        dt_mt.setThreadCount(4);
+        AttributeGrid dg_mt = dt_mt.execute(grid);
+        printf("DistanceTransformSeparable MT done: %d ms\n", time() - t0);
+
+        long errors[] = getDiffHistogram(dg_st, dg_mt);
+        assertEquals("MT differs from ST", (long)nx*nx*nx, errors[0]);
+
+        t0 = time();
+        DistanceTransformLayered dt_layered = new DistanceTransformLayered(subvoxelResolution, maxInDistance, maxOutDistance);
+        AttributeGrid dg_layered = dt_layered.execute(grid);
+        printf("DistanceTransformLayered done: %d ms\n", time() - t0);
+
+        errors = getDiffHistogram(dg_layered, dg_st);
+        printDiffHistogram(errors);
+        // DistanceTransformLayered itself has errors up to 9 subvoxels
+        for(int k = 12; k < errors.length-1; k++){
+            assertTrue(fmt("error[%d] = %d (but should be 0)\n", k, errors[k]), (errors[k] == 0));
+        }
+    }
+
+    /**
+       narrow band distance should be the same as dense distance
+     */
+    public void testNarrowBand(){
+
+        int nx = 50;
+        AttributeGrid grid = makeSphere(nx, 0.9*nx*voxelSize/2, voxelSize, subvoxelResolution, surfaceThickness);
+
+        DistanceTransformSeparable dt = new DistanceTransformSeparable(subvoxelResolution, 0.5*MM, 0.3*MM);
+        AttributeGrid dg_dense = dt.execute(grid);
+        dt.setNarrowBand(true);
+        AttributeGrid dg_band = dt.execute(grid);
+
+        assertTrue("sparse grid", dg_band instanceof SparseAttributeGridShort);
+        printf("narrow band leaves: %d\n", ((SparseAttributeGridShort)dg_band).getLeafCount());
+
+        long errors[] = getDiffHistogram(dg_dense, dg_band);
+        assertEquals("narrow band differs from dense", (long)nx*nx*nx, errors[0]);
+    }
+
+    /**
+       surface points on grid edges in voxel coordinates
+     */
+    static double[] getSurfacePoints(AttributeGrid grid){
+
+        int nx = grid.getWidth(), ny = grid.getHeight(), nz = grid.getDepth();
+        int sv = subvoxelResolution/2;
+        double pnts[] = new double[3*3*nx*ny*nz];
+        int count = 0;
+        for(int y = 0; y < ny; y++){
+            for(int x = 0; x < nx; x++){
+                for(int z = 0; z < nz; z++){
+                    int v0 = (int)grid.getAttribute(x,y,z) - sv;
+                    for(int a = 0; a < 3; a++){
+                        int x1 = x + ((a == 0)? 1: 0), y1 = y + ((a == 1)? 1: 0), z1 = z + ((a == 2)? 1: 0);
+                        if(x1 >= nx || y1 >= ny || z1 >= nz)
+                            continue;
+                        int v1 = (int)grid.getAttribute(x1,y1,z1) - sv;
+                        if(v0 * v1 <= 0 && v0 != v1){
+                            double t = (double)v0/(v0 - v1);
+                            pnts[count++] = x + t*(x1-x);
+                            pnts[count++] = y + t*(y1-y);
+                            pnts[count++] = z + t*(z1-z);
+                        }
+                    }
+                }
+            }
+        }
+        double p[] = new double[count];
+        System.arraycopy(pnts, 0, p, 0, count);
+        return p;
+    }
+}
@@ -36,10 +36,13 @@ import junit.framework.TestSuite;
 
 // Internal Imports
 import abfab3d.grid.Grid;
+import abfab3d.grid.AttributeGrid;
 import abfab3d.grid.ArrayAttributeGridByte;
 import abfab3d.grid.GridShortIntervals;
 
 import abfab3d.util.Vec;
+import abfab3d.util.DataSource;
+import abfab3d.util.Initializable;
 import abfab3d.util.MathUtil;
 import abfab3d.util.TextUtil;
 import abfab3d.util.Symmetry;
@@ -1428,6 +1431,206 @@ public class TestGridMaker extends TestCase {
         printf("%s",grid.toStringAttributesSectionZ(nz / 2));
     }
 
+    /**
+       grid made with culling by bounds of data source should be the same as without culling 
+     */
+    public void testBoundsCulling() {
+
+        printf("testBoundsCulling()\n");
+        double bounds[] = new double[]{-5*MM, 5*MM, -5*MM, 5*MM, -5*MM, 5*MM};
+        Union union = new Union(new Sphere(1*MM, 1*MM, 0, 2*MM), new Box(-2*MM, -1*MM, 1*MM, 2*MM, 1*MM, 3*MM));
+
+        AttributeGrid grid = makeTestGrid(bounds, union, 0, 4);
+        AttributeGrid grid1 = makeTestGrid(bounds, new Unbounded(union), 0, 4);
+
+        assertEquals("culled grid differs", 0, countDifferentVoxels(grid, grid1));
+    }
+
+    /**
+       grid made in adaptive mode should be the same as exact grid for shapes large compared to block size 
+       blocks outside of the shape should be skipped and blocks inside of the shape should be filled 
+     */
+    public void testAdaptive() {
+
+        printf("testAdaptive()\n");
+        double bounds[] = new double[]{-6*MM, 6*MM, -6*MM, 6*MM, -6*MM, 6*MM};
+        Box box = new Box(2*MM, 0, 0, 4*MM, 4*MM, 4*MM);
+        box.setTransform(new Rotation(new Vector3d(1,1,0), 0.5));
+        Subtraction shape = new Subtraction(new Sphere(0, 0, 0, 5*MM), box);
+
+        AttributeGrid grid = makeTestGrid(bounds, shape, 0, 1);
+        int n = grid.getWidth();
+        for(int threads = 1; threads <= 4; threads += 3){
+            AttributeGrid grid1 = new ArrayAttributeGridByte(n, n, n, grid.getVoxelSize(), grid.getSliceHeight());
+            GridMaker gm = new GridMaker();
+            gm.setBounds(bounds);
+            gm.setSource(shape);
+            gm.setThreadCount(threads);
+            gm.setAdaptiveBlockSize(16);
+            gm.makeGrid(grid1);
+            long diff = countDifferentVoxels(grid, grid1);
+            printf("threads: %d, different voxels: %d, skipped blocks: %d, filled blocks: %d\n", 
+                   threads, diff, gm.getSkippedBlocksCount(), gm.getFilledBlocksCount());
+            assertEquals("adaptive grid differs", 0, diff);
+            assertTrue("no blocks skipped", gm.getSkippedBlocksCount() > 0);
+            assertTrue("no blocks filled", gm.getFilledBlocksCount() > 0);
+        }
+        
+        // unclassified data source is calculated voxel by voxel 
+        GridMaker gm = new GridMaker();
+        gm.setBounds(bounds);
+        gm.setSource(new Unbounded(shape));
+        gm.setAdaptiveBlockSize(16);
+        AttributeGrid grid1 = new ArrayAttributeGridByte(n, n, n, grid.getVoxelSize(), grid.getSliceHeight());
+        gm.makeGrid(grid1);
+        assertEquals("adaptive grid differs", 0, countDifferentVoxels(grid, grid1));
+        assertEquals("blocks skipped", 0, gm.getSkippedBlocksCount());
+        assertEquals("blocks filled", 0, gm.getFilledBlocksCount());
+    }
+
+    /**
+       small features inside of blocks of adaptive grid should be preserved 
+     */
+    public void testAdaptiveParts() {
+
+        printf("testAdaptiveParts()\n");
+        double bounds[] = new double[]{-6*MM, 6*MM, -6*MM, 6*MM, -6*MM, 6*MM};
+        Union union = new Union();
+        // box with small cavity 
+        union.add(new Subtraction(new Box(-3*MM, -3*MM, -3*MM, 4*MM, 4*MM, 4*MM), new Sphere(-3*MM, -3*MM, -3*MM, 0.4*MM)));
+        // small spheres far from other parts 
+        union.add(new Sphere(3*MM, 3*MM, 3*MM, 0.3*MM));
+        union.add(new Sphere(-4*MM, 4*MM, 2*MM, 0.25*MM));
+        // thin rotated plate 
+        Box plate = new Box(3*MM, -3*MM, 0, 3*MM, 0.2*MM, 3*MM);
+        plate.setTransform(new Rotation(new Vector3d(1,1,0), 0.5));
+        union.add(plate);
+
+        AttributeGrid grid = makeTestGrid(bounds, union, 0, 1);
+        for(int threads = 1; threads <= 4; threads += 3){
+            AttributeGrid grid1 = makeTestGrid(bounds, union, 16, threads);
+            long diff = countDifferentVoxels(grid, grid1);
+            printf("threads: %d, different voxels: %d\n", threads, diff);
+            assertEquals("adaptive grid differs", 0, diff);
+        }
+    }
+
+    /**
+       grid made with different tiles should be the same 
+     */
+    public void testTiles() {
+
+        printf("testTiles()\n");
+        double bounds[] = new double[]{-5*MM, 5*MM, -5*MM, 5*MM, -5*MM, 5*MM};
+        Union union = new Union(new Sphere(1*MM, 1*MM, 0, 2*MM), new Box(-2*MM, -1*MM, 1*MM, 2*MM, 1*MM, 3*MM));
+
+        AttributeGrid grid = makeTestGrid(bounds, union, 0, 1);
+        int tileSizes[] = new int[]{1, 5, 16, 200};
+        for(int i = 0; i < tileSizes.length; i++){
+            for(int threads = 1; threads <= 4; threads += 3){
+                AttributeGrid grid1 = new ArrayAttributeGridByte(grid.getWidth(), grid.getHeight(), grid.getDepth(), 
+                                                                 grid.getVoxelSize(), grid.getSliceHeight());
+                GridMaker gm = new GridMaker();
+                gm.setBounds(bounds);
+                gm.setSource(union);
+                gm.setThreadCount(threads);
+                gm.setTileSize(tileSizes[i]);
+                gm.setTileStatistics(i == 2);
+                gm.makeGrid(grid1);
+                assertEquals("grid made with tile size " + tileSizes[i] + " differs", 0, countDifferentVoxels(grid, grid1));
+            }
+        }
+    }
+
+    /**
+       exception thrown by data source should reach the caller of makeGrid() 
+     */
+    public void testSourceException() {
+
+        printf("testSourceException()\n");
+        double bounds[] = new double[]{-2*MM, 2*MM, -2*MM, 2*MM, -2*MM, 2*MM};
+        for(int threads = 1; threads <= 4; threads += 3){
+            try {
+                makeTestGrid(bounds, new Failing(new Sphere(0, 0, 0, 1*MM)), 0, threads);
+                fail("exception expected, threads: " + threads);
+            } catch(IllegalStateException e){
+                printf("threads: %d, exception: %s\n", threads, e.getMessage());
+            }
+        }
+    }
+
+    static AttributeGrid makeTestGrid(double bounds[], DataSource source, int blockSize, int threads){
+
+        double voxelSize = 0.1*MM;
+        int n = (int)Math.round((bounds[1] - bounds[0])/voxelSize);
+        AttributeGrid grid = new ArrayAttributeGridByte(n, n, n, voxelSize, voxelSize);
+
+        GridMaker gm = new GridMaker();
+        gm.setBounds(bounds);
+        gm.setSource(source);
+        gm.setThreadCount(threads);
+        gm.setAdaptiveBlockSize(blockSize);
+
+        long t0 = time();
+        gm.makeGrid(grid);
+        printf("grid [%d x %d x %d] block: %d threads: %d time: %d ms\n", n, n, n, blockSize, threads, (time() - t0));
+        return grid;
+    }
+
+    static long countDifferentVoxels(AttributeGrid grid, AttributeGrid grid1){
+
+        long count = 0;
+        for(int y = 0; y < grid.getHeight(); y++){
+            for(int x = 0; x < grid.getWidth(); x++){
+                for(int z = 0; z < grid.getDepth(); z++){
+                    if(grid.getAttribute(x,y,z) != grid1.getAttribute(x,y,z))
+                        count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+       wrapper which hides bounds of data source 
+     */
+    static class Unbounded implements DataSource, Initializable {
+
+        DataSource source;
+
+        Unbounded(DataSource source){
+            this.source = source;
+        }
+
+        public int initialize(){
+            return ((Initializable)source).initialize();
+        }
+
+        public int getDataValue(Vec pnt, Vec data){
+            return source.getDataValue(pnt, data);
+        }
+
+        public int getChannelsCount(){
+            return source.getChannelsCount();
+        }
+    }
+
+    /**
+       data source which fails in the half space x > 0 
+     */
+    static class Failing extends Unbounded {
+
+        Failing(DataSource source){
+            super(source);
+        }
+
+        public int getDataValue(Vec pnt, Vec data){
+            if(pnt.v[0] > 0)
+                throw new IllegalStateException("data source failure");
+            return source.getDataValue(pnt, data);
+        }
+    }
+
     public void _testSmoohRing() throws Exception {
         
         printf("testSmoohRing()\n");
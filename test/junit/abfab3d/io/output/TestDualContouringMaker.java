@@ -0,0 +1,171 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.io.output;
+
+// External Imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.mesh.AreaCalculator;
+import abfab3d.mesh.IndexedTriangleSetBuffer;
+
+import static abfab3d.util.Output.printf;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Tests the functionality of DualContouringMaker
+ */
+public class TestDualContouringMaker extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestDualContouringMaker.class);
+    }
+
+    /**
+       ball made by dual contouring should have the same orientation and volume as ball made by marching cubes
+     */
+    public void testBall() {
+
+        double r = 0.8;
+        IsosurfaceMaker.SliceFunction slicer = new IsosurfaceMaker.SliceFunction(new TestIsosurfaceMaker.Ball(r));
+        double bounds[] = new double[]{-1.1, 1.1, -1.1, 1.1, -1.1, 1.1};
+
+        IsosurfaceMaker im = new IsosurfaceMaker();
+        im.setBounds(bounds);
+        im.setGridSize(41, 43, 45);
+        AreaCalculator mc = new AreaCalculator();
+        im.makeIsosurface(slicer, mc);
+
+        DualContouringMaker dc = new DualContouringMaker();
+        dc.setBounds(bounds);
+        dc.setGridSize(41, 43, 45);
+        IndexedTriangleSetBuffer its = new IndexedTriangleSetBuffer();
+        dc.makeIndexedIsosurface(slicer, its);
+        AreaCalculator ac = new AreaCalculator();
+        its.getTriangles(ac);
+
+        double volume = 4*Math.PI*r*r*r/3;
+        printf("ball volume: %8.5f mc: %8.5f dc: %8.5f faces: %d\n", volume, mc.getVolume(), ac.getVolume(), its.getFaceCount());
+        assertEquals("volume", volume, ac.getVolume(), 0.01*volume);
+        assertTrue("manifold", isClosedManifold(its));
+    }
+
+    /**
+       dual contouring should place vertices closer to sharp box corners than marching cubes does
+       adaptive variant should make fewer faces of the same box
+     */
+    public void testSharpBox() {
+
+        double s = 0.5;
+        IsosurfaceMaker.SliceFunction slicer = new IsosurfaceMaker.SliceFunction(new Box(s));
+        double bounds[] = new double[]{-1.03, 1.01, -1.02, 1.04, -1.01, 1.03};
+        double volume = 8*s*s*s;
+
+        IsosurfaceMaker im = new IsosurfaceMaker();
+        im.setBounds(bounds);
+        im.setGridSize(33, 33, 33);
+        IndexedTriangleSetBuffer mc = new IndexedTriangleSetBuffer();
+        im.makeIndexedIsosurface(slicer, mc);
+        AreaCalculator mcArea = new AreaCalculator();
+        mc.getTriangles(mcArea);
+
+        DualContouringMaker dc = new DualContouringMaker();
+        dc.setBounds(bounds);
+        dc.setGridSize(33, 33, 33);
+        IndexedTriangleSetBuffer its = new IndexedTriangleSetBuffer();
+        dc.makeIndexedIsosurface(slicer, its);
+        AreaCalculator ac = new AreaCalculator();
+        its.getTriangles(ac);
+
+        double mcDist = getCornerDistance(mc, s);
+        double dcDist = getCornerDistance(its, s);
+        printf("box volume: %8.5f mc: %8.5f dc: %8.5f faces: %d corner distance mc: %8.5f dc: %8.5f\n",
+               volume, mcArea.getVolume(), ac.getVolume(), its.getFaceCount(), mcDist, dcDist);
+        assertTrue("sharp corners", dcDist < 0.5*mcDist);
+        assertTrue("volume", abs(ac.getVolume() - volume) < 0.25*abs(mcArea.getVolume() - volume));
+        assertTrue("manifold", isClosedManifold(its));
+
+        dc.setMaxLevel(3);
+        dc.setMaxError(1.e-6);
+        IndexedTriangleSetBuffer its2 = new IndexedTriangleSetBuffer();
+        dc.makeIndexedIsosurface(slicer, its2);
+        AreaCalculator ac2 = new AreaCalculator();
+        its2.getTriangles(ac2);
+        printf("adaptive box volume: %8.5f faces: %d\n", ac2.getVolume(), its2.getFaceCount());
+        assertTrue("adaptive face count", its2.getFaceCount() < its.getFaceCount()/2);
+        assertEquals("adaptive volume", ac.getVolume(), ac2.getVolume(), 0.01*volume);
+        assertTrue("adaptive manifold", isClosedManifold(its2));
+    }
+
+    /**
+       returns max distance from box corners to nearest vertex
+     */
+    static double getCornerDistance(IndexedTriangleSetBuffer its, double s){
+
+        double vert[] = its.getVertices();
+        double maxDist = 0;
+        for(int c = 0; c < 8; c++){
+            double cx = ((c & 1) == 0)? -s: s, cy = ((c & 2) == 0)? -s: s, cz = ((c & 4) == 0)? -s: s;
+            double dist = Double.MAX_VALUE;
+            for(int i = 0; i < its.getVertexCount(); i++){
+                double x = vert[3*i] - cx, y = vert[3*i+1] - cy, z = vert[3*i+2] - cz;
+                dist = Math.min(dist, sqrt(x*x + y*y + z*z));
+            }
+            maxDist = max(maxDist, dist);
+        }
+        return maxDist;
+    }
+
+    /**
+       every edge of closed manifold mesh is used once in each direction
+     */
+    static boolean isClosedManifold(IndexedTriangleSetBuffer its){
+
+        int faces[] = its.getFaces();
+        java.util.HashMap<Long, Integer> edges = new java.util.HashMap<Long, Integer>();
+        for(int f = 0; f < faces.length; f += 3){
+            for(int k = 0; k < 3; k++){
+                long v0 = faces[f + k], v1 = faces[f + (k+1)%3];
+                Long key = (v0 << 32) | v1;
+                if(edges.put(key, 1) != null)
+                    return false;
+            }
+        }
+        for(Long key : edges.keySet()){
+            long v0 = key >>> 32, v1 = key & 0xFFFFFFFFL;
+            if(!edges.containsKey((v1 << 32) | v0))
+                return false;
+        }
+        return true;
+    }
+
+    static class Box implements IsosurfaceMaker.DataXYZ {
+
+        double s;
+
+        Box(double s){
+            this.s = s;
+        }
+
+        public double getData(double x, double y, double z){
+            return max(abs(x), max(abs(y), abs(z))) - s;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.io.output;
+
+// External Imports
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.mesh.IndexedTriangleSetBuffer;
+import abfab3d.mesh.IndexedTriangleSetBuilder;
+
+import static abfab3d.util.Output.printf;
+import static java.lang.Math.sqrt;
+
+/**
+ * Tests the functionality of IsosurfaceMaker
+ */
+public class TestIsosurfaceMaker extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestIsosurfaceMaker.class);
+    }
+
+    /**
+       indexed isosurface should have the same vertices and faces as welded loose triangles
+     */
+    public void testIndexedCubes() {
+
+        checkIndexed(IsosurfaceMaker.CUBES, IsosurfaceMaker.INTERPOLATION_LINEAR);
+        checkIndexed(IsosurfaceMaker.CUBES, IsosurfaceMaker.INTERPOLATION_INDICATOR_FUNCTION);
+
+    }
+
+    /**
+       tetrahedra are passed to indexed collector via welding
+     */
+    public void testIndexedTetrahedra() {
+
+        checkIndexed(IsosurfaceMaker.TETRAHEDRA, IsosurfaceMaker.INTERPOLATION_LINEAR);
+
+    }
+
+    /**
+       multi threaded extraction should give the same mesh for any count of threads
+     */
+    public void testMultiThreaded() {
+
+        IsosurfaceMaker im = new IsosurfaceMaker();
+        im.setBounds(new double[]{-1.1, 1.1, -1.1, 1.1, -1.1, 1.1});
+        im.setGridSize(41, 43, 45);
+
+        IsosurfaceMaker.SliceFunction slicer = new IsosurfaceMaker.SliceFunction(new Ball(0.8));
+        IsosurfaceMaker.SliceCalculatorFactory factory = new IsosurfaceMaker.SliceCalculatorFactory(){
+                public IsosurfaceMaker.SliceCalculator createSliceCalculator(){
+                    return new IsosurfaceMaker.SliceFunction(new Ball(0.8));
+                }
+            };
+
+        IndexedTriangleSetBuffer single = new IndexedTriangleSetBuffer();
+        im.makeIndexedIsosurface(slicer, single);
+
+        for(int threads = 1; threads <= 5; threads++){
+
+            im.setThreadCount(threads);
+            IndexedTriangleSetBuffer itb = new IndexedTriangleSetBuffer();
+            im.makeIndexedIsosurface(factory, itb);
+
+            printf("threads: %d vertices: %d faces: %d\n", threads, itb.getVertexCount(), itb.getFaceCount());
+            assertEquals("vertex count", single.getVertexCount(), itb.getVertexCount());
+            assertEquals("face count", single.getFaceCount(), itb.getFaceCount());
+            assertTrue("vertices differ", Arrays.equals(single.getVertices(), itb.getVertices()));
+            assertTrue("faces differ", Arrays.equals(single.getFaces(), itb.getFaces()));
+        }
+    }
+
+    void checkIndexed(int algorithm, int interpolation){
+
+        IsosurfaceMaker im = new IsosurfaceMaker();
+        im.setBounds(new double[]{-1.1, 1.1, -1.1, 1.1, -1.1, 1.1});
+        im.setGridSize(41, 43, 45);
+        im.setAlgorithm(algorithm);
+        im.setInterpolationAlgorithm(interpolation);
+
+        IsosurfaceMaker.SliceFunction slicer = new IsosurfaceMaker.SliceFunction(new Ball(0.8));
+
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+        im.makeIsosurface(slicer, its);
+
+        IndexedTriangleSetBuffer itb = new IndexedTriangleSetBuffer();
+        im.makeIndexedIsosurface(slicer, itb);
+
+        printf("welded: %d vertices %d faces, indexed: %d vertices %d faces\n",
+               its.getVertexCount(), its.getFaceCount(), itb.getVertexCount(), itb.getFaceCount());
+
+        assertTrue("no faces generated", itb.getFaceCount() > 0);
+        assertEquals("face count", its.getFaceCount(), itb.getFaceCount());
+        assertEquals("vertex count", its.getVertexCount(), itb.getVertexCount());
+
+        // surface of ball should be closed and consistently oriented
+        int faces[] = itb.getFaces();
+        HashSet<Long> edges = new HashSet<Long>();
+        for(int i = 0; i < itb.getFaceCount(); i++){
+            for(int k = 0; k < 3; k++){
+                long v0 = faces[3*i + k];
+                long v1 = faces[3*i + (k+1)%3];
+                assertTrue("duplicate directed edge", edges.add((v0 << 32) | v1));
+            }
+        }
+        for(Long e : edges){
+            long v0 = e >> 32, v1 = e & 0xFFFFFFFFL;
+            assertTrue("boundary edge", edges.contains((v1 << 32) | v0));
+        }
+        // Euler characteristic of sphere
+        assertEquals("Euler characteristic", 2, itb.getVertexCount() - edges.size()/2 + itb.getFaceCount());
+    }
+
+    /**
+       cube indices of classification pre-pass should match indices of cubes with values shifted from zero 
+     */
+    public void testClassification() {
+
+        int nx = 17, ny = 5;
+        double iso = 0.3;
+        Random rnd = new Random(5);
+        double data0[] = new double[nx*ny], data1[] = new double[nx*ny];
+        for(int i = 0; i < data0.length; i++){
+            // values near isosurface including the ISOEPS boundary 
+            data0[i] = iso + (rnd.nextInt(7) - 3)*IsosurfaceMaker.ISOEPS*0.5;
+            data1[i] = iso + (rnd.nextInt(7) - 3)*IsosurfaceMaker.ISOEPS*0.5;
+        }
+        byte sign0[] = new byte[nx*ny], sign1[] = new byte[nx*ny];
+        IsosurfaceMaker.classifySlice(data0, iso, sign0);
+        IsosurfaceMaker.classifySlice(data1, iso, sign1);
+
+        int cubes[] = new int[nx-1], active[] = new int[nx-1];
+        double val[] = new double[8];
+        for(int iy = 0; iy < ny-1; iy++){
+            int count = IsosurfaceMaker.classifyRow(sign0, sign1, iy*nx, nx-1, nx, cubes, active);
+            int k = 0;
+            for(int ix = 0; ix < nx-1; ix++){
+                int b = ix + iy*nx, b1 = b + nx;
+                val[0] = data0[b] - iso;     val[1] = data0[b+1] - iso;
+                val[2] = data1[b+1] - iso;   val[3] = data1[b] - iso;
+                val[4] = data0[b1] - iso;    val[5] = data0[b1+1] - iso;
+                val[6] = data1[b1+1] - iso;  val[7] = data1[b1] - iso;
+                IsosurfaceMaker.shiftFromZero(val);
+                int index = 0;
+                for(int i = 0; i < 8; i++){
+                    if(val[i] < 0) index |= (1 << i);
+                }
+                if(index == 0 || index == 255)
+                    continue;
+                assertTrue("active count", k < count);
+                assertEquals("active cube", ix, active[k]);
+                assertEquals("cube index", index, cubes[k]);
+                k++;
+            }
+            assertEquals("active count", k, count);
+        }
+    }
+
+    static class Ball implements IsosurfaceMaker.DataXYZ {
+
+        double r;
+
+        Ball(double r){
+            this.r = r;
+        }
+
+        public double getData(double x, double y, double z){
+            return sqrt(x*x + y*y + z*z) - r;
+        }
+    }
+}
@@ -16,6 +16,8 @@ package abfab3d.io.output;
 
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
 import javax.vecmath.Vector3d;
 
 
@@ -30,6 +32,8 @@ import junit.framework.TestSuite;
 // Internal Imports
 
 import abfab3d.grid.op.GridMaker;
+import abfab3d.mesh.AreaCalculator;
+import abfab3d.mesh.IndexedTriangleSetBuilder;
 
 import abfab3d.datasources.TransformableDataSource;
 import abfab3d.datasources.DataChannelMixer;
@@ -98,6 +102,202 @@ public class TestMeshMaker extends TestCase {
         
     }
 
+    /**
+       streamed blocks should make the same closed surface as joined mesh 
+     */
+    public void testStreaming() {
+
+        double vs = 0.5*MM;
+        double r = 12*MM;
+        int subvoxelResolution = 255;
+        AttributeGrid grid = makeBall(60, vs, r, subvoxelResolution);
+
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        meshmaker.setThreadCount(2);
+        meshmaker.setBlockSize(20);
+        meshmaker.setMaxDecimationError(0.1*vs*vs);
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(subvoxelResolution));
+
+        AreaCalculator joined = new AreaCalculator();
+        meshmaker.makeMesh(grid, joined);
+
+        meshmaker.setStreamingLevel(1);
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its);
+        AreaCalculator streamed = new AreaCalculator();
+        its.getTriangles(streamed);
+
+        double volume = 4*PI*r*r*r/3;
+        printf("volume exact: %10.4e joined: %10.4e streamed: %10.4e\n", volume, joined.getVolume(), streamed.getVolume());
+        assertTrue("no triangles streamed", its.getFaceCount() > 0);
+        assertEquals("streamed volume", joined.getVolume(), streamed.getVolume(), 0.01*volume);
+        assertEquals("joined volume", volume, joined.getVolume(), 0.02*volume);
+
+        // streamed blocks should fit each other
+        int faces[] = its.getFaces();
+        HashSet<Long> edges = new HashSet<Long>();
+        for(int i = 0; i < faces.length; i += 3){
+            for(int k = 0; k < 3; k++){
+                long v0 = faces[i + k];
+                long v1 = faces[i + (k+1)%3];
+                edges.add((v0 << 32) | v1);
+            }
+        }
+        for(Long e : edges){
+            long v0 = e >> 32, v1 = e & 0xFFFFFFFFL;
+            assertTrue("boundary edge", edges.contains((v1 << 32) | v0));
+        }
+    }
+
+    /**
+       mesh over triangles budget should be decimated to the budget 
+     */
+    public void testTriangleBudget() {
+
+        double vs = 0.5*MM;
+        int subvoxelResolution = 255;
+        AttributeGrid grid = makeBall(60, vs, 12*MM, subvoxelResolution);
+
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        meshmaker.setThreadCount(2);
+        meshmaker.setBlockSize(20);
+        meshmaker.setMaxDecimationError(0.1*vs*vs);
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(subvoxelResolution));
+
+        IndexedTriangleSetBuilder its = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its);
+        int fcount = its.getFaceCount();
+
+        int budget = fcount / 3;
+        meshmaker.setMaxTriangles(budget);
+        its = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its);
+
+        printf("faces: %d budget: %d result: %d\n", fcount, budget, its.getFaceCount());
+        assertTrue("over budget", its.getFaceCount() <= budget);
+        assertTrue("under budget", its.getFaceCount() >= budget - 1);
+    }
+
+    /**
+       mesh made with block cache after local change of the grid should be the same as mesh made from scratch 
+     */
+    public void testBlockCache() {
+
+        double vs = 0.5*MM;
+        int subvoxelResolution = 255;
+        AttributeGrid grid = makeBall(60, vs, 12*MM, subvoxelResolution);
+
+        MeshBlockCache cache = new MeshBlockCache();
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        meshmaker.setThreadCount(1);
+        meshmaker.setBlockSize(10);
+        meshmaker.setMaxDecimationError(0.1*vs*vs);
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(subvoxelResolution));
+        meshmaker.setBlockCache(cache);
+
+        IndexedTriangleSetBuilder its0 = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its0);
+        int blockCount = cache.getMissCount();
+
+        // unchanged grid is taken from cache
+        IndexedTriangleSetBuilder its1 = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its1);
+        printf("blocks: %d cached: %d remeshed: %d\n", blockCount, cache.getHitCount(), cache.getMissCount());
+        assertEquals("remeshed blocks", 0, cache.getMissCount());
+        assertTrue("faces", Arrays.equals(its0.getFaces(), its1.getFaces()));
+
+        // bump on the surface of the ball 
+        for(int y = 28; y < 33; y++){
+            for(int x = 28; x < 33; x++){
+                for(int z = 52; z < 56; z++){
+                    grid.setAttribute(x, y, z, subvoxelResolution);
+                }
+            }
+        }
+        IndexedTriangleSetBuilder its2 = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its2);
+        printf("blocks: %d cached: %d remeshed: %d\n", blockCount, cache.getHitCount(), cache.getMissCount());
+        assertTrue("cached blocks", cache.getHitCount() > 0);
+        assertTrue("remeshed blocks", cache.getMissCount() > 0 && cache.getMissCount() < blockCount/2);
+
+        meshmaker.setBlockCache(null);
+        IndexedTriangleSetBuilder its3 = new IndexedTriangleSetBuilder();
+        meshmaker.makeMesh(grid, its3);
+        assertEquals("face count", its3.getFaceCount(), its2.getFaceCount());
+        assertTrue("vertices", Arrays.equals(its3.getVertices(), its2.getVertices()));
+
+        // change of interior voxel makes dirty only the ancestors of interior block
+        // which are joined by processors without own decimated blocks
+        for(int threads = 1; threads <= 4; threads += 3){
+            grid.setAttribute(30, 30, 30, (threads == 1)? 0: subvoxelResolution);
+            meshmaker.setThreadCount(threads);
+            meshmaker.setBlockCache(cache);
+            IndexedTriangleSetBuilder its4 = new IndexedTriangleSetBuilder();
+            meshmaker.makeMesh(grid, its4);
+            meshmaker.setBlockCache(null);
+            IndexedTriangleSetBuilder its5 = new IndexedTriangleSetBuilder();
+            meshmaker.makeMesh(grid, its5);
+            printf("threads: %d faces cached: %d uncached: %d\n", threads, its4.getFaceCount(), its5.getFaceCount());
+            assertTrue("faces", its4.getFaceCount() > 0);
+            if(threads == 1)
+                assertEquals("face count", its5.getFaceCount(), its4.getFaceCount());
+            else // order of decimation in MT mode is not deterministic 
+                assertEquals("face count", its5.getFaceCount(), its4.getFaceCount(), its5.getFaceCount()/5);
+        }
+    }
+
+    /**
+       change of density maker should invalidate cached blocks 
+     */
+    public void testBlockCacheSettings() {
+
+        double vs = 0.5*MM;
+        AttributeGrid grid = makeBall(40, vs, 8*MM, 255);
+
+        MeshBlockCache cache = new MeshBlockCache();
+        MeshMakerMT meshmaker = new MeshMakerMT();
+        meshmaker.setThreadCount(1);
+        meshmaker.setBlockSize(10);
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(255));
+        meshmaker.setBlockCache(cache);
+        meshmaker.makeMesh(grid, new IndexedTriangleSetBuilder());
+
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(255));
+        meshmaker.makeMesh(grid, new IndexedTriangleSetBuilder());
+        assertEquals("remeshed blocks with the same density maker", 0, cache.getMissCount());
+
+        meshmaker.setDensityMaker(new DensityMakerSubvoxel(200));
+        meshmaker.makeMesh(grid, new IndexedTriangleSetBuilder());
+        assertEquals("cached blocks with different resolution", 0, cache.getHitCount());
+
+        meshmaker.setDensityMaker(new DensityMaker(){
+                public double makeDensity(long attribute){ return (attribute >= 100)? 1.: attribute/100.; }
+            });
+        meshmaker.makeMesh(grid, new IndexedTriangleSetBuilder());
+        assertEquals("cached blocks with different density maker", 0, cache.getHitCount());
+    }
+
+    /**
+       makes grid of ball of radius r with subvoxel density 
+     */
+    static AttributeGrid makeBall(int n, double vs, double r, int subvoxelResolution){
+
+        double s = n*vs/2;
+        AttributeGrid grid = new ArrayAttributeGridByte(n, n, n, vs, vs);
+        grid.setGridBounds(new double[]{-s, s, -s, s, -s, s});
+        for(int y = 0; y < n; y++){
+            for(int x = 0; x < n; x++){
+                for(int z = 0; z < n; z++){
+                    double px = (x + 0.5)*vs - s, py = (y + 0.5)*vs - s, pz = (z + 0.5)*vs - s;
+                    double d = (r - sqrt(px*px + py*py + pz*pz))/vs + 0.5;
+                    d = Math.max(0., Math.min(1., d));
+                    grid.setAttribute(x, y, z, (long)(d*subvoxelResolution + 0.5));
+                }
+            }
+        }
+        return grid;
+    }
+
     public static void makeColorSphere() throws Exception {
         
         printf("makeColorSphere()\n");    
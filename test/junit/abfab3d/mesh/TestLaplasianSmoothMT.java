@@ -0,0 +1,130 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.mesh;
+
+// External Imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.util.StructMixedData;
+
+import static abfab3d.util.Output.printf;
+
+/**
+ * Tests the functionality of LaplasianSmoothMT
+ */
+public class TestLaplasianSmoothMT extends TestCase {
+
+    static final String MODEL = "test/models/sphere_10cm_smooth_manifold.x3dv";
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestLaplasianSmoothMT.class);
+    }
+
+    /**
+       Laplasian mode should give the same result as LaplasianSmooth for any count of threads
+     */
+    public void testSameAsSingleThread() throws Exception {
+
+        WingedEdgeTriangleMesh mesh0 = TestMeshDecimatorParallel.loadMesh(MODEL);
+        LaplasianSmooth ls = new LaplasianSmooth();
+        ls.setCenterWeight(2);
+        ls.processMesh(mesh0, 5);
+        double data0[] = mesh0.getVertices().getDoubleData();
+
+        double data1[] = null;
+        int threads[] = new int[]{1, 4};
+        for(int i = 0; i < threads.length; i++){
+
+            WingedEdgeTriangleMesh mesh = TestMeshDecimatorParallel.loadMesh(MODEL);
+            LaplasianSmoothMT lsmt = new LaplasianSmoothMT();
+            lsmt.setCenterWeight(2);
+            lsmt.setThreadCount(threads[i]);
+            lsmt.processMesh(mesh, 5);
+            double data[] = mesh.getVertices().getDoubleData();
+            for(int k = 0; k < data.length; k++){
+                assertEquals("vertex coord", data0[k], data[k], 1.e-12);
+            }
+            if(data1 == null)
+                data1 = data;
+            else
+                assertTrue("results for different threads count differ", java.util.Arrays.equals(data1, data));
+        }
+    }
+
+    /**
+       Taubin smoothing should shrink the mesh less than Laplasian
+     */
+    public void testTaubinVolume() throws Exception {
+
+        WingedEdgeTriangleMesh mesh = TestMeshDecimatorParallel.loadMesh(MODEL);
+        double v0 = getVolume(mesh);
+
+        LaplasianSmoothMT ls = new LaplasianSmoothMT();
+        ls.setCenterWeight(0);
+        ls.processMesh(mesh, 10);
+        double vl = getVolume(mesh);
+
+        mesh = TestMeshDecimatorParallel.loadMesh(MODEL);
+        ls.setTaubin(0.5, -0.53);
+        ls.processMesh(mesh, 10);
+        double vt = getVolume(mesh);
+
+        printf("volume orig: %10.4e laplasian: %10.4e taubin: %10.4e\n", v0, vl, vt);
+
+        assertTrue("laplasian shrinks", vl < v0);
+        assertTrue("taubin shrinks less", Math.abs(vt - v0) < 0.2*Math.abs(vl - v0));
+        assertTrue("manifold", TestWingedEdgeTriangleMesh.isManifold(mesh));
+    }
+
+    /**
+       vertices should not move farther than max error
+     */
+    public void testMaxError() throws Exception {
+
+        WingedEdgeTriangleMesh mesh = TestMeshDecimatorParallel.loadMesh(MODEL);
+        double orig[] = mesh.getVertices().getDoubleData().clone();
+
+        double maxError = 1.e-4;
+        LaplasianSmoothMT ls = new LaplasianSmoothMT();
+        ls.setCenterWeight(0);
+        ls.setMaxError(maxError);
+        ls.setThreadCount(2);
+        ls.processMesh(mesh, 20);
+
+        StructMixedData vertices = mesh.getVertices();
+        double data[] = vertices.getDoubleData();
+        double maxDist = 0;
+        for(int v = mesh.getStartVertex(); v != -1; v = Vertex.getNext(vertices, v)){
+            double dx = data[3*v] - orig[3*v];
+            double dy = data[3*v+1] - orig[3*v+1];
+            double dz = data[3*v+2] - orig[3*v+2];
+            maxDist = Math.max(maxDist, Math.sqrt(dx*dx + dy*dy + dz*dz));
+        }
+        printf("max displacement: %10.4e\n", maxDist);
+        assertTrue("max error exceeded", maxDist <= maxError*(1 + 1.e-9));
+        assertTrue("vertices moved", maxDist > 0.5*maxError);
+    }
+
+    static double getVolume(WingedEdgeTriangleMesh mesh){
+
+        AreaCalculator ac = new AreaCalculator();
+        mesh.getTriangles(ac);
+        return ac.getVolume();
+    }
+}
@@ -0,0 +1,115 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.mesh;
+
+// External Imports
+import java.io.File;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.io.input.IndexedTriangleSetLoader;
+
+import static abfab3d.util.Output.printf;
+
+/**
+ * Tests the functionality of MeshDecimatorPQ
+ */
+public class TestMeshDecimatorPQ extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestMeshDecimatorPQ.class);
+    }
+
+    /**
+       heap should return edges in order of cost after random updates and removals
+     */
+    public void testEdgeHeap() {
+
+        int count = 1000;
+        MeshDecimatorPQ.EdgeHeap heap = new MeshDecimatorPQ.EdgeHeap(10);
+        double cost[] = new double[count];
+        boolean present[] = new boolean[count];
+        Random rnd = new Random(11);
+
+        for(int k = 0; k < 10000; k++){
+            int e = rnd.nextInt(count);
+            if(rnd.nextInt(4) == 0){
+                heap.remove(e);
+                present[e] = false;
+            } else {
+                cost[e] = rnd.nextDouble();
+                heap.put(e, cost[e]);
+                present[e] = true;
+            }
+        }
+
+        int size = 0;
+        for(int e = 0; e < count; e++){
+            if(present[e]) size++;
+            assertEquals("contains", present[e], heap.contains(e));
+        }
+        assertEquals("size", size, heap.size());
+
+        double last = -1;
+        while(heap.size() > 0){
+            double c = heap.getMinCost();
+            int e = heap.pop();
+            assertTrue("order", c >= last);
+            assertEquals("cost", cost[e], c);
+            assertTrue("duplicate", present[e]);
+            present[e] = false;
+            last = c;
+        }
+    }
+
+    /**
+       decimator should reach target face count in one pass and keep the mesh manifold
+     */
+    public void testTargetFaceCount() throws Exception {
+
+        IndexedTriangleSetLoader loader = new IndexedTriangleSetLoader(false);
+        loader.processFile(new File("test/models/sphere_10cm_rough_manifold.x3dv"));
+
+        float[] coords = loader.getCoords();
+        double[] verts = new double[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            verts[i] = coords[i];
+        }
+
+        WingedEdgeTriangleMesh mesh = new WingedEdgeTriangleMesh(verts, loader.getVerts());
+        AreaCalculator ac0 = new AreaCalculator();
+        mesh.getTriangles(ac0);
+
+        int fcount = mesh.getTriangleCount();
+        int target = fcount / 2;
+
+        MeshDecimatorPQ md = new MeshDecimatorPQ();
+        int result = md.processMesh(mesh, target);
+
+        AreaCalculator ac1 = new AreaCalculator();
+        mesh.getTriangles(ac1);
+        printf("faces: %d -> %d target: %d volume: %10.4e -> %10.4e\n", fcount, result, target, ac0.getVolume(), ac1.getVolume());
+
+        assertEquals("face count", mesh.getTriangleCount(), result);
+        assertTrue("target face count", result <= target && result >= target - 1);
+        assertTrue("manifold", TestWingedEdgeTriangleMesh.isManifold(mesh));
+        assertEquals("volume", ac0.getVolume(), ac1.getVolume(), 0.05 * Math.abs(ac0.getVolume()));
+    }
+}
@@ -0,0 +1,82 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.mesh;
+
+// External Imports
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+// Internal Imports
+import abfab3d.io.input.IndexedTriangleSetLoader;
+
+import static abfab3d.util.Output.printf;
+
+/**
+ * Tests the functionality of MeshDecimatorParallel
+ */
+public class TestMeshDecimatorParallel extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestMeshDecimatorParallel.class);
+    }
+
+    /**
+       decimator should reach target face count with any number of threads and keep the mesh manifold
+     */
+    public void testTargetFaceCount() throws Exception {
+
+        int threads[] = new int[]{1, 2, 4};
+        for(int i = 0; i < threads.length; i++){
+
+            WingedEdgeTriangleMesh mesh = loadMesh("test/models/sphere_10cm_smooth_manifold.x3dv");
+            AreaCalculator ac0 = new AreaCalculator();
+            mesh.getTriangles(ac0);
+
+            int fcount = mesh.getTriangleCount();
+            int target = fcount / 4;
+
+            MeshDecimatorParallel md = new MeshDecimatorParallel();
+            md.setThreadCount(threads[i]);
+            int result = md.processMesh(mesh, target);
+
+            AreaCalculator ac1 = new AreaCalculator();
+            mesh.getTriangles(ac1);
+            printf("threads: %d faces: %d -> %d target: %d volume: %10.4e -> %10.4e\n",
+                   threads[i], fcount, result, target, ac0.getVolume(), ac1.getVolume());
+
+            assertEquals("face count", mesh.getTriangleCount(), result);
+            assertTrue("target face count", result <= target + 1);
+            assertTrue("manifold", TestWingedEdgeTriangleMesh.isManifold(mesh));
+            assertEquals("volume", ac0.getVolume(), ac1.getVolume(), 0.05 * Math.abs(ac0.getVolume()));
+        }
+    }
+
+    static WingedEdgeTriangleMesh loadMesh(String path) throws Exception {
+
+        IndexedTriangleSetLoader loader = new IndexedTriangleSetLoader(false);
+        loader.processFile(new File(path));
+
+        float[] coords = loader.getCoords();
+        double[] verts = new double[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            verts[i] = coords[i];
+        }
+        return new WingedEdgeTriangleMesh(verts, loader.getVerts());
+    }
+}
@@ -19,6 +19,7 @@ import abfab3d.io.output.SAVExporter;
 import abfab3d.util.EdgeCollapseParams;
 import abfab3d.util.EdgeCollapseResult;
 import abfab3d.util.StructMixedData;
+import abfab3d.util.TriangleMesh;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -545,6 +546,112 @@ public class TestWingedEdgeTriangleMesh extends TestCase {
         System.out.println("Total time: " + (System.currentTimeMillis() - start_time));
     }
 
+    /**
+     * Test that compaction of decimated mesh keeps the surface and releases removed elements
+     */
+    public void testCompact() throws Exception {
+
+        IndexedTriangleSetLoader loader = new IndexedTriangleSetLoader(false);
+        loader.processFile(new File("test/models/sphere_10cm_rough_manifold.x3dv"));
+
+        float[] coords = loader.getCoords();
+        double[] verts = new double[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            verts[i] = coords[i];
+        }
+
+        WingedEdgeTriangleMesh we = new WingedEdgeTriangleMesh(verts, loader.getVerts());
+
+        MeshDecimator md = new MeshDecimator();
+        md.processMesh(we, we.getTriangleCount() / 4);
+
+        int fcount = we.getTriangleCount();
+        int vcount = we.getVertexCount();
+        int ecount = we.getEdgeCount();
+        AreaCalculator ac0 = new AreaCalculator();
+        we.getTriangles(ac0);
+
+        printf("garbage ratio before compaction: %5.2f\n", we.getGarbageRatio());
+        assertTrue("Garbage ratio", we.getGarbageRatio() > 1.5);
+
+        assertTrue("Compacted", we.compact(WingedEdgeTriangleMesh.ORDER_SPATIAL));
+
+        AreaCalculator ac1 = new AreaCalculator();
+        we.getTriangles(ac1);
+
+        assertEquals("Garbage ratio", 1., we.getGarbageRatio(), 0.01);
+        assertEquals("Face count", fcount, we.getTriangleCount());
+        assertEquals("Vertex count", vcount, we.getVertexCount());
+        assertEquals("Edge count", ecount, we.getEdgeCount());
+        assertEquals("Area", ac0.getArea(), ac1.getArea(), 1.e-10 * ac0.getArea());
+        assertEquals("Volume", ac0.getVolume(), ac1.getVolume(), 1.e-10 * ac0.getVolume());
+        assertTrue("Manifold", isManifold(we));
+        assertTrue("Structure", verifyStructure(we, true));
+
+        // compacted mesh can be decimated further 
+        md.processMesh(we, we.getTriangleCount() / 2);
+        assertTrue("Decimation", we.getTriangleCount() < fcount);
+        assertTrue("Manifold2", isManifold(we));
+    }
+
+    /**
+     * Test that edge tester is initialized again after compaction done by decimator
+     */
+    public void testCompactEdgeTester() throws Exception {
+
+        IndexedTriangleSetLoader loader = new IndexedTriangleSetLoader(false);
+        loader.processFile(new File("test/models/sphere_10cm_rough_manifold.x3dv"));
+
+        float[] coords = loader.getCoords();
+        double[] verts = new double[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            verts[i] = coords[i];
+        }
+
+        final WingedEdgeTriangleMesh we = new WingedEdgeTriangleMesh(verts, loader.getVerts());
+        final int initCount[] = new int[1];
+
+        EdgeTester tester = new EdgeTester() {
+            public void initialize(TriangleMesh mesh) {
+                initCount[0]++;
+            }
+            public boolean canCollapse(int edge) {
+                return true;
+            }
+            public Object clone() {
+                return this;
+            }
+        };
+
+        MeshDecimator md = new MeshDecimator();
+        md.setCompactMesh(true);
+        md.setEdgeTester(tester);
+        tester.initialize(we);
+        md.processMesh(we, we.getTriangleCount() / 4);
+        assertEquals("Initialization count", 1, initCount[0]);
+        assertTrue("Garbage ratio", we.getGarbageRatio() > 1.5);
+
+        md.processMesh(we, we.getTriangleCount() / 2);
+        assertEquals("Initialization count after compaction", 2, initCount[0]);
+        assertTrue("Manifold", isManifold(we));
+    }
+
+    /**
+     * Test that mesh with vertex attributes is not compacted
+     */
+    public void testCompactAttributes() throws Exception {
+
+        double verts[] = new double[]{0,0,0, 1,0,0, 0,1,0, 0,0,1};
+        float attribs[][] = new float[][]{{0.f,0.f,0.f},{1.f,0.f,0.f},{0.f,1.f,0.f},{0.f,0.f,1.f}};
+        int faces[] = new int[]{0,2,1, 0,1,3, 0,3,2, 1,2,3};
+
+        WingedEdgeTriangleMesh we = new WingedEdgeTriangleMesh(verts, attribs, new int[]{WingedEdgeTriangleMesh.VA_COLOR}, faces);
+        assertFalse("Compacted", we.compact(WingedEdgeTriangleMesh.ORDER_SPATIAL));
+        assertEquals("Face count", 4, we.getTriangleCount());
+        assertEquals("Vertex count", 4, we.getVertexCount());
+        assertTrue("Manifold", isManifold(we));
+    }
+
     /**
      * Test a box is manifold on construction and edge collapse
      */
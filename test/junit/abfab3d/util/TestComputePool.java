@@ -0,0 +1,180 @@
+/*****************************************************************************
+ *                        Shapeways, Inc Copyright (c) 2014
+ *                               Java Source
+ *
+ * This source is licensed under the GNU LGPL v2.1
+ * Please read http://www.gnu.org/copyleft/lgpl.html for more information
+ *
+ * This software comes with the standard NO WARRANTY disclaimer for any
+ * purpose. Use it at your own risk. If there's a problem you get to fix it.
+ *
+ ****************************************************************************/
+
+package abfab3d.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// external imports
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import abfab3d.grid.util.ExecutionStoppedException;
+
+import static abfab3d.util.Output.printf;
+
+/**
+ * Tests the functionality of ComputePool
+ *
+ * @version
+ */
+public class TestComputePool extends TestCase {
+
+    /**
+     * Creates a test suite consisting of all the methods that start with "test".
+     */
+    public static Test suite() {
+        return new TestSuite(TestComputePool.class);
+    }
+
+    public void testExecute() {
+
+        final AtomicInteger count = new AtomicInteger(0);
+        Runnable tasks[] = new Runnable[20];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new Runnable(){
+                    public void run(){
+                        count.incrementAndGet();
+                    }
+                };
+        }
+        ComputePool.execute(tasks);
+        assertEquals("tasks count", tasks.length, count.get());
+    }
+
+    /**
+       tasks executing tasks should not deadlock
+     */
+    public void testNested() {
+
+        final AtomicInteger count = new AtomicInteger(0);
+        int poolSize = ComputePool.getPoolSize();
+        Runnable tasks[] = new Runnable[2*poolSize];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new Runnable(){
+                    public void run(){
+                        Runnable inner[] = new Runnable[4];
+                        for(int k = 0; k < inner.length; k++){
+                            inner[k] = new Runnable(){
+                                    public void run(){
+                                        count.incrementAndGet();
+                                    }
+                                };
+                        }
+                        ComputePool.execute(inner);
+                    }
+                };
+        }
+        ComputePool.execute(tasks);
+        assertEquals("tasks count", 4*tasks.length, count.get());
+    }
+
+    public void testException() {
+
+        Runnable tasks[] = new Runnable[4];
+        for(int i = 0; i < tasks.length; i++){
+            final int index = i;
+            tasks[i] = new Runnable(){
+                    public void run(){
+                        if(index == 2)
+                            throw new ExecutionStoppedException();
+                    }
+                };
+        }
+        try {
+            ComputePool.execute(tasks);
+            fail("exception expected");
+        } catch(ExecutionStoppedException e){
+            printf("expected exception: %s\n", e);
+        }
+    }
+
+    /**
+       running tasks should be finished when execute() rethrows exception
+     */
+    public void testExceptionWaitsForTasks() {
+
+        final AtomicInteger finished = new AtomicInteger(0);
+        Runnable tasks[] = new Runnable[2];
+        tasks[0] = new Runnable(){
+                public void run(){
+                    try {
+                        Thread.sleep(10000);
+                    } catch(InterruptedException e){
+                        // cancelled, simulate work which completes the current tile
+                    }
+                    long t0 = System.currentTimeMillis();
+                    while(System.currentTimeMillis() - t0 < 200);
+                    finished.incrementAndGet();
+                }
+            };
+        tasks[1] = new Runnable(){
+                public void run(){
+                    try {
+                        Thread.sleep(100);
+                    } catch(InterruptedException e){
+                    }
+                    throw new IllegalStateException("task failure");
+                }
+            };
+        long t0 = System.currentTimeMillis();
+        try {
+            ComputePool.execute(tasks);
+            fail("exception expected");
+        } catch(IllegalStateException e){
+            assertEquals("running task should be finished", 1, finished.get());
+        }
+        assertTrue("execution should be stopped quickly", (System.currentTimeMillis() - t0) < 5000);
+    }
+
+    public void testInterrupt() throws Exception {
+
+        final boolean stopped[] = new boolean[1];
+        Thread thread = new Thread(){
+                public void run(){
+                    Runnable tasks[] = new Runnable[2];
+                    for(int i = 0; i < tasks.length; i++){
+                        tasks[i] = new Runnable(){
+                                public void run(){
+                                    try {
+                                        Thread.sleep(10000);
+                                    } catch(InterruptedException e){
+                                        // cancelled
+                                    }
+                                }
+                            };
+                    }
+                    try {
+                        ComputePool.execute(tasks);
+                    } catch(ExecutionStoppedException e){
+                        stopped[0] = true;
+                    }
+                }
+            };
+        long t0 = System.currentTimeMillis();
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join();
+        assertTrue("execution should be stopped", stopped[0]);
+        assertTrue("execution should be stopped quickly", (System.currentTimeMillis() - t0) < 5000);
+    }
+
+    public void testThreadCount() {
+
+        int poolSize = ComputePool.getPoolSize();
+        assertEquals("thread count", 1, ComputePool.getThreadCount(1));
+        assertEquals("thread count", poolSize, ComputePool.getThreadCount(poolSize + 10));
+        assertTrue("thread count", ComputePool.getThreadCount(0) <= poolSize);
+    }
+}